@@ -30,7 +30,9 @@
 import com.sk89q.worldedit.blocks.BaseItemStack;
 import com.sk89q.worldedit.blocks.LazyBlock;
 import com.sk89q.worldedit.bukkit.adapter.BukkitImplAdapter;
+import com.sk89q.worldedit.bukkit.adapter.BukkitSectionAdapter;
 import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.extent.SectionBuffer;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.TreeGenerator;
 import com.sk89q.worldedit.world.biome.BaseBiome;
@@ -53,8 +55,10 @@
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -72,6 +76,7 @@ public class BukkitWorld extends LocalWorld {
     }
 
     private final WeakReference<World> worldRef;
+    private final Set<BlockVector2D> unlitChunks = new LinkedHashSet<BlockVector2D>();
 
     /**
      * Construct the object.
@@ -343,6 +348,26 @@ public void checkLoadedChunk(Vector pt) {
         }
     }
 
+    @Override
+    public void preloadChunk(BlockVector2D chunk) {
+        World world = getWorld();
+        WorldEditPlugin.getInstance().getChunkPins().pin(world, chunk);
+
+        // Bukkit cannot load chunks in the background, so the chunk is
+        // loaded now, ahead of the edit that will use it
+        if (!world.isChunkLoaded(chunk.getBlockX(), chunk.getBlockZ())) {
+            world.loadChunk(chunk.getBlockX(), chunk.getBlockZ(), true);
+        }
+    }
+
+    @Override
+    public void releaseChunk(BlockVector2D chunk) {
+        World world = worldRef.get();
+        if (world != null) {
+            WorldEditPlugin.getInstance().getChunkPins().release(world, chunk);
+        }
+    }
+
     @Override
     public boolean equals(Object other) {
         if (other == null) {
@@ -369,11 +394,33 @@ public int getMaxY() {
     @Override
     public void fixAfterFastMode(Iterable<BlockVector2D> chunks) {
         World world = getWorld();
+        BukkitImplAdapter adapter = WorldEditPlugin.getInstance().getBukkitImplAdapter();
         for (BlockVector2D chunkPos : chunks) {
+            if (unlitChunks.remove(chunkPos) && adapter instanceof BukkitSectionAdapter) {
+                ((BukkitSectionAdapter) adapter).relightChunk(world, chunkPos.getBlockX(), chunkPos.getBlockZ());
+            }
             world.refreshChunk(chunkPos.getBlockX(), chunkPos.getBlockZ());
         }
     }
 
+    @Override
+    public boolean canRelightSections() {
+        // Without an adapter, the Bukkit API can only light blocks while
+        // they are set, so lighting cannot be deferred
+        return WorldEditPlugin.getInstance().getBukkitImplAdapter() instanceof BukkitSectionAdapter;
+    }
+
+    @Override
+    public void relightSections(BlockVector2D chunk, int sectionMask) {
+        World world = getWorld();
+        BukkitImplAdapter adapter = WorldEditPlugin.getInstance().getBukkitImplAdapter();
+        unlitChunks.remove(chunk);
+        if (adapter instanceof BukkitSectionAdapter) {
+            ((BukkitSectionAdapter) adapter).relightChunk(world, chunk.getBlockX(), chunk.getBlockZ());
+        }
+        world.refreshChunk(chunk.getBlockX(), chunk.getBlockZ());
+    }
+
     @Override
     public boolean playEffect(Vector position, int type, int data) {
         World world = getWorld();
@@ -420,6 +467,28 @@ public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight
         }
     }
 
+    @Override
+    public int setSection(SectionBuffer section, boolean notifyAndLight) throws WorldEditException {
+        BukkitImplAdapter adapter = WorldEditPlugin.getInstance().getBukkitImplAdapter();
+        if (!(adapter instanceof BukkitSectionAdapter)) {
+            // This includes all of the bundled adapters
+            return super.setSection(section, notifyAndLight);
+        }
+
+        int affected = ((BukkitSectionAdapter) adapter).setSection(getWorld(), section);
+        if (affected > 0) {
+            BlockVector2D chunk = new BlockVector2D(section.getSectionX(), section.getSectionZ());
+            if (notifyAndLight) {
+                // Relight and resend on a later tick, so that each chunk is
+                // done once however many of its sections were written
+                WorldEdit.getInstance().getRelightQueue().add(this, chunk, 1 << section.getSectionY());
+            } else {
+                unlitChunks.add(chunk);
+            }
+        }
+        return affected;
+    }
+
     @SuppressWarnings("deprecation")
     @Override
     public BaseBlock getLazyBlock(Vector position) {
@@ -428,6 +497,16 @@ public BaseBlock getLazyBlock(Vector position) {
         return new LazyBlock(bukkitBlock.getTypeId(), bukkitBlock.getData(), this, position);
     }
 
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        return getWorld().getBlockTypeIdAt(x, y, z);
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        return getWorld().getBlockAt(x, y, z).getData();
+    }
+
     /**
      * @deprecated Use {@link #setBlock(Vector, BaseBlock, boolean)}
      */
@@ -0,0 +1,105 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.sk89q.worldedit.BlockVector2D;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps chunks that were preloaded for an edit from being unloaded until
+ * they are released again.
+ *
+ * <p>A chunk may be pinned several times, in which case it has to be
+ * released as many times.</p>
+ */
+public class ChunkPinListener implements Listener {
+
+    private final Map<UUID, Multiset<BlockVector2D>> pinned = new HashMap<UUID, Multiset<BlockVector2D>>();
+
+    /**
+     * Pin a chunk.
+     *
+     * @param world the world
+     * @param chunk the chunk coordinates
+     */
+    public synchronized void pin(World world, BlockVector2D chunk) {
+        Multiset<BlockVector2D> chunks = pinned.get(world.getUID());
+        if (chunks == null) {
+            chunks = HashMultiset.create();
+            pinned.put(world.getUID(), chunks);
+        }
+        chunks.add(chunk);
+    }
+
+    /**
+     * Release a chunk that was pinned.
+     *
+     * @param world the world
+     * @param chunk the chunk coordinates
+     */
+    public synchronized void release(World world, BlockVector2D chunk) {
+        Multiset<BlockVector2D> chunks = pinned.get(world.getUID());
+        if (chunks != null) {
+            chunks.remove(chunk);
+            if (chunks.isEmpty()) {
+                pinned.remove(world.getUID());
+            }
+        }
+    }
+
+    /**
+     * Return whether a chunk is pinned.
+     *
+     * @param world the world
+     * @param chunk the chunk coordinates
+     * @return true if the chunk is pinned
+     */
+    public synchronized boolean isPinned(World world, BlockVector2D chunk) {
+        Multiset<BlockVector2D> chunks = pinned.get(world.getUID());
+        return chunks != null && chunks.contains(chunk);
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        if (isPinned(chunk.getWorld(), new BlockVector2D(chunk.getX(), chunk.getZ()))) {
+            event.setCancelled(true);
+        }
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        synchronized (this) {
+            pinned.remove(event.getWorld().getUID());
+        }
+    }
+
+}
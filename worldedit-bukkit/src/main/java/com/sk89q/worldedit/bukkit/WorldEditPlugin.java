@@ -85,6 +85,7 @@ public class WorldEditPlugin extends JavaPlugin implements TabCompleter {
     private BukkitServerInterface server;
     private final WorldEditAPI api = new WorldEditAPI(this);
     private BukkitConfiguration config;
+    private final ChunkPinListener chunkPins = new ChunkPinListener();
 
     /**
      * Called on plugin enable.
@@ -112,6 +113,7 @@ public void onEnable() {
 
         // Now we can register events
         getServer().getPluginManager().registerEvents(new WorldEditListener(this), this);
+        getServer().getPluginManager().registerEvents(chunkPins, this);
 
         // If we are on MCPC+/Cauldron, then Forge will have already loaded
         // Forge WorldEdit and there's (probably) not going to be any other
@@ -169,7 +171,9 @@ private void loadAdapter() {
     @Override
     public void onDisable() {
         WorldEdit worldEdit = WorldEdit.getInstance();
+        worldEdit.getEditQueue().drainAll();
         worldEdit.clearSessions();
+        worldEdit.getRelightQueue().clear();
         worldEdit.getPlatformManager().unregister(server);
         if (config != null) {
             config.unload();
@@ -282,6 +286,7 @@ public EditSession createEditSession(Player player) {
         LocalPlayer wePlayer = wrapPlayer(player);
         LocalSession session = WorldEdit.getInstance().getSession(wePlayer);
         BlockBag blockBag = session.getBlockBag(wePlayer);
+        WorldEdit.getInstance().getEditQueue().drain(wePlayer);
 
         EditSession editSession = WorldEdit.getInstance().getEditSessionFactory()
                 .getEditSession(wePlayer.getWorld(), session.getBlockChangeLimit(), blockBag, wePlayer);
@@ -464,6 +469,15 @@ static WorldEditPlugin getInstance() {
         return checkNotNull(INSTANCE);
     }
 
+    /**
+     * Get the listener that keeps preloaded chunks from being unloaded.
+     *
+     * @return the chunk pins
+     */
+    ChunkPinListener getChunkPins() {
+        return chunkPins;
+    }
+
     /**
      * Get the Bukkit implementation adapter.
      *
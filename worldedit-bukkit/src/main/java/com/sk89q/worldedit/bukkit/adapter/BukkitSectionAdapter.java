@@ -0,0 +1,64 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit.adapter;
+
+import com.sk89q.worldedit.extent.SectionBuffer;
+import org.bukkit.World;
+
+/**
+ * An optional extension of {@link BukkitImplAdapter} for implementations
+ * that can write whole chunk sections at once.
+ *
+ * <p>Adapters that do not implement this interface still work, but blocks
+ * are then set one at a time with
+ * {@link BukkitImplAdapter#setBlock(org.bukkit.Location, com.sk89q.worldedit.blocks.BaseBlock, boolean)}.
+ * None of the adapters bundled with WorldEdit implement this interface,
+ * so sections are only written at once when an adapter is loaded from
+ * elsewhere that does.</p>
+ */
+public interface BukkitSectionAdapter extends BukkitImplAdapter {
+
+    /**
+     * Write the blocks of a section buffer straight into the storage of the
+     * chunk section that holds them, loading the chunk if it is not loaded.
+     *
+     * <p>No block physics is run and no neighbours are notified. Tile
+     * entities of blocks that are replaced are removed. Lighting is not
+     * updated and the chunk is not sent to clients, so
+     * {@link #relightChunk(World, int, int)} and
+     * {@link World#refreshChunk(int, int)} have to be called for the chunk
+     * once all of its sections have been written.</p>
+     *
+     * @param world the world
+     * @param section the section buffer
+     * @return the number of blocks that were changed
+     */
+    int setSection(World world, SectionBuffer section);
+
+    /**
+     * Recalculate the sky light and block light of a loaded chunk.
+     *
+     * @param world the world
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     */
+    void relightChunk(World world, int chunkX, int chunkZ);
+
+}
@@ -286,6 +286,60 @@ private void writeIntArrayTagPayload(IntArrayTag tag) throws IOException {
         } 
     }
 
+    /**
+     * Write the header of a compound tag. Its entries have to be written
+     * afterwards, followed by {@link #endCompound()}.
+     *
+     * @param name the name of the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public void beginCompound(String name) throws IOException {
+        writeTagHeader(name, NBTConstants.TYPE_COMPOUND);
+    }
+
+    /**
+     * End the compound tag whose entries are being written.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void endCompound() throws IOException {
+        os.writeByte(NBTConstants.TYPE_END);
+    }
+
+    /**
+     * Write the header of a byte array tag. Exactly {@code length} bytes
+     * have to be written afterwards with {@link #writeBytes(byte[], int, int)}.
+     *
+     * @param name the name of the tag
+     * @param length the length of the array
+     * @throws IOException if an I/O error occurs
+     */
+    public void beginByteArray(String name, int length) throws IOException {
+        writeTagHeader(name, NBTConstants.TYPE_BYTE_ARRAY);
+        os.writeInt(length);
+    }
+
+    /**
+     * Write bytes of a byte array that was started with
+     * {@link #beginByteArray(String, int)}.
+     *
+     * @param bytes the buffer
+     * @param off the offset in the buffer
+     * @param len the number of bytes to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeBytes(byte[] bytes, int off, int len) throws IOException {
+        os.write(bytes, off, len);
+    }
+
+    private void writeTagHeader(String name, int type) throws IOException {
+        checkNotNull(name);
+        byte[] nameBytes = name.getBytes(NBTConstants.CHARSET);
+        os.writeByte(type);
+        os.writeShort(nameBytes.length);
+        os.write(nameBytes);
+    }
+
     @Override
     public void close() throws IOException {
         os.close();
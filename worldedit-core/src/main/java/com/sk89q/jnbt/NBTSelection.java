@@ -0,0 +1,98 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.jnbt;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A set of paths into an NBT tree that should be read by
+ * {@link NBTStreamReader#readNamedTag(NBTSelection)}.
+ *
+ * <p>A path is a list of tag names separated by periods, starting below
+ * the root tag, such as {@code Level.Sections[].Blocks}. The {@code []}
+ * suffix marks a list and is optional, because the remainder of a path
+ * always applies to every element of a list. The last tag of a path is
+ * read in full, including all of its children.</p>
+ */
+public final class NBTSelection {
+
+    private final Map<String, NBTSelection> children = new HashMap<String, NBTSelection>();
+    private boolean all;
+
+    private NBTSelection() {
+    }
+
+    /**
+     * Create a selection of the given paths.
+     *
+     * @param paths the paths
+     * @return a new selection
+     */
+    public static NBTSelection of(String... paths) {
+        checkNotNull(paths);
+        NBTSelection selection = new NBTSelection();
+        for (String path : paths) {
+            selection.add(path);
+        }
+        return selection;
+    }
+
+    private void add(String path) {
+        checkNotNull(path);
+        NBTSelection node = this;
+        for (String part : path.split("\\.", -1)) {
+            String name = part.endsWith("[]") ? part.substring(0, part.length() - 2) : part;
+            checkArgument(!name.isEmpty(), "Empty tag name in path '%s'", path);
+            NBTSelection child = node.children.get(name);
+            if (child == null) {
+                child = new NBTSelection();
+                node.children.put(name, child);
+            }
+            node = child;
+        }
+        node.all = true;
+    }
+
+    /**
+     * Returns whether the tag at this point of the selection should be
+     * read in full.
+     *
+     * @return true if the whole tag is selected
+     */
+    boolean isAll() {
+        return all;
+    }
+
+    /**
+     * Get the selection below the child tag with the given name.
+     *
+     * @param name the name of the child tag
+     * @return the selection, or null if the child should be skipped
+     */
+    @Nullable
+    NBTSelection getChild(String name) {
+        return all ? this : children.get(name);
+    }
+
+}
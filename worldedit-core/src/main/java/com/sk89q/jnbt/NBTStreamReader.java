@@ -0,0 +1,432 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.jnbt;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pull-style reader for <strong>NBT</strong> streams that does not build
+ * an object graph unless asked to.
+ *
+ * <p>The reader is positioned in front of a tag payload after the root
+ * header has been read with {@link #readRoot()} or a compound entry with
+ * {@link #nextEntry()}. Each payload must then be consumed by exactly one
+ * of the {@code read} methods, {@link #skip(int)}, {@link #beginList()}
+ * followed by its elements, or by calling {@link #nextEntry()} until it
+ * returns false for a compound. Skipped tags are passed over at the byte
+ * level without being decoded.</p>
+ *
+ * <p>Alternatively, {@link #readNamedTag(NBTSelection)} reads only the
+ * selected paths of a tree into the usual tag classes.</p>
+ */
+public final class NBTStreamReader implements Closeable {
+
+    private final DataInputStream is;
+    private final NBTInputStream tagReader;
+    private int type = NBTConstants.TYPE_END;
+    private String name = "";
+    private int listType = NBTConstants.TYPE_END;
+
+    /**
+     * Create a new reader.
+     *
+     * @param is the input stream
+     * @throws IOException if an I/O error occurs
+     */
+    public NBTStreamReader(InputStream is) throws IOException {
+        this.is = new DataInputStream(is);
+        this.tagReader = new NBTInputStream(this.is);
+    }
+
+    /**
+     * Read the type and name of the root tag.
+     *
+     * @return the type of the root tag
+     * @throws IOException if an I/O error occurs
+     */
+    public int readRoot() throws IOException {
+        type = is.readUnsignedByte();
+        if (type == NBTConstants.TYPE_END) {
+            throw new IOException("TAG_End found without a TAG_Compound/TAG_List tag preceding it.");
+        }
+        name = readName();
+        return type;
+    }
+
+    /**
+     * Read the type and name of the next entry of the compound whose
+     * payload is being read.
+     *
+     * @return true if there was an entry, or false if the end of the compound was reached
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean nextEntry() throws IOException {
+        type = is.readUnsignedByte();
+        if (type == NBTConstants.TYPE_END) {
+            name = "";
+            return false;
+        }
+        name = readName();
+        return true;
+    }
+
+    /**
+     * Get the type of the tag that was last read by {@link #readRoot()} or
+     * {@link #nextEntry()}.
+     *
+     * @return the type
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Get the name of the tag that was last read by {@link #readRoot()} or
+     * {@link #nextEntry()}.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Start reading the payload of a list. The elements have to be read
+     * afterwards, one payload at a time.
+     *
+     * @return the number of elements
+     * @throws IOException if an I/O error occurs
+     */
+    public int beginList() throws IOException {
+        listType = is.readUnsignedByte();
+        return readLength();
+    }
+
+    /**
+     * Get the element type of the list that was last started with
+     * {@link #beginList()}.
+     *
+     * @return the element type
+     */
+    public int getListType() {
+        return listType;
+    }
+
+    /**
+     * Read the payload of a byte tag.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public byte readByte() throws IOException {
+        return is.readByte();
+    }
+
+    /**
+     * Read the payload of a short tag.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public short readShort() throws IOException {
+        return is.readShort();
+    }
+
+    /**
+     * Read the payload of an int tag, or one value of an int array.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public int readInt() throws IOException {
+        return is.readInt();
+    }
+
+    /**
+     * Read the payload of a long tag.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public long readLong() throws IOException {
+        return is.readLong();
+    }
+
+    /**
+     * Read the payload of a float tag.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public float readFloat() throws IOException {
+        return is.readFloat();
+    }
+
+    /**
+     * Read the payload of a double tag.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public double readDouble() throws IOException {
+        return is.readDouble();
+    }
+
+    /**
+     * Read the payload of a string tag.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public String readString() throws IOException {
+        return readName();
+    }
+
+    /**
+     * Start reading the payload of a byte array or an int array. The
+     * values have to be read afterwards with {@link #readBytes(byte[], int, int)},
+     * {@link #readInt()} or {@link #skipBytes(long)}.
+     *
+     * @return the number of values
+     * @throws IOException if an I/O error occurs
+     */
+    public int beginArray() throws IOException {
+        return readLength();
+    }
+
+    /**
+     * Read bytes of an array that was started with {@link #beginArray()}.
+     *
+     * @param buffer the buffer to read into
+     * @param off the offset in the buffer
+     * @param len the number of bytes to read
+     * @throws IOException if an I/O error occurs
+     */
+    public void readBytes(byte[] buffer, int off, int len) throws IOException {
+        is.readFully(buffer, off, len);
+    }
+
+    /**
+     * Read the payload of a byte array into the given buffer.
+     *
+     * @param buffer the buffer, which must be large enough for the array
+     * @return the length of the array
+     * @throws IOException if an I/O error occurs or the buffer is too small
+     */
+    public int readByteArray(byte[] buffer) throws IOException {
+        int length = readLength();
+        if (length > buffer.length) {
+            throw new IOException("Byte array of length " + length + " does not fit in a buffer of length " + buffer.length);
+        }
+        is.readFully(buffer, 0, length);
+        return length;
+    }
+
+    /**
+     * Read the payload of an int array into the given buffer.
+     *
+     * @param buffer the buffer, which must be large enough for the array
+     * @return the length of the array
+     * @throws IOException if an I/O error occurs or the buffer is too small
+     */
+    public int readIntArray(int[] buffer) throws IOException {
+        int length = readLength();
+        if (length > buffer.length) {
+            throw new IOException("Int array of length " + length + " does not fit in a buffer of length " + buffer.length);
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[i] = is.readInt();
+        }
+        return length;
+    }
+
+    /**
+     * Read a payload of the given type in full.
+     *
+     * @param type the type
+     * @return the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public Tag readTag(int type) throws IOException {
+        return tagReader.readTagPayload(type, 1);
+    }
+
+    /**
+     * Skip a payload of the given type without decoding it.
+     *
+     * @param type the type
+     * @throws IOException if an I/O error occurs
+     */
+    public void skip(int type) throws IOException {
+        switch (type) {
+        case NBTConstants.TYPE_END:
+            break;
+        case NBTConstants.TYPE_BYTE:
+        case NBTConstants.TYPE_SHORT:
+        case NBTConstants.TYPE_INT:
+        case NBTConstants.TYPE_LONG:
+        case NBTConstants.TYPE_FLOAT:
+        case NBTConstants.TYPE_DOUBLE:
+            skipBytes(getFixedSize(type));
+            break;
+        case NBTConstants.TYPE_BYTE_ARRAY:
+            skipBytes(readLength());
+            break;
+        case NBTConstants.TYPE_STRING:
+            skipBytes(is.readUnsignedShort());
+            break;
+        case NBTConstants.TYPE_LIST:
+            int childType = is.readUnsignedByte();
+            int length = readLength();
+            int size = getFixedSize(childType);
+            if (size > 0) {
+                skipBytes((long) length * size);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    skip(childType);
+                }
+            }
+            break;
+        case NBTConstants.TYPE_COMPOUND:
+            int entryType;
+            while ((entryType = is.readUnsignedByte()) != NBTConstants.TYPE_END) {
+                skipBytes(is.readUnsignedShort());
+                skip(entryType);
+            }
+            break;
+        case NBTConstants.TYPE_INT_ARRAY:
+            skipBytes(4L * readLength());
+            break;
+        default:
+            throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    /**
+     * Skip the given number of bytes.
+     *
+     * @param count the number of bytes
+     * @throws IOException if an I/O error occurs or the end of the stream is reached
+     */
+    public void skipBytes(long count) throws IOException {
+        while (count > 0) {
+            long skipped = is.skip(count);
+            if (skipped <= 0) {
+                // skip() may return 0 before the end of the stream
+                if (is.read() == -1) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Read the root tag, but only the parts of it that are in the given
+     * selection. Everything else is skipped.
+     *
+     * @param selection the paths to read
+     * @return the root tag, containing only the selected tags
+     * @throws IOException if an I/O error occurs
+     */
+    public NamedTag readNamedTag(NBTSelection selection) throws IOException {
+        int rootType = readRoot();
+        String rootName = name;
+        return new NamedTag(rootName, readSelected(rootType, selection));
+    }
+
+    private Tag readSelected(int type, NBTSelection selection) throws IOException {
+        if (selection.isAll()) {
+            return readTag(type);
+        }
+
+        switch (type) {
+        case NBTConstants.TYPE_COMPOUND:
+            Map<String, Tag> tagMap = new HashMap<String, Tag>();
+            while (nextEntry()) {
+                String entryName = name;
+                int entryType = this.type;
+                NBTSelection child = selection.getChild(entryName);
+                if (child != null) {
+                    tagMap.put(entryName, readSelected(entryType, child));
+                } else {
+                    skip(entryType);
+                }
+            }
+            return new CompoundTag(tagMap);
+        case NBTConstants.TYPE_LIST:
+            int length = beginList();
+            int childType = listType;
+            List<Tag> tagList = new ArrayList<Tag>(length);
+            for (int i = 0; i < length; i++) {
+                tagList.add(readSelected(childType, selection));
+            }
+            return new ListTag(NBTUtils.getTypeClass(childType), tagList);
+        default:
+            return readTag(type);
+        }
+    }
+
+    private String readName() throws IOException {
+        int length = is.readUnsignedShort();
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        return new String(bytes, NBTConstants.CHARSET);
+    }
+
+    private int readLength() throws IOException {
+        int length = is.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length: " + length);
+        }
+        return length;
+    }
+
+    private static int getFixedSize(int type) {
+        switch (type) {
+        case NBTConstants.TYPE_BYTE:
+            return 1;
+        case NBTConstants.TYPE_SHORT:
+            return 2;
+        case NBTConstants.TYPE_INT:
+        case NBTConstants.TYPE_FLOAT:
+            return 4;
+        case NBTConstants.TYPE_LONG:
+        case NBTConstants.TYPE_DOUBLE:
+            return 8;
+        default:
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        is.close();
+    }
+
+}
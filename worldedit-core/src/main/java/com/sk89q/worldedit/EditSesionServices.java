@@ -1,11 +1,14 @@
 package com.sk89q.worldedit;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
 import com.sk89q.worldedit.blocks.BlockType;
 import com.sk89q.worldedit.event.extent.EditSessionEvent;
 import com.sk89q.worldedit.extent.buffer.ForgetfulExtentBuffer;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
+import com.sk89q.worldedit.function.BlockComputation;
 import com.sk89q.worldedit.function.GroundFunction;
 import com.sk89q.worldedit.function.block.BlockReplace;
 import com.sk89q.worldedit.function.block.Naturalizer;
@@ -22,7 +25,9 @@
 import com.sk89q.worldedit.history.changeset.ChangeSet;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
+import com.sk89q.worldedit.internal.expression.runtime.Variable;
 import com.sk89q.worldedit.math.interpolation.Interpolation;
 import com.sk89q.worldedit.math.interpolation.KochanekBartelsInterpolation;
 import com.sk89q.worldedit.math.interpolation.Node;
@@ -42,6 +47,10 @@
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -79,6 +88,8 @@ public EditSesionServices(EventBus eventBus, World world, int maxBlocks, @Nullab
     }
 
 
+    private static final int DEFORM_BATCH_SIZE = 4096;
+
     private static final Vector[] recurseDirections = {
             PlayerDirection.NORTH.vector(),
             PlayerDirection.EAST.vector(),
@@ -441,6 +452,7 @@ public int fillXZ(Vector origin, Pattern pattern, double radius, int depth, bool
         } else {
             visitor = new DownwardVisitor(mask, replace, origin.getBlockY());
         }
+        editSession.applySearchLimits(visitor);
 
         // Start at the origin
         visitor.visit(origin);
@@ -518,6 +530,7 @@ public int drainArea(Vector origin, double radius) throws MaxChangedBlocksExcept
 
         BlockReplace replace = new BlockReplace(editSession, new BlockPattern(new BaseBlock(BlockID.AIR)));
         RecursiveVisitor visitor = new RecursiveVisitor(mask, replace);
+        editSession.applySearchLimits(visitor);
 
         // Around the origin in a 3x3 block
         for (BlockVector position : CuboidRegion.fromCenter(origin, 1)) {
@@ -557,6 +570,7 @@ public int fixLiquid(Vector origin, double radius, int moving, int stationary) t
 
         BlockReplace replace = new BlockReplace(editSession, new BlockPattern(new BaseBlock(stationary)));
         NonRisingVisitor visitor = new NonRisingVisitor(mask, replace);
+        editSession.applySearchLimits(visitor);
 
         // Around the origin in a 3x3 block
         for (BlockVector position : CuboidRegion.fromCenter(origin, 1)) {
@@ -1182,6 +1196,14 @@ public int makeShape(final Region region, final Vector zero, final Vector unit,
         final Expression expression = Expression.compile(expressionString, "x", "y", "z", "type", "data");
         expression.optimize();
 
+        ExecutorService executor = editSession.getParallelExecutor();
+        if (executor != null && !hollow && !expression.callsStatefulFunction()) {
+            com.sk89q.worldedit.function.pattern.Pattern wrapped = Patterns.wrap(pattern);
+            if (Patterns.isThreadSafe(wrapped)) {
+                return makeShapeInParallel(region, zero, unit, wrapped, expression, executor);
+            }
+        }
+
         final RValue typeVariable = expression.getVariable("type", false);
         final RValue dataVariable = expression.getVariable("data", false);
 
@@ -1211,11 +1233,57 @@ protected BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial)
         return shape.generate(editSession, pattern, hollow);
     }
 
+    /**
+     * Generate a solid shape, evaluating the expression on worker threads
+     * with a new frame of the expression for each chunk.
+     *
+     * <p>The expression must not call stateful functions, and the pattern
+     * must be thread-safe.</p>
+     */
+    private int makeShapeInParallel(Region region, final Vector zero, final Vector unit, final com.sk89q.worldedit.function.pattern.Pattern pattern, final Expression expression, ExecutorService executor)
+            throws MaxChangedBlocksException {
+        final int typeIndex = ((Variable) expression.getVariable("type", false)).getIndex();
+        final int dataIndex = ((Variable) expression.getVariable("data", false)).getIndex();
+
+        ParallelRegionVisitor visitor = new ParallelRegionVisitor(region, new Supplier<BlockComputation>() {
+            @Override
+            public BlockComputation get() {
+                final ExpressionFrame frame = expression.newFrame();
+                return new BlockComputation() {
+                    @Override
+                    public BaseBlock compute(Vector position) {
+                        BaseBlock defaultMaterial = pattern.apply(position);
+                        Vector scaled = position.subtract(zero).divide(unit);
+
+                        try {
+                            if (expression.evaluate(frame, scaled.getX(), scaled.getY(), scaled.getZ(), defaultMaterial.getType(), defaultMaterial.getData()) <= 0) {
+                                return null;
+                            }
+
+                            return new BaseBlock((int) frame.getValue(typeIndex), (int) frame.getValue(dataIndex));
+                        } catch (Exception e) {
+                            editSession.log.log(Level.WARNING, "Failed to create shape", e);
+                            return null;
+                        }
+                    }
+                };
+            }
+        }, editSession, executor, ParallelRegionVisitor.DEFAULT_QUEUE_DEPTH);
+
+        Operations.completeLegacy(visitor);
+        return visitor.getAffected();
+    }
+
     public int deformRegion(final Region region, final Vector zero, final Vector unit, final String expressionString)
             throws ExpressionException, MaxChangedBlocksException {
         final Expression expression = Expression.compile(expressionString, "x", "y", "z");
         expression.optimize();
 
+        ExecutorService executor = editSession.getParallelExecutor();
+        if (executor != null && !expression.callsStatefulFunction()) {
+            return deformRegionInParallel(region, zero, unit, expression, executor);
+        }
+
         final RValue x = expression.getVariable("x", false);
         final RValue y = expression.getVariable("y", false);
         final RValue z = expression.getVariable("z", false);
@@ -1256,6 +1324,94 @@ public int deformRegion(final Region region, final Vector zero, final Vector uni
         return affected;
     }
 
+    /**
+     * Deform a region, evaluating the expression on worker threads with a
+     * new frame of the expression for each batch. Source blocks are read
+     * and placed on the calling thread.
+     *
+     * <p>The expression must not call stateful functions.</p>
+     */
+    private int deformRegionInParallel(Region region, final Vector zero, final Vector unit, final Expression expression, ExecutorService executor)
+            throws ExpressionException, MaxChangedBlocksException {
+        final int x = ((Variable) expression.getVariable("x", false)).getIndex();
+        final int y = ((Variable) expression.getVariable("y", false)).getIndex();
+        final int z = ((Variable) expression.getVariable("z", false)).getIndex();
+        final WorldEditExpressionEnvironment environment = new WorldEditExpressionEnvironment(editSession, unit, zero);
+
+        final DoubleArrayList<BlockVector, BaseBlock> queue = new DoubleArrayList<BlockVector, BaseBlock>(false);
+        Deque<Future<BlockVector[]>> pending = new ArrayDeque<Future<BlockVector[]>>();
+        Deque<BlockVector[]> pendingPositions = new ArrayDeque<BlockVector[]>();
+        Iterator<BlockVector> it = region.iterator();
+
+        try {
+            while (it.hasNext() || !pending.isEmpty()) {
+                // Keep the workers a limited number of batches ahead
+                while (pending.size() < ParallelRegionVisitor.DEFAULT_QUEUE_DEPTH && it.hasNext()) {
+                    List<BlockVector> batch = new ArrayList<BlockVector>(DEFORM_BATCH_SIZE);
+                    while (batch.size() < DEFORM_BATCH_SIZE && it.hasNext()) {
+                        batch.add(it.next());
+                    }
+                    final BlockVector[] positions = batch.toArray(new BlockVector[batch.size()]);
+                    pendingPositions.add(positions);
+                    pending.add(executor.submit(new Callable<BlockVector[]>() {
+                        @Override
+                        public BlockVector[] call() throws Exception {
+                            ExpressionFrame frame = expression.newFrame();
+                            BlockVector[] sources = new BlockVector[positions.length];
+                            for (int i = 0; i < positions.length; i++) {
+                                // offset, scale
+                                final Vector scaled = positions[i].subtract(zero).divide(unit);
+
+                                // transform
+                                expression.evaluate(frame, scaled.getX(), scaled.getY(), scaled.getZ());
+
+                                sources[i] = environment.toWorld(frame.getValue(x), frame.getValue(y), frame.getValue(z));
+                            }
+                            return sources;
+                        }
+                    }));
+                }
+
+                BlockVector[] positions = pendingPositions.remove();
+                BlockVector[] sources;
+                try {
+                    sources = pending.remove().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for the expression to be evaluated", e);
+                } catch (ExecutionException e) {
+                    Throwables.propagateIfInstanceOf(e.getCause(), ExpressionException.class);
+                    throw Throwables.propagate(e.getCause());
+                }
+
+                for (int i = 0; i < positions.length; i++) {
+                    // read block from world
+                    BlockVector source = sources[i];
+                    final BaseBlock material = new BaseBlock(
+                            world.getBlockId(source.getBlockX(), source.getBlockY(), source.getBlockZ()),
+                            world.getBlockData(source.getBlockX(), source.getBlockY(), source.getBlockZ()));
+
+                    // queue operation
+                    queue.put(positions[i], material);
+                }
+            }
+        } finally {
+            for (Future<BlockVector[]> future : pending) {
+                future.cancel(true);
+            }
+        }
+
+        int affected = 0;
+        for (Map.Entry<BlockVector, BaseBlock> entry : queue) {
+            // set at new position
+            if (editSession.setBlock(entry.getKey(), entry.getValue())) {
+                ++affected;
+            }
+        }
+
+        return affected;
+    }
+
     public int makeHouseRoof(Vector position, Pattern block, int length, int width) throws MaxChangedBlocksException {
         int affected = 0;
 
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit;
 
+import com.google.common.base.Supplier;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
@@ -27,6 +28,9 @@
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.MaskingExtent;
 import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
+import com.sk89q.worldedit.extent.cache.ChunkCopyExtent;
 import com.sk89q.worldedit.extent.cache.LastAccessExtentCache;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.extent.inventory.BlockBagExtent;
@@ -35,10 +39,12 @@
 import com.sk89q.worldedit.extent.validation.DataValidatorExtent;
 import com.sk89q.worldedit.extent.world.BlockQuirkExtent;
 import com.sk89q.worldedit.extent.world.ChunkLoadingExtent;
+import com.sk89q.worldedit.extent.world.ChunkPreloader;
 import com.sk89q.worldedit.extent.world.FastModeExtent;
 import com.sk89q.worldedit.extent.world.SurvivalModeExtent;
+import com.sk89q.worldedit.function.BlockComputation;
 import com.sk89q.worldedit.function.RegionMaskingFilter;
-import com.sk89q.worldedit.function.block.BlockReplace;
+import com.sk89q.worldedit.function.block.BlockSpanReplace;
 import com.sk89q.worldedit.function.block.Counter;
 import com.sk89q.worldedit.function.mask.ExistingBlockMask;
 import com.sk89q.worldedit.function.mask.FuzzyBlockMask;
@@ -47,7 +53,10 @@
 import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.pattern.BlockPattern;
 import com.sk89q.worldedit.function.pattern.Patterns;
+import com.sk89q.worldedit.function.visitor.BreadthFirstSearch;
+import com.sk89q.worldedit.function.visitor.ParallelRegionVisitor;
 import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.history.UndoContext;
 import com.sk89q.worldedit.history.change.BlockChange;
@@ -62,17 +71,21 @@
 import com.sk89q.worldedit.util.TreeGenerator;
 import com.sk89q.worldedit.util.eventbus.EventBus;
 import com.sk89q.worldedit.world.NullWorld;
+import com.sk89q.worldedit.world.RelightQueue;
 import com.sk89q.worldedit.world.World;
 
 import javax.annotation.Nullable;
+import java.io.File;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 
 
@@ -85,7 +98,7 @@
  * using the {@link ChangeSetExtent}.</p>
  */
 @SuppressWarnings({"FieldCanBeLocal", "deprecation"})
-public class EditSession implements Extent, FlyEditSesion {
+public class EditSession implements Extent, SectionOutputExtent, FlyEditSesion {
 
     protected static final Logger log = Logger.getLogger(EditSession.class.getCanonicalName());
 
@@ -103,7 +116,7 @@ public enum Stage {
 
     @SuppressWarnings("ProtectedField")
     protected final World world;
-    private final ChangeSet changeSet = new BlockOptimizedHistory();
+    private ChangeSet changeSet = new BlockOptimizedHistory();
 
     private
     @Nullable
@@ -135,6 +148,13 @@ public enum Stage {
 
     @SuppressWarnings("deprecation")
     private Mask oldMask;
+    @Nullable
+    private ExecutorService parallelExecutor;
+    private int preloadDistance;
+    private int searchVisitLimit = -1;
+    private int searchMemoryLimit = -1;
+    @Nullable
+    private File searchDirectory;
     private FlyEditSesion flyEditSesion;
 
     /**
@@ -178,7 +198,9 @@ public EditSession(LocalWorld world, int maxBlocks, @Nullable BlockBag blockBag)
         checkNotNull(event);
 
         this.world = world;
-        flyEditSesion = new EditSesionServices(world);
+        EditSesionServices services = new EditSesionServices(world);
+        services.editSession = this;
+        flyEditSesion = services;
         if (world != null) {
             Extent extent;
 
@@ -244,6 +266,23 @@ public ChangeSet getChangeSet() {
         return changeSet;
     }
 
+    /**
+     * Set the {@link ChangeSet} that changes are recorded in, such as one
+     * that moves large histories to disk while the edit runs.
+     *
+     * <p>This can only be done before any change has been recorded.</p>
+     *
+     * @param changeSet the change set
+     */
+    public void setChangeSet(ChangeSet changeSet) {
+        checkNotNull(changeSet);
+        checkState(this.changeSet.size() == 0, "Changes have already been recorded");
+        this.changeSet = changeSet;
+        if (changeSetExtent != null) {
+            changeSetExtent.setChangeSet(changeSet);
+        }
+    }
+
     /**
      * Get the maximum number of blocks that can be changed. -1 will be returned
      * if it the limit disabled.
@@ -362,6 +401,145 @@ public boolean hasFastMode() {
         return fastModeExtent != null && fastModeExtent.isEnabled();
     }
 
+    /**
+     * Set the queue to defer lighting to.
+     *
+     * <p>When a queue is set, blocks are changed without lighting or
+     * notifying adjacent blocks, whether or not fast mode is enabled, and
+     * the changed chunks are relit and sent to clients in batches over the
+     * ticks after the edit session has been flushed. The queue is ignored
+     * in worlds that cannot relight sections.</p>
+     *
+     * @param relightQueue the relight queue, or null to light blocks as they are changed
+     */
+    public void setRelightQueue(@Nullable RelightQueue relightQueue) {
+        if (fastModeExtent != null) {
+            fastModeExtent.setRelightQueue(relightQueue);
+        }
+    }
+
+    /**
+     * Return whether lighting is deferred to a {@link RelightQueue}.
+     *
+     * @return true if lighting is deferred
+     */
+    public boolean hasDeferredRelight() {
+        return fastModeExtent != null && fastModeExtent.getRelightQueue() != null;
+    }
+
+    /**
+     * Get the number of chunks that are loaded ahead of operations that
+     * work through a region one chunk at a time.
+     *
+     * @return the number of chunks, or 0 if chunks are not preloaded
+     */
+    public int getChunkPreloadDistance() {
+        return preloadDistance;
+    }
+
+    /**
+     * Set the number of chunks that are loaded ahead of operations that
+     * work through a region one chunk at a time, such as
+     * {@link #setBlocks(Region, Pattern)}.
+     *
+     * <p>The chunks are passed to {@link World#preloadChunk(BlockVector2D)}
+     * and released again once the operation has passed them, or when the
+     * edit session is flushed.</p>
+     *
+     * @param preloadDistance the number of chunks, or 0 to not preload chunks
+     */
+    public void setChunkPreloadDistance(int preloadDistance) {
+        checkArgument(preloadDistance >= 0, "preloadDistance >= 0");
+        this.preloadDistance = preloadDistance;
+    }
+
+    /**
+     * Get the maximum number of blocks that searches such as
+     * {@link #fillXZ(Vector, BaseBlock, double, int, boolean)} and
+     * {@link #drainArea(Vector, double)} visit before they stop with a
+     * {@link MaxVisitedBlocksException}.
+     *
+     * @return the limit, or -1 if there is no limit
+     */
+    public int getSearchVisitLimit() {
+        return searchVisitLimit;
+    }
+
+    /**
+     * Set the maximum number of blocks that searches visit before they stop
+     * with a {@link MaxVisitedBlocksException}.
+     *
+     * @param searchVisitLimit the limit, or -1 for no limit
+     * @see BreadthFirstSearch#setVisitLimit(int)
+     */
+    public void setSearchVisitLimit(int searchVisitLimit) {
+        checkArgument(searchVisitLimit >= -1, "searchVisitLimit >= -1");
+        this.searchVisitLimit = searchVisitLimit;
+    }
+
+    /**
+     * Set the number of blocks that searches keep in memory before they
+     * move to files on disk.
+     *
+     * @param searchMemoryLimit the limit, or -1 to keep searches in memory
+     * @param directory the directory for the files, or null to keep searches in memory
+     * @see BreadthFirstSearch#setMemoryLimit(int, File)
+     */
+    public void setSearchMemoryLimit(int searchMemoryLimit, @Nullable File directory) {
+        checkArgument(searchMemoryLimit == -1 || searchMemoryLimit > 0, "searchMemoryLimit > 0 or -1");
+        this.searchMemoryLimit = searchMemoryLimit;
+        this.searchDirectory = directory;
+    }
+
+    /**
+     * Apply the search limits of this edit session to a search.
+     *
+     * @param search the search
+     */
+    public void applySearchLimits(BreadthFirstSearch search) {
+        search.setVisitLimit(searchVisitLimit);
+        if (searchMemoryLimit > 0 && searchDirectory != null) {
+            search.setMemoryLimit(searchMemoryLimit, searchDirectory);
+        }
+    }
+
+    /**
+     * Start preloading the chunks of a region, if enabled.
+     *
+     * @param region the region that the next operation works through
+     */
+    private void preloadChunks(Region region) {
+        if (preloadDistance > 0 && chunkLoadingExtent != null && world != null) {
+            chunkLoadingExtent.setPreloader(new ChunkPreloader(world, region, preloadDistance));
+        }
+    }
+
+    /**
+     * Get the executor that blocks are computed on, if possible.
+     *
+     * @return the executor, or null if blocks are computed on the calling thread
+     */
+    @Nullable
+    public ExecutorService getParallelExecutor() {
+        return parallelExecutor;
+    }
+
+    /**
+     * Set the executor to compute blocks on.
+     *
+     * <p>When an executor is set, operations such as
+     * {@link #setBlocks(Region, Pattern)} compute the blocks of each chunk
+     * on the executor and place them on the calling thread, one chunk at a
+     * time. Operations that use patterns or masks that are not known to be
+     * thread-safe, or that may read blocks that they have already changed,
+     * still run entirely on the calling thread.</p>
+     *
+     * @param executor the executor, or null to compute blocks on the calling thread
+     */
+    public void setParallelExecutor(@Nullable ExecutorService executor) {
+        this.parallelExecutor = executor;
+    }
+
     /**
      * Get the {@link BlockBag} is used.
      *
@@ -421,6 +599,16 @@ public BaseBlock getBlock(Vector position) {
         return world.getBlock(position);
     }
 
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        return world.getBlockId(x, y, z);
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        return world.getBlockData(x, y, z);
+    }
+
     /**
      * Get a block type at the given position.
      *
@@ -518,6 +706,26 @@ public boolean setBlock(Vector position, BaseBlock block) throws MaxChangedBlock
         }
     }
 
+    /**
+     * Sets the blocks of a section, subject to both history and block
+     * re-ordering. Extents that cannot take a whole section get the blocks
+     * one at a time.
+     *
+     * @param section the section buffer
+     * @return the number of blocks that were set
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    @Override
+    public int setSection(SectionBuffer section) throws MaxChangedBlocksException {
+        try {
+            return section.writeTo(bypassNone);
+        } catch (MaxChangedBlocksException e) {
+            throw e;
+        } catch (WorldEditException e) {
+            throw new RuntimeException("Unexpected exception", e);
+        }
+    }
+
     /**
      * Sets the block at a position, subject to both history and block re-ordering.
      *
@@ -604,9 +812,7 @@ public void rememberChange(Vector position, BaseBlock existing, BaseBlock block)
      * @param editSession a new {@link EditSession} to perform the undo in
      */
     public void undo(EditSession editSession) {
-        UndoContext context = new UndoContext();
-        context.setExtent(editSession.bypassHistory);
-        Operations.completeBlindly(ChangeSetExecutor.createUndo(changeSet, context));
+        editSession.applyUndo(changeSet);
         editSession.flushQueue();
     }
 
@@ -616,10 +822,32 @@ public void undo(EditSession editSession) {
      * @param editSession a new {@link EditSession} to perform the redo in
      */
     public void redo(EditSession editSession) {
+        editSession.applyRedo(changeSet);
+        editSession.flushQueue();
+    }
+
+    /**
+     * Undo the changes in the given change set using this edit session,
+     * bypassing history. Blocks that the queue holds back are not flushed.
+     *
+     * @param changeSet the change set
+     */
+    void applyUndo(ChangeSet changeSet) {
+        UndoContext context = new UndoContext();
+        context.setExtent(bypassHistory);
+        Operations.completeBlindly(ChangeSetExecutor.createUndo(changeSet, context));
+    }
+
+    /**
+     * Redo the changes in the given change set using this edit session,
+     * bypassing history. Blocks that the queue holds back are not flushed.
+     *
+     * @param changeSet the change set
+     */
+    void applyRedo(ChangeSet changeSet) {
         UndoContext context = new UndoContext();
-        context.setExtent(editSession.bypassHistory);
+        context.setExtent(bypassHistory);
         Operations.completeBlindly(ChangeSetExecutor.createRedo(changeSet, context));
-        editSession.flushQueue();
     }
 
     /**
@@ -754,9 +982,11 @@ public int removeNear(Vector position, int blockType, int apothem) throws MaxCha
      * @return number of blocks affected
      * @throws MaxChangedBlocksException thrown if too many blocks are changed
      */
-    @SuppressWarnings("deprecation")
     public int setBlocks(Region region, BaseBlock block) throws MaxChangedBlocksException {
-        return setBlocks(region, new SingleBlockPattern(block));
+        checkNotNull(region);
+        checkNotNull(block);
+
+        return replaceRegion(region, null, new BlockPattern(block));
     }
 
     /**
@@ -772,10 +1002,7 @@ public int setBlocks(Region region, Pattern pattern) throws MaxChangedBlocksExce
         checkNotNull(region);
         checkNotNull(pattern);
 
-        BlockReplace replace = new BlockReplace(this, Patterns.wrap(pattern));
-        RegionVisitor visitor = new RegionVisitor(region, replace);
-        Operations.completeLegacy(visitor);
-        return visitor.getAffected();
+        return replaceRegion(region, null, Patterns.wrap(pattern));
     }
 
     /**
@@ -788,9 +1015,12 @@ public int setBlocks(Region region, Pattern pattern) throws MaxChangedBlocksExce
      * @return number of blocks affected
      * @throws MaxChangedBlocksException thrown if too many blocks are changed
      */
-    @SuppressWarnings("deprecation")
     public int replaceBlocks(Region region, Set<BaseBlock> filter, BaseBlock replacement) throws MaxChangedBlocksException {
-        return replaceBlocks(region, filter, new SingleBlockPattern(replacement));
+        checkNotNull(region);
+        checkNotNull(replacement);
+
+        Mask mask = filter == null ? new ExistingBlockMask(this) : new FuzzyBlockMask(this, filter);
+        return replaceRegion(region, mask, new BlockPattern(replacement));
     }
 
     /**
@@ -825,11 +1055,100 @@ public int replaceBlocks(Region region, Mask mask, Pattern pattern) throws MaxCh
         checkNotNull(mask);
         checkNotNull(pattern);
 
-        BlockReplace replace = new BlockReplace(this, Patterns.wrap(pattern));
-        RegionMaskingFilter filter = new RegionMaskingFilter(mask, replace);
-        RegionVisitor visitor = new RegionVisitor(region, filter);
-        Operations.completeLegacy(visitor);
-        return visitor.getAffected();
+        return replaceRegion(region, mask, Patterns.wrap(pattern));
+    }
+
+    /**
+     * Replace the blocks of a region, on the parallel executor if the mask
+     * and pattern allow it and on this thread otherwise.
+     *
+     * @param region the region to replace the blocks within
+     * @param mask the mask that blocks must match, or null to replace all blocks
+     * @param pattern the pattern that provides the new blocks
+     * @return number of blocks affected
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    private int replaceRegion(Region region, @Nullable Mask mask, com.sk89q.worldedit.function.pattern.Pattern pattern) throws MaxChangedBlocksException {
+        preloadChunks(region);
+        ParallelRegionVisitor parallel = createParallelReplace(region, mask, pattern);
+        if (parallel != null) {
+            Operations.completeLegacy(parallel);
+            return parallel.getAffected();
+        }
+
+        return replaceSpans(region, mask, pattern);
+    }
+
+    /**
+     * Replace the blocks of a region on this thread, reading the region as
+     * runs along the X axis.
+     *
+     * @param region the region to replace the blocks within
+     * @param mask the mask that blocks must match, or null to replace all blocks
+     * @param pattern the pattern that provides the new blocks
+     * @return number of blocks affected
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    private int replaceSpans(Region region, @Nullable Mask mask, com.sk89q.worldedit.function.pattern.Pattern pattern) throws MaxChangedBlocksException {
+        BlockSpanReplace replace = new BlockSpanReplace(this, mask, pattern);
+        try {
+            region.visitSpans(replace);
+            replace.flush();
+        } catch (MaxChangedBlocksException e) {
+            throw e;
+        } catch (WorldEditException e) {
+            throw new RuntimeException(e);
+        }
+        return replace.getAffected();
+    }
+
+    /**
+     * Create an operation that replaces the blocks matching a given mask,
+     * within a given region, with blocks from a given pattern, computing
+     * the blocks on the executor set with
+     * {@link #setParallelExecutor(ExecutorService)}.
+     *
+     * <p>The mask tests a copy of the blocks that is taken before each
+     * chunk is changed, so it has to be a mask that only reads the block
+     * at the position that it tests.</p>
+     *
+     * @param region the region to replace the blocks within
+     * @param mask the mask that blocks must match, or null to replace all blocks
+     * @param pattern the pattern that provides the new blocks
+     * @return the operation, or null if no executor is set or the mask or pattern cannot be used from several threads
+     */
+    @Nullable
+    public ParallelRegionVisitor createParallelReplace(Region region, @Nullable final Mask mask, final com.sk89q.worldedit.function.pattern.Pattern pattern) {
+        checkNotNull(region);
+        checkNotNull(pattern);
+
+        if (parallelExecutor == null || !Patterns.isThreadSafe(pattern)) {
+            return null;
+        }
+
+        final ChunkCopyExtent copy = mask != null ? new ChunkCopyExtent(this, region) : null;
+        if (mask != null && Masks.rebind(mask, this, copy) == null) {
+            return null;
+        }
+
+        ParallelRegionVisitor visitor = new ParallelRegionVisitor(region, new Supplier<BlockComputation>() {
+            @Override
+            public BlockComputation get() {
+                // Bound again for each chunk, as a bound mask is only tested by one thread
+                final Mask boundMask = mask != null ? Masks.rebind(mask, EditSession.this, copy) : null;
+                return new BlockComputation() {
+                    @Override
+                    public BaseBlock compute(Vector position) {
+                        if (boundMask != null && !boundMask.test(position)) {
+                            return null;
+                        }
+                        return pattern.apply(position);
+                    }
+                };
+            }
+        }, this, parallelExecutor, ParallelRegionVisitor.DEFAULT_QUEUE_DEPTH);
+        visitor.setSourceCopy(copy);
+        return visitor;
     }
 
     /**
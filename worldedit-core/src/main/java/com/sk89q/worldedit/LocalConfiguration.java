@@ -81,6 +81,8 @@ public abstract class LocalConfiguration {
     public Set<Integer> disallowedBlocks = new HashSet<Integer>();
     public int defaultChangeLimit = -1;
     public int maxChangeLimit = -1;
+    public int maxBlocksVisited = -1;
+    public int searchMemoryBlocks = -1;
     public int defaultMaxPolygonalPoints = -1;
     public int maxPolygonalPoints = 20;
     public int defaultMaxPolyhedronPoints = -1;
@@ -111,6 +113,15 @@ public abstract class LocalConfiguration {
     public int butcherDefaultRadius = -1;
     public int butcherMaxRadius = -1;
     public boolean allowSymlinks = false;
+    public int historyDiskThreshold = -1;
+    public int snapshotRestoreThreads = 1;
+    public int snapshotRestoreQueueDepth = 16;
+    public int snapshotChunkCacheSize = 0;
+    public int editQueueTickBudget = 10;
+    public int parallelThreads = 0;
+    public boolean deferRelight = false;
+    public int relightChunksPerTick = 4;
+    public int preloadChunks = 0;
 
     /**
      * Load the configuration.
@@ -30,9 +30,12 @@
 import com.sk89q.worldedit.command.tool.Tool;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.DiskSpillingHistory;
 import com.sk89q.worldedit.internal.cui.CUIEvent;
 import com.sk89q.worldedit.internal.cui.CUIRegion;
 import com.sk89q.worldedit.internal.cui.SelectionShapeEvent;
@@ -42,16 +45,22 @@
 import com.sk89q.worldedit.regions.selector.RegionSelectorType;
 import com.sk89q.worldedit.session.ClipboardHolder;
 import com.sk89q.worldedit.session.request.Request;
+import com.sk89q.worldedit.world.RelightQueue;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.snapshot.Snapshot;
 
 import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -60,6 +69,8 @@
  */
 public class LocalSession {
 
+    private static final Logger log = Logger.getLogger(LocalSession.class.getCanonicalName());
+
     public transient static int MAX_HISTORY_SIZE = 15;
 
     // Non-session related fields
@@ -69,8 +80,9 @@ public class LocalSession {
     // Session related
     private transient RegionSelector selector = new CuboidRegionSelector();
     private transient boolean placeAtPos1 = false;
-    private transient LinkedList<EditSession> history = new LinkedList<EditSession>();
+    private transient LinkedList<HistoryEntry> history = new LinkedList<HistoryEntry>();
     private transient int historyPointer = 0;
+    private transient File historyDirectory;
     private transient ClipboardHolder clipboard;
     private transient boolean toolControl = true;
     private transient boolean superPickaxe = false;
@@ -172,10 +184,34 @@ public void setTimezone(TimeZone timezone) {
         this.timezone = timezone;
     }
 
+    /**
+     * Get the directory in which history that is too large to be kept in
+     * memory is stored.
+     *
+     * @return the directory, or null if history is only kept in memory
+     */
+    @Nullable
+    public File getHistoryDirectory() {
+        return historyDirectory;
+    }
+
+    /**
+     * Set the directory in which history that is too large to be kept in
+     * memory is stored.
+     *
+     * @param historyDirectory the directory, or null to keep history only in memory
+     */
+    public void setHistoryDirectory(@Nullable File historyDirectory) {
+        this.historyDirectory = historyDirectory;
+    }
+
     /**
      * Clear history.
      */
     public void clearHistory() {
+        for (HistoryEntry entry : history) {
+            entry.close();
+        }
         history.clear();
         historyPointer = 0;
     }
@@ -184,6 +220,12 @@ public void clearHistory() {
      * Remember an edit session for the undo history. If the history maximum
      * size is reached, old edit sessions will be discarded.
      *
+     * <p>Only the world and the change set of the edit session are kept.
+     * Edit sessions created with {@link #createEditSession(Player)} record
+     * their changes in a change set that already moves changes beyond the
+     * configured history disk threshold to the history directory while the
+     * edit runs.</p>
+     *
      * @param editSession the edit session
      */
     public void remember(EditSession editSession) {
@@ -194,15 +236,31 @@ public void remember(EditSession editSession) {
 
         // Destroy any sessions after this undo point
         while (historyPointer < history.size()) {
-            history.remove(historyPointer);
+            history.remove(historyPointer).close();
         }
-        history.add(editSession);
+        history.add(new HistoryEntry(editSession.getWorld(), editSession.getChangeSet()));
         while (history.size() > MAX_HISTORY_SIZE) {
-            history.remove(0);
+            history.remove(0).close();
         }
         historyPointer = history.size();
     }
 
+    /**
+     * Create a change set that moves changes to disk once there are more
+     * than the history disk threshold, if history is configured to be
+     * stored on disk.
+     *
+     * @return the change set, or null to keep changes in memory
+     */
+    @Nullable
+    private ChangeSet createChangeSet() {
+        int threshold = config != null ? config.historyDiskThreshold : -1;
+        if (threshold <= 0 || historyDirectory == null) {
+            return null;
+        }
+        return new DiskSpillingHistory(historyDirectory, threshold);
+    }
+
     /**
      * Performs an undo.
      *
@@ -215,23 +273,27 @@ public EditSession undo(@Nullable BlockBag newBlockBag, LocalPlayer player) {
     }
 
     /**
-     * Performs an undo.
+     * Performs an undo. The player's queued edits are finished first, and
+     * the blocks of the undo are then written by the edit queue.
      *
      * @param newBlockBag a new block bag
      * @param player the player
-     * @return whether anything was undone
+     * @return the edit session that performed the undo, or null if there was nothing to undo
      */
     public EditSession undo(@Nullable BlockBag newBlockBag, Player player) {
         checkNotNull(player);
+        WorldEdit.getInstance().getEditQueue().drain(player);
         --historyPointer;
         if (historyPointer >= 0) {
-            EditSession editSession = history.get(historyPointer);
+            HistoryEntry entry = history.get(historyPointer);
             EditSession newEditSession = WorldEdit.getInstance().getEditSessionFactory()
-                    .getEditSession(editSession.getWorld(), -1, newBlockBag, player);
+                    .getEditSession(entry.world, -1, newBlockBag, player);
             newEditSession.enableQueue();
             newEditSession.setFastMode(fastMode);
-            editSession.undo(newEditSession);
-            return editSession;
+            newEditSession.setRelightQueue(getDeferredRelightQueue());
+            newEditSession.applyUndo(entry.changeSet);
+            WorldEdit.getInstance().queueCommit(player, newEditSession);
+            return newEditSession;
         } else {
             historyPointer = 0;
             return null;
@@ -250,23 +312,27 @@ public EditSession redo(@Nullable BlockBag newBlockBag, LocalPlayer player) {
     }
 
     /**
-     * Performs a redo
+     * Performs a redo. The player's queued edits are finished first, and
+     * the blocks of the redo are then written by the edit queue.
      *
      * @param newBlockBag a new block bag
      * @param player the player
-     * @return whether anything was redone
+     * @return the edit session that performed the redo, or null if there was nothing to redo
      */
     public EditSession redo(@Nullable BlockBag newBlockBag, Player player) {
         checkNotNull(player);
+        WorldEdit.getInstance().getEditQueue().drain(player);
         if (historyPointer < history.size()) {
-            EditSession editSession = history.get(historyPointer);
+            HistoryEntry entry = history.get(historyPointer);
             EditSession newEditSession = WorldEdit.getInstance().getEditSessionFactory()
-                    .getEditSession(editSession.getWorld(), -1, newBlockBag, player);
+                    .getEditSession(entry.world, -1, newBlockBag, player);
             newEditSession.enableQueue();
             newEditSession.setFastMode(fastMode);
-            editSession.redo(newEditSession);
+            newEditSession.setRelightQueue(getDeferredRelightQueue());
+            newEditSession.applyRedo(entry.changeSet);
+            WorldEdit.getInstance().queueCommit(player, newEditSession);
             ++historyPointer;
-            return editSession;
+            return newEditSession;
         }
 
         return null;
@@ -436,11 +502,23 @@ public ClipboardHolder getClipboard() throws EmptyClipboardException {
     /**
      * Sets the clipboard.
      *
-     * <p>Pass {@code null} to clear the clipboard.</p>
+     * <p>Pass {@code null} to clear the clipboard. If the previous clipboard
+     * is {@link Closeable}, such as one that reads its blocks from a file,
+     * it is closed.</p>
      *
      * @param clipboard the clipboard, or null if the clipboard is to be cleared
      */
     public void setClipboard(@Nullable ClipboardHolder clipboard) {
+        if (this.clipboard != null) {
+            Clipboard previous = this.clipboard.getClipboard();
+            if (previous instanceof Closeable && (clipboard == null || clipboard.getClipboard() != previous)) {
+                try {
+                    ((Closeable) previous).close();
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Failed to close clipboard", e);
+                }
+            }
+        }
         this.clipboard = clipboard;
     }
 
@@ -568,9 +646,15 @@ public Snapshot getSnapshot() {
     /**
      * Select a snapshot.
      *
+     * <p>The previously selected snapshot is closed if it is a
+     * different snapshot.</p>
+     *
      * @param snapshot a snapshot
      */
     public void setSnapshot(@Nullable Snapshot snapshot) {
+        if (this.snapshot != null && !this.snapshot.equals(snapshot)) {
+            this.snapshot.close();
+        }
         this.snapshot = snapshot;
     }
 
@@ -852,12 +936,16 @@ public EditSession createEditSession(LocalPlayer player) {
     /**
      * Construct a new edit session.
      *
+     * <p>The player's queued edits are finished first, so the new edit
+     * session reads the blocks that they wrote.</p>
+     *
      * @param player the player
      * @return an edit session
      */
     @SuppressWarnings("deprecation")
     public EditSession createEditSession(Player player) {
         checkNotNull(player);
+        WorldEdit.getInstance().getEditQueue().drain(player);
 
         BlockBag blockBag = getBlockBag(player);
 
@@ -866,12 +954,45 @@ public EditSession createEditSession(Player player) {
                 .getEditSession(player.isPlayer() ? player.getWorld() : null,
                         getBlockChangeLimit(), blockBag, player);
         editSession.setFastMode(fastMode);
+        editSession.setRelightQueue(getDeferredRelightQueue());
+        ChangeSet changeSet = createChangeSet();
+        if (changeSet != null) {
+            editSession.setChangeSet(changeSet);
+        }
+        editSession.setChunkPreloadDistance(WorldEdit.getInstance().getConfiguration().preloadChunks);
+        applySearchLimits(editSession);
+        editSession.setParallelExecutor(WorldEdit.getInstance().getParallelExecutor());
         Request.request().setEditSession(editSession);
         editSession.setMask(mask);
 
         return editSession;
     }
 
+    /**
+     * Apply the search limits of the configuration to an edit session.
+     *
+     * @param editSession the edit session
+     */
+    private static void applySearchLimits(EditSession editSession) {
+        WorldEdit worldEdit = WorldEdit.getInstance();
+        LocalConfiguration config = worldEdit.getConfiguration();
+        editSession.setSearchVisitLimit(config.maxBlocksVisited);
+        if (config.searchMemoryBlocks > 0) {
+            editSession.setSearchMemoryLimit(config.searchMemoryBlocks, worldEdit.getWorkingDirectoryFile("search"));
+        }
+    }
+
+    /**
+     * Get the queue that new edit sessions defer lighting to.
+     *
+     * @return the relight queue, or null if deferred lighting is disabled in the configuration
+     */
+    @Nullable
+    private static RelightQueue getDeferredRelightQueue() {
+        WorldEdit worldEdit = WorldEdit.getInstance();
+        return worldEdit.getConfiguration().deferRelight ? worldEdit.getRelightQueue() : null;
+    }
+
     /**
      * Checks if the session has fast mode enabled.
      *
@@ -918,4 +1039,30 @@ public void setMask(com.sk89q.worldedit.masks.Mask mask) {
         setMask(mask != null ? Masks.wrap(mask) : null);
     }
 
+    /**
+     * A lightweight record of an edit for the undo history.
+     */
+    private static final class HistoryEntry {
+        private final World world;
+        private final ChangeSet changeSet;
+
+        private HistoryEntry(World world, ChangeSet changeSet) {
+            this.world = world;
+            this.changeSet = changeSet;
+        }
+
+        /**
+         * Release any resources, such as files, held by the change set.
+         */
+        private void close() {
+            if (changeSet instanceof Closeable) {
+                try {
+                    ((Closeable) changeSet).close();
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Failed to close history", e);
+                }
+            }
+        }
+    }
+
 }
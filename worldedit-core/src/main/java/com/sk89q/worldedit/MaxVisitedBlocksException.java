@@ -0,0 +1,42 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit;
+
+/**
+ * Thrown when a search, such as the one used by {@code //fill} or
+ * {@code //drain}, visits more blocks than allowed (which may be limited
+ * due to the configuration).
+ *
+ * <p>This is a {@link MaxChangedBlocksException} so that it stops an edit
+ * wherever the change limit does. The blocks that were changed before the
+ * search stopped are kept.</p>
+ */
+public class MaxVisitedBlocksException extends MaxChangedBlocksException {
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxBlocks the maximum number of blocks that can be visited
+     */
+    public MaxVisitedBlocksException(int maxBlocks) {
+        super(maxBlocks);
+    }
+
+}
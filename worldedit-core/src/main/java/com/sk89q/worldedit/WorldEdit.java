@@ -19,6 +19,10 @@
 
 package com.sk89q.worldedit;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sk89q.worldedit.CuboidClipboard.FlipDirection;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BaseItem;
@@ -38,13 +42,16 @@
 import com.sk89q.worldedit.extension.platform.PlatformManager;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.pattern.Patterns;
 import com.sk89q.worldedit.masks.Mask;
 import com.sk89q.worldedit.patterns.Pattern;
 import com.sk89q.worldedit.scripting.CraftScriptContext;
 import com.sk89q.worldedit.scripting.CraftScriptEngine;
 import com.sk89q.worldedit.scripting.RhinoCraftScriptEngine;
+import com.sk89q.worldedit.session.EditQueue;
 import com.sk89q.worldedit.session.SessionManager;
+import com.sk89q.worldedit.session.SessionOwner;
 import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.util.eventbus.EventBus;
 import com.sk89q.worldedit.util.io.file.FileSelectionAbortedException;
@@ -52,8 +59,10 @@
 import com.sk89q.worldedit.util.io.file.FilenameResolutionException;
 import com.sk89q.worldedit.util.io.file.InvalidFilenameException;
 import com.sk89q.worldedit.util.logging.WorldEditPrefixHandler;
+import com.sk89q.worldedit.world.RelightQueue;
 import com.sk89q.worldedit.world.registry.BundledBlockData;
 
+import javax.annotation.Nullable;
 import javax.script.ScriptException;
 import java.io.DataInputStream;
 import java.io.File;
@@ -64,6 +73,11 @@
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -95,6 +109,10 @@ public class WorldEdit {
     private final PlatformManager platformManager = new PlatformManager(this);
     private final EditSessionFactory editSessionFactory = new EditSessionFactory.EditSessionFactoryImpl(eventBus);
     private final SessionManager sessions = new SessionManager(this);
+    private final EditQueue editQueue = new EditQueue();
+    private final RelightQueue relightQueue = new RelightQueue();
+    @Nullable
+    private ThreadPoolExecutor parallelExecutor;
 
     private final BlockFactory blockFactory = new BlockFactory(this);
     private final ItemFactory itemFactory = new ItemFactory(this);
@@ -194,6 +212,68 @@ public SessionManager getSessionManager() {
         return sessions;
     }
 
+    /**
+     * Get the queue that spreads the edits of session owners over many
+     * ticks, sharing a time budget per tick between them.
+     *
+     * <p>The queue is run by the platform once per tick.</p>
+     *
+     * @return the edit queue
+     */
+    public EditQueue getEditQueue() {
+        return editQueue;
+    }
+
+    /**
+     * Get the queue that relights chunks that were changed without
+     * lighting a few at a time.
+     *
+     * <p>The queue is run by the platform once per tick.</p>
+     *
+     * @return the relight queue
+     */
+    public RelightQueue getRelightQueue() {
+        return relightQueue;
+    }
+
+    /**
+     * Get the executor that edit sessions use to compute blocks on worker
+     * threads.
+     *
+     * <p>The number of threads is taken from the configuration. Idle
+     * threads are stopped after a while.</p>
+     *
+     * @return the executor, or null if blocks should not be computed on worker threads
+     */
+    @Nullable
+    public synchronized ExecutorService getParallelExecutor() {
+        int threads = getConfiguration().parallelThreads;
+        if (threads <= 0) {
+            return null;
+        }
+
+        if (parallelExecutor == null) {
+            parallelExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactoryBuilder()
+                            .setNameFormat("WorldEdit Worker #%d")
+                            .setDaemon(true)
+                            .build());
+            parallelExecutor.allowCoreThreadTimeOut(true);
+        } else if (parallelExecutor.getMaximumPoolSize() != threads) {
+            // The configuration was reloaded
+            if (threads > parallelExecutor.getMaximumPoolSize()) {
+                parallelExecutor.setMaximumPoolSize(threads);
+                parallelExecutor.setCorePoolSize(threads);
+            } else {
+                parallelExecutor.setCorePoolSize(threads);
+                parallelExecutor.setMaximumPoolSize(threads);
+            }
+        }
+
+        return parallelExecutor;
+    }
+
     /**
      * @deprecated Use {@link #getSessionManager()}
      */
@@ -613,6 +693,51 @@ public FlipDirection getFlipDirection(Player player, String dirStr) throws Unkno
         }
     }
 
+    /**
+     * Queue the blocks that an edit session has buffered to be written to
+     * the world by the edit queue, after the edits that the actor has
+     * already queued. The block bag's changes are flushed to the actor
+     * once the edit has finished or has been cancelled.
+     *
+     * <p>Anything that reads the world for the actor afterwards has to
+     * call {@link EditQueue#drain(SessionOwner)} first, as
+     * {@link LocalSession#createEditSession(Player)} does.</p>
+     *
+     * @param actor the actor
+     * @param editSession the edit session
+     * @return a future that completes once the blocks have been written
+     */
+    public ListenableFuture<Operation> queueCommit(final Actor actor, final EditSession editSession) {
+        checkNotNull(actor);
+        checkNotNull(editSession);
+
+        Operation commit = editSession.commit();
+        ListenableFuture<Operation> future;
+        if (commit != null) {
+            future = editQueue.submit(actor, commit).getFuture();
+        } else {
+            future = Futures.immediateFuture(null);
+        }
+
+        Futures.addCallback(future, new FutureCallback<Operation>() {
+            @Override
+            public void onSuccess(@Nullable Operation result) {
+                flushBlockBag(actor, editSession);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (!(t instanceof CancellationException)) {
+                    actor.printError("Please report this error: [See console]");
+                    logger.log(Level.SEVERE, "An unexpected error occurred while writing a queued edit", t);
+                }
+                flushBlockBag(actor, editSession);
+            }
+        });
+
+        return future;
+    }
+
     /**
      * Flush a block bag's changes to a player.
      *
@@ -750,6 +875,9 @@ public void runScript(Player player, File f, String[] args) throws WorldEditExce
             return;
         }
 
+        // Scripts read and write the world directly, so finish the player's queued edits first
+        editQueue.drain(player);
+
         LocalSession session = getSessionManager().get(player);
         CraftScriptContext scriptContext = new CraftScriptContext(this, getServer(), getConfiguration(), session, player, args);
 
@@ -0,0 +1,113 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.blocks;
+
+import com.sk89q.jnbt.CompoundTag;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An immutable block that only carries a type ID and data value.
+ *
+ * <p>Instances are interned: there is at most one instance for every
+ * combination of ID and data value, so they can be shared freely (for
+ * example, returned from {@link com.sk89q.worldedit.extent.Extent#getLazyBlock}
+ * or kept as a constant in a pattern) and compared by reference.</p>
+ *
+ * <p>All mutators on this object will throw an
+ * {@link UnsupportedOperationException}.</p>
+ */
+public final class ImmutableBlock extends BaseBlock {
+
+    private static final int DATA_VALUES = BaseBlock.MAX_DATA + 2; // Includes the -1 wildcard
+    private static final AtomicReferenceArray<ImmutableBlock> table =
+            new AtomicReferenceArray<ImmutableBlock>((BaseBlock.MAX_ID + 1) * DATA_VALUES);
+
+    private ImmutableBlock(int id, int data) {
+        super(id, data);
+    }
+
+    /**
+     * Get the shared instance for the given ID and data value.
+     *
+     * @param id the type ID, between 0 and {@link BaseBlock#MAX_ID}
+     * @param data the data value, between -1 and {@link BaseBlock#MAX_DATA}
+     * @return the shared block
+     */
+    public static ImmutableBlock of(int id, int data) {
+        checkArgument(id >= 0 && id <= MAX_ID, "Can't have a block ID above %s (%s given)", MAX_ID, id);
+        checkArgument(data >= -1 && data <= MAX_DATA, "Can't have a block data value above %s (%s given)", MAX_DATA, data);
+
+        int index = id * DATA_VALUES + data + 1;
+        ImmutableBlock block = table.get(index);
+        if (block == null) {
+            block = new ImmutableBlock(id, data);
+            if (!table.compareAndSet(index, null, block)) {
+                block = table.get(index);
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Get the shared instance for the given ID with a data value of 0.
+     *
+     * @param id the type ID
+     * @return the shared block
+     */
+    public static ImmutableBlock of(int id) {
+        return of(id, 0);
+    }
+
+    /**
+     * Get a shared instance equal to the given block.
+     *
+     * <p>Blocks with NBT data cannot be shared and are returned as-is.</p>
+     *
+     * @param block the block
+     * @return the shared block, or {@code block} if it has NBT data
+     */
+    public static BaseBlock intern(BaseBlock block) {
+        checkNotNull(block);
+        if (block instanceof ImmutableBlock || block.hasNbtData()) {
+            return block;
+        }
+        return of(block.getId(), block.getData());
+    }
+
+    @Override
+    public void setId(int id) {
+        throw new UnsupportedOperationException("This object is immutable");
+    }
+
+    @Override
+    public void setData(int data) {
+        throw new UnsupportedOperationException("This object is immutable");
+    }
+
+    @Override
+    public void setNbtData(CompoundTag nbtData) {
+        throw new UnsupportedOperationException("This object is immutable");
+    }
+
+}
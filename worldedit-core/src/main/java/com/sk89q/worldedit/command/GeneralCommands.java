@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.command;
 
+import com.google.common.base.Joiner;
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandContext;
 import com.sk89q.minecraft.util.commands.CommandPermissions;
@@ -27,8 +28,14 @@
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.session.EditQueue;
+import com.sk89q.worldedit.session.EditQueue.QueuedEdit;
 import com.sk89q.worldedit.util.command.parametric.Optional;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -222,4 +229,52 @@ public void searchItem(Actor actor, CommandContext args) throws WorldEditExcepti
         }
     }
 
+    @Command(
+        aliases = { "/queue" },
+        usage = "",
+        desc = "Show your queued edits",
+        min = 0,
+        max = 0
+    )
+    @CommandPermissions("worldedit.queue")
+    public void queue(Actor actor) throws WorldEditException {
+        EditQueue editQueue = worldEdit.getEditQueue();
+        List<QueuedEdit> edits = editQueue.getEdits(actor);
+        if (edits.isEmpty()) {
+            actor.print("You have no queued edits.");
+            return;
+        }
+
+        int others = editQueue.getOwnerCount() - 1;
+        actor.print("You have " + edits.size() + " queued edit(s), sharing " + editQueue.getTickBudget(TimeUnit.MILLISECONDS)
+                + " ms per tick with " + others + " other user(s):");
+        for (QueuedEdit edit : edits) {
+            int position = edit.getPosition();
+            if (position < 0) {
+                continue;
+            }
+            List<String> messages = new ArrayList<String>();
+            edit.getOperation().addStatusMessages(messages);
+            String status = messages.isEmpty() ? "" : ": " + Joiner.on(", ").join(messages);
+            actor.print("#" + (position + 1) + (position == 0 ? " (running)" : " (waiting)") + status);
+        }
+    }
+
+    @Command(
+        aliases = { "/cancel" },
+        usage = "",
+        desc = "Cancel your queued edits",
+        min = 0,
+        max = 0
+    )
+    @CommandPermissions("worldedit.queue")
+    public void cancel(Actor actor) throws WorldEditException {
+        int cancelled = worldEdit.getEditQueue().cancel(actor);
+        if (cancelled == 0) {
+            actor.printError("You have no queued edits.");
+        } else {
+            actor.print(cancelled + " queued edit(s) cancelled.");
+        }
+    }
+
 }
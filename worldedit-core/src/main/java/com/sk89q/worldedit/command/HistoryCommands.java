@@ -69,7 +69,6 @@ public void undo(Player player, LocalSession session, EditSession editSession, C
             }
             if (undone != null) {
                 player.print("Undo successful.");
-                worldEdit.flushBlockBag(player, undone);
             } else {
                 player.printError("Nothing left to undo.");
                 break;
@@ -104,7 +103,6 @@ public void redo(Player player, LocalSession session, EditSession editSession, C
             }
             if (redone != null) {
                 player.print("Redo successful.");
-                worldEdit.flushBlockBag(player, redone);
             } else {
                 player.printError("Nothing left to redo.");
             }
@@ -35,6 +35,7 @@
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
+import com.sk89q.worldedit.extent.clipboard.io.StreamingSchematicReader;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.math.transform.Transform;
 import com.sk89q.worldedit.session.ClipboardHolder;
@@ -85,12 +86,19 @@ public SchematicCommands(WorldEdit worldEdit) {
     @Command(
             aliases = { "load" },
             usage = "[<format>] <filename>",
+            flags = "l",
             desc = "Load a schematic into your clipboard",
+            help =
+                "Load a schematic into your clipboard.\n" +
+                "Flags:\n" +
+                "  -l keeps the blocks in a temporary file and reads them\n" +
+                "     while pasting, for schematics too large for memory",
             min = 1, max = 2
     )
     @Deprecated
     @CommandPermissions({ "worldedit.clipboard.load", "worldedit.schematic.load" })
-    public void load(Player player, LocalSession session, @Optional("schematic") String formatName, String filename) throws FilenameException {
+    public void load(Player player, LocalSession session, @Optional("schematic") String formatName, String filename,
+                     @Switch('l') boolean fileBacked) throws FilenameException {
         LocalConfiguration config = worldEdit.getConfiguration();
 
         File dir = worldEdit.getWorkingDirectoryFile(config.saveDir);
@@ -114,7 +122,16 @@ public void load(Player player, LocalSession session, @Optional("schematic") Str
             ClipboardReader reader = format.getReader(bis);
 
             WorldData worldData = player.getWorld().getWorldData();
-            Clipboard clipboard = reader.read(player.getWorld().getWorldData());
+            Clipboard clipboard;
+            if (fileBacked) {
+                if (!(reader instanceof StreamingSchematicReader)) {
+                    player.printError("Only schematics in the " + ClipboardFormat.SCHEMATIC.name() + " format can be loaded with -l");
+                    return;
+                }
+                clipboard = ((StreamingSchematicReader) reader).readFileBacked(worldData);
+            } else {
+                clipboard = reader.read(worldData);
+            }
             session.setClipboard(new ClipboardHolder(clipboard, worldData));
 
             log.info(player.getName() + " loaded " + f.getCanonicalPath());
@@ -126,7 +126,9 @@ public void restore(Player player, LocalSession session, EditSession editSession
         try {
             // Restore snapshot
             SnapshotRestore restore = new SnapshotRestore(chunkStore, editSession, region);
-            //player.print(restore.getChunksAffected() + " chunk(s) will be loaded.");
+            restore.setParallelism(config.snapshotRestoreThreads);
+            restore.setQueueDepth(config.snapshotRestoreQueueDepth);
+            player.print(restore.getChunksAffected() + " chunk(s) will be loaded.");
 
             restore.restore();
 
@@ -25,11 +25,15 @@
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.mask.BlockMask;
+import com.sk89q.worldedit.function.mask.MaskIntersection;
+import com.sk89q.worldedit.function.mask.RegionMask;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.visitor.RecursiveVisitor;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
 import com.sk89q.worldedit.world.World;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * A pickaxe mode that recursively finds adjacent blocks within range of
  * an initial block and of the same type.
@@ -49,10 +53,10 @@ public boolean canUse(Actor player) {
     }
 
     @Override
-    public boolean actPrimary(Platform server, LocalConfiguration config, Player player, LocalSession session, com.sk89q.worldedit.util.Location clicked) {
-        World world = (World) clicked.getExtent();
+    public boolean actPrimary(final Platform server, LocalConfiguration config, Player player, LocalSession session, com.sk89q.worldedit.util.Location clicked) {
+        final World world = (World) clicked.getExtent();
 
-        int initialType = world.getBlockType(clicked.toVector());
+        final int initialType = world.getBlockType(clicked.toVector());
 
         if (initialType == BlockID.AIR) {
             return true;
@@ -62,12 +66,31 @@ public boolean actPrimary(Platform server, LocalConfiguration config, Player pla
             return true;
         }
 
-        EditSession editSession = session.createEditSession(player);
+        final EditSession editSession = session.createEditSession(player);
         editSession.getSurvivalExtent().setToolUse(config.superPickaxeManyDrop);
 
+        final Vector origin = clicked.toVector();
+        // The ellipsoid adds half a block to the radius, so take it off to
+        // keep the blocks within the range of the origin
+        double radius = Math.max(0, range - 0.5);
+        MaskIntersection mask = new MaskIntersection(
+                new RegionMask(new EllipsoidRegion((World) null, origin, new Vector(radius, radius, radius))),
+                new BlockMask(editSession, new BaseBlock(initialType, -1)));
+        RegionFunction breaker = new RegionFunction() {
+            @Override
+            public boolean apply(Vector position) throws WorldEditException {
+                world.queueBlockBreakEffect(server, position, initialType, origin.distanceSq(position));
+                return editSession.setBlock(position, air);
+            }
+        };
+        RecursiveVisitor visitor = new RecursiveVisitor(mask, breaker);
+        editSession.applySearchLimits(visitor);
+        visitor.visit(origin);
+
         try {
-            recurse(server, editSession, world, clicked.toVector().toBlockVector(),
-                    clicked.toVector(), range, initialType, new HashSet<BlockVector>());
+            Operations.completeLegacy(visitor);
+        } catch (MaxVisitedBlocksException e) {
+            player.printError("Max blocks visited limit reached.");
         } catch (MaxChangedBlocksException e) {
             player.printError("Max blocks change limit reached.");
         } finally {
@@ -78,36 +101,4 @@ public boolean actPrimary(Platform server, LocalConfiguration config, Player pla
         return true;
     }
 
-    private static void recurse(Platform server, EditSession editSession, World world, BlockVector pos,
-            Vector origin, double size, int initialType, Set<BlockVector> visited) throws MaxChangedBlocksException {
-
-        final double distanceSq = origin.distanceSq(pos);
-        if (distanceSq > size*size || visited.contains(pos)) {
-            return;
-        }
-
-        visited.add(pos);
-
-        if (editSession.getBlock(pos).getType() != initialType) {
-            return;
-        }
-
-        world.queueBlockBreakEffect(server, pos, initialType, distanceSq);
-
-        editSession.setBlock(pos, air);
-
-        recurse(server, editSession, world, pos.add(1, 0, 0).toBlockVector(),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(-1, 0, 0).toBlockVector(),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(0, 0, 1).toBlockVector(),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(0, 0, -1).toBlockVector(),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(0, 1, 0).toBlockVector(),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(0, -1, 0).toBlockVector(),
-                origin, size, initialType, visited);
-    }
-
 }
@@ -147,6 +147,7 @@ private Mask getBlockMaskComponent(List<Mask> masks, String component, ParserCon
             case '=':
                 try {
                     Expression exp = Expression.compile(component.substring(1), "x", "y", "z");
+                    exp.optimize();
                     WorldEditExpressionEnvironment env = new WorldEditExpressionEnvironment(
                             Request.request().getEditSession(), Vector.ONE, Vector.ZERO);
                     exp.setEnvironment(env);
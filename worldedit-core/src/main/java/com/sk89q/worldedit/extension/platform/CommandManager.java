@@ -20,6 +20,9 @@
 package com.sk89q.worldedit.extension.platform;
 
 import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.sk89q.minecraft.util.commands.CommandException;
 import com.sk89q.minecraft.util.commands.CommandLocals;
 import com.sk89q.minecraft.util.commands.CommandPermissionsException;
@@ -36,6 +39,7 @@
 import com.sk89q.worldedit.event.platform.CommandSuggestionEvent;
 import com.sk89q.worldedit.function.factory.Deform;
 import com.sk89q.worldedit.function.factory.Deform.Mode;
+import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.internal.command.*;
 import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.util.command.Dispatcher;
@@ -51,6 +55,7 @@
 import com.sk89q.worldedit.util.logging.DynamicStreamHandler;
 import com.sk89q.worldedit.util.logging.LogFormat;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.logging.FileHandler;
@@ -221,7 +226,7 @@ public String[] commandDetection(String[] split) {
     public void handleCommand(CommandEvent event) {
         Request.reset();
 
-        Actor actor = platformManager.createProxyActor(event.getActor());
+        final Actor actor = platformManager.createProxyActor(event.getActor());
         String[] split = commandDetection(event.getArguments().split(" "));
 
         // No command found!
@@ -236,7 +241,7 @@ public void handleCommand(CommandEvent event) {
         locals.put(Actor.class, actor);
         locals.put("arguments", event.getArguments());
 
-        long start = System.currentTimeMillis();
+        final long start = System.currentTimeMillis();
 
         try {
             // This is a bit of a hack, since the call method can only throw CommandExceptions
@@ -284,26 +289,35 @@ public void handleCommand(CommandEvent event) {
                 log.log(Level.SEVERE, "An unknown error occurred", e);
             }
         } finally {
-            EditSession editSession = locals.get(EditSession.class);
+            final EditSession editSession = locals.get(EditSession.class);
 
             if (editSession != null) {
                 session.remember(editSession);
-                editSession.flushQueue();
+
+                // The blocks are written by the edit queue over the next ticks
+                ListenableFuture<Operation> future = worldEdit.queueCommit(actor, editSession);
 
                 if (config.profile) {
-                    long time = System.currentTimeMillis() - start;
-                    int changed = editSession.getBlockChangeCount();
-                    if (time > 0) {
-                        double throughput = changed / (time / 1000.0);
-                        actor.printDebug((time / 1000.0) + "s elapsed (history: "
-                                + changed + " changed; "
-                                + Math.round(throughput) + " blocks/sec).");
-                    } else {
-                        actor.printDebug((time / 1000.0) + "s elapsed.");
-                    }
+                    Futures.addCallback(future, new FutureCallback<Operation>() {
+                        @Override
+                        public void onSuccess(@Nullable Operation result) {
+                            long time = System.currentTimeMillis() - start;
+                            int changed = editSession.getBlockChangeCount();
+                            if (time > 0) {
+                                double throughput = changed / (time / 1000.0);
+                                actor.printDebug((time / 1000.0) + "s elapsed (history: "
+                                        + changed + " changed; "
+                                        + Math.round(throughput) + " blocks/sec).");
+                            } else {
+                                actor.printDebug((time / 1000.0) + "s elapsed.");
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                        }
+                    });
                 }
-
-                worldEdit.flushBlockBag(actor, editSession);
             }
         }
 
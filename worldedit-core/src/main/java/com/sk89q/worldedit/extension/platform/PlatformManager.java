@@ -40,8 +40,10 @@
 import com.sk89q.worldedit.extension.platform.permission.ActorSelectorLimits;
 import com.sk89q.worldedit.internal.ServerInterfaceAdapter;
 import com.sk89q.worldedit.regions.RegionSelector;
+import com.sk89q.worldedit.session.EditQueue;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.util.eventbus.Subscribe;
+import com.sk89q.worldedit.world.RelightQueue;
 import com.sk89q.worldedit.world.World;
 
 import javax.annotation.Nullable;
@@ -51,6 +53,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -300,10 +303,30 @@ public ServerInterface getServerInterface() throws IllegalStateException {
     public void handlePlatformReady(PlatformReadyEvent event) {
         choosePreferred();
         if (initialized.compareAndSet(false, true)) {
+            scheduleOperations();
             worldEdit.getEventBus().post(new PlatformInitializeEvent());
         }
     }
 
+    /**
+     * Have the platform run the edit queue and the relight queue once per
+     * tick.
+     */
+    private void scheduleOperations() {
+        EditQueue editQueue = worldEdit.getEditQueue();
+        RelightQueue relightQueue = worldEdit.getRelightQueue();
+        try {
+            editQueue.setTickBudget(getConfiguration().editQueueTickBudget, TimeUnit.MILLISECONDS);
+            relightQueue.setChunksPerTick(getConfiguration().relightChunksPerTick);
+            Platform platform = queryCapability(Capability.GAME_HOOKS);
+            if (platform.schedule(0, 1, editQueue) == -1 || platform.schedule(0, 1, relightQueue) == -1) {
+                logger.log(Level.FINE, "The platform does not support scheduling tasks, so it has to run the edit queue and relight queue itself");
+            }
+        } catch (NoCapablePlatformException e) {
+            logger.log(Level.WARNING, "No platform can run the edit queue", e);
+        }
+    }
+
     @SuppressWarnings("deprecation")
     @Subscribe
     public void handleBlockInteract(BlockInteractEvent event) {
@@ -73,6 +73,16 @@ public BaseBlock getLazyBlock(Vector position) {
         return extent.getLazyBlock(position);
     }
 
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        return extent.getBlockId(x, y, z);
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        return extent.getBlockData(x, y, z);
+    }
+
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
         return extent.setBlock(location, block);
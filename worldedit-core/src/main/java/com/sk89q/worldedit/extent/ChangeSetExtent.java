@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.extent;
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
@@ -27,6 +28,7 @@
 import com.sk89q.worldedit.history.change.BlockChange;
 import com.sk89q.worldedit.history.change.EntityCreate;
 import com.sk89q.worldedit.history.change.EntityRemove;
+import com.sk89q.worldedit.history.changeset.BlockOptimizedHistory;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
@@ -41,9 +43,9 @@
 /**
  * Stores changes to a {@link ChangeSet}.
  */
-public class ChangeSetExtent extends AbstractDelegateExtent {
+public class ChangeSetExtent extends AbstractDelegateExtent implements SectionOutputExtent {
 
-    private final ChangeSet changeSet;
+    private ChangeSet changeSet;
 
     /**
      * Create a new instance.
@@ -57,6 +59,16 @@ public ChangeSetExtent(Extent extent, ChangeSet changeSet) {
         this.changeSet = changeSet;
     }
 
+    /**
+     * Set the change set that changes are stored to from now on.
+     *
+     * @param changeSet the change set
+     */
+    public void setChangeSet(ChangeSet changeSet) {
+        checkNotNull(changeSet);
+        this.changeSet = changeSet;
+    }
+
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
         BaseBlock previous = getBlock(location);
@@ -64,6 +76,24 @@ public boolean setBlock(Vector location, BaseBlock block) throws WorldEditExcept
         return super.setBlock(location, block);
     }
 
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        BlockOptimizedHistory optimized = changeSet instanceof BlockOptimizedHistory ? (BlockOptimizedHistory) changeSet : null;
+        for (int index = section.nextChanged(0); index >= 0; index = section.nextChanged(index + 1)) {
+            int x = section.getX(index);
+            int y = section.getY(index);
+            int z = section.getZ(index);
+            BlockVector position = new BlockVector(x, y, z);
+            BaseBlock previous = getBlock(position);
+            if (optimized != null) {
+                optimized.addBlockChange(x, y, z, previous, section.getId(index), section.getData(index));
+            } else {
+                changeSet.add(new BlockChange(position, previous, new BaseBlock(section.getId(index), section.getData(index))));
+            }
+        }
+        return section.writeTo(getExtent());
+    }
+
     @Nullable
     @Override
     public Entity createEntity(Location location, BaseEntity state) {
@@ -75,6 +75,34 @@ public interface InputExtent {
      */
     BaseBlock getLazyBlock(Vector position);
 
+    /**
+     * Get the type ID of the block at the given location.
+     *
+     * <p>This is equivalent to {@code getLazyBlock(position).getType()}, but
+     * implementations should avoid creating a {@link Vector} or a block, as
+     * this method is meant to be called once per block by masks and visitors
+     * that walk entire regions.</p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the type ID
+     */
+    int getBlockId(int x, int y, int z);
+
+    /**
+     * Get the data value of the block at the given location.
+     *
+     * <p>This is equivalent to {@code getLazyBlock(position).getData()}, with
+     * the same considerations as {@link #getBlockId(int, int, int)}.</p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the data value
+     */
+    int getBlockData(int x, int y, int z);
+
     /**
      * Get the biome at the given location.
      *
@@ -19,17 +19,19 @@
 
 package com.sk89q.worldedit.extent;
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Requires that all mutating methods pass a given {@link Mask}.
  */
-public class MaskingExtent extends AbstractDelegateExtent {
+public class MaskingExtent extends AbstractDelegateExtent implements SectionOutputExtent {
 
     private Mask mask;
 
@@ -69,4 +71,16 @@ public boolean setBlock(Vector location, BaseBlock block) throws WorldEditExcept
         return mask.test(location) && super.setBlock(location, block);
     }
 
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        if (mask != Masks.alwaysTrue()) {
+            for (int index = section.nextChanged(0); index >= 0; index = section.nextChanged(index + 1)) {
+                if (!mask.test(new BlockVector(section.getX(index), section.getY(index), section.getZ(index)))) {
+                    section.unset(index);
+                }
+            }
+        }
+        return section.writeTo(getExtent());
+    }
+
 }
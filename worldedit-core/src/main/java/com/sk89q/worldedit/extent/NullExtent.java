@@ -23,6 +23,7 @@
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.function.operation.Operation;
@@ -75,7 +76,17 @@ public BaseBlock getBlock(Vector position) {
 
     @Override
     public BaseBlock getLazyBlock(Vector position) {
-        return new BaseBlock(0);
+        return ImmutableBlock.of(0);
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        return 0;
     }
 
   /*  @Nullable
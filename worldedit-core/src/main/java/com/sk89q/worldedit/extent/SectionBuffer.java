@@ -0,0 +1,356 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Holds the blocks to write to one 16x16x16 chunk section.
+ *
+ * <p>Blocks are stored as packed {@code id << 4 | data} values in a
+ * primitive array, and a change mask records which positions of the
+ * section are to be written. Positions are indexed by Y, then Z, then X,
+ * the same order that Minecraft uses for the blocks of a section. NBT data
+ * cannot be stored, so blocks with NBT data have to be set one at a time.</p>
+ */
+public class SectionBuffer {
+
+    /**
+     * The number of blocks along each side of a section.
+     */
+    public static final int SIZE = 16;
+
+    /**
+     * The number of blocks in a section.
+     */
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+
+    private final int[] blocks = new int[VOLUME];
+    private final BitSet changes = new BitSet(VOLUME);
+    private int sectionX;
+    private int sectionY;
+    private int sectionZ;
+
+    /**
+     * Create a new empty buffer.
+     *
+     * @param sectionX the X coordinate of the section, in sections
+     * @param sectionY the Y coordinate of the section, in sections
+     * @param sectionZ the Z coordinate of the section, in sections
+     */
+    public SectionBuffer(int sectionX, int sectionY, int sectionZ) {
+        this.sectionX = sectionX;
+        this.sectionY = sectionY;
+        this.sectionZ = sectionZ;
+    }
+
+    /**
+     * Create a copy of another buffer.
+     *
+     * @param other the buffer to copy
+     */
+    public SectionBuffer(SectionBuffer other) {
+        checkNotNull(other);
+        this.sectionX = other.sectionX;
+        this.sectionY = other.sectionY;
+        this.sectionZ = other.sectionZ;
+        System.arraycopy(other.blocks, 0, blocks, 0, VOLUME);
+        changes.or(other.changes);
+    }
+
+    /**
+     * Clear this buffer and move it to another section.
+     *
+     * @param sectionX the X coordinate of the section, in sections
+     * @param sectionY the Y coordinate of the section, in sections
+     * @param sectionZ the Z coordinate of the section, in sections
+     */
+    public void reset(int sectionX, int sectionY, int sectionZ) {
+        this.sectionX = sectionX;
+        this.sectionY = sectionY;
+        this.sectionZ = sectionZ;
+        Arrays.fill(blocks, 0);
+        changes.clear();
+    }
+
+    public int getSectionX() {
+        return sectionX;
+    }
+
+    public int getSectionY() {
+        return sectionY;
+    }
+
+    public int getSectionZ() {
+        return sectionZ;
+    }
+
+    /**
+     * Test whether the given block position is in the section of this
+     * buffer.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the position is in the section
+     */
+    public boolean contains(int x, int y, int z) {
+        return x >> 4 == sectionX && y >> 4 == sectionY && z >> 4 == sectionZ;
+    }
+
+    /**
+     * Get the index of a block position in the section.
+     *
+     * @param x the X coordinate, of which only the lowest 4 bits are used
+     * @param y the Y coordinate, of which only the lowest 4 bits are used
+     * @param z the Z coordinate, of which only the lowest 4 bits are used
+     * @return the index
+     */
+    public static int getIndex(int x, int y, int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    /**
+     * Get the X coordinate of the block at the given index.
+     *
+     * @param index the index
+     * @return the X coordinate
+     */
+    public int getX(int index) {
+        return sectionX << 4 | (index & 15);
+    }
+
+    /**
+     * Get the Y coordinate of the block at the given index.
+     *
+     * @param index the index
+     * @return the Y coordinate
+     */
+    public int getY(int index) {
+        return sectionY << 4 | (index >> 8);
+    }
+
+    /**
+     * Get the Z coordinate of the block at the given index.
+     *
+     * @param index the index
+     * @return the Z coordinate
+     */
+    public int getZ(int index) {
+        return sectionZ << 4 | (index >> 4 & 15);
+    }
+
+    /**
+     * Test whether the given block can be stored in a buffer.
+     *
+     * @param block the block
+     * @return true if the block has no NBT data and its data value is not negative
+     */
+    public static boolean canStore(BaseBlock block) {
+        return !block.hasNbtData() && block.getData() >= 0 && block.getData() <= BaseBlock.MAX_DATA
+                && block.getId() >= 0 && block.getId() <= BaseBlock.MAX_ID;
+    }
+
+    /**
+     * Set the block at the given index and add it to the change mask.
+     *
+     * @param index the index
+     * @param id the block ID
+     * @param data the data value
+     */
+    public void set(int index, int id, int data) {
+        blocks[index] = id << 4 | (data & 15);
+        changes.set(index);
+    }
+
+    /**
+     * Set a run of blocks along the X axis and add them to the change mask.
+     *
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @param startX the first X coordinate, inclusive
+     * @param endX the last X coordinate, inclusive, in the same section as the first
+     * @param id the block ID
+     * @param data the data value
+     */
+    public void fill(int y, int z, int startX, int endX, int id, int data) {
+        checkArgument(startX >> 4 == endX >> 4 && startX <= endX, "the run has to be within the section");
+        int from = getIndex(startX, y, z);
+        int to = from + (endX - startX) + 1;
+        Arrays.fill(blocks, from, to, id << 4 | (data & 15));
+        changes.set(from, to);
+    }
+
+    /**
+     * Get the packed {@code id << 4 | data} value at the given index.
+     *
+     * @param index the index
+     * @return the packed block
+     */
+    public int getPacked(int index) {
+        return blocks[index];
+    }
+
+    /**
+     * Get the block ID at the given index.
+     *
+     * @param index the index
+     * @return the block ID
+     */
+    public int getId(int index) {
+        return blocks[index] >>> 4;
+    }
+
+    /**
+     * Get the data value at the given index.
+     *
+     * @param index the index
+     * @return the data value
+     */
+    public int getData(int index) {
+        return blocks[index] & 15;
+    }
+
+    /**
+     * Get the array of packed {@code id << 4 | data} values.
+     *
+     * <p>The array is not copied. Values at indices that are not in the
+     * change mask are meaningless.</p>
+     *
+     * @return the array of packed blocks
+     */
+    public int[] getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Get the change mask, which has a bit set for each index that is to
+     * be written.
+     *
+     * <p>The bit set is not copied, so changes to it change this buffer.</p>
+     *
+     * @return the change mask
+     */
+    public BitSet getChanges() {
+        return changes;
+    }
+
+    /**
+     * Test whether the block at the given index is to be written.
+     *
+     * @param index the index
+     * @return true if the index is in the change mask
+     */
+    public boolean isChanged(int index) {
+        return changes.get(index);
+    }
+
+    /**
+     * Remove the given index from the change mask.
+     *
+     * @param index the index
+     */
+    public void unset(int index) {
+        changes.clear(index);
+    }
+
+    /**
+     * Get the next index in the change mask.
+     *
+     * @param fromIndex the index to start at, inclusive
+     * @return the index, or -1 if there are no more
+     */
+    public int nextChanged(int fromIndex) {
+        return changes.nextSetBit(fromIndex);
+    }
+
+    /**
+     * Get the number of blocks in the change mask.
+     *
+     * @return the number of blocks
+     */
+    public int getChangeCount() {
+        return changes.cardinality();
+    }
+
+    /**
+     * Return whether no block is to be written.
+     *
+     * @return true if the change mask is empty
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Write the blocks of this buffer to an extent, all at once if the
+     * extent is a {@link SectionOutputExtent}, or one at a time otherwise.
+     *
+     * @param extent the extent
+     * @return the number of blocks that were set
+     * @throws WorldEditException thrown on an error
+     */
+    public int writeTo(OutputExtent extent) throws WorldEditException {
+        checkNotNull(extent);
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        if (extent instanceof SectionOutputExtent) {
+            return ((SectionOutputExtent) extent).setSection(this);
+        } else {
+            return writeBlocks(extent);
+        }
+    }
+
+    /**
+     * Write the blocks of this buffer to an extent one at a time, with
+     * {@link OutputExtent#setBlock(com.sk89q.worldedit.Vector, BaseBlock)}.
+     *
+     * @param extent the extent
+     * @return the number of blocks that were set
+     * @throws WorldEditException thrown on an error
+     */
+    public int writeBlocks(OutputExtent extent) throws WorldEditException {
+        checkNotNull(extent);
+        int affected = 0;
+        int lastPacked = -1;
+        BaseBlock block = null;
+        for (int index = changes.nextSetBit(0); index >= 0; index = changes.nextSetBit(index + 1)) {
+            int packed = blocks[index];
+            if (packed != lastPacked) {
+                block = new BaseBlock(packed >>> 4, packed & 15);
+                lastPacked = packed;
+            }
+            if (extent.setBlock(new BlockVector(getX(index), getY(index), getZ(index)), block)) {
+                affected++;
+            }
+        }
+        return affected;
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent;
+
+import com.sk89q.worldedit.WorldEditException;
+
+/**
+ * An {@link OutputExtent} that can accept the blocks of a whole 16x16x16
+ * chunk section at once.
+ *
+ * <p>Extents that do not implement this interface are given the blocks
+ * of a section one at a time by {@link SectionBuffer#writeTo(OutputExtent)}.</p>
+ */
+public interface SectionOutputExtent extends OutputExtent {
+
+    /**
+     * Change the blocks of a section to the blocks in the given buffer,
+     * at the positions that are set in its change mask.
+     *
+     * <p>This must have the same effect as calling
+     * {@link #setBlock(com.sk89q.worldedit.Vector, com.sk89q.worldedit.blocks.BaseBlock)}
+     * for every position in the change mask, in the order of their index.
+     * The extent may clear positions from the change mask of the buffer,
+     * so the caller should not rely on the contents of the buffer after
+     * this method returns, and the extent must not keep a reference to the
+     * buffer.</p>
+     *
+     * @param section the section buffer
+     * @return the number of blocks that were successfully set (the return value may not be accurate)
+     * @throws WorldEditException thrown on an error
+     */
+    int setSection(SectionBuffer section) throws WorldEditException;
+
+}
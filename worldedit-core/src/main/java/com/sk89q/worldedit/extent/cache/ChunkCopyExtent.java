@@ -0,0 +1,166 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.extent.cache;
+
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.regions.Region;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A read-only copy of the block types and data values of another extent,
+ * which is taken one chunk at a time.
+ *
+ * <p>Chunks are copied and released by the thread that owns the source
+ * extent, but the copied blocks can be read from any thread. NBT data is
+ * not copied. Reading a block that has not been copied throws an
+ * {@link IllegalStateException}.</p>
+ */
+public class ChunkCopyExtent extends AbstractDelegateExtent {
+
+    private final Extent source;
+    private final Region region;
+    private final int minY;
+    private final int height;
+    private final ConcurrentMap<BlockVector2D, int[]> chunks = new ConcurrentHashMap<BlockVector2D, int[]>();
+
+    /**
+     * Create a new instance.
+     *
+     * @param source the extent to copy blocks from
+     * @param region the region that contains all blocks that will be copied
+     */
+    public ChunkCopyExtent(Extent source, Region region) {
+        super(new NullExtent());
+        checkNotNull(source);
+        checkNotNull(region);
+        this.source = source;
+        this.region = region;
+        this.minY = region.getMinimumPoint().getBlockY();
+        this.height = region.getMaximumPoint().getBlockY() - minY + 1;
+    }
+
+    /**
+     * Copy the blocks of the region that are within the given chunk.
+     *
+     * <p>This must be called on the thread that owns the source extent.</p>
+     *
+     * @param chunk the position of the chunk
+     */
+    public void copy(BlockVector2D chunk) {
+        checkNotNull(chunk);
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        int minX = Math.max(min.getBlockX(), chunk.getBlockX() << 4);
+        int maxX = Math.min(max.getBlockX(), (chunk.getBlockX() << 4) + 15);
+        int minZ = Math.max(min.getBlockZ(), chunk.getBlockZ() << 4);
+        int maxZ = Math.min(max.getBlockZ(), (chunk.getBlockZ() << 4) + 15);
+        int maxY = max.getBlockY();
+
+        // Entries are id << 4 | data, plus one so that zero means "not copied"
+        int[] blocks = new int[height << 8];
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    Vector position = new Vector(x, y, z);
+                    if (region.contains(position)) {
+                        blocks[getIndex(x, y, z)] = (source.getBlockId(x, y, z) << 4 | source.getBlockData(x, y, z) & 0xF) + 1;
+                    }
+                }
+            }
+        }
+        chunks.put(chunk, blocks);
+    }
+
+    /**
+     * Release the copied blocks of the given chunk.
+     *
+     * @param chunk the position of the chunk
+     */
+    public void release(BlockVector2D chunk) {
+        chunks.remove(chunk);
+    }
+
+    /**
+     * Release the copied blocks of all chunks.
+     */
+    public void releaseAll() {
+        chunks.clear();
+    }
+
+    private int getIndex(int x, int y, int z) {
+        return (y - minY) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        int entry = getEntry(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+        return new BaseBlock(entry >> 4, entry & 0xF);
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        int entry = getEntry(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+        return ImmutableBlock.of(entry >> 4, entry & 0xF);
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        return getEntry(x, y, z) >> 4;
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        return getEntry(x, y, z) & 0xF;
+    }
+
+    /**
+     * Get the packed ID and data value of a copied block.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the ID shifted left by 4, ORed with the data value
+     * @throws IllegalStateException if the block has not been copied
+     */
+    private int getEntry(int x, int y, int z) {
+        int[] blocks = chunks.get(new BlockVector2D(x >> 4, z >> 4));
+        int entry = blocks != null && y >= minY && y < minY + height ? blocks[getIndex(x, y, z)] : 0;
+        if (entry == 0) {
+            throw new IllegalStateException("The block at " + new Vector(x, y, z) + " has not been copied");
+        }
+        return entry - 1;
+    }
+
+    @Override
+    public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+        return false;
+    }
+
+}
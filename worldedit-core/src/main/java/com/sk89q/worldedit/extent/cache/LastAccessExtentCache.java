@@ -21,15 +21,18 @@
 
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
 
 /**
  * Returns the same cached {@link BaseBlock} for repeated calls to
  * {@link #getLazyBlock(Vector)} with the same position.
  */
-public class LastAccessExtentCache extends AbstractDelegateExtent {
+public class LastAccessExtentCache extends AbstractDelegateExtent implements SectionOutputExtent {
 
     private CachedBlock lastBlock;
 
@@ -55,6 +58,11 @@ public BaseBlock getLazyBlock(Vector position) {
         }
     }
 
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        return section.writeTo(getExtent());
+    }
+
     private static class CachedBlock {
         private final BlockVector position;
         private final BaseBlock block;
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.extent.clipboard;
 
+import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.WorldEditException;
@@ -28,25 +29,44 @@
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.RegionOperationException;
 import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.util.collection.PackedIntArray;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Stores block data as a multi-dimensional array of {@link BaseBlock}s and
- * other data as lists or maps.
+ * Stores block data as indices into a per-clipboard {@link BlockPalette}
+ * that are bit-packed into a primitive array, and other data as lists
+ * or maps.
+ *
+ * <p>NBT data is kept in a sparse map keyed by block index, so only
+ * blocks that actually carry NBT data cost more than a few bits.</p>
  */
 public class BlockArrayClipboard implements Clipboard {
 
+    private static final int INITIAL_BITS = 4;
+
     private final Region region;
     private Vector origin = new Vector();
-    private final BaseBlock[][][] blocks;
+    private int minX;
+    private int minY;
+    private int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final BlockPalette palette = new BlockPalette();
+    private final PackedIntArray blocks;
+    private final Map<Integer, CompoundTag> nbtData = new HashMap<Integer, CompoundTag>();
     private final List<ClipboardEntity> entities = new ArrayList<ClipboardEntity>();
 
     /**
@@ -61,8 +81,17 @@ public BlockArrayClipboard(Region region) {
         this.region = region.clone();
         this.origin = region.getMinimumPoint();
 
+        Vector min = region.getMinimumPoint();
         Vector dimensions = getDimensions();
-        blocks = new BaseBlock[dimensions.getBlockX()][dimensions.getBlockY()][dimensions.getBlockZ()];
+        long volume = (long) dimensions.getBlockX() * dimensions.getBlockY() * dimensions.getBlockZ();
+        checkArgument(volume <= Integer.MAX_VALUE, "region is too large for a clipboard");
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.sizeX = dimensions.getBlockX();
+        this.sizeY = dimensions.getBlockY();
+        this.sizeZ = dimensions.getBlockZ();
+        this.blocks = new PackedIntArray((int) volume, INITIAL_BITS);
     }
 
     @Override
@@ -119,29 +148,181 @@ public Entity createEntity(Location location, BaseEntity entity) {
         return ret;
     }
 
+    /**
+     * Get the index of a position into the block array.
+     *
+     * <p>Blocks are ordered by Y, then Z, then X, which is the same order
+     * used by the MCEdit schematic format.</p>
+     *
+     * @param position the position, which must be within the region
+     * @return the index
+     */
+    private int getIndex(Vector position) {
+        int x = position.getBlockX() - minX;
+        int y = position.getBlockY() - minY;
+        int z = position.getBlockZ() - minZ;
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    /**
+     * Get the index of a position into the block array.
+     *
+     * <p>Positions within the bounding box but outside the region are
+     * never set, so they read back as air.</p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the index, or -1 if the position is outside the bounding box
+     */
+    private int getIndex(int x, int y, int z) {
+        x -= minX;
+        y -= minY;
+        z -= minZ;
+        if (x < 0 || x >= sizeX || y < 0 || y >= sizeY || z < 0 || z >= sizeZ) {
+            return -1;
+        }
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    /**
+     * Get the number of blocks in the block array.
+     *
+     * @return the number of blocks
+     */
+    public int getVolume() {
+        return blocks.length();
+    }
+
+    /**
+     * Get the block ID at the given index into the block array.
+     *
+     * @param index the index, with blocks ordered by Y, then Z, then X
+     * @return the block ID
+     */
+    public int getBlockId(int index) {
+        return palette.get(blocks.get(index)).getId();
+    }
+
+    /**
+     * Get the block data value at the given index into the block array.
+     *
+     * @param index the index, with blocks ordered by Y, then Z, then X
+     * @return the data value
+     */
+    public int getBlockData(int index) {
+        return palette.get(blocks.get(index)).getData();
+    }
+
+    /**
+     * Set the block ID and data value at the given index into the block
+     * array, leaving its NBT data alone.
+     *
+     * <p>This is meant for loading blocks in bulk without creating a
+     * {@link BaseBlock} for each of them.</p>
+     *
+     * @param index the index, with blocks ordered by Y, then Z, then X
+     * @param id the block ID
+     * @param data the data value
+     */
+    public void setBlock(int index, int id, int data) {
+        int paletteIndex = palette.getOrAdd(id, data);
+        if (paletteIndex > blocks.getMaxValue()) {
+            blocks.ensureBits(PackedIntArray.bitsRequired(paletteIndex));
+        }
+        blocks.set(index, paletteIndex);
+    }
+
+    /**
+     * Get the NBT data at the given index into the block array.
+     *
+     * @param index the index, with blocks ordered by Y, then Z, then X
+     * @return the NBT data, or null if there is none
+     */
+    @Nullable
+    public CompoundTag getNbtData(int index) {
+        return nbtData.isEmpty() ? null : nbtData.get(index);
+    }
+
+    /**
+     * Set the NBT data at the given index into the block array.
+     *
+     * @param index the index, with blocks ordered by Y, then Z, then X
+     * @param tag the NBT data, or null to remove it
+     */
+    public void setNbtData(int index, @Nullable CompoundTag tag) {
+        if (tag != null) {
+            nbtData.put(index, tag);
+        } else if (!nbtData.isEmpty()) {
+            nbtData.remove(index);
+        }
+    }
+
+    /**
+     * Move the region of this clipboard, along with its blocks, so that
+     * its minimum point is at the given position. The origin is moved by
+     * the same amount, but entities are not moved.
+     *
+     * @param min the new minimum point
+     */
+    public void setMinimumPoint(Vector min) {
+        checkNotNull(min);
+        Vector offset = min.subtract(region.getMinimumPoint());
+        try {
+            region.shift(offset);
+        } catch (RegionOperationException e) {
+            throw new IllegalStateException("Failed to move the region of the clipboard", e);
+        }
+        origin = origin.add(offset);
+        Vector newMin = region.getMinimumPoint();
+        minX = newMin.getBlockX();
+        minY = newMin.getBlockY();
+        minZ = newMin.getBlockZ();
+    }
+
     @Override
     public BaseBlock getBlock(Vector position) {
         if (region.contains(position)) {
-            Vector v = position.subtract(region.getMinimumPoint());
-            BaseBlock block = blocks[v.getBlockX()][v.getBlockY()][v.getBlockZ()];
-            if (block != null) {
-                return new BaseBlock(block);
-            }
+            int index = getIndex(position);
+            BaseBlock block = palette.get(blocks.get(index));
+            CompoundTag tag = nbtData.isEmpty() ? null : nbtData.get(index);
+            return new BaseBlock(block.getId(), block.getData(), tag);
         }
 
         return new BaseBlock(BlockID.AIR);
     }
 
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        int index = getIndex(x, y, z);
+        return index >= 0 ? getBlockId(index) : BlockID.AIR;
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        int index = getIndex(x, y, z);
+        return index >= 0 ? getBlockData(index) : 0;
+    }
+
     @Override
     public BaseBlock getLazyBlock(Vector position) {
-        return getBlock(position);
+        if (region.contains(position)) {
+            int index = getIndex(position);
+            if (!nbtData.isEmpty() && nbtData.containsKey(index)) {
+                return getBlock(position);
+            }
+            return palette.get(blocks.get(index));
+        }
+
+        return palette.get(0);
     }
 
     @Override
     public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
         if (region.contains(position)) {
-            Vector v = position.subtract(region.getMinimumPoint());
-            blocks[v.getBlockX()][v.getBlockY()][v.getBlockZ()] = new BaseBlock(block);
+            int index = getIndex(position);
+            setBlock(index, block.getId(), block.getData());
+            setNbtData(index, block.getNbtData());
             return true;
         } else {
             return false;
@@ -0,0 +1,106 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps block ID and data value pairs to small, dense indices.
+ *
+ * <p>Index 0 is always air, so storage that is zero-initialized reads back
+ * as air. NBT data is not part of a palette entry and has to be stored
+ * separately by the user of the palette.</p>
+ */
+public class BlockPalette {
+
+    private static final int DATA_SLOTS = BaseBlock.MAX_DATA + 2; // -1 to MAX_DATA
+
+    private final int[][] lookup = new int[BaseBlock.MAX_ID + 1][];
+    private final List<ImmutableBlock> entries = new ArrayList<ImmutableBlock>();
+
+    /**
+     * Create a new palette containing only air.
+     */
+    public BlockPalette() {
+        getOrAdd(BlockID.AIR, 0);
+    }
+
+    /**
+     * Get the index of the given block, adding it to the palette if it
+     * is not yet present.
+     *
+     * @param id the block ID
+     * @param data the data value, which may be -1
+     * @return the index
+     */
+    public int getOrAdd(int id, int data) {
+        int[] row = lookup[id];
+        if (row == null) {
+            row = new int[DATA_SLOTS];
+            lookup[id] = row;
+        }
+        int index = row[data + 1];
+        if (index == 0) {
+            entries.add(ImmutableBlock.of(id, data));
+            index = entries.size();
+            row[data + 1] = index;
+        }
+        return index - 1;
+    }
+
+    /**
+     * Get the index of the given block.
+     *
+     * @param id the block ID
+     * @param data the data value, which may be -1
+     * @return the index, or -1 if the block is not in the palette
+     */
+    public int indexOf(int id, int data) {
+        int[] row = lookup[id];
+        return row != null ? row[data + 1] - 1 : -1;
+    }
+
+    /**
+     * Get the block at the given index.
+     *
+     * <p>The returned block is shared and immutable.</p>
+     *
+     * @param index the index
+     * @return the block
+     */
+    public ImmutableBlock get(int index) {
+        return entries.get(index);
+    }
+
+    /**
+     * Get the number of entries in the palette.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+}
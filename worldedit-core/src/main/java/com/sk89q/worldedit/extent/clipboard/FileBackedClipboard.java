@@ -0,0 +1,387 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A read-only clipboard that reads its blocks from a file on demand.
+ *
+ * <p>The file contains the uncompressed Blocks array, followed by the Data
+ * array and, optionally, the AddBlocks array, laid out as in the MCEdit
+ * schematic format. Blocks are loaded in slabs that are 16 blocks deep
+ * along the Z axis, and only a fixed number of slabs are kept in memory at
+ * once. Regions are pasted one chunk at a time, by Z and then by X, so a
+ * row of chunks covers at most two slabs, and with the default window every
+ * slab is read once.</p>
+ *
+ * <p>Blocks cannot be set, but entities can be added. Blocks can be read
+ * by several threads at once, but entities must only be added by one
+ * thread. The file is deleted when the clipboard is closed.</p>
+ */
+public class FileBackedClipboard implements Clipboard, Closeable {
+
+    /**
+     * The depth of a slab along the Z axis.
+     */
+    public static final int SLAB_DEPTH = 16;
+
+    /**
+     * The default number of slabs that are kept in memory.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 2;
+
+    private final Region region;
+    private Vector origin;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final long volume;
+    private final File file;
+    private final RandomAccessFile data;
+    private final boolean hasAddBlocks;
+    private final Map<Integer, CompoundTag> nbtData;
+    private final List<ClipboardEntity> entities = new ArrayList<ClipboardEntity>();
+    private final Map<Integer, char[]> slabs; // Guarded by itself, with the file
+    @Nullable
+    private volatile LoadedSlab lastSlab;
+
+    /**
+     * Create a new instance.
+     *
+     * @param region the bounding region
+     * @param file the file with the block arrays
+     * @param hasAddBlocks whether the file contains the AddBlocks array
+     * @param nbtData NBT data of blocks, keyed by their index into the block arrays
+     * @param windowSize the number of slabs to keep in memory
+     * @throws IOException thrown if the file cannot be opened
+     */
+    public FileBackedClipboard(Region region, File file, boolean hasAddBlocks, Map<Integer, CompoundTag> nbtData, final int windowSize) throws IOException {
+        checkNotNull(region);
+        checkNotNull(file);
+        checkNotNull(nbtData);
+        checkArgument(windowSize >= 1, "windowSize >= 1");
+        this.region = region.clone();
+        this.origin = region.getMinimumPoint();
+
+        Vector min = region.getMinimumPoint();
+        Vector dimensions = getDimensions();
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.sizeX = dimensions.getBlockX();
+        this.sizeY = dimensions.getBlockY();
+        this.sizeZ = dimensions.getBlockZ();
+        this.volume = (long) sizeX * sizeY * sizeZ;
+        checkArgument((long) sizeX * sizeY * SLAB_DEPTH <= Integer.MAX_VALUE, "region is too large for a clipboard");
+
+        this.file = file;
+        this.hasAddBlocks = hasAddBlocks;
+        this.nbtData = new HashMap<Integer, CompoundTag>(nbtData);
+        this.slabs = new LinkedHashMap<Integer, char[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, char[]> eldest) {
+                return size() > windowSize;
+            }
+        };
+        this.data = new RandomAccessFile(file, "r");
+    }
+
+    /**
+     * Get the file that the blocks are read from.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public Region getRegion() {
+        return region.clone();
+    }
+
+    @Override
+    public Vector getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public void setOrigin(Vector origin) {
+        this.origin = origin;
+    }
+
+    @Override
+    public Vector getDimensions() {
+        return region.getMaximumPoint().subtract(region.getMinimumPoint()).add(1, 1, 1);
+    }
+
+    @Override
+    public Vector getMinimumPoint() {
+        return region.getMinimumPoint();
+    }
+
+    @Override
+    public Vector getMaximumPoint() {
+        return region.getMaximumPoint();
+    }
+
+    @Override
+    public List<? extends Entity> getEntities(Region region) {
+        List<Entity> filtered = new ArrayList<Entity>();
+        for (Entity entity : entities) {
+            if (region.contains(entity.getLocation().toVector())) {
+                filtered.add(entity);
+            }
+        }
+        return Collections.unmodifiableList(filtered);
+    }
+
+    @Override
+    public List<? extends Entity> getEntities() {
+        return Collections.unmodifiableList(entities);
+    }
+
+    @Nullable
+    @Override
+    public Entity createEntity(Location location, BaseEntity entity) {
+        ClipboardEntity ret = new ClipboardEntity(location, entity);
+        entities.add(ret);
+        return ret;
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        if (region.contains(position)) {
+            int x = position.getBlockX() - minX;
+            int y = position.getBlockY() - minY;
+            int z = position.getBlockZ() - minZ;
+            char[] slab = getSlab(z / SLAB_DEPTH);
+            int depth = getSlabDepth(z / SLAB_DEPTH);
+            int block = slab[(y * depth + z % SLAB_DEPTH) * sizeX + x];
+            CompoundTag tag = nbtData.isEmpty() ? null : nbtData.get((y * sizeZ + z) * sizeX + x);
+            return new BaseBlock(block >> 4, block & 0xF, tag);
+        }
+
+        return new BaseBlock(BlockID.AIR);
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        return getBlock(position);
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        int block = getPacked(x, y, z);
+        return block >= 0 ? block >> 4 : BlockID.AIR;
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        int block = getPacked(x, y, z);
+        return block >= 0 ? block & 0xF : 0;
+    }
+
+    /**
+     * Get the packed ID and data value of a block from its slab.
+     *
+     * <p>A schematic stores every block of its bounding box, so only the
+     * bounds of the box are checked.</p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the ID shifted left by 4, ORed with the data value, or -1 if
+     *         the position is outside the clipboard
+     */
+    private int getPacked(int x, int y, int z) {
+        x -= minX;
+        y -= minY;
+        z -= minZ;
+        if (x < 0 || x >= sizeX || y < 0 || y >= sizeY || z < 0 || z >= sizeZ) {
+            return -1;
+        }
+        char[] slab = getSlab(z / SLAB_DEPTH);
+        int depth = getSlabDepth(z / SLAB_DEPTH);
+        return slab[(y * depth + z % SLAB_DEPTH) * sizeX + x];
+    }
+
+    @Override
+    public boolean setBlock(Vector position, BaseBlock block) {
+        return false;
+    }
+
+    private int getSlabDepth(int slabIndex) {
+        return Math.min(SLAB_DEPTH, sizeZ - slabIndex * SLAB_DEPTH);
+    }
+
+    /**
+     * Get a slab, loading it from the file if it is not in memory.
+     *
+     * <p>A slab holds the ID and data value of each block, packed as
+     * {@code id << 4 | data}, ordered by Y, then Z, then X.</p>
+     *
+     * @param slabIndex the index of the slab
+     * @return the slab
+     */
+    private char[] getSlab(int slabIndex) {
+        LoadedSlab last = lastSlab;
+        if (last != null && last.index == slabIndex) {
+            return last.blocks;
+        }
+
+        synchronized (slabs) {
+            char[] slab = slabs.get(slabIndex);
+            if (slab == null) {
+                try {
+                    slab = loadSlab(slabIndex);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to read blocks from " + file.getAbsolutePath(), e);
+                }
+                slabs.put(slabIndex, slab);
+            }
+
+            lastSlab = new LoadedSlab(slabIndex, slab);
+            return slab;
+        }
+    }
+
+    private char[] loadSlab(int slabIndex) throws IOException {
+        int depth = getSlabDepth(slabIndex);
+        int rowLength = depth * sizeX;
+        char[] slab = new char[sizeY * rowLength];
+        byte[] ids = new byte[rowLength];
+        byte[] values = new byte[rowLength];
+        byte[] add = hasAddBlocks ? new byte[(rowLength >> 1) + 1] : null;
+
+        // Each layer of the slab is a contiguous run in each of the arrays
+        for (int y = 0; y < sizeY; y++) {
+            long start = ((long) y * sizeZ + slabIndex * SLAB_DEPTH) * sizeX;
+            data.seek(start);
+            data.readFully(ids);
+            data.seek(volume + start);
+            data.readFully(values);
+            if (add != null) {
+                int addLength = (int) (((start + rowLength - 1) >> 1) - (start >> 1) + 1);
+                data.seek(volume * 2 + (start >> 1));
+                data.readFully(add, 0, addLength);
+            }
+
+            int offset = y * rowLength;
+            for (int i = 0; i < rowLength; i++) {
+                int id = ids[i] & 0xFF;
+                if (add != null) {
+                    long index = start + i;
+                    int bits = add[(int) ((index >> 1) - (start >> 1))];
+                    id |= ((index & 1) == 0 ? bits & 0x0F : (bits & 0xF0) >> 4) << 8;
+                }
+                slab[offset + i] = (char) (id << 4 | (values[i] & 0xF));
+            }
+        }
+
+        return slab;
+    }
+
+    @Nullable
+    @Override
+    public Operation commit() {
+        return null;
+    }
+
+    /**
+     * Close the file and delete it.
+     *
+     * @throws IOException thrown on I/O error
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (slabs) {
+            slabs.clear();
+            lastSlab = null;
+            try {
+                data.close();
+            } finally {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    /**
+     * The slab that was read last.
+     */
+    private static final class LoadedSlab {
+        private final int index;
+        private final char[] blocks;
+
+        private LoadedSlab(int index, char[] blocks) {
+            this.index = index;
+            this.blocks = blocks;
+        }
+    }
+
+    /**
+     * Stores entity data.
+     */
+    private class ClipboardEntity extends StoredEntity {
+        ClipboardEntity(Location location, BaseEntity entity) {
+            super(location, entity);
+        }
+
+        @Override
+        public boolean remove() {
+            return entities.remove(this);
+        }
+
+        @Nullable
+        @Override
+        public <T> T getFacet(Class<? extends T> cls) {
+            return null;
+        }
+    }
+
+}
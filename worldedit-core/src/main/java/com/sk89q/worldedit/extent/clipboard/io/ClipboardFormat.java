@@ -20,8 +20,8 @@
 package com.sk89q.worldedit.extent.clipboard.io;
 
 import com.sk89q.jnbt.NBTConstants;
-import com.sk89q.jnbt.NBTInputStream;
 import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.NBTStreamReader;
 
 import javax.annotation.Nullable;
 import java.io.DataInputStream;
@@ -53,14 +53,14 @@ public enum ClipboardFormat {
     SCHEMATIC("mcedit", "mce", "schematic") {
         @Override
         public ClipboardReader getReader(InputStream inputStream) throws IOException {
-            NBTInputStream nbtStream = new NBTInputStream(new GZIPInputStream(inputStream));
-            return new SchematicReader(nbtStream);
+            NBTStreamReader nbtStream = new NBTStreamReader(new GZIPInputStream(inputStream));
+            return new StreamingSchematicReader(nbtStream);
         }
 
         @Override
         public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
             NBTOutputStream nbtStream = new NBTOutputStream(new GZIPOutputStream(outputStream));
-            return new SchematicWriter(nbtStream);
+            return new StreamingSchematicWriter(nbtStream);
         }
 
         @Override
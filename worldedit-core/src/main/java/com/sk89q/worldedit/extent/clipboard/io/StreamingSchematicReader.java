@@ -0,0 +1,550 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.extent.clipboard.io;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.NBTConstants;
+import com.sk89q.jnbt.NBTStreamReader;
+import com.sk89q.jnbt.NBTUtils;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.FileBackedClipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.world.registry.WorldData;
+import com.sk89q.worldedit.world.storage.NBTConversions;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads schematic files that are compatible with MCEdit and other editors
+ * without building the NBT tree of the whole file.
+ *
+ * <p>The Blocks, Data and AddBlocks arrays are streamed into the storage
+ * of a {@link BlockArrayClipboard} a buffer at a time. Each array only
+ * updates its own part of every block, so the arrays may appear in any
+ * order. If an array appears before the dimensions of the schematic are
+ * known, as in files written by older versions of WorldEdit, it is spooled
+ * to a temporary file and applied once the rest of the file has been
+ * read.</p>
+ *
+ * <p>{@link #readFileBacked(WorldData)} copies the arrays into a temporary
+ * file instead and returns a {@link FileBackedClipboard} over it, so that
+ * very large schematics can be pasted without loading all of their blocks
+ * into memory.</p>
+ */
+public class StreamingSchematicReader implements ClipboardReader {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final NBTStreamReader reader;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int width = -1;
+    private int height = -1;
+    private int length = -1;
+    @Nullable private String materials;
+    @Nullable private Integer originX, originY, originZ;
+    @Nullable private Integer offsetX, offsetY, offsetZ;
+    private boolean hasBlocks;
+    private boolean hasData;
+    private boolean hasTileEntities;
+
+    @Nullable private BlockArrayClipboard clipboard;
+    @Nullable private RandomAccessFile dataFile;
+    private boolean hasAddBlocks;
+    private final List<SpooledArray> spooledArrays = new ArrayList<SpooledArray>();
+    private final List<CompoundTag> pendingTileEntities = new ArrayList<CompoundTag>();
+    private final List<CompoundTag> entities = new ArrayList<CompoundTag>();
+
+    /**
+     * Create a new instance.
+     *
+     * @param reader the NBT reader to read from
+     */
+    public StreamingSchematicReader(NBTStreamReader reader) {
+        checkNotNull(reader);
+        this.reader = reader;
+    }
+
+    @Override
+    public Clipboard read(WorldData data) throws IOException {
+        try {
+            readEntries();
+            return finish();
+        } finally {
+            deleteSpooledArrays();
+        }
+    }
+
+    /**
+     * Read the schematic into a clipboard that keeps its blocks in a
+     * temporary file rather than in memory.
+     *
+     * <p>The temporary file is deleted when the returned clipboard is
+     * closed, or else when the JVM exits.</p>
+     *
+     * @param data the world data space to convert the blocks to
+     * @return the clipboard
+     * @throws IOException thrown on I/O error
+     */
+    public FileBackedClipboard readFileBacked(WorldData data) throws IOException {
+        File file = File.createTempFile("schematic", ".blocks");
+        file.deleteOnExit();
+        boolean success = false;
+        try {
+            dataFile = new RandomAccessFile(file, "rw");
+            readEntries();
+            FileBackedClipboard clipboard = finishFileBacked(file);
+            success = true;
+            return clipboard;
+        } finally {
+            deleteSpooledArrays();
+            if (dataFile != null) {
+                dataFile.close();
+            }
+            if (!success && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    private void readEntries() throws IOException {
+        // Schematic tag
+        if (reader.readRoot() != NBTConstants.TYPE_COMPOUND || !reader.getName().equals("Schematic")) {
+            throw new IOException("Tag 'Schematic' does not exist or is not first");
+        }
+
+        while (reader.nextEntry()) {
+            readEntry(reader.getName(), reader.getType());
+        }
+    }
+
+    private void deleteSpooledArrays() {
+        for (SpooledArray spooled : spooledArrays) {
+            if (!spooled.file.delete()) {
+                spooled.file.deleteOnExit();
+            }
+        }
+    }
+
+    private void readEntry(String name, int type) throws IOException {
+        if (name.equals("Width")) {
+            width = readShort(name, type);
+        } else if (name.equals("Height")) {
+            height = readShort(name, type);
+        } else if (name.equals("Length")) {
+            length = readShort(name, type);
+        } else if (name.equals("Materials")) {
+            requireType(name, type, NBTConstants.TYPE_STRING);
+            materials = reader.readString();
+        } else if (name.equals("WEOriginX")) {
+            originX = readInt(name, type);
+        } else if (name.equals("WEOriginY")) {
+            originY = readInt(name, type);
+        } else if (name.equals("WEOriginZ")) {
+            originZ = readInt(name, type);
+        } else if (name.equals("WEOffsetX")) {
+            offsetX = readInt(name, type);
+        } else if (name.equals("WEOffsetY")) {
+            offsetY = readInt(name, type);
+        } else if (name.equals("WEOffsetZ")) {
+            offsetZ = readInt(name, type);
+        } else if (name.equals("Blocks") || name.equals("Data") || name.equals("AddBlocks")) {
+            requireType(name, type, NBTConstants.TYPE_BYTE_ARRAY);
+            readBlockArray(name);
+        } else if (name.equals("TileEntities")) {
+            requireType(name, type, NBTConstants.TYPE_LIST);
+            hasTileEntities = true;
+            int count = reader.beginList();
+            int elementType = reader.getListType();
+            for (int i = 0; i < count; i++) {
+                Tag tag = reader.readTag(elementType);
+                if (tag instanceof CompoundTag) {
+                    if (dataFile == null && getClipboard() != null) {
+                        applyTileEntity((CompoundTag) tag);
+                    } else {
+                        pendingTileEntities.add((CompoundTag) tag);
+                    }
+                }
+            }
+        } else if (name.equals("Entities") && type == NBTConstants.TYPE_LIST) {
+            int count = reader.beginList();
+            int elementType = reader.getListType();
+            for (int i = 0; i < count; i++) {
+                Tag tag = reader.readTag(elementType);
+                if (tag instanceof CompoundTag) {
+                    entities.add((CompoundTag) tag);
+                }
+            }
+        } else {
+            reader.skip(type);
+        }
+    }
+
+    private int readShort(String name, int type) throws IOException {
+        requireType(name, type, NBTConstants.TYPE_SHORT);
+        return reader.readShort() & 0xFFFF;
+    }
+
+    private int readInt(String name, int type) throws IOException {
+        requireType(name, type, NBTConstants.TYPE_INT);
+        return reader.readInt();
+    }
+
+    private static void requireType(String name, int type, int expected) throws IOException {
+        if (type != expected) {
+            throw new IOException(name + " tag is not of tag type " + NBTUtils.getTypeClass(expected).getName());
+        }
+    }
+
+    private boolean hasDimensions() {
+        return width >= 0 && height >= 0 && length >= 0;
+    }
+
+    /**
+     * Get the clipboard, creating it if the dimensions are known.
+     *
+     * @return the clipboard, or null if the dimensions are not known yet
+     */
+    @Nullable
+    private BlockArrayClipboard getClipboard() {
+        if (clipboard == null && hasDimensions()) {
+            Vector min = getMinimumPoint();
+            clipboard = new BlockArrayClipboard(new CuboidRegion(min, min.add(width, height, length).subtract(Vector.ONE)));
+        }
+        return clipboard;
+    }
+
+    private boolean hasWorldEditOffsets() {
+        return originX != null && originY != null && originZ != null
+                && offsetX != null && offsetY != null && offsetZ != null;
+    }
+
+    private Vector getMinimumPoint() {
+        if (hasWorldEditOffsets()) {
+            return new Vector(originX, originY, originZ);
+        } else {
+            return new Vector(0, 0, 0);
+        }
+    }
+
+    private void readBlockArray(String name) throws IOException {
+        if (name.equals("Blocks")) {
+            hasBlocks = true;
+        } else if (name.equals("Data")) {
+            hasData = true;
+        }
+
+        int arrayLength = reader.beginArray();
+
+        if (hasDimensions()) {
+            storeBlockArray(name, arrayLength, new InputStream() {
+                private final byte[] single = new byte[1];
+
+                @Override
+                public int read() throws IOException {
+                    read(single, 0, 1);
+                    return single[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    reader.readBytes(b, off, len);
+                    return len;
+                }
+            });
+        } else {
+            File file = File.createTempFile("schematic", ".tmp");
+            spooledArrays.add(new SpooledArray(name, file, arrayLength));
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                int remaining = arrayLength;
+                while (remaining > 0) {
+                    int count = Math.min(remaining, buffer.length);
+                    reader.readBytes(buffer, 0, count);
+                    out.write(buffer, 0, count);
+                    remaining -= count;
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Store one of the block arrays in the clipboard, or in the data file
+     * if the clipboard is file-backed.
+     *
+     * @param name the name of the array
+     * @param arrayLength the length of the array
+     * @param in a stream that reads the array
+     * @throws IOException thrown on I/O error
+     */
+    private void storeBlockArray(String name, int arrayLength, InputStream in) throws IOException {
+        int volume = width * height * length;
+        boolean add = name.equals("AddBlocks");
+
+        if (!add && arrayLength != volume) {
+            throw new IOException(name + " tag has a length of " + arrayLength + " but the schematic has " + volume + " blocks");
+        }
+
+        if (dataFile != null) {
+            // The arrays are stored one after the other
+            long position = name.equals("Blocks") ? 0 : name.equals("Data") ? volume : volume * 2L;
+            int limit = add ? Math.min(arrayLength, (volume >> 1) + 1) : arrayLength;
+            hasAddBlocks |= add;
+            dataFile.seek(position);
+            int offset = 0;
+            while (offset < arrayLength) {
+                int count = Math.min(arrayLength - offset, buffer.length);
+                readFully(in, name, count);
+                if (offset < limit) {
+                    dataFile.write(buffer, 0, Math.min(count, limit - offset));
+                }
+                offset += count;
+            }
+        } else {
+            applyBlockArray(getClipboard(), name, arrayLength, in);
+        }
+    }
+
+    private void readFully(InputStream in, String name, int count) throws IOException {
+        int read = 0;
+        while (read < count) {
+            int n = in.read(buffer, read, count - read);
+            if (n < 0) {
+                throw new IOException("Unexpected end of " + name + " tag");
+            }
+            read += n;
+        }
+    }
+
+    /**
+     * Copy one of the block arrays into the clipboard.
+     *
+     * @param clipboard the clipboard
+     * @param name the name of the array
+     * @param arrayLength the length of the array
+     * @param in a stream that reads the array
+     * @throws IOException thrown on I/O error
+     */
+    private void applyBlockArray(BlockArrayClipboard clipboard, String name, int arrayLength, InputStream in) throws IOException {
+        int volume = clipboard.getVolume();
+
+        int offset = 0;
+        while (offset < arrayLength) {
+            int count = Math.min(arrayLength - offset, buffer.length);
+            readFully(in, name, count);
+
+            if (name.equals("Blocks")) {
+                for (int i = 0; i < count; i++) {
+                    int index = offset + i;
+                    int id = (clipboard.getBlockId(index) & 0xF00) | (buffer[i] & 0xFF);
+                    clipboard.setBlock(index, id, clipboard.getBlockData(index));
+                }
+            } else if (name.equals("Data")) {
+                for (int i = 0; i < count; i++) {
+                    int index = offset + i;
+                    clipboard.setBlock(index, clipboard.getBlockId(index), buffer[i] & 0xF);
+                }
+            } else {
+                // The highest 4 bits of two block IDs are packed into each byte
+                for (int i = 0; i < count; i++) {
+                    int index = (offset + i) << 1;
+                    if (index < volume) {
+                        applyAddBits(clipboard, index, buffer[i] & 0x0F);
+                    }
+                    if (index + 1 < volume) {
+                        applyAddBits(clipboard, index + 1, (buffer[i] & 0xF0) >> 4);
+                    }
+                }
+            }
+
+            offset += count;
+        }
+    }
+
+    private static void applyAddBits(BlockArrayClipboard clipboard, int index, int bits) {
+        int id = (bits << 8) | (clipboard.getBlockId(index) & 0xFF);
+        clipboard.setBlock(index, id, clipboard.getBlockData(index));
+    }
+
+    private void applyTileEntity(CompoundTag tag) {
+        int index = getTileEntityIndex(tag);
+        if (index >= 0) {
+            clipboard.setNbtData(index, tag);
+        }
+    }
+
+    /**
+     * Get the index of the block that a tile entity belongs to.
+     *
+     * @param tag the tile entity
+     * @return the index, or -1 if the tile entity is outside the schematic
+     */
+    private int getTileEntityIndex(CompoundTag tag) {
+        int x = getInt(tag, "x");
+        int y = getInt(tag, "y");
+        int z = getInt(tag, "z");
+
+        if (x >= 0 && x < width && y >= 0 && y < height && z >= 0 && z < length) {
+            return (y * length + z) * width + x;
+        } else {
+            return -1;
+        }
+    }
+
+    private static int getInt(CompoundTag tag, String key) {
+        Tag value = tag.getValue().get(key);
+        return value instanceof IntTag ? ((IntTag) value).getValue() : 0;
+    }
+
+    private void validate() throws IOException {
+        // Check
+        if (!hasBlocks) {
+            throw new IOException("Schematic file is missing a 'Blocks' tag");
+        }
+
+        // Check type of Schematic
+        if (materials == null) {
+            throw new IOException("Schematic file is missing a \"Materials\" tag");
+        }
+        if (!materials.equals("Alpha")) {
+            throw new IOException("Schematic file is not an Alpha schematic");
+        }
+
+        if (width < 0 || height < 0 || length < 0) {
+            throw new IOException("Schematic file is missing a \"Width\", \"Height\" or \"Length\" tag");
+        }
+        if (!hasData) {
+            throw new IOException("Schematic file is missing a \"Data\" tag");
+        }
+        if (!hasTileEntities) {
+            throw new IOException("Schematic file is missing a \"TileEntities\" tag");
+        }
+
+        // Store the arrays that were read before the dimensions
+        for (SpooledArray spooled : spooledArrays) {
+            InputStream in = new BufferedInputStream(new FileInputStream(spooled.file));
+            try {
+                storeBlockArray(spooled.name, spooled.length, in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private Vector getOrigin(Vector min) {
+        if (hasWorldEditOffsets()) {
+            return min.subtract(new Vector(offsetX, offsetY, offsetZ));
+        } else {
+            return min;
+        }
+    }
+
+    private Clipboard finish() throws IOException {
+        validate();
+        BlockArrayClipboard clipboard = getClipboard();
+
+        for (CompoundTag tag : pendingTileEntities) {
+            applyTileEntity(tag);
+        }
+
+        // The origin may have been read after the clipboard was created
+        Vector min = getMinimumPoint();
+        if (!clipboard.getMinimumPoint().equals(min)) {
+            clipboard.setMinimumPoint(min);
+        }
+        clipboard.setOrigin(getOrigin(min));
+
+        addEntities(clipboard);
+        return clipboard;
+    }
+
+    private FileBackedClipboard finishFileBacked(File file) throws IOException {
+        validate();
+        int volume = width * height * length;
+        if (hasAddBlocks) {
+            dataFile.setLength(Math.max(dataFile.length(), volume * 2L + (volume >> 1) + 1));
+        }
+        dataFile.close();
+
+        Map<Integer, CompoundTag> nbtData = new HashMap<Integer, CompoundTag>();
+        for (CompoundTag tag : pendingTileEntities) {
+            int index = getTileEntityIndex(tag);
+            if (index >= 0) {
+                nbtData.put(index, tag);
+            }
+        }
+
+        Vector min = getMinimumPoint();
+        Region region = new CuboidRegion(min, min.add(width, height, length).subtract(Vector.ONE));
+        FileBackedClipboard clipboard = new FileBackedClipboard(region, file, hasAddBlocks, nbtData, FileBackedClipboard.DEFAULT_WINDOW_SIZE);
+        clipboard.setOrigin(getOrigin(min));
+
+        addEntities(clipboard);
+        return clipboard;
+    }
+
+    private void addEntities(Clipboard clipboard) {
+        for (CompoundTag compound : entities) {
+            String id = compound.getString("id");
+            Location location = NBTConversions.toLocation(clipboard, compound.getListTag("Pos"), compound.getListTag("Rotation"));
+
+            if (!id.isEmpty()) {
+                BaseEntity state = new BaseEntity(id, compound);
+                clipboard.createEntity(location, state);
+            }
+        }
+    }
+
+    private static final class SpooledArray {
+        private final String name;
+        private final File file;
+        private final int length;
+
+        private SpooledArray(String name, File file, int length) {
+            this.name = name;
+            this.file = file;
+            this.length = length;
+        }
+    }
+
+}
@@ -0,0 +1,315 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.extent.clipboard.io;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.DoubleTag;
+import com.sk89q.jnbt.FloatTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.ShortTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.world.registry.WorldData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes schematic files that are compatible with MCEdit and other editors
+ * without building the NBT tree of the whole file.
+ *
+ * <p>The metadata tags are written first, followed by the Blocks, Data and
+ * AddBlocks arrays, which are produced a buffer at a time directly from the
+ * clipboard. Only tile entities and entities are kept in memory.</p>
+ */
+public class StreamingSchematicWriter implements ClipboardWriter {
+
+    private static final int MAX_SIZE = Short.MAX_VALUE - Short.MIN_VALUE;
+    private static final int BUFFER_SIZE = 65536;
+
+    private final NBTOutputStream outputStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /**
+     * Create a new schematic writer.
+     *
+     * @param outputStream the output stream to write to
+     */
+    public StreamingSchematicWriter(NBTOutputStream outputStream) {
+        checkNotNull(outputStream);
+        this.outputStream = outputStream;
+    }
+
+    @Override
+    public void write(Clipboard clipboard, WorldData data) throws IOException {
+        Region region = clipboard.getRegion();
+        Vector origin = clipboard.getOrigin();
+        Vector min = region.getMinimumPoint();
+        Vector offset = min.subtract(origin);
+        int width = region.getWidth();
+        int height = region.getHeight();
+        int length = region.getLength();
+
+        if (width > MAX_SIZE) {
+            throw new IllegalArgumentException("Width of region too large for a .schematic");
+        }
+        if (height > MAX_SIZE) {
+            throw new IllegalArgumentException("Height of region too large for a .schematic");
+        }
+        if (length > MAX_SIZE) {
+            throw new IllegalArgumentException("Length of region too large for a .schematic");
+        }
+        if ((long) width * height * length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Volume of region too large for a .schematic");
+        }
+
+        BlockSource source;
+        if (clipboard instanceof BlockArrayClipboard && ((BlockArrayClipboard) clipboard).getMinimumPoint().equals(min)) {
+            source = new ArraySource((BlockArrayClipboard) clipboard);
+        } else {
+            source = new ClipboardSource(clipboard, region, width, length);
+        }
+
+        outputStream.beginCompound("Schematic");
+
+        // ====================================================================
+        // Metadata
+        // ====================================================================
+
+        outputStream.writeNamedTag("Width", new ShortTag((short) width));
+        outputStream.writeNamedTag("Length", new ShortTag((short) length));
+        outputStream.writeNamedTag("Height", new ShortTag((short) height));
+        outputStream.writeNamedTag("Materials", new StringTag("Alpha"));
+        outputStream.writeNamedTag("WEOriginX", new IntTag(min.getBlockX()));
+        outputStream.writeNamedTag("WEOriginY", new IntTag(min.getBlockY()));
+        outputStream.writeNamedTag("WEOriginZ", new IntTag(min.getBlockZ()));
+        outputStream.writeNamedTag("WEOffsetX", new IntTag(offset.getBlockX()));
+        outputStream.writeNamedTag("WEOffsetY", new IntTag(offset.getBlockY()));
+        outputStream.writeNamedTag("WEOffsetZ", new IntTag(offset.getBlockZ()));
+
+        // ====================================================================
+        // Block handling
+        // ====================================================================
+
+        int volume = width * height * length;
+        List<Tag> tileEntities = new ArrayList<Tag>();
+        boolean hasAddBlocks = false;
+
+        outputStream.beginByteArray("Blocks", volume);
+        for (int offsetIndex = 0; offsetIndex < volume; offsetIndex += buffer.length) {
+            int count = Math.min(volume - offsetIndex, buffer.length);
+            for (int i = 0; i < count; i++) {
+                int index = offsetIndex + i;
+                int id = source.getBlockId(index);
+                buffer[i] = (byte) id;
+                if (id > 255) {
+                    hasAddBlocks = true;
+                }
+
+                // Store TileEntity data
+                CompoundTag rawTag = source.getNbtData(index);
+                if (rawTag != null) {
+                    Map<String, Tag> values = new HashMap<String, Tag>(rawTag.getValue());
+                    values.put("id", new StringTag(rawTag.getString("id")));
+                    values.put("x", new IntTag(index % width));
+                    values.put("y", new IntTag(index / (width * length)));
+                    values.put("z", new IntTag((index / width) % length));
+                    tileEntities.add(new CompoundTag(values));
+                }
+            }
+            outputStream.writeBytes(buffer, 0, count);
+        }
+
+        outputStream.beginByteArray("Data", volume);
+        for (int offsetIndex = 0; offsetIndex < volume; offsetIndex += buffer.length) {
+            int count = Math.min(volume - offsetIndex, buffer.length);
+            for (int i = 0; i < count; i++) {
+                buffer[i] = (byte) source.getBlockData(offsetIndex + i);
+            }
+            outputStream.writeBytes(buffer, 0, count);
+        }
+
+        // Save 4096 IDs in an AddBlocks section
+        if (hasAddBlocks) {
+            // The highest 4 bits of two block IDs are packed into each byte
+            int addLength = (volume >> 1) + 1;
+            outputStream.beginByteArray("AddBlocks", addLength);
+            for (int offsetIndex = 0; offsetIndex < addLength; offsetIndex += buffer.length) {
+                int count = Math.min(addLength - offsetIndex, buffer.length);
+                for (int i = 0; i < count; i++) {
+                    int index = (offsetIndex + i) << 1;
+                    int low = index < volume ? (source.getBlockId(index) >> 8) & 0xF : 0;
+                    int high = index + 1 < volume ? (source.getBlockId(index + 1) >> 8) & 0xF : 0;
+                    buffer[i] = (byte) (low | high << 4);
+                }
+                outputStream.writeBytes(buffer, 0, count);
+            }
+        }
+
+        outputStream.writeNamedTag("TileEntities", new ListTag(CompoundTag.class, tileEntities));
+
+        // ====================================================================
+        // Entities
+        // ====================================================================
+
+        List<Tag> entities = new ArrayList<Tag>();
+        for (Entity entity : clipboard.getEntities()) {
+            BaseEntity state = entity.getState();
+
+            if (state != null) {
+                Map<String, Tag> values = new HashMap<String, Tag>();
+
+                // Put NBT provided data
+                CompoundTag rawTag = state.getNbtData();
+                if (rawTag != null) {
+                    values.putAll(rawTag.getValue());
+                }
+
+                // Store our location data, overwriting any
+                values.put("id", new StringTag(state.getTypeId()));
+                values.put("Pos", writeVector(entity.getLocation().toVector()));
+                values.put("Rotation", writeRotation(entity.getLocation()));
+
+                entities.add(new CompoundTag(values));
+            }
+        }
+
+        outputStream.writeNamedTag("Entities", new ListTag(CompoundTag.class, entities));
+
+        outputStream.endCompound();
+    }
+
+    private Tag writeVector(Vector vector) {
+        List<DoubleTag> list = new ArrayList<DoubleTag>();
+        list.add(new DoubleTag(vector.getX()));
+        list.add(new DoubleTag(vector.getY()));
+        list.add(new DoubleTag(vector.getZ()));
+        return new ListTag(DoubleTag.class, list);
+    }
+
+    private Tag writeRotation(Location location) {
+        List<FloatTag> list = new ArrayList<FloatTag>();
+        list.add(new FloatTag(location.getYaw()));
+        list.add(new FloatTag(location.getPitch()));
+        return new ListTag(FloatTag.class, list);
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+
+    /**
+     * Provides blocks by their index in the schematic, where blocks are
+     * ordered by Y, then Z, then X.
+     */
+    private interface BlockSource {
+        int getBlockId(int index);
+
+        int getBlockData(int index);
+
+        CompoundTag getNbtData(int index);
+    }
+
+    /**
+     * Reads straight from the block array of a clipboard that uses the same
+     * ordering as the schematic format.
+     */
+    private static final class ArraySource implements BlockSource {
+        private final BlockArrayClipboard clipboard;
+
+        private ArraySource(BlockArrayClipboard clipboard) {
+            this.clipboard = clipboard;
+        }
+
+        @Override
+        public int getBlockId(int index) {
+            return clipboard.getBlockId(index);
+        }
+
+        @Override
+        public int getBlockData(int index) {
+            return clipboard.getBlockData(index);
+        }
+
+        @Override
+        public CompoundTag getNbtData(int index) {
+            return clipboard.getNbtData(index);
+        }
+    }
+
+    /**
+     * Reads from any clipboard, writing air outside of its region.
+     */
+    private static final class ClipboardSource implements BlockSource {
+        private final Clipboard clipboard;
+        private final Region region;
+        private final Vector min;
+        private final int width;
+        private final int length;
+
+        private ClipboardSource(Clipboard clipboard, Region region, int width, int length) {
+            this.clipboard = clipboard;
+            this.region = region;
+            this.min = region.getMinimumPoint();
+            this.width = width;
+            this.length = length;
+        }
+
+        private BaseBlock getBlock(int index) {
+            Vector position = min.add(index % width, index / (width * length), (index / width) % length);
+            if (region.contains(position)) {
+                return clipboard.getLazyBlock(position);
+            } else {
+                return new BaseBlock(0);
+            }
+        }
+
+        @Override
+        public int getBlockId(int index) {
+            return getBlock(index).getType();
+        }
+
+        @Override
+        public int getBlockData(int index) {
+            return getBlock(index).getData();
+        }
+
+        @Override
+        public CompoundTag getNbtData(int index) {
+            return getBlock(index).getNbtData();
+        }
+    }
+
+}
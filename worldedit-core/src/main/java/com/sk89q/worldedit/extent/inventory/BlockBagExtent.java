@@ -19,11 +19,14 @@
 
 package com.sk89q.worldedit.extent.inventory;
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
 
 import javax.annotation.Nullable;
 import java.util.HashMap;
@@ -32,7 +35,7 @@
 /**
  * Applies a {@link BlockBag} to operations.
  */
-public class BlockBagExtent extends AbstractDelegateExtent {
+public class BlockBagExtent extends AbstractDelegateExtent implements SectionOutputExtent {
 
     private Map<Integer, Integer> missingBlocks = new HashMap<Integer, Integer>();
     private BlockBag blockBag;
@@ -80,34 +83,61 @@ public Map<Integer, Integer> popMissing() {
 
     @Override
     public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
+        if (blockBag != null && !exchange(position, block.getType())) {
+            return false;
+        }
+
+        return super.setBlock(position, block);
+    }
+
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
         if (blockBag != null) {
-            BaseBlock lazyBlock = getExtent().getLazyBlock(position);
-            int existing = lazyBlock.getType();
-            final int type = block.getType();
-
-            if (type > 0) {
-                try {
-                    blockBag.fetchPlacedBlock(type, 0);
-                } catch (UnplaceableBlockException e) {
-                    return false;
-                } catch (BlockBagException e) {
-                    if (!missingBlocks.containsKey(type)) {
-                        missingBlocks.put(type, 1);
-                    } else {
-                        missingBlocks.put(type, missingBlocks.get(type) + 1);
-                    }
-                    return false;
+            for (int index = section.nextChanged(0); index >= 0; index = section.nextChanged(index + 1)) {
+                BlockVector position = new BlockVector(section.getX(index), section.getY(index), section.getZ(index));
+                if (!exchange(position, section.getId(index))) {
+                    section.unset(index);
                 }
             }
+        }
+
+        return section.writeTo(getExtent());
+    }
 
-            if (existing > 0) {
-                try {
-                    blockBag.storeDroppedBlock(existing, lazyBlock.getData());
-                } catch (BlockBagException ignored) {
+    /**
+     * Take a block of the given type from the block bag and put the block
+     * that is being replaced into it.
+     *
+     * @param position the position of the block being replaced
+     * @param type the type of the new block
+     * @return false if the new block could not be taken from the bag
+     */
+    private boolean exchange(Vector position, int type) {
+        BaseBlock lazyBlock = getExtent().getLazyBlock(position);
+        int existing = lazyBlock.getType();
+
+        if (type > 0) {
+            try {
+                blockBag.fetchPlacedBlock(type, 0);
+            } catch (UnplaceableBlockException e) {
+                return false;
+            } catch (BlockBagException e) {
+                if (!missingBlocks.containsKey(type)) {
+                    missingBlocks.put(type, 1);
+                } else {
+                    missingBlocks.put(type, missingBlocks.get(type) + 1);
                 }
+                return false;
             }
         }
 
-        return super.setBlock(position, block);
+        if (existing > 0) {
+            try {
+                blockBag.storeDroppedBlock(existing, lazyBlock.getData());
+            } catch (BlockBagException ignored) {
+            }
+        }
+
+        return true;
     }
 }
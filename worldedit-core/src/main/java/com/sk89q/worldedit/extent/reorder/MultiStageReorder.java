@@ -19,7 +19,6 @@
 
 package com.sk89q.worldedit.extent.reorder;
 
-import com.google.common.collect.Iterators;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.PlayerDirection;
 import com.sk89q.worldedit.Vector;
@@ -27,24 +26,37 @@
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
 import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
-import com.sk89q.worldedit.function.operation.BlockMapEntryPlacer;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.OperationQueue;
 import com.sk89q.worldedit.function.operation.RunContext;
-import com.sk89q.worldedit.util.collection.TupleArrayList;
+import com.sk89q.worldedit.math.BlockPositions;
+import com.sk89q.worldedit.util.collection.LongIntHashMap;
 
-import java.util.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 
 /**
  * Re-orders blocks into several stages.
+ *
+ * <p>Blocks in each stage are placed grouped by chunk. Blocks in the last
+ * stage are placed in an order where every block comes after the blocks
+ * of that stage that it is attached to.</p>
  */
-public class MultiStageReorder extends AbstractDelegateExtent implements ReorderingExtent {
+public class MultiStageReorder extends AbstractDelegateExtent implements ReorderingExtent, SectionOutputExtent {
+
+    private static final int MAX_DEPENDENCIES = 3;
 
-    private TupleArrayList<BlockVector, BaseBlock> stage1 = new TupleArrayList<BlockVector, BaseBlock>();
-    private TupleArrayList<BlockVector, BaseBlock> stage2 = new TupleArrayList<BlockVector, BaseBlock>();
-    private TupleArrayList<BlockVector, BaseBlock> stage3 = new TupleArrayList<BlockVector, BaseBlock>();
+    private StagedBlocks stage1 = new StagedBlocks();
+    private StagedBlocks stage2 = new StagedBlocks();
+    private StagedBlocks stage3 = new StagedBlocks();
+    private Deque<SectionBuffer> stage1Sections = new ArrayDeque<SectionBuffer>();
     private boolean enabled;
 
     /**
@@ -95,121 +107,188 @@ public boolean setBlock(Vector location, BaseBlock block) throws WorldEditExcept
 
         if (BlockType.shouldPlaceLast(block.getType())) {
             // Place torches, etc. last
-            stage2.put(location.toBlockVector(), block);
+            stage2.add(location.getBlockX(), location.getBlockY(), location.getBlockZ(), block);
             return !(lazyBlock.getType() == block.getType() && lazyBlock.getData() == block.getData());
         } else if (BlockType.shouldPlaceFinal(block.getType())) {
             // Place signs, reed, etc even later
-            stage3.put(location.toBlockVector(), block);
+            stage3.add(location.getBlockX(), location.getBlockY(), location.getBlockZ(), block);
             return !(lazyBlock.getType() == block.getType() && lazyBlock.getData() == block.getData());
         } else if (BlockType.shouldPlaceLast(lazyBlock.getType())) {
             // Destroy torches, etc. first
-            super.setBlock(location, new BaseBlock(BlockID.AIR));
+            super.setBlock(location, ImmutableBlock.of(BlockID.AIR));
             return super.setBlock(location, block);
         } else {
-            stage1.put(location.toBlockVector(), block);
+            stage1.add(location.getBlockX(), location.getBlockY(), location.getBlockZ(), block);
             return !(lazyBlock.getType() == block.getType() && lazyBlock.getData() == block.getData());
         }
     }
 
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        if (!enabled) {
+            return section.writeTo(getExtent());
+        }
+
+        if (!stage1.isEmpty()) {
+            // Keep the blocks of the first stage in the order they were set
+            return section.writeBlocks(this);
+        }
+
+        int affected = 0;
+        for (int index = section.nextChanged(0); index >= 0; index = section.nextChanged(index + 1)) {
+            int type = section.getId(index);
+            int data = section.getData(index);
+            int x = section.getX(index);
+            int y = section.getY(index);
+            int z = section.getZ(index);
+            int existingType = getBlockId(x, y, z);
+            boolean changed = !(existingType == type && getBlockData(x, y, z) == data);
+
+            if (BlockType.shouldPlaceLast(type)) {
+                stage2.add(x, y, z, type, data);
+                section.unset(index);
+            } else if (BlockType.shouldPlaceFinal(type)) {
+                stage3.add(x, y, z, type, data);
+                section.unset(index);
+            } else if (BlockType.shouldPlaceLast(existingType)) {
+                BlockVector location = new BlockVector(x, y, z);
+                super.setBlock(location, ImmutableBlock.of(BlockID.AIR));
+                changed = super.setBlock(location, ImmutableBlock.of(type, data));
+                section.unset(index);
+            }
+
+            if (changed) {
+                affected++;
+            }
+        }
+
+        if (!section.isEmpty()) {
+            stage1Sections.add(new SectionBuffer(section));
+        }
+
+        return affected;
+    }
+
     @Override
     public Operation commitBefore() {
         return new OperationQueue(
-                new BlockMapEntryPlacer(
-                        getExtent(),
-                        Iterators.concat(stage1.iterator(), stage2.iterator())),
+                new SectionCommitter(),
+                new StagePlacer(stage1),
+                new StagePlacer(stage2),
                 new Stage3Committer());
     }
 
-    private class Stage3Committer implements Operation {
+    private void clearStages() {
+        stage1.clear();
+        stage2.clear();
+        stage3.clear();
+        stage1Sections.clear();
+    }
+
+    private class SectionCommitter implements Operation {
 
         @Override
         public Operation resume(RunContext run) throws WorldEditException {
             Extent extent = getExtent();
 
-            final Set<BlockVector> blocks = new HashSet<BlockVector>();
-            final Map<BlockVector, BaseBlock> blockTypes = new HashMap<BlockVector, BaseBlock>();
-            for (Map.Entry<BlockVector, BaseBlock> entry : stage3) {
-                final BlockVector pt = entry.getKey();
-                blocks.add(pt);
-                blockTypes.put(pt, entry.getValue());
-            }
+            while (!stage1Sections.isEmpty()) {
+                stage1Sections.poll().writeTo(extent);
 
-            while (!blocks.isEmpty()) {
-                BlockVector current = blocks.iterator().next();
-                if (!blocks.contains(current)) {
-                    continue;
+                if (!run.shouldContinue()) {
+                    return this;
                 }
+            }
 
-                final Deque<BlockVector> walked = new LinkedList<BlockVector>();
-
-                while (true) {
-                    walked.addFirst(current);
-
-                    assert (blockTypes.containsKey(current));
-
-                    final BaseBlock baseBlock = blockTypes.get(current);
-
-                    final int type = baseBlock.getType();
-                    final int data = baseBlock.getData();
-
-                    switch (type) {
-                        case BlockID.WOODEN_DOOR:
-                        case BlockID.ACACIA_DOOR:
-                        case BlockID.BIRCH_DOOR:
-                        case BlockID.JUNGLE_DOOR:
-                        case BlockID.DARK_OAK_DOOR:
-                        case BlockID.SPRUCE_DOOR:
-                        case BlockID.IRON_DOOR:
-                            if ((data & 0x8) == 0) {
-                                // Deal with lower door halves being attached to the floor AND the upper half
-                                BlockVector upperBlock = current.add(0, 1, 0).toBlockVector();
-                                if (blocks.contains(upperBlock) && !walked.contains(upperBlock)) {
-                                    walked.addFirst(upperBlock);
-                                }
-                            }
-                            break;
-
-                        case BlockID.MINECART_TRACKS:
-                        case BlockID.POWERED_RAIL:
-                        case BlockID.DETECTOR_RAIL:
-                        case BlockID.ACTIVATOR_RAIL:
-                            // Here, rails are hardcoded to be attached to the block below them.
-                            // They're also attached to the block they're ascending towards via BlockType.getAttachment.
-                            BlockVector lowerBlock = current.add(0, -1, 0).toBlockVector();
-                            if (blocks.contains(lowerBlock) && !walked.contains(lowerBlock)) {
-                                walked.addFirst(lowerBlock);
-                            }
-                            break;
-                    }
-
-                    final PlayerDirection attachment = BlockType.getAttachment(type, data);
-                    if (attachment == null) {
-                        // Block is not attached to anything => we can place it
-                        break;
-                    }
-
-                    current = current.add(attachment.vector()).toBlockVector();
-
-                    if (!blocks.contains(current)) {
-                        // We ran outside the remaining set => assume we can place blocks on this
-                        break;
-                    }
-
-                    if (walked.contains(current)) {
-                        // Cycle detected => This will most likely go wrong, but there's nothing we can do about it.
-                        break;
-                    }
+            return null;
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void addStatusMessages(List<String> messages) {
+        }
+
+    }
+
+    /**
+     * Places the blocks of a stage grouped by chunk.
+     */
+    private class StagePlacer implements Operation {
+
+        private final StagedBlocks blocks;
+        private int[] order;
+        private int next;
+
+        private StagePlacer(StagedBlocks blocks) {
+            this.blocks = blocks;
+        }
+
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            if (order == null) {
+                order = blocks.getChunkOrder();
+            }
+
+            Extent extent = getExtent();
+
+            while (next < order.length) {
+                int index = order[next++];
+                long position = blocks.getPosition(index);
+                extent.setBlock(BlockPositions.toBlockVector(position), blocks.getBlock(index));
+
+                if (next < order.length && !run.shouldContinue()) {
+                    return this;
                 }
+            }
+
+            return null;
+        }
 
-                for (BlockVector pt : walked) {
-                    extent.setBlock(pt, blockTypes.get(pt));
-                    blocks.remove(pt);
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void addStatusMessages(List<String> messages) {
+        }
+
+    }
+
+    /**
+     * Places the blocks of the last stage so that every block is placed
+     * after the blocks that it is attached to.
+     *
+     * <p>Each block depends on at most three others, so the order is found
+     * with a topological sort in time linear in the number of blocks.
+     * Blocks that are attached to each other in a cycle are placed in
+     * chunk order once nothing else can be placed.</p>
+     */
+    private class Stage3Committer implements Operation {
+
+        private int[] order;
+        private int next;
+
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            if (order == null) {
+                order = sortStage3();
+            }
+
+            Extent extent = getExtent();
+
+            while (next < order.length) {
+                int index = order[next++];
+                long position = stage3.getPosition(index);
+                extent.setBlock(BlockPositions.toBlockVector(position), stage3.getBlock(index));
+
+                if (next < order.length && !run.shouldContinue()) {
+                    return this;
                 }
             }
 
-            stage1.clear();
-            stage2.clear();
-            stage3.clear();
+            clearStages();
 
             return null;
         }
@@ -224,4 +303,166 @@ public void addStatusMessages(List<String> messages) {
 
     }
 
+    /**
+     * Sort the blocks of the last stage so that blocks are placed after the
+     * blocks that they are attached to.
+     *
+     * <p>Only the last block set at a position is included.</p>
+     *
+     * @return the indices of the blocks to place, in order
+     */
+    private int[] sortStage3() {
+        int size = stage3.size();
+        int[] chunkOrder = stage3.getChunkOrder();
+
+        // The last block set at a position wins
+        LongIntHashMap indices = new LongIntHashMap(size, -1);
+        for (int i = 0; i < size; i++) {
+            indices.put(stage3.getPosition(i), i);
+        }
+
+        int[] dependencies = new int[size * MAX_DEPENDENCIES];
+        int[] dependencyCount = new int[size];
+        int[] dependentCount = new int[size];
+        int count = 0;
+
+        for (int i = 0; i < size; i++) {
+            long position = stage3.getPosition(i);
+            if (indices.get(position) != i) {
+                dependencyCount[i] = -1; // Replaced by a later block
+                continue;
+            }
+
+            count++;
+
+            int found = findDependencies(indices, i, position, dependencies, i * MAX_DEPENDENCIES);
+            dependencyCount[i] = found;
+            for (int j = 0; j < found; j++) {
+                dependentCount[dependencies[i * MAX_DEPENDENCIES + j]]++;
+            }
+        }
+
+        // Store the edges from each block to the blocks that depend on it
+        int[] dependentStart = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            dependentStart[i + 1] = dependentStart[i] + dependentCount[i];
+        }
+        int[] dependents = new int[dependentStart[size]];
+        int[] dependentEnd = Arrays.copyOf(dependentStart, size);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < dependencyCount[i]; j++) {
+                int dependency = dependencies[i * MAX_DEPENDENCIES + j];
+                dependents[dependentEnd[dependency]++] = i;
+            }
+        }
+
+        // Blocks are queued once they have no unplaced dependencies left,
+        // and their dependency count is then zero or negative
+        int[] order = new int[count];
+        int head = 0;
+        int tail = 0;
+
+        for (int index : chunkOrder) {
+            if (dependencyCount[index] == 0) {
+                order[tail++] = index;
+            }
+        }
+
+        int nextUnplaced = 0;
+
+        while (tail < count || head < tail) {
+            if (head == tail) {
+                // Cycle detected => This will most likely go wrong, but there's nothing we can do about it.
+                while (dependencyCount[chunkOrder[nextUnplaced]] <= 0) {
+                    nextUnplaced++;
+                }
+                int index = chunkOrder[nextUnplaced];
+                dependencyCount[index] = -1;
+                order[tail++] = index;
+            }
+
+            int index = order[head++];
+            for (int j = dependentStart[index]; j < dependentStart[index + 1]; j++) {
+                int dependent = dependents[j];
+                if (--dependencyCount[dependent] == 0) {
+                    order[tail++] = dependent;
+                }
+            }
+        }
+
+        return order;
+    }
+
+    /**
+     * Find the blocks of the last stage that the given block must be placed
+     * after.
+     *
+     * @param indices a map of positions to the index of the block at that position
+     * @param index the index of the block
+     * @param position the packed position of the block
+     * @param dependencies the array to store the indices of dependencies in
+     * @param offset the offset into the array to store them at
+     * @return the number of dependencies found
+     */
+    private int findDependencies(LongIntHashMap indices, int index, long position, int[] dependencies, int offset) {
+        int type = stage3.getId(index);
+        int data = stage3.getData(index);
+        int x = BlockPositions.unpackX(position);
+        int y = BlockPositions.unpackY(position);
+        int z = BlockPositions.unpackZ(position);
+        int found = 0;
+        boolean attached = true;
+
+        switch (type) {
+            case BlockID.WOODEN_DOOR:
+            case BlockID.ACACIA_DOOR:
+            case BlockID.BIRCH_DOOR:
+            case BlockID.JUNGLE_DOOR:
+            case BlockID.DARK_OAK_DOOR:
+            case BlockID.SPRUCE_DOOR:
+            case BlockID.IRON_DOOR:
+                if ((data & 0x8) == 0) {
+                    // Deal with lower door halves being attached to the floor AND the upper half
+                    found = addDependency(indices.get(BlockPositions.pack(x, y + 1, z)), dependencies, offset, found);
+                } else {
+                    // The upper half is placed before the lower half that it rests on
+                    attached = false;
+                }
+                break;
+
+            case BlockID.MINECART_TRACKS:
+            case BlockID.POWERED_RAIL:
+            case BlockID.DETECTOR_RAIL:
+            case BlockID.ACTIVATOR_RAIL:
+                // Here, rails are hardcoded to be attached to the block below them.
+                // They're also attached to the block they're ascending towards via BlockType.getAttachment.
+                found = addDependency(indices.get(BlockPositions.pack(x, y - 1, z)), dependencies, offset, found);
+                break;
+        }
+
+        PlayerDirection attachment = attached ? BlockType.getAttachment(type, data) : null;
+        if (attachment != null) {
+            Vector direction = attachment.vector();
+            long target = BlockPositions.pack(
+                    x + direction.getBlockX(), y + direction.getBlockY(), z + direction.getBlockZ());
+            found = addDependency(indices.get(target), dependencies, offset, found);
+        }
+
+        return found;
+    }
+
+    private static int addDependency(int dependency, int[] dependencies, int offset, int found) {
+        if (dependency < 0) {
+            // Not in the last stage => assume we can place blocks on this
+            return found;
+        }
+        for (int i = 0; i < found; i++) {
+            if (dependencies[offset + i] == dependency) {
+                return found;
+            }
+        }
+        dependencies[offset + found] = dependency;
+        return found + 1;
+    }
+
 }
@@ -0,0 +1,183 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.reorder;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
+import com.sk89q.worldedit.math.BlockPositions;
+import com.sk89q.worldedit.util.collection.IntArrayList;
+import com.sk89q.worldedit.util.collection.LongArrayList;
+import com.sk89q.worldedit.util.collection.LongIntHashMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A list of blocks buffered by {@link MultiStageReorder}, stored as packed
+ * positions and packed block IDs and data values.
+ *
+ * <p>Only the few blocks that have NBT data are kept as objects.</p>
+ */
+final class StagedBlocks {
+
+    private final LongArrayList positions = new LongArrayList();
+    private final IntArrayList blocks = new IntArrayList();
+    private final Map<Integer, CompoundTag> nbt = new HashMap<Integer, CompoundTag>();
+
+    /**
+     * Add a block.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @param block the block
+     */
+    void add(int x, int y, int z, BaseBlock block) {
+        checkNotNull(block);
+        CompoundTag tag = block.getNbtData();
+        if (tag != null) {
+            nbt.put(blocks.size(), tag);
+        }
+        add(x, y, z, block.getId(), block.getData());
+    }
+
+    /**
+     * Add a block without NBT data.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @param id the type ID
+     * @param data the data value
+     */
+    void add(int x, int y, int z, int id, int data) {
+        positions.add(BlockPositions.pack(x, y, z));
+        blocks.add((id << 16) | (data & 0xFFFF));
+    }
+
+    long getPosition(int index) {
+        return positions.get(index);
+    }
+
+    int getId(int index) {
+        return blocks.get(index) >>> 16;
+    }
+
+    int getData(int index) {
+        return (short) blocks.get(index);
+    }
+
+    /**
+     * Get the block at the given index.
+     *
+     * @param index the index
+     * @return the block, which is shared unless it has NBT data
+     */
+    BaseBlock getBlock(int index) {
+        int id = getId(index);
+        int data = getData(index);
+        CompoundTag tag = nbt.isEmpty() ? null : nbt.get(index);
+        if (tag != null || data < -1 || data > BaseBlock.MAX_DATA) {
+            return new BaseBlock(id, data, tag);
+        }
+        return ImmutableBlock.of(id, data);
+    }
+
+    int size() {
+        return blocks.size();
+    }
+
+    boolean isEmpty() {
+        return blocks.isEmpty();
+    }
+
+    void clear() {
+        positions.clear();
+        blocks.clear();
+        nbt.clear();
+    }
+
+    /**
+     * Get the indices of all blocks grouped by chunk.
+     *
+     * <p>Chunks appear in the order that their first block was added, and
+     * the blocks within a chunk keep the order that they were added in, so
+     * a block that was set later at the same position still comes later.</p>
+     *
+     * <p>The blocks are sorted with a counting sort over the chunks, and are
+     * not moved at all if they were already added one chunk after another.</p>
+     *
+     * @return an array of indices
+     */
+    int[] getChunkOrder() {
+        int size = size();
+        LongIntHashMap chunks = new LongIntHashMap(16, -1);
+        int[] ordinals = new int[size];
+        boolean grouped = true;
+        long lastChunk = 0;
+        int lastOrdinal = -1;
+
+        for (int i = 0; i < size; i++) {
+            long position = positions.get(i);
+            long chunk = ((long) (BlockPositions.unpackX(position) >> 4) << 32)
+                    | ((BlockPositions.unpackZ(position) >> 4) & 0xFFFFFFFFL);
+            int ordinal;
+            if (lastOrdinal >= 0 && chunk == lastChunk) {
+                ordinal = lastOrdinal;
+            } else {
+                ordinal = chunks.get(chunk);
+                if (ordinal < 0) {
+                    ordinal = chunks.size();
+                    chunks.put(chunk, ordinal);
+                } else {
+                    // A chunk that was left earlier is entered again
+                    grouped = false;
+                }
+                lastChunk = chunk;
+                lastOrdinal = ordinal;
+            }
+            ordinals[i] = ordinal;
+        }
+
+        int[] order = new int[size];
+        if (grouped) {
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+
+        int[] starts = new int[chunks.size() + 1];
+        for (int i = 0; i < size; i++) {
+            starts[ordinals[i] + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        for (int i = 0; i < size; i++) {
+            order[starts[ordinals[i]]++] = i;
+        }
+        return order;
+    }
+
+}
@@ -87,7 +87,19 @@ public BaseBlock getBlock(Vector position) {
 
     @Override
     public BaseBlock getLazyBlock(Vector position) {
-        return transformBlock(super.getLazyBlock(position), false);
+        BaseBlock block = super.getLazyBlock(position);
+        if (transform.isIdentity() || blockRegistry.getStates(block) == null) {
+            // Nothing to change, so the block can be passed on as it is
+            return block;
+        }
+        // Lazy blocks may be shared by the underlying extent, so never modify them
+        return transformBlock(new BaseBlock(block), false);
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        // Transforming only changes the data value, so the type ID is passed through
+        return getLazyBlock(new Vector(x, y, z)).getData();
     }
 
     @Override
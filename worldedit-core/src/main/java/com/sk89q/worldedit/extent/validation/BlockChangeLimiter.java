@@ -25,6 +25,8 @@
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -32,7 +34,7 @@
  * Limits the number of blocks that can be changed before a
  * {@link MaxChangedBlocksException} is thrown.
  */
-public class BlockChangeLimiter extends AbstractDelegateExtent {
+public class BlockChangeLimiter extends AbstractDelegateExtent implements SectionOutputExtent {
 
     private int limit;
     private int count = 0;
@@ -86,4 +88,17 @@ public boolean setBlock(Vector location, BaseBlock block) throws WorldEditExcept
         }
         return super.setBlock(location, block);
     }
+
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        if (limit >= 0) {
+            int changes = section.getChangeCount();
+            if (count + changes > limit) {
+                // Set the blocks that are still allowed before throwing
+                return section.writeBlocks(this);
+            }
+            count += changes;
+        }
+        return section.writeTo(getExtent());
+    }
 }
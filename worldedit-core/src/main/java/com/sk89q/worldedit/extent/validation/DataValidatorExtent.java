@@ -24,6 +24,8 @@
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
 import com.sk89q.worldedit.world.World;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -31,7 +33,7 @@
 /**
  * Validates set data to prevent creating invalid blocks and such.
  */
-public class DataValidatorExtent extends AbstractDelegateExtent {
+public class DataValidatorExtent extends AbstractDelegateExtent implements SectionOutputExtent {
 
     private final World world;
 
@@ -67,6 +69,25 @@ public boolean setBlock(Vector location, BaseBlock block) throws WorldEditExcept
         return super.setBlock(location, block);
     }
 
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        int maxY = world.getMaxY();
+        int lastType = -1;
+        boolean lastValid = false;
+        for (int index = section.nextChanged(0); index >= 0; index = section.nextChanged(index + 1)) {
+            int y = section.getY(index);
+            int type = section.getId(index);
+            if (type != lastType) {
+                lastType = type;
+                lastValid = world.isValidBlockType(type);
+            }
+            if (y < 0 || y > maxY || !lastValid) {
+                section.unset(index);
+            }
+        }
+        return section.writeTo(getExtent());
+    }
+
     private static class SevereValidationException extends WorldEditException {
         private SevereValidationException(String message) {
             super(message);
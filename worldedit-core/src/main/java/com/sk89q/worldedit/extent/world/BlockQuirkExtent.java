@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.extent.world;
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
@@ -26,6 +27,8 @@
 import com.sk89q.worldedit.blocks.BlockType;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
 import com.sk89q.worldedit.world.World;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -34,7 +37,7 @@
  * Handles various quirks when setting blocks, such as ice turning
  * into water or containers dropping their contents.
  */
-public class BlockQuirkExtent extends AbstractDelegateExtent {
+public class BlockQuirkExtent extends AbstractDelegateExtent implements SectionOutputExtent {
 
     private final World world;
 
@@ -52,6 +55,25 @@ public BlockQuirkExtent(Extent extent, World world) {
 
     @Override
     public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
+        prepare(position);
+        return super.setBlock(position, block);
+    }
+
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        for (int index = section.nextChanged(0); index >= 0; index = section.nextChanged(index + 1)) {
+            prepare(new BlockVector(section.getX(index), section.getY(index), section.getZ(index)));
+        }
+        return section.writeTo(getExtent());
+    }
+
+    /**
+     * Deal with the quirks of the block that is about to be replaced.
+     *
+     * @param position the position of the block
+     * @throws WorldEditException thrown on an error
+     */
+    private void prepare(Vector position) throws WorldEditException {
         BaseBlock lazyBlock = getExtent().getLazyBlock(position);
         int existing = lazyBlock.getType();
 
@@ -60,8 +82,6 @@ public boolean setBlock(Vector position, BaseBlock block) throws WorldEditExcept
         } else if (existing == BlockID.ICE) {
             world.setBlock(position, new BaseBlock(BlockID.AIR)); // Ice turns until water so this has to be done first
         }
-
-        return super.setBlock(position, block);
     }
 
 }
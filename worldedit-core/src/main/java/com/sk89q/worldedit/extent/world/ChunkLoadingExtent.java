@@ -19,22 +19,38 @@
 
 package com.sk89q.worldedit.extent.world;
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.world.World;
 
+import javax.annotation.Nullable;
+import java.util.List;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Automatically loads chunks when blocks are accessed.
+ *
+ * <p>A {@link ChunkPreloader} can be set to have the chunks ahead of an
+ * edit loaded before they are needed. Its chunks are released when the
+ * extent is committed.</p>
  */
-public class ChunkLoadingExtent extends AbstractDelegateExtent {
+public class ChunkLoadingExtent extends AbstractDelegateExtent implements SectionOutputExtent {
 
     private final World world;
     private boolean enabled;
+    @Nullable
+    private ChunkPreloader preloader;
+    private int lastChunkX;
+    private int lastChunkZ;
 
     /**
      * Create a new instance.
@@ -60,9 +76,69 @@ public ChunkLoadingExtent(Extent extent, World world) {
         this(extent, world, true);
     }
 
+    /**
+     * Set the preloader that is told about the chunks that blocks are set
+     * in, releasing the chunks of the previous preloader.
+     *
+     * @param preloader the preloader, or null to not preload chunks
+     */
+    public void setPreloader(@Nullable ChunkPreloader preloader) {
+        if (this.preloader != null) {
+            this.preloader.release();
+        }
+        this.preloader = preloader;
+        if (preloader != null) {
+            // Make sure that the first chunk is passed on
+            lastChunkX = Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Pass the chunk of a block that is about to be set on to the
+     * preloader, if the chunk differs from the last one.
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     */
+    private void advance(int chunkX, int chunkZ) {
+        if (preloader != null && (chunkX != lastChunkX || chunkZ != lastChunkZ)) {
+            lastChunkX = chunkX;
+            lastChunkZ = chunkZ;
+            preloader.advance(chunkX, chunkZ);
+        }
+    }
+
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+        advance(location.getBlockX() >> 4, location.getBlockZ() >> 4);
         world.checkLoadedChunk(location);
         return super.setBlock(location, block);
     }
+
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        advance(section.getSectionX(), section.getSectionZ());
+        world.checkLoadedChunk(new BlockVector(section.getSectionX() << 4, section.getSectionY() << 4, section.getSectionZ() << 4));
+        return section.writeTo(getExtent());
+    }
+
+    @Override
+    protected Operation commitBefore() {
+        return new Operation() {
+            @Override
+            public Operation resume(RunContext run) throws WorldEditException {
+                setPreloader(null);
+                return null;
+            }
+
+            @Override
+            public void cancel() {
+                setPreloader(null);
+            }
+
+            @Override
+            public void addStatusMessages(List<String> messages) {
+            }
+        };
+    }
 }
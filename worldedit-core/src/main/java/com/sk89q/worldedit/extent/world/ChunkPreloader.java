@@ -0,0 +1,132 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.world;
+
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.iterator.ChunkSpanCursor;
+import com.sk89q.worldedit.world.World;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Asks a world to load the chunks of a region a few chunks ahead of an
+ * edit that works through the region one chunk at a time.
+ *
+ * <p>Chunks are taken in the order of {@link Region#chunkIterator()},
+ * skipping chunk columns that the region does not touch. Every time the
+ * edit reaches a chunk, the next chunks up to the preload distance are
+ * passed to {@link World#preloadChunk(BlockVector2D)}, and the chunks that
+ * the edit has left behind are released with
+ * {@link World#releaseChunk(BlockVector2D)}.</p>
+ */
+public class ChunkPreloader {
+
+    private final World world;
+    private final ChunkSpanCursor cursor;
+    private final int distance;
+    private final Deque<BlockVector2D> pinned = new ArrayDeque<BlockVector2D>();
+    private boolean started;
+    private boolean exhausted;
+
+    /**
+     * Create a new instance.
+     *
+     * @param world the world
+     * @param region the region that the edit works through
+     * @param distance the number of chunks to load ahead of the edit
+     */
+    public ChunkPreloader(World world, Region region, int distance) {
+        checkNotNull(world);
+        checkNotNull(region);
+        checkArgument(distance > 0, "distance > 0");
+        this.world = world;
+        this.cursor = new ChunkSpanCursor(region);
+        this.distance = distance;
+    }
+
+    /**
+     * Get the number of chunks that are preloaded and not yet released.
+     *
+     * @return the number of chunks
+     */
+    public int getPinnedCount() {
+        return pinned.size();
+    }
+
+    /**
+     * Note that the edit has reached the given chunk.
+     *
+     * <p>Chunks that are out of order, such as those changed again when
+     * a reordered edit is committed, are ignored.</p>
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     */
+    public void advance(int chunkX, int chunkZ) {
+        if (!started) {
+            fill();
+        }
+
+        BlockVector2D current = new BlockVector2D(chunkX, chunkZ);
+        if (!pinned.contains(current)) {
+            return;
+        }
+
+        while (!pinned.peekFirst().equals(current)) {
+            world.releaseChunk(pinned.pollFirst());
+        }
+        fill();
+    }
+
+    /**
+     * Preload chunks until there are as many ahead of the edit as the
+     * preload distance allows, counting the chunk the edit is in.
+     */
+    private void fill() {
+        while (!exhausted && pinned.size() <= distance) {
+            boolean found = started ? cursor.nextChunk() : cursor.next();
+            started = true;
+            if (!found) {
+                exhausted = true;
+                return;
+            }
+            BlockVector2D chunk = new BlockVector2D(cursor.getChunkX(), cursor.getChunkZ());
+            world.preloadChunk(chunk);
+            pinned.addLast(chunk);
+        }
+    }
+
+    /**
+     * Release all chunks that are still preloaded, and stop preloading.
+     */
+    public void release() {
+        exhausted = true;
+        BlockVector2D chunk;
+        while ((chunk = pinned.pollFirst()) != null) {
+            world.releaseChunk(chunk);
+        }
+    }
+
+}
@@ -24,24 +24,43 @@
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.world.RelightQueue;
 import com.sk89q.worldedit.world.World;
 
+import javax.annotation.Nullable;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Implements "fast mode" which may skip physics, lighting, etc.
+ *
+ * <p>Lighting can also be deferred independently of fast mode by setting
+ * a {@link RelightQueue}. Blocks are then set without notifying neighbors
+ * or updating light, and the sections that were changed are handed to the
+ * queue when the edit is committed, so that they are relit and sent to
+ * clients in batches over the following ticks rather than once for every
+ * block. Neighbor notifications are skipped as well because worlds only
+ * take a single flag for both.</p>
  */
-public class FastModeExtent extends AbstractDelegateExtent {
+public class FastModeExtent extends AbstractDelegateExtent implements SectionOutputExtent {
 
     private final World world;
     private final Set<BlockVector2D> dirtyChunks = new HashSet<BlockVector2D>();
+    private final Map<BlockVector2D, Integer> dirtySections = new LinkedHashMap<BlockVector2D, Integer>();
     private boolean enabled = true;
+    @Nullable
+    private RelightQueue relightQueue;
+    @Nullable
+    private BlockVector2D lastChunk;
 
     /**
      * Create a new instance with fast mode enabled.
@@ -83,9 +102,61 @@ public void setEnabled(boolean enabled) {
         this.enabled = enabled;
     }
 
+    /**
+     * Get the queue that lighting is deferred to.
+     *
+     * @return the relight queue, or null if lighting is not deferred
+     */
+    @Nullable
+    public RelightQueue getRelightQueue() {
+        return relightQueue;
+    }
+
+    /**
+     * Set the queue that lighting is deferred to.
+     *
+     * <p>The queue is ignored if the world cannot relight sections (see
+     * {@link World#canRelightSections()}), and blocks are lit as they are
+     * changed instead.</p>
+     *
+     * @param relightQueue the relight queue, or null to not defer lighting
+     */
+    public void setRelightQueue(@Nullable RelightQueue relightQueue) {
+        this.relightQueue = relightQueue != null && world.canRelightSections() ? relightQueue : null;
+    }
+
+    /**
+     * Remember that a section was changed, to relight it later.
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param sectionY the index of the section in the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     */
+    private void markDirty(int chunkX, int sectionY, int chunkZ) {
+        if (sectionY < 0 || sectionY >= Integer.SIZE) {
+            return;
+        }
+
+        // Edits tend to change many blocks of the same chunk in a row
+        if (lastChunk == null || lastChunk.getBlockX() != chunkX || lastChunk.getBlockZ() != chunkZ) {
+            lastChunk = new BlockVector2D(chunkX, chunkZ);
+        }
+
+        int bit = 1 << sectionY;
+        Integer mask = dirtySections.get(lastChunk);
+        if (mask == null) {
+            dirtySections.put(lastChunk, bit);
+        } else if ((mask & bit) == 0) {
+            dirtySections.put(lastChunk, mask | bit);
+        }
+    }
+
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
-        if (enabled) {
+        if (relightQueue != null) {
+            markDirty(location.getBlockX() >> 4, location.getBlockY() >> 4, location.getBlockZ() >> 4);
+            return world.setBlock(location, block, false);
+        } else if (enabled) {
             dirtyChunks.add(new BlockVector2D(location.getBlockX() >> 4, location.getBlockZ() >> 4));
             return world.setBlock(location, block, false);
         } else {
@@ -93,6 +164,19 @@ public boolean setBlock(Vector location, BaseBlock block) throws WorldEditExcept
         }
     }
 
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        if (relightQueue != null) {
+            markDirty(section.getSectionX(), section.getSectionY(), section.getSectionZ());
+            return world.setSection(section, false);
+        } else if (enabled) {
+            dirtyChunks.add(new BlockVector2D(section.getSectionX(), section.getSectionZ()));
+            return world.setSection(section, false);
+        } else {
+            return world.setSection(section, true);
+        }
+    }
+
     @Override
     protected Operation commitBefore() {
         return new Operation() {
@@ -101,6 +185,13 @@ public Operation resume(RunContext run) throws WorldEditException {
                 if (!dirtyChunks.isEmpty()) {
                     world.fixAfterFastMode(dirtyChunks);
                 }
+                if (!dirtySections.isEmpty() && relightQueue != null) {
+                    for (Map.Entry<BlockVector2D, Integer> entry : dirtySections.entrySet()) {
+                        relightQueue.add(world, entry.getKey(), entry.getValue());
+                    }
+                    dirtySections.clear();
+                    lastChunk = null;
+                }
                 return null;
             }
 
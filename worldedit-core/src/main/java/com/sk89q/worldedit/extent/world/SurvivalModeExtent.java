@@ -25,6 +25,8 @@
 import com.sk89q.worldedit.blocks.BlockID;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
 import com.sk89q.worldedit.world.World;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -37,7 +39,7 @@
  * in the constructor. For that reason, if you wish to "catch" changes, you
  * should catch them before the changes reach this extent.</p>
  */
-public class SurvivalModeExtent extends AbstractDelegateExtent {
+public class SurvivalModeExtent extends AbstractDelegateExtent implements SectionOutputExtent {
 
     private final World world;
     private boolean toolUse = false;
@@ -89,4 +91,13 @@ public boolean setBlock(Vector location, BaseBlock block) throws WorldEditExcept
         }
     }
 
+    @Override
+    public int setSection(SectionBuffer section) throws WorldEditException {
+        if (toolUse) {
+            return section.writeBlocks(this);
+        } else {
+            return section.writeTo(getExtent());
+        }
+    }
+
 }
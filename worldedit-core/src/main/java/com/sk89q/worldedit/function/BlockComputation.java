@@ -0,0 +1,49 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.function;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.cache.ChunkCopyExtent;
+
+import javax.annotation.Nullable;
+
+/**
+ * Computes the block that should be placed at a position without placing
+ * it, so that the work can be done on another thread.
+ *
+ * <p>Implementations are called from several threads at once. Blocks that
+ * have been computed are not placed until later, so implementations must
+ * only read blocks at the position that is being computed, and only
+ * through a {@link ChunkCopyExtent}.</p>
+ */
+public interface BlockComputation {
+
+    /**
+     * Compute the block for the given position.
+     *
+     * @param position the position
+     * @return the block to place, or null to leave the block alone
+     * @throws WorldEditException thrown on an error
+     */
+    @Nullable
+    BaseBlock compute(Vector position) throws WorldEditException;
+
+}
@@ -0,0 +1,156 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.block;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.PrimitiveMask;
+import com.sk89q.worldedit.function.pattern.BlockPattern;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.SpanVisitor;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Replaces the blocks of the runs passed to
+ * {@link #visit(int, int, int, int)} with blocks from a pattern, which is
+ * meant to be used with {@link Region#visitSpans(SpanVisitor)}.
+ *
+ * <p>This does the same as visiting a region with a {@link BlockReplace},
+ * but without the function objects and the region iterator in between, and
+ * with the block of a {@link BlockPattern} looked up only once. A
+ * {@link PrimitiveMask} is tested without creating a position for every
+ * block. If there is no mask or the mask is a {@link PrimitiveMask}, the
+ * block of the pattern is the same everywhere and the extent is a
+ * {@link SectionOutputExtent}, the blocks are collected in a
+ * {@link SectionBuffer} and passed to the extent a section at a time, in
+ * which case {@link #flush()} has to be called after the last run.</p>
+ */
+public class BlockSpanReplace implements SpanVisitor {
+
+    private final Extent extent;
+    @Nullable
+    private final Mask mask;
+    @Nullable
+    private final PrimitiveMask primitiveMask;
+    private final Pattern pattern;
+    @Nullable
+    private final BaseBlock constant;
+    private final boolean buffered;
+    @Nullable
+    private SectionBuffer section;
+    private int affected;
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent an extent
+     * @param mask the mask that blocks must match, or null to replace every block
+     * @param pattern a pattern
+     */
+    public BlockSpanReplace(Extent extent, @Nullable Mask mask, Pattern pattern) {
+        checkNotNull(extent);
+        checkNotNull(pattern);
+        this.extent = extent;
+        this.mask = mask;
+        this.primitiveMask = mask instanceof PrimitiveMask ? (PrimitiveMask) mask : null;
+        this.pattern = pattern;
+        this.constant = pattern instanceof BlockPattern ? ((BlockPattern) pattern).getBlock() : null;
+        this.buffered = (mask == null || primitiveMask != null) && constant != null && SectionBuffer.canStore(constant) && extent instanceof SectionOutputExtent;
+    }
+
+    /**
+     * Get the number of blocks that were changed.
+     *
+     * @return the number of blocks
+     */
+    public int getAffected() {
+        return affected;
+    }
+
+    /**
+     * Pass the blocks that are still buffered to the extent.
+     *
+     * @throws WorldEditException thrown on an error
+     */
+    public void flush() throws WorldEditException {
+        if (section != null && !section.isEmpty()) {
+            affected += ((SectionOutputExtent) extent).setSection(section);
+            section.reset(section.getSectionX(), section.getSectionY(), section.getSectionZ());
+        }
+    }
+
+    @Override
+    public void visit(int y, int z, int startX, int endX) throws WorldEditException {
+        if (buffered) {
+            visitBuffered(y, z, startX, endX);
+            return;
+        }
+
+        for (int x = startX; x <= endX; x++) {
+            if (primitiveMask != null && !primitiveMask.test(x, y, z)) {
+                continue;
+            }
+            BlockVector position = new BlockVector(x, y, z);
+            if (primitiveMask == null && mask != null && !mask.test(position)) {
+                continue;
+            }
+            if (extent.setBlock(position, constant != null ? constant : pattern.apply(position))) {
+                affected++;
+            }
+        }
+    }
+
+    /**
+     * Add a run to the section buffer, passing the buffer on whenever the
+     * run enters a different section.
+     */
+    private void visitBuffered(int y, int z, int startX, int endX) throws WorldEditException {
+        int x = startX;
+        while (x <= endX) {
+            int end = Math.min(endX, x | 15);
+            if (section == null) {
+                section = new SectionBuffer(x >> 4, y >> 4, z >> 4);
+            } else if (!section.contains(x, y, z)) {
+                flush();
+                section.reset(x >> 4, y >> 4, z >> 4);
+            }
+            if (primitiveMask == null) {
+                section.fill(y, z, x, end, constant.getId(), constant.getData());
+            } else {
+                for (int i = x; i <= end; i++) {
+                    if (primitiveMask.test(i, y, z)) {
+                        section.set(SectionBuffer.getIndex(i, y, z), constant.getId(), constant.getData());
+                    }
+                }
+            }
+            x = end + 1;
+        }
+    }
+
+}
@@ -68,12 +68,16 @@ public ExtentBlockCopy(Extent source, Vector from, Extent destination, Vector to
 
     @Override
     public boolean apply(Vector position) throws WorldEditException {
-        BaseBlock block = source.getBlock(position);
+        // Lazy blocks may be shared, so only blocks whose NBT data has to
+        // be transformed are copied
+        BaseBlock block = source.getLazyBlock(position);
         Vector orig = position.subtract(from);
         Vector transformed = transform.apply(orig);
 
         // Apply transformations to NBT data if necessary
-        block = transformNbtData(block);
+        if (block.hasNbtData()) {
+            block = transformNbtData(block);
+        }
 
         return destination.setBlock(transformed.add(to), block);
     }
@@ -19,10 +19,13 @@
 
 package com.sk89q.worldedit.function.factory;
 
+import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.function.Contextual;
 import com.sk89q.worldedit.function.EditContext;
 import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.block.BlockReplace;
 import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.visitor.ParallelRegionVisitor;
 import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.regions.NullRegion;
 import com.sk89q.worldedit.regions.Region;
@@ -48,7 +51,18 @@ public Apply(Region region, Contextual<? extends RegionFunction> function) {
 
     @Override
     public Operation createFromContext(EditContext context) {
-        return new RegionVisitor(firstNonNull(context.getRegion(), region), function.createFromContext(context));
+        Region region = firstNonNull(context.getRegion(), this.region);
+        RegionFunction function = this.function.createFromContext(context);
+
+        if (function instanceof BlockReplace && ((BlockReplace) function).getExtent() instanceof EditSession) {
+            BlockReplace replace = (BlockReplace) function;
+            ParallelRegionVisitor parallel = ((EditSession) replace.getExtent()).createParallelReplace(region, null, replace.getPattern());
+            if (parallel != null) {
+                return parallel;
+            }
+        }
+
+        return new RegionVisitor(region, function);
     }
 
     @Override
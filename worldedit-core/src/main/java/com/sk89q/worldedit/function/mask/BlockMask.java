@@ -22,6 +22,7 @@
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
@@ -38,7 +39,7 @@
  * <p>This mask checks for both an exact block ID and data value match, as well
  * for a block with the same ID but a data value of -1.</p>
  */
-public class BlockMask extends AbstractExtentMask {
+public class BlockMask extends AbstractExtentMask implements PrimitiveMask {
 
     private final Set<BaseBlock> blocks = new HashSet<BaseBlock>();
 
@@ -94,8 +95,14 @@ public Collection<BaseBlock> getBlocks() {
 
     @Override
     public boolean test(Vector vector) {
-        BaseBlock block = getExtent().getBlock(vector);
-        return blocks.contains(block) || blocks.contains(new BaseBlock(block.getType(), -1));
+        return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
+        Extent extent = getExtent();
+        int id = extent.getBlockId(x, y, z);
+        return blocks.contains(ImmutableBlock.of(id, extent.getBlockData(x, y, z))) || blocks.contains(ImmutableBlock.of(id, -1));
     }
 
     @Nullable
@@ -29,7 +29,7 @@
  * A mask that returns true whenever the block at the location is not
  * an air block (it contains some other block).
  */
-public class ExistingBlockMask extends AbstractExtentMask {
+public class ExistingBlockMask extends AbstractExtentMask implements PrimitiveMask {
 
     /**
      * Create a new existing block map.
@@ -42,7 +42,12 @@ public ExistingBlockMask(Extent extent) {
 
     @Override
     public boolean test(Vector vector) {
-        return getExtent().getLazyBlock(vector).getType() != BlockID.AIR;
+        return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
+        return getExtent().getBlockId(x, y, z) != BlockID.AIR;
     }
 
     @Nullable
@@ -22,6 +22,7 @@
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
 import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
 
@@ -34,10 +35,14 @@
  *
  * <p>Expressions are evaluated as {@code true} if they return a value
  * greater than {@code 0}.</p>
+ *
+ * <p>Each mask evaluates the expression with a frame of its own, so one
+ * mask must not be tested by several threads at once.</p>
  */
 public class ExpressionMask extends AbstractMask {
 
     private final Expression expression;
+    private final ExpressionFrame frame;
 
     /**
      * Create a new instance.
@@ -48,6 +53,8 @@ public class ExpressionMask extends AbstractMask {
     public ExpressionMask(String expression) throws ExpressionException {
         checkNotNull(expression);
         this.expression = Expression.compile(expression, "x", "y", "z");
+        this.expression.optimize();
+        this.frame = this.expression.newFrame();
     }
 
     /**
@@ -58,15 +65,26 @@ public ExpressionMask(String expression) throws ExpressionException {
     public ExpressionMask(Expression expression) {
         checkNotNull(expression);
         this.expression = expression;
+        this.frame = expression.newFrame();
+    }
+
+    /**
+     * Get the expression that is tested.
+     *
+     * @return the expression
+     */
+    public Expression getExpression() {
+        return expression;
     }
 
     @Override
     public boolean test(Vector vector) {
         try {
-            if (expression.getEnvironment() instanceof WorldEditExpressionEnvironment) {
+            // Only the stateful functions read the environment
+            if (expression.callsStatefulFunction() && expression.getEnvironment() instanceof WorldEditExpressionEnvironment) {
                 ((WorldEditExpressionEnvironment) expression.getEnvironment()).setCurrentBlock(vector);
             }
-            return expression.evaluate(vector.getX(), vector.getY(), vector.getZ()) > 0;
+            return expression.evaluate(frame, vector.getX(), vector.getY(), vector.getZ()) > 0;
         } catch (EvaluationException e) {
             return false;
         }
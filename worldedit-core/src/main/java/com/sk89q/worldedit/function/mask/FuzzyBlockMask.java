@@ -19,9 +19,9 @@
 
 package com.sk89q.worldedit.function.mask;
 
-import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.Blocks;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
 import com.sk89q.worldedit.extent.Extent;
 
 import java.util.Collection;
@@ -37,11 +37,10 @@ public FuzzyBlockMask(Extent extent, BaseBlock... block) {
     }
 
     @Override
-    public boolean test(Vector vector) {
+    public boolean test(int x, int y, int z) {
         Extent extent = getExtent();
         Collection<BaseBlock> blocks = getBlocks();
-        BaseBlock lazyBlock = extent.getLazyBlock(vector);
-        BaseBlock compare = new BaseBlock(lazyBlock.getType(), lazyBlock.getData());
+        BaseBlock compare = ImmutableBlock.of(extent.getBlockId(x, y, z), extent.getBlockData(x, y, z));
         return Blocks.containsFuzzy(blocks, compare);
     }
 }
@@ -20,9 +20,13 @@
 package com.sk89q.worldedit.function.mask;
 
 import com.sk89q.worldedit.*;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.session.request.Request;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -207,6 +211,63 @@ public boolean matches(EditSession editSession, Vector position) {
         };
     }
 
+    /**
+     * Get a mask that tests the same as the given mask, but reads blocks
+     * from another extent.
+     *
+     * <p>This only succeeds for masks that are known to read nothing but
+     * the block at the position that is tested. Masks that read from an
+     * extent other than {@code from} are not rebound. The returned mask must
+     * only be tested by one thread at a time, so call this again for each
+     * thread or task.</p>
+     *
+     * @param mask the mask
+     * @param from the extent that the mask currently reads from
+     * @param to the extent to read from instead
+     * @return a mask, or null if the mask cannot be rebound
+     */
+    @Nullable
+    public static Mask rebind(Mask mask, Extent from, Extent to) {
+        checkNotNull(mask);
+        checkNotNull(from);
+        checkNotNull(to);
+
+        if (mask instanceof AlwaysTrue || mask instanceof AlwaysFalse
+                || mask.getClass() == BoundedHeightMask.class) {
+            return mask;
+        } else if (mask.getClass() == ExpressionMask.class) {
+            // The new mask evaluates the expression with a frame of its own
+            Expression expression = ((ExpressionMask) mask).getExpression();
+            return expression.callsStatefulFunction() ? null : new ExpressionMask(expression);
+        } else if (mask.getClass() == RegionMask.class) {
+            return new RegionMask(((RegionMask) mask).getRegion().clone());
+        } else if (mask instanceof MaskIntersection) {
+            List<Mask> rebound = new ArrayList<Mask>();
+            for (Mask child : ((MaskIntersection) mask).getMasks()) {
+                Mask reboundChild = rebind(child, from, to);
+                if (reboundChild == null) {
+                    return null;
+                }
+                rebound.add(reboundChild);
+            }
+            return mask.getClass() == MaskUnion.class ? new MaskUnion(rebound)
+                    : mask.getClass() == MaskIntersection.class ? new MaskIntersection(rebound)
+                    : null;
+        } else if (mask instanceof AbstractExtentMask && ((AbstractExtentMask) mask).getExtent() == from) {
+            if (mask.getClass() == BlockMask.class) {
+                return new BlockMask(to, ((BlockMask) mask).getBlocks());
+            } else if (mask.getClass() == FuzzyBlockMask.class) {
+                return new FuzzyBlockMask(to, ((FuzzyBlockMask) mask).getBlocks());
+            } else if (mask.getClass() == ExistingBlockMask.class) {
+                return new ExistingBlockMask(to);
+            } else if (mask.getClass() == SolidBlockMask.class) {
+                return new SolidBlockMask(to);
+            }
+        }
+
+        return null;
+    }
+
     private static class AlwaysTrue implements Mask, Mask2D {
         @Override
         public boolean test(Vector vector) {
@@ -0,0 +1,42 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+/**
+ * A mask that can also be tested with plain coordinates, so that walking
+ * a region with it does not need a {@link com.sk89q.worldedit.Vector} for
+ * every block.
+ *
+ * <p>Both methods must return the same result for the same position.
+ * Implementations only look at the block at the tested position.</p>
+ */
+public interface PrimitiveMask extends Mask {
+
+    /**
+     * Returns true if the criteria is met.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the criteria is met
+     */
+    boolean test(int x, int y, int z);
+
+}
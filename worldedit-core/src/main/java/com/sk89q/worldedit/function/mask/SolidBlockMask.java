@@ -19,14 +19,13 @@
 
 package com.sk89q.worldedit.function.mask;
 
-import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BlockType;
 
 import javax.annotation.Nullable;
 
-public class SolidBlockMask extends AbstractExtentMask {
+public class SolidBlockMask extends AbstractExtentMask implements PrimitiveMask {
 
     public SolidBlockMask(Extent extent) {
         super(extent);
@@ -34,9 +33,13 @@ public SolidBlockMask(Extent extent) {
 
     @Override
     public boolean test(Vector vector) {
+        return test(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+    }
+
+    @Override
+    public boolean test(int x, int y, int z) {
         Extent extent = getExtent();
-        BaseBlock lazyBlock = extent.getLazyBlock(vector);
-        return !BlockType.canPassThrough(lazyBlock.getType(), lazyBlock.getData());
+        return !BlockType.canPassThrough(extent.getBlockId(x, y, z), extent.getBlockData(x, y, z));
     }
 
     @Nullable
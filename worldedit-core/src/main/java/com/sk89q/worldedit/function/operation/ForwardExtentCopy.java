@@ -244,10 +244,20 @@ public Operation resume(RunContext run) throws WorldEditException {
 
     @Override
     public void cancel() {
+        if (lastVisitor != null) {
+            lastVisitor.cancel();
+            lastVisitor = null;
+        }
+        repetitions = 0;
     }
 
     @Override
     public void addStatusMessages(List<String> messages) {
+        int affected = this.affected;
+        if (lastVisitor != null) {
+            affected += lastVisitor.getAffected();
+        }
+        messages.add(affected + " blocks affected");
     }
 
 }
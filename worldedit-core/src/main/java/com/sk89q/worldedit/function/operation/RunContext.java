@@ -21,6 +21,11 @@
 
 /**
  * Describes the current run.
+ *
+ * <p>This implementation never asks an operation to stop, so operations
+ * never yield part way through their work.</p>
+ *
+ * @see TimedRunContext
  */
 public class RunContext {
 
@@ -0,0 +1,73 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import com.google.common.base.Ticker;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A run that ends at a fixed point in time.
+ *
+ * <p>{@link com.sk89q.worldedit.session.EditQueue} resumes queued
+ * operations with one of these to keep them within its time budget per
+ * tick.</p>
+ */
+public class TimedRunContext extends RunContext {
+
+    private final Ticker ticker;
+    private final long deadline;
+
+    /**
+     * Create a new instance.
+     *
+     * @param deadline the time at which the run ends, as given by {@link System#nanoTime()}
+     */
+    public TimedRunContext(long deadline) {
+        this(Ticker.systemTicker(), deadline);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param ticker the source of time
+     * @param deadline the time at which the run ends, as read from the ticker
+     */
+    public TimedRunContext(Ticker ticker, long deadline) {
+        checkNotNull(ticker);
+        this.ticker = ticker;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Get the time at which the run ends.
+     *
+     * @return the deadline, as read from the ticker
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    @Override
+    public boolean shouldContinue() {
+        return ticker.read() - deadline < 0;
+    }
+
+}
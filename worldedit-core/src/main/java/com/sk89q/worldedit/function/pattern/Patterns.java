@@ -35,11 +35,17 @@ private Patterns() {
     /**
      * Wrap an old-style pattern and return a new pattern.
      *
+     * <p>A pattern that was returned by {@link #wrap(Pattern)} is unwrapped
+     * instead of being wrapped twice.</p>
+     *
      * @param pattern the pattern
      * @return a new-style pattern
      */
     public static Pattern wrap(final com.sk89q.worldedit.patterns.Pattern pattern) {
         checkNotNull(pattern);
+        if (pattern instanceof PatternWrapper) {
+            return ((PatternWrapper) pattern).pattern;
+        }
         return new Pattern() {
             @Override
             public BaseBlock apply(Vector position) {
@@ -56,17 +62,47 @@ public BaseBlock apply(Vector position) {
      */
     public static com.sk89q.worldedit.patterns.Pattern wrap(final Pattern pattern) {
         checkNotNull(pattern);
-        return new com.sk89q.worldedit.patterns.Pattern() {
-            @Override
-            public BaseBlock next(Vector position) {
-                return pattern.apply(position);
-            }
+        return new PatternWrapper(pattern);
+    }
 
-            @Override
-            public BaseBlock next(int x, int y, int z) {
-                return next(new Vector(x, y, z));
+    /**
+     * Test whether the given pattern is known to be safe to apply from
+     * several threads at once, without reading any blocks.
+     *
+     * @param pattern the pattern
+     * @return true if the pattern is thread-safe
+     */
+    public static boolean isThreadSafe(Pattern pattern) {
+        checkNotNull(pattern);
+        if (pattern.getClass() == BlockPattern.class) {
+            return true;
+        } else if (pattern.getClass() == RandomPattern.class) {
+            for (Pattern child : ((RandomPattern) pattern).getPatterns()) {
+                if (!isThreadSafe(child)) {
+                    return false;
+                }
             }
-        };
+            return true;
+        }
+        return false;
+    }
+
+    private static class PatternWrapper implements com.sk89q.worldedit.patterns.Pattern {
+        private final Pattern pattern;
+
+        private PatternWrapper(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public BaseBlock next(Vector position) {
+            return pattern.apply(position);
+        }
+
+        @Override
+        public BaseBlock next(int x, int y, int z) {
+            return next(new Vector(x, y, z));
+        }
     }
 
 }
@@ -24,7 +24,7 @@
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -33,7 +33,6 @@
  */
 public class RandomPattern extends AbstractPattern {
 
-    private final Random random = new Random();
     private List<Chance> patterns = new ArrayList<Chance>();
     private double max = 0;
 
@@ -52,9 +51,22 @@ public void add(Pattern pattern, double chance) {
         max += chance;
     }
 
+    /**
+     * Get the patterns that are chosen from.
+     *
+     * @return the patterns
+     */
+    List<Pattern> getPatterns() {
+        List<Pattern> result = new ArrayList<Pattern>();
+        for (Chance chance : patterns) {
+            result.add(chance.getPattern());
+        }
+        return result;
+    }
+
     @Override
     public BaseBlock apply(Vector position) {
-        double r = random.nextDouble();
+        double r = ThreadLocalRandom.current().nextDouble();
         double offset = 0;
 
         for (Chance chance : patterns) {
@@ -20,14 +20,23 @@
 package com.sk89q.worldedit.function.visitor;
 
 import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.MaxVisitedBlocksException;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.math.BlockPositions;
+import com.sk89q.worldedit.util.collection.DiskBackedLongQueue;
+import com.sk89q.worldedit.util.collection.DiskBackedPositionSet;
+import com.sk89q.worldedit.util.collection.LongArrayQueue;
+import com.sk89q.worldedit.util.collection.LongHashSet;
 
+import javax.annotation.Nullable;
+import java.io.File;
 import java.util.*;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -40,14 +49,43 @@
  * <p>As an abstract implementation, this class can be used to implement
  * functionality that starts at certain points and extends outward from
  * those points.</p>
+ *
+ * <p>Positions are stored packed into {@code long}s (see
+ * {@link BlockPositions}), so the queue and the set of visited positions
+ * take a fraction of the memory that vectors would, and a vector is only
+ * created for positions that are tested with
+ * {@link #isVisitable(Vector, Vector)} or passed to the function.</p>
+ *
+ * <p>The search can be given a limit on the number of positions that it
+ * visits, after which it stops with a {@link MaxVisitedBlocksException}.
+ * It can also be given a limit on the number of positions that it keeps
+ * in memory, after which it moves the queue and the set of visited
+ * positions to files on disk (see {@link DiskBackedLongQueue} and
+ * {@link DiskBackedPositionSet}) for the rest of the search.</p>
  */
 public abstract class BreadthFirstSearch implements Operation {
 
+    /**
+     * The number of bits of the visited set that can be kept in memory for
+     * every position allowed by the memory limit.
+     */
+    private static final int BITS_PER_POSITION = 128;
+    private static final int BITS_PER_REGION = 16 * 16 * 16;
+
     private final RegionFunction function;
-    private final Queue<BlockVector> queue = new ArrayDeque<BlockVector>();
-    private final Set<BlockVector> visited = new HashSet<BlockVector>();
+    private LongArrayQueue queue = new LongArrayQueue();
+    private LongHashSet visited = new LongHashSet();
+    @Nullable
+    private DiskBackedLongQueue diskQueue;
+    @Nullable
+    private DiskBackedPositionSet diskVisited;
     private final List<Vector> directions = new ArrayList<Vector>();
     private int affected = 0;
+    private long visitedCount = 0;
+    private int visitLimit = -1;
+    private int memoryLimit = -1;
+    @Nullable
+    private File spillDirectory;
 
     /**
      * Create a new instance.
@@ -76,6 +114,67 @@ protected Collection<Vector> getDirections() {
         return directions;
     }
 
+    /**
+     * Get the maximum number of positions that the search visits before it
+     * stops with a {@link MaxVisitedBlocksException}.
+     *
+     * @return the limit, or -1 if there is no limit
+     */
+    public int getVisitLimit() {
+        return visitLimit;
+    }
+
+    /**
+     * Set the maximum number of positions that the search visits before it
+     * stops with a {@link MaxVisitedBlocksException}.
+     *
+     * <p>Every position that is tested counts, whether or not it is passed
+     * to the function.</p>
+     *
+     * @param visitLimit the limit, or -1 for no limit
+     */
+    public void setVisitLimit(int visitLimit) {
+        checkArgument(visitLimit >= -1, "visitLimit >= -1 required");
+        this.visitLimit = visitLimit;
+    }
+
+    /**
+     * Get the number of queued and visited positions that are kept in memory
+     * before they are moved to disk.
+     *
+     * @return the limit, or -1 if everything is kept in memory
+     */
+    public int getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Set the number of queued and visited positions that are kept in memory
+     * before they are moved to disk.
+     *
+     * <p>Once moved, visited positions are kept one bit per block in
+     * 16x16x16 regions, of which only as many as fit in the memory of the
+     * given number of positions are kept in memory.</p>
+     *
+     * @param memoryLimit the limit, or -1 to keep everything in memory
+     * @param directory the directory in which to create the files
+     */
+    public void setMemoryLimit(int memoryLimit, File directory) {
+        checkArgument(memoryLimit == -1 || memoryLimit > 0, "memoryLimit > 0 or -1 required");
+        checkNotNull(directory);
+        this.memoryLimit = memoryLimit;
+        this.spillDirectory = directory;
+    }
+
+    /**
+     * Get the number of positions that have been visited so far.
+     *
+     * @return the number of positions
+     */
+    public long getVisitedCount() {
+        return visitedCount;
+    }
+
     /**
      * Add the directions along the axes as directions to visit.
      */
@@ -113,29 +212,82 @@ protected void addDiagonal() {
      * @param position the position
      */
     public void visit(Vector position) {
-        BlockVector blockVector = position.toBlockVector();
-        if (!visited.contains(blockVector)) {
-            queue.add(blockVector);
-            visited.add(blockVector);
+        long packed = BlockPositions.pack(position);
+        if (markVisited(packed)) {
+            enqueue(packed);
         }
     }
 
     /**
-     * Try to visit the given 'to' location.
+     * Add a position to the set of visited positions.
      *
-     * @param from the origin block
-     * @param to the block under question
+     * @param packed the packed position
+     * @return true if the position had not been visited yet
      */
-    private void visit(Vector from, Vector to) {
-        BlockVector blockVector = to.toBlockVector();
-        if (!visited.contains(blockVector)) {
-            visited.add(blockVector);
-            if (isVisitable(from, to)) {
-                queue.add(blockVector);
-            }
+    private boolean markVisited(long packed) {
+        boolean added = diskVisited != null ? diskVisited.add(packed) : visited.add(packed);
+        if (added) {
+            visitedCount++;
+        }
+        return added;
+    }
+
+    private void enqueue(long packed) {
+        if (diskQueue != null) {
+            diskQueue.add(packed);
+        } else {
+            queue.add(packed);
         }
     }
 
+    private long dequeue() {
+        return diskQueue != null ? diskQueue.remove() : queue.remove();
+    }
+
+    private boolean isQueueEmpty() {
+        return diskQueue != null ? diskQueue.isEmpty() : queue.isEmpty();
+    }
+
+    /**
+     * Move the queue and the set of visited positions to disk if there are
+     * more positions in memory than the memory limit allows.
+     */
+    private void checkMemoryLimit() {
+        if (memoryLimit < 0 || diskQueue != null || visited.size() + queue.size() <= memoryLimit) {
+            return;
+        }
+
+        int regions = Math.max(1, (int) ((long) memoryLimit * BITS_PER_POSITION / BITS_PER_REGION));
+        diskVisited = new DiskBackedPositionSet(spillDirectory, regions);
+        for (long packed : visited.toArray()) {
+            diskVisited.add(packed);
+        }
+        diskQueue = new DiskBackedLongQueue(spillDirectory);
+        while (!queue.isEmpty()) {
+            diskQueue.add(queue.remove());
+        }
+
+        visited = new LongHashSet();
+        queue = new LongArrayQueue();
+    }
+
+    /**
+     * Delete the files on disk, if the search has moved to disk, and free
+     * the memory used by the search.
+     */
+    private void release() {
+        if (diskQueue != null) {
+            diskQueue.close();
+            diskQueue = null;
+        }
+        if (diskVisited != null) {
+            diskVisited.close();
+            diskVisited = null;
+        }
+        visited = new LongHashSet();
+        queue = new LongArrayQueue();
+    }
+
     /**
      * Return whether the given 'to' block should be visited, starting from the
      * 'from' block.
@@ -146,6 +298,25 @@ private void visit(Vector from, Vector to) {
      */
     protected abstract boolean isVisitable(Vector from, Vector to);
 
+    /**
+     * Return whether the given 'to' block should be visited, starting from the
+     * 'from' block.
+     *
+     * <p>The default implementation calls {@link #isVisitable(Vector, Vector)}.
+     * Subclasses can override this method to test positions without creating
+     * vectors, in which case subclasses of those should override both
+     * methods.</p>
+     *
+     * @param from the origin block
+     * @param toX the X coordinate of the block under question
+     * @param toY the Y coordinate of the block under question
+     * @param toZ the Z coordinate of the block under question
+     * @return true if the 'to' block should be visited
+     */
+    protected boolean isVisitable(BlockVector from, int toX, int toY, int toZ) {
+        return isVisitable(from, new BlockVector(toX, toY, toZ));
+    }
+
     /**
      * Get the number of affected objects.
      *
@@ -157,28 +328,71 @@ public int getAffected() {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        Vector position;
-        
-        while ((position = queue.poll()) != null) {
-            if (function.apply(position)) {
-                affected++;
+        int count = directions.size();
+        int[] offsetX = new int[count];
+        int[] offsetY = new int[count];
+        int[] offsetZ = new int[count];
+        for (int i = 0; i < count; i++) {
+            Vector dir = directions.get(i);
+            offsetX[i] = dir.getBlockX();
+            offsetY[i] = dir.getBlockY();
+            offsetZ[i] = dir.getBlockZ();
+        }
+
+        boolean finished = true;
+        try {
+            while (!isQueueEmpty()) {
+                BlockVector position = BlockPositions.toBlockVector(dequeue());
+                if (function.apply(position)) {
+                    affected++;
+                }
+
+                int x = position.getBlockX();
+                int y = position.getBlockY();
+                int z = position.getBlockZ();
+                for (int i = 0; i < count; i++) {
+                    int toX = x + offsetX[i];
+                    int toY = y + offsetY[i];
+                    int toZ = z + offsetZ[i];
+                    long packed = BlockPositions.pack(toX, toY, toZ);
+                    if (markVisited(packed) && isVisitable(position, toX, toY, toZ)) {
+                        enqueue(packed);
+                    }
+                }
+
+                if (visitLimit >= 0 && visitedCount > visitLimit) {
+                    throw new MaxVisitedBlocksException(visitLimit);
+                }
+
+                checkMemoryLimit();
+
+                if (!run.shouldContinue() && !isQueueEmpty()) {
+                    finished = false;
+                    return this;
+                }
             }
 
-            for (Vector dir : directions) {
-                visit(position, position.add(dir));
+            return null;
+        } finally {
+            if (finished) {
+                release();
             }
         }
-
-        return null;
     }
 
     @Override
     public void cancel() {
+        release();
     }
 
     @Override
     public void addStatusMessages(List<String> messages) {
         messages.add(getAffected() + " blocks affected");
+        if (diskQueue != null) {
+            messages.add(visitedCount + " blocks visited, " + diskQueue.size() + " queued on disk");
+        } else {
+            messages.add(visitedCount + " blocks visited, " + queue.size() + " queued");
+        }
     }
 
 }
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.function.visitor;
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.mask.Mask;
@@ -65,4 +66,10 @@ protected boolean isVisitable(Vector from, Vector to) {
         int fromY = from.getBlockY();
         return (fromY == baseY || to.subtract(from).getBlockY() < 0) && super.isVisitable(from, to);
     }
+
+    @Override
+    protected boolean isVisitable(BlockVector from, int toX, int toY, int toZ) {
+        int fromY = from.getBlockY();
+        return (fromY == baseY || toY < fromY) && super.isVisitable(from, toX, toY, toZ);
+    }
 }
@@ -0,0 +1,319 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.function.visitor;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.cache.ChunkCopyExtent;
+import com.sk89q.worldedit.function.BlockComputation;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.Region;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Computes the blocks of a region on worker threads, one chunk at a time,
+ * and places them on the thread that resumes this operation.
+ *
+ * <p>Chunks are placed in order, by Z and then by X, and the workers are
+ * kept a limited number of chunks ahead of the chunk that is being placed.
+ * If the computation needs to read blocks, a {@link ChunkCopyExtent} can be
+ * set with {@link #setSourceCopy(ChunkCopyExtent)}, which is filled for each
+ * chunk before the chunk is handed to a worker.</p>
+ */
+public class ParallelRegionVisitor implements Operation {
+
+    /**
+     * The default number of chunks that are computed ahead of the chunk
+     * that is being placed.
+     */
+    public static final int DEFAULT_QUEUE_DEPTH = 16;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Region region;
+    private final Supplier<? extends BlockComputation> computations;
+    private final Extent destination;
+    private final ExecutorService executor;
+    private final int queueDepth;
+    private final int minChunkX;
+    private final int maxChunkX;
+    private final int maxChunkZ;
+    private final Deque<PendingChunk> pending = new ArrayDeque<PendingChunk>();
+    @Nullable
+    private ChunkCopyExtent sourceCopy;
+    private int nextChunkX;
+    private int nextChunkZ;
+    private int affected = 0;
+
+    /**
+     * Create a new instance.
+     *
+     * @param region the region to visit
+     * @param computation the computation, which must be safe to call from several threads
+     * @param destination the extent to place blocks in
+     * @param executor the executor to run computations on
+     * @param queueDepth the maximum number of chunks that are computed ahead of the chunk being placed
+     */
+    public ParallelRegionVisitor(Region region, BlockComputation computation, Extent destination, ExecutorService executor, int queueDepth) {
+        this(region, Suppliers.ofInstance(checkNotNull(computation)), destination, executor, queueDepth);
+    }
+
+    /**
+     * Create a new instance that gets a computation for each chunk.
+     *
+     * <p>The supplier is called on the worker that computes the chunk, and
+     * the computation that it returns is only used for that chunk, so it
+     * may keep state that is not thread-safe.</p>
+     *
+     * @param region the region to visit
+     * @param computations supplies a computation for each chunk, and must be safe to call from several threads
+     * @param destination the extent to place blocks in
+     * @param executor the executor to run computations on
+     * @param queueDepth the maximum number of chunks that are computed ahead of the chunk being placed
+     */
+    public ParallelRegionVisitor(Region region, Supplier<? extends BlockComputation> computations, Extent destination, ExecutorService executor, int queueDepth) {
+        checkNotNull(region);
+        checkNotNull(computations);
+        checkNotNull(destination);
+        checkNotNull(executor);
+        checkArgument(queueDepth >= 1, "queueDepth >= 1");
+        this.region = region;
+        this.computations = computations;
+        this.destination = destination;
+        this.executor = executor;
+        this.queueDepth = queueDepth;
+
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        this.minChunkX = min.getBlockX() >> 4;
+        this.maxChunkX = max.getBlockX() >> 4;
+        this.maxChunkZ = max.getBlockZ() >> 4;
+        this.nextChunkX = minChunkX;
+        this.nextChunkZ = min.getBlockZ() >> 4;
+    }
+
+    /**
+     * Get the copy of the source extent that is filled before each chunk
+     * is computed.
+     *
+     * @return the copy, or null if none is used
+     */
+    @Nullable
+    public ChunkCopyExtent getSourceCopy() {
+        return sourceCopy;
+    }
+
+    /**
+     * Set the copy of the source extent that is filled before each chunk
+     * is computed.
+     *
+     * @param sourceCopy the copy, or null to use none
+     */
+    public void setSourceCopy(@Nullable ChunkCopyExtent sourceCopy) {
+        this.sourceCopy = sourceCopy;
+    }
+
+    /**
+     * Get the number of affected objects.
+     *
+     * @return the number of affected
+     */
+    public int getAffected() {
+        return affected;
+    }
+
+    @Override
+    public Operation resume(RunContext run) throws WorldEditException {
+        try {
+            while (true) {
+                while (pending.size() < queueDepth && hasNextChunk()) {
+                    submit(nextChunk());
+                }
+
+                if (pending.isEmpty()) {
+                    return null;
+                }
+
+                place(pending.remove());
+
+                if (!run.shouldContinue()) {
+                    return pending.isEmpty() && !hasNextChunk() ? null : this;
+                }
+            }
+        } catch (WorldEditException e) {
+            cancel();
+            throw e;
+        } catch (RuntimeException e) {
+            cancel();
+            throw e;
+        }
+    }
+
+    private boolean hasNextChunk() {
+        return nextChunkZ <= maxChunkZ;
+    }
+
+    private BlockVector2D nextChunk() {
+        BlockVector2D chunk = new BlockVector2D(nextChunkX, nextChunkZ);
+        if (++nextChunkX > maxChunkX) {
+            nextChunkX = minChunkX;
+            nextChunkZ++;
+        }
+        return chunk;
+    }
+
+    private void submit(final BlockVector2D chunk) {
+        if (sourceCopy != null) {
+            sourceCopy.copy(chunk);
+        }
+        pending.add(new PendingChunk(chunk, executor.submit(new Callable<ComputedChunk>() {
+            @Override
+            public ComputedChunk call() throws Exception {
+                return compute(chunk);
+            }
+        })));
+    }
+
+    private ComputedChunk compute(BlockVector2D chunk) throws WorldEditException {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        int minX = Math.max(min.getBlockX(), chunk.getBlockX() << 4);
+        int maxX = Math.min(max.getBlockX(), (chunk.getBlockX() << 4) + 15);
+        int minZ = Math.max(min.getBlockZ(), chunk.getBlockZ() << 4);
+        int maxZ = Math.min(max.getBlockZ(), (chunk.getBlockZ() << 4) + 15);
+        int maxY = max.getBlockY();
+
+        BlockComputation computation = computations.get();
+        ComputedChunk result = new ComputedChunk();
+        for (int y = min.getBlockY(); y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    BlockVector position = new BlockVector(x, y, z);
+                    if (region.contains(position)) {
+                        BaseBlock block = computation.compute(position);
+                        if (block != null) {
+                            result.add(x, y, z, block);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void place(PendingChunk chunk) throws WorldEditException {
+        ComputedChunk computed;
+        try {
+            computed = chunk.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for blocks to be computed", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Throwables.propagateIfInstanceOf(cause, WorldEditException.class);
+            throw Throwables.propagate(cause);
+        } finally {
+            if (sourceCopy != null) {
+                sourceCopy.release(chunk.position);
+            }
+        }
+
+        int[] positions = computed.positions;
+        BaseBlock[] blocks = computed.blocks;
+        for (int i = 0; i < computed.size; i++) {
+            int p = i * 3;
+            if (destination.setBlock(new BlockVector(positions[p], positions[p + 1], positions[p + 2]), blocks[i])) {
+                affected++;
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        for (PendingChunk chunk : pending) {
+            chunk.future.cancel(true);
+        }
+        pending.clear();
+        nextChunkZ = maxChunkZ + 1;
+        if (sourceCopy != null) {
+            sourceCopy.releaseAll();
+        }
+    }
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+        messages.add(getAffected() + " blocks affected");
+    }
+
+    /**
+     * A chunk that has been handed to a worker.
+     */
+    private static class PendingChunk {
+        private final BlockVector2D position;
+        private final Future<ComputedChunk> future;
+
+        private PendingChunk(BlockVector2D position, Future<ComputedChunk> future) {
+            this.position = position;
+            this.future = future;
+        }
+    }
+
+    /**
+     * The blocks that were computed for a chunk, in the order that they
+     * should be placed.
+     */
+    private static class ComputedChunk {
+        private int[] positions = new int[INITIAL_CAPACITY * 3];
+        private BaseBlock[] blocks = new BaseBlock[INITIAL_CAPACITY];
+        private int size;
+
+        private void add(int x, int y, int z, BaseBlock block) {
+            if (size == blocks.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            }
+            int p = size * 3;
+            positions[p] = x;
+            positions[p + 1] = y;
+            positions[p + 2] = z;
+            blocks[size++] = block;
+        }
+    }
+
+}
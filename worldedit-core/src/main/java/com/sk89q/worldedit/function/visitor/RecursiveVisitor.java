@@ -19,9 +19,13 @@
 
 package com.sk89q.worldedit.function.visitor;
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.PrimitiveMask;
+
+import javax.annotation.Nullable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -32,6 +36,8 @@
 public class RecursiveVisitor extends BreadthFirstSearch {
 
     private final Mask mask;
+    @Nullable
+    private final PrimitiveMask primitiveMask;
 
     /**
      * Create a new recursive visitor.
@@ -43,10 +49,19 @@ public RecursiveVisitor(Mask mask, RegionFunction function) {
         super(function);
         checkNotNull(mask);
         this.mask = mask;
+        this.primitiveMask = mask instanceof PrimitiveMask ? (PrimitiveMask) mask : null;
     }
 
     @Override
     protected boolean isVisitable(Vector from, Vector to) {
         return mask.test(to);
     }
+
+    @Override
+    protected boolean isVisitable(BlockVector from, int toX, int toY, int toZ) {
+        if (primitiveMask != null) {
+            return primitiveMask.test(toX, toY, toZ);
+        }
+        return super.isVisitable(from, toX, toY, toZ);
+    }
 }
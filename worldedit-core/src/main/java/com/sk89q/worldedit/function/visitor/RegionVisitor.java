@@ -19,22 +19,32 @@
 
 package com.sk89q.worldedit.function.visitor;
 
-import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.iterator.ChunkSpanCursor;
 
 import java.util.List;
 
 /**
  * Utility class to apply region functions to {@link com.sk89q.worldedit.regions.Region}.
+ *
+ * <p>Points are visited one chunk at a time, in the order of
+ * {@link Region#chunkIterator()}, so that each chunk is finished before the
+ * next one is loaded. They are read from the region as runs along the X
+ * axis, so the region does not have to test every point of its bounding
+ * box.</p>
  */
 public class RegionVisitor implements Operation {
 
     private final Region region;
     private final RegionFunction function;
+    private ChunkSpanCursor cursor;
+    private int nextX;
+    private int endX = -1;
     private int affected = 0;
 
     public RegionVisitor(Region region, RegionFunction function) {
@@ -53,15 +63,40 @@ public int getAffected() {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        for (Vector pt : region) {
-            if (function.apply(pt)) {
+        if (cursor == null) {
+            cursor = new ChunkSpanCursor(region);
+        }
+
+        while (nextSpan()) {
+            if (function.apply(new BlockVector(nextX++, cursor.getY(), cursor.getZ()))) {
                 affected++;
             }
+
+            if (!run.shouldContinue()) {
+                return nextSpan() ? this : null;
+            }
         }
 
         return null;
     }
 
+    /**
+     * Move to the next run of the region if the current one is finished.
+     *
+     * @return false if there are no more points
+     */
+    private boolean nextSpan() {
+        if (nextX <= endX) {
+            return true;
+        }
+        if (!cursor.next()) {
+            return false;
+        }
+        nextX = cursor.getStartX();
+        endX = cursor.getEndX();
+        return true;
+    }
+
     @Override
     public void cancel() {
     }
@@ -19,32 +19,41 @@
 
 package com.sk89q.worldedit.history.changeset;
 
-import com.google.common.base.Function;
 import com.google.common.collect.Iterators;
+import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.history.change.BlockChange;
 import com.sk89q.worldedit.history.change.Change;
-import com.sk89q.worldedit.util.collection.TupleArrayList;
+import com.sk89q.worldedit.math.BlockPositions;
+import com.sk89q.worldedit.util.collection.IntArrayList;
+import com.sk89q.worldedit.util.collection.LongArrayList;
 
-import java.util.ArrayList;
+import javax.annotation.Nullable;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static java.util.Map.Entry;
 
 /**
  * An extension of {@link ArrayListHistory} that stores {@link BlockChange}s
- * separately in two {@link ArrayList}s.
+ * in primitive arrays rather than as objects.
  *
- * <p>Whether this is a good idea or not is highly questionable, but this class
- * exists because this is how history was implemented in WorldEdit for
- * many years.</p>
+ * <p>Positions are packed into a {@code long} using {@link BlockPositions}
+ * and the previous and current blocks are stored as packed ID and data
+ * {@code int}s, so each block change costs 16 bytes instead of about six
+ * objects. NBT data is rare and is kept in sparse maps keyed by the index
+ * of the change. Other changes are stored in the parent list.</p>
  */
 public class BlockOptimizedHistory extends ArrayListHistory {
 
-    private final TupleArrayList<BlockVector, BaseBlock> previous = new TupleArrayList<BlockVector, BaseBlock>();
-    private final TupleArrayList<BlockVector, BaseBlock> current = new TupleArrayList<BlockVector, BaseBlock>();
+    private final LongArrayList positions = new LongArrayList();
+    private final IntArrayList previous = new IntArrayList();
+    private final IntArrayList current = new IntArrayList();
+    private final Map<Integer, CompoundTag> previousNbt = new HashMap<Integer, CompoundTag>();
+    private final Map<Integer, CompoundTag> currentNbt = new HashMap<Integer, CompoundTag>();
 
     @Override
     public void add(Change change) {
@@ -52,46 +61,124 @@ public void add(Change change) {
 
         if (change instanceof BlockChange) {
             BlockChange blockChange = (BlockChange) change;
-            BlockVector position = blockChange.getPosition();
-            previous.put(position, blockChange.getPrevious());
-            current.put(position, blockChange.getCurrent());
+            int index = positions.size();
+            positions.add(BlockPositions.pack(blockChange.getPosition()));
+            previous.add(packBlock(blockChange.getPrevious(), index, previousNbt));
+            current.add(packBlock(blockChange.getCurrent(), index, currentNbt));
         } else {
             super.add(change);
         }
     }
 
+    /**
+     * Add a change of a block to a block without NBT data, without creating
+     * a {@link BlockChange}.
+     *
+     * @param x the X coordinate of the block
+     * @param y the Y coordinate of the block
+     * @param z the Z coordinate of the block
+     * @param previousBlock the previous block
+     * @param id the ID of the new block
+     * @param data the data value of the new block
+     */
+    public void addBlockChange(int x, int y, int z, BaseBlock previousBlock, int id, int data) {
+        checkNotNull(previousBlock);
+        int index = positions.size();
+        positions.add(BlockPositions.pack(x, y, z));
+        previous.add(packBlock(previousBlock, index, previousNbt));
+        current.add((id << 16) | (data & 0xFFFF));
+    }
+
     @Override
     public Iterator<Change> forwardIterator() {
         return Iterators.concat(
                 super.forwardIterator(),
-                Iterators.transform(current.iterator(), createTransform()));
+                new BlockChangeIterator(current, currentNbt, false));
     }
 
     @Override
     public Iterator<Change> backwardIterator() {
         return Iterators.concat(
                 super.backwardIterator(),
-                Iterators.transform(previous.iterator(true), createTransform()));
+                new BlockChangeIterator(previous, previousNbt, true));
     }
 
     @Override
     public int size() {
-        return super.size() + previous.size();
+        return super.size() + positions.size();
     }
 
     /**
-     * Create a function that transforms each entry from the double array lists' iterator
-     * into an {@link Change}.
+     * Pack the ID and data of a block into an {@code int}, storing its NBT
+     * data in the given map if it has any.
      *
-     * @return a function
+     * @param block the block
+     * @param index the index of the change
+     * @param nbt the map of NBT data
+     * @return the packed block
      */
-    private Function<Entry<BlockVector, BaseBlock>, Change> createTransform() {
-        return new Function<Entry<BlockVector, BaseBlock>, Change>() {
-            @Override
-            public Change apply(Entry<BlockVector, BaseBlock> entry) {
-                return new BlockChange(entry.getKey(), entry.getValue(), entry.getValue());
+    static int packBlock(BaseBlock block, int index, Map<Integer, CompoundTag> nbt) {
+        CompoundTag tag = block.getNbtData();
+        if (tag != null) {
+            nbt.put(index, tag);
+        }
+        return (block.getId() << 16) | (block.getData() & 0xFFFF);
+    }
+
+    /**
+     * Unpack a block packed with {@link #packBlock(BaseBlock, int, Map)}.
+     *
+     * @param packed the packed block
+     * @param tag the NBT data, or null
+     * @return a new block
+     */
+    static BaseBlock unpackBlock(int packed, @Nullable CompoundTag tag) {
+        return new BaseBlock(packed >>> 16, (short) packed, tag);
+    }
+
+    /**
+     * Iterates over the stored block changes, creating a {@link BlockChange}
+     * for each as it is requested.
+     */
+    private class BlockChangeIterator implements Iterator<Change> {
+        private final IntArrayList blocks;
+        private final Map<Integer, CompoundTag> nbt;
+        private final boolean reverse;
+        private final int size;
+        private int index;
+
+        private BlockChangeIterator(IntArrayList blocks, Map<Integer, CompoundTag> nbt, boolean reverse) {
+            this.blocks = blocks;
+            this.nbt = nbt;
+            this.reverse = reverse;
+            this.size = blocks.size();
+            this.index = reverse ? size - 1 : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index >= 0 && index < size;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
-        };
+
+            int i = index;
+            index += reverse ? -1 : 1;
+
+            BlockVector position = BlockPositions.toBlockVector(positions.get(i));
+            CompoundTag tag = nbt.isEmpty() ? null : nbt.get(i);
+            BaseBlock block = unpackBlock(blocks.get(i), tag);
+            return new BlockChange(position, block, block);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported");
+        }
     }
 
 }
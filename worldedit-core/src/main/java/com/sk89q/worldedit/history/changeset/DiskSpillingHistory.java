@@ -0,0 +1,407 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.google.common.collect.Iterators;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.math.BlockPositions;
+import com.sk89q.worldedit.util.collection.IntArrayList;
+import com.sk89q.worldedit.util.collection.LongArrayList;
+import com.sk89q.worldedit.util.io.Closer;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A change set that keeps block changes in memory until a threshold is
+ * reached, after which they are written to a compressed file on disk.
+ *
+ * <p>Block changes are written in segments of at most {@code threshold}
+ * changes. Each segment is compressed on its own so that it can be read
+ * back without reading the segments before it, which allows the changes
+ * to be replayed in reverse order for undo while only one segment is held
+ * in memory at a time. Changes that are not block changes are rare and
+ * are always kept in memory.</p>
+ *
+ * <p>If a segment cannot be written, the changes that follow are kept in
+ * memory. The backing file is deleted when this change set is closed.</p>
+ */
+public class DiskSpillingHistory implements ChangeSet, Closeable {
+
+    private static final Logger log = Logger.getLogger(DiskSpillingHistory.class.getCanonicalName());
+    private static final int FLAG_PREVIOUS_NBT = 1;
+    private static final int FLAG_CURRENT_NBT = 2;
+
+    private final File directory;
+    private final int threshold;
+    private final ArrayListHistory otherChanges = new ArrayListHistory();
+
+    private final LongArrayList positions = new LongArrayList();
+    private final IntArrayList previous = new IntArrayList();
+    private final IntArrayList current = new IntArrayList();
+    private final Map<Integer, CompoundTag> previousNbt = new HashMap<Integer, CompoundTag>();
+    private final Map<Integer, CompoundTag> currentNbt = new HashMap<Integer, CompoundTag>();
+
+    @Nullable
+    private File file;
+    private long fileLength;
+    private final LongArrayList segmentOffsets = new LongArrayList();
+    private final IntArrayList segmentLengths = new IntArrayList();
+    private final IntArrayList segmentSizes = new IntArrayList();
+    private int storedSize;
+    private boolean spillFailed;
+    private boolean closed;
+
+    /**
+     * Create a new change set.
+     *
+     * @param directory the directory in which to create the backing file
+     * @param threshold the number of block changes to keep in memory before
+     *                  they are written to disk
+     */
+    public DiskSpillingHistory(File directory, int threshold) {
+        checkNotNull(directory);
+        checkArgument(threshold > 0, "threshold > 0 required");
+        this.directory = directory;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Get the backing file, if any changes have been written to disk yet.
+     *
+     * @return the file, or null
+     */
+    @Nullable
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void add(Change change) {
+        checkNotNull(change);
+        checkState(!closed, "Change set has been closed");
+
+        if (change instanceof BlockChange) {
+            BlockChange blockChange = (BlockChange) change;
+            int index = positions.size();
+            positions.add(BlockPositions.pack(blockChange.getPosition()));
+            previous.add(BlockOptimizedHistory.packBlock(blockChange.getPrevious(), index, previousNbt));
+            current.add(BlockOptimizedHistory.packBlock(blockChange.getCurrent(), index, currentNbt));
+
+            if (positions.size() >= threshold && !spillFailed) {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    // Changes are added while an edit runs, which should
+                    // not fail because the disk is full
+                    log.log(Level.WARNING, "Failed to write history to disk, so the rest of it will be kept in memory", e);
+                    spillFailed = true;
+                }
+            }
+        } else {
+            otherChanges.add(change);
+        }
+    }
+
+    /**
+     * Write all block changes that are still in memory to disk.
+     *
+     * @throws RuntimeException thrown if the changes could not be written
+     */
+    public void flush() {
+        checkState(!closed, "Change set has been closed");
+
+        if (positions.isEmpty()) {
+            return;
+        }
+
+        try {
+            byte[] segment = writeSegment();
+
+            if (file == null) {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Failed to create directory '" + directory.getPath() + "' for history");
+                }
+                file = File.createTempFile("history", ".dat", directory);
+            }
+
+            Closer closer = Closer.create();
+            try {
+                FileOutputStream fos = closer.register(new FileOutputStream(file, true));
+                fos.write(segment);
+            } finally {
+                closer.close();
+            }
+
+            segmentOffsets.add(fileLength);
+            segmentLengths.add(segment.length);
+            segmentSizes.add(positions.size());
+            fileLength += segment.length;
+            storedSize += positions.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write history to disk", e);
+        }
+
+        positions.clear();
+        previous.clear();
+        current.clear();
+        previousNbt.clear();
+        currentNbt.clear();
+    }
+
+    /**
+     * Compress the block changes in memory into a segment.
+     *
+     * @return the compressed segment
+     * @throws IOException thrown on I/O error
+     */
+    private byte[] writeSegment() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+        NBTOutputStream nbtOut = new NBTOutputStream(out);
+        for (int i = 0; i < positions.size(); i++) {
+            CompoundTag previousTag = previousNbt.isEmpty() ? null : previousNbt.get(i);
+            CompoundTag currentTag = currentNbt.isEmpty() ? null : currentNbt.get(i);
+            out.writeLong(positions.get(i));
+            out.writeInt(previous.get(i));
+            out.writeInt(current.get(i));
+            out.writeByte((previousTag != null ? FLAG_PREVIOUS_NBT : 0) | (currentTag != null ? FLAG_CURRENT_NBT : 0));
+            if (previousTag != null) {
+                nbtOut.writeNamedTag("", previousTag);
+            }
+            if (currentTag != null) {
+                nbtOut.writeNamedTag("", currentTag);
+            }
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read one segment from disk.
+     *
+     * @param segment the index of the segment
+     * @param usePrevious true to read the previous blocks, false to read the current blocks
+     * @return the segment's changes
+     */
+    private Segment readSegment(int segment, boolean usePrevious) {
+        checkState(!closed, "Change set has been closed");
+        checkState(file != null);
+
+        int size = segmentSizes.get(segment);
+        byte[] compressed = new byte[segmentLengths.get(segment)];
+        try {
+            Closer closer = Closer.create();
+            try {
+                RandomAccessFile raf = closer.register(new RandomAccessFile(file, "r"));
+                raf.seek(segmentOffsets.get(segment));
+                raf.readFully(compressed);
+            } finally {
+                closer.close();
+            }
+
+            DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)));
+            NBTInputStream nbtIn = new NBTInputStream(in);
+            Segment result = new Segment(size);
+            for (int i = 0; i < size; i++) {
+                result.positions[i] = in.readLong();
+                int previousBlock = in.readInt();
+                int currentBlock = in.readInt();
+                result.blocks[i] = usePrevious ? previousBlock : currentBlock;
+                int flags = in.readByte();
+                CompoundTag previousTag = (flags & FLAG_PREVIOUS_NBT) != 0 ? readCompound(nbtIn) : null;
+                CompoundTag currentTag = (flags & FLAG_CURRENT_NBT) != 0 ? readCompound(nbtIn) : null;
+                CompoundTag tag = usePrevious ? previousTag : currentTag;
+                if (tag != null) {
+                    result.nbt.put(i, tag);
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read history from " + file.getPath(), e);
+        }
+    }
+
+    private static CompoundTag readCompound(NBTInputStream nbtIn) throws IOException {
+        Tag tag = nbtIn.readNamedTag().getTag();
+        if (!(tag instanceof CompoundTag)) {
+            throw new IOException("Expected a compound tag in history file");
+        }
+        return (CompoundTag) tag;
+    }
+
+    @Override
+    public Iterator<Change> backwardIterator() {
+        return Iterators.concat(
+                otherChanges.backwardIterator(),
+                new BlockChangeIterator(true));
+    }
+
+    @Override
+    public Iterator<Change> forwardIterator() {
+        return Iterators.concat(
+                otherChanges.forwardIterator(),
+                new BlockChangeIterator(false));
+    }
+
+    @Override
+    public int size() {
+        return otherChanges.size() + storedSize + positions.size();
+    }
+
+    /**
+     * Delete the backing file. The change set cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        positions.clear();
+        previous.clear();
+        current.clear();
+        previousNbt.clear();
+        currentNbt.clear();
+
+        if (file != null && file.exists() && !file.delete()) {
+            log.log(Level.WARNING, "Failed to delete history file " + file.getPath());
+        }
+    }
+
+    /**
+     * Block changes read back from one segment.
+     */
+    private static class Segment {
+        private final long[] positions;
+        private final int[] blocks;
+        private final Map<Integer, CompoundTag> nbt = new HashMap<Integer, CompoundTag>();
+
+        private Segment(int size) {
+            this.positions = new long[size];
+            this.blocks = new int[size];
+        }
+    }
+
+    /**
+     * Iterates over all block changes, segment by segment, with the changes
+     * still in memory treated as the last segment.
+     */
+    private class BlockChangeIterator implements Iterator<Change> {
+        private final boolean reverse;
+        private final int segmentCount;
+        private int segment;
+        @Nullable
+        private Segment loaded;
+        private int index;
+
+        private BlockChangeIterator(boolean reverse) {
+            this.reverse = reverse;
+            this.segmentCount = segmentSizes.size() + 1; // Last one is the memory tail
+            this.segment = reverse ? segmentCount : -1;
+            advanceSegment();
+        }
+
+        private int segmentSize(int segment) {
+            return segment == segmentCount - 1 ? positions.size() : segmentSizes.get(segment);
+        }
+
+        private void advanceSegment() {
+            loaded = null;
+            do {
+                segment += reverse ? -1 : 1;
+            } while (segment >= 0 && segment < segmentCount && segmentSize(segment) == 0);
+
+            if (segment >= 0 && segment < segmentCount) {
+                index = reverse ? segmentSize(segment) - 1 : 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return segment >= 0 && segment < segmentCount;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            long position;
+            BaseBlock block;
+            if (segment == segmentCount - 1) {
+                Map<Integer, CompoundTag> nbt = reverse ? previousNbt : currentNbt;
+                CompoundTag tag = nbt.isEmpty() ? null : nbt.get(index);
+                position = positions.get(index);
+                block = BlockOptimizedHistory.unpackBlock((reverse ? previous : current).get(index), tag);
+            } else {
+                if (loaded == null) {
+                    loaded = readSegment(segment, reverse);
+                }
+                CompoundTag tag = loaded.nbt.isEmpty() ? null : loaded.nbt.get(index);
+                position = loaded.positions[index];
+                block = BlockOptimizedHistory.unpackBlock(loaded.blocks[index], tag);
+            }
+
+            index += reverse ? -1 : 1;
+            if (index < 0 || index >= segmentSize(segment)) {
+                advanceSegment();
+            }
+
+            BlockVector vector = BlockPositions.toBlockVector(position);
+            return new BlockChange(vector, block, block);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported");
+        }
+    }
+
+}
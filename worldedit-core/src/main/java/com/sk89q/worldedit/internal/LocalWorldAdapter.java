@@ -30,6 +30,7 @@
 import com.sk89q.worldedit.blocks.BaseItemStack;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.SectionBuffer;
 import com.sk89q.worldedit.extension.platform.Platform;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.operation.Operation;
@@ -99,6 +100,11 @@ public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight
         return world.setBlock(position, block, notifyAndLight);
     }
 
+    @Override
+    public int setSection(SectionBuffer section, boolean notifyAndLight) throws WorldEditException {
+        return world.setSection(section, notifyAndLight);
+    }
+
     @Override
     public int getBlockLightLevel(Vector position) {
         return world.getBlockLightLevel(position);
@@ -179,6 +185,16 @@ public void checkLoadedChunk(Vector position) {
         world.checkLoadedChunk(position);
     }
 
+    @Override
+    public void preloadChunk(BlockVector2D chunk) {
+        world.preloadChunk(chunk);
+    }
+
+    @Override
+    public void releaseChunk(BlockVector2D chunk) {
+        world.releaseChunk(chunk);
+    }
+
     @Override
     public void fixAfterFastMode(Iterable<BlockVector2D> chunks) {
         world.fixAfterFastMode(chunks);
@@ -189,6 +205,16 @@ public void fixLighting(Iterable<BlockVector2D> chunks) {
         world.fixLighting(chunks);
     }
 
+    @Override
+    public void relightSections(BlockVector2D chunk, int sectionMask) {
+        world.relightSections(chunk, sectionMask);
+    }
+
+    @Override
+    public boolean canRelightSections() {
+        return world.canRelightSections();
+    }
+
     @Override
     public boolean playEffect(Vector position, int type, int data) {
         return world.playEffect(position, type, data);
@@ -240,6 +266,16 @@ public BaseBlock getLazyBlock(Vector position) {
         return world.getLazyBlock(position);
     }
 
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        return world.getBlockId(x, y, z);
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        return world.getBlockData(x, y, z);
+    }
+
     @Override
     @Nullable
     public Operation commit() {
@@ -83,6 +83,12 @@ public void convert(DisallowedItemException e) throws CommandException {
                 + "' not allowed (see WorldEdit configuration).");
     }
 
+    @ExceptionMatch
+    public void convert(MaxVisitedBlocksException e) throws CommandException {
+        throw new CommandException("Max blocks visited in a search reached ("
+                + e.getBlockLimit() + "). The blocks changed so far can be undone.");
+    }
+
     @ExceptionMatch
     public void convert(MaxChangedBlocksException e) throws CommandException {
         throw new CommandException("Max blocks changed in an operation reached ("
@@ -19,21 +19,32 @@
 
 package com.sk89q.worldedit.internal.expression;
 
+import com.google.common.collect.ImmutableSet;
 import com.sk89q.worldedit.internal.expression.lexer.Lexer;
+import com.sk89q.worldedit.internal.expression.lexer.tokens.CharacterToken;
+import com.sk89q.worldedit.internal.expression.lexer.tokens.IdentifierToken;
 import com.sk89q.worldedit.internal.expression.lexer.tokens.Token;
 import com.sk89q.worldedit.internal.expression.parser.Parser;
+import com.sk89q.worldedit.internal.expression.runtime.CompiledExpression;
 import com.sk89q.worldedit.internal.expression.runtime.Constant;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.ExpressionCompiler;
 import com.sk89q.worldedit.internal.expression.runtime.ExpressionEnvironment;
-import com.sk89q.worldedit.internal.expression.runtime.Functions;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
 import com.sk89q.worldedit.internal.expression.runtime.ReturnException;
 import com.sk89q.worldedit.internal.expression.runtime.Variable;
 
+import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 /**
  * Compiles and evaluates expressions.
@@ -56,7 +67,8 @@
  * <p>To compile an equation, run
  * {@code Expression.compile("expression here", "var1", "var2"...)}.
  * If you wish to run the equation multiple times, you can then optimize it,
- * by calling {@link #optimize()}. You can then run the equation as many times
+ * by calling {@link #optimize()}, which also compiles it to bytecode where
+ * possible. You can then run the equation as many times
  * as you want by calling {@link #evaluate(double...)}. You do not need to
  * pass values for all variables specified while compiling.
  * To query variables after evaluation, you can use
@@ -65,66 +77,204 @@
  *
  * <p>Variables are also supported and can be set either by passing values
  * to {@link #evaluate(double...)}.</p>
+ *
+ * <p>The values of variables are kept in an {@link ExpressionFrame}.
+ * {@link #evaluate(double...)} uses the expression's own frame, which
+ * {@link Variable#getValue()} also reads, so it must not be called by
+ * several threads at once. Once optimized, an expression can be evaluated
+ * by several threads at once if each thread creates its own frame with
+ * {@link #newFrame()} and passes it to
+ * {@link #evaluate(ExpressionFrame, double...)}.</p>
  */
 public class Expression {
 
-    private static final ThreadLocal<Stack<Expression>> instance = new ThreadLocal<Stack<Expression>>();
+    private static final Logger log = Logger.getLogger(Expression.class.getCanonicalName());
+    private static final boolean COMPILE = !Boolean.getBoolean("worldedit.expression.interpret");
+    private static final Set<String> STATEFUL_FUNCTIONS = ImmutableSet.of(
+            "query", "queryAbs", "queryRel", "megabuf", "gmegabuf", "closest", "gclosest");
 
     private final Map<String, RValue> variables = new HashMap<String, RValue>();
-    private final String[] variableNames;
+    private final Variable[] parameters;
+    private final boolean stateful;
+    private final ExpressionFrame frame = new ExpressionFrame(this, 0);
+    private int variableCount;
     private RValue root;
-    private final Functions functions = new Functions();
+    @Nullable
+    private CompiledExpression compiled;
     private ExpressionEnvironment environment;
 
     public static Expression compile(String expression, String... variableNames) throws ExpressionException {
         return new Expression(expression, variableNames);
     }
 
+    /**
+     * Test whether the given expression calls a function that reads blocks
+     * through the environment, or that keeps state between evaluations,
+     * such as {@code query} or {@code megabuf}.
+     *
+     * <p>Expressions that call none of these functions can be evaluated by
+     * several threads at once, in any order, with the same results.</p>
+     *
+     * @param expression the expression
+     * @return true if a stateful function is called
+     * @throws ExpressionException thrown if the expression cannot be tokenized
+     */
+    public static boolean callsStatefulFunction(String expression) throws ExpressionException {
+        return callsStatefulFunction(Lexer.tokenize(expression));
+    }
+
+    private static boolean callsStatefulFunction(List<Token> tokens) {
+        for (int i = 0; i < tokens.size() - 1; i++) {
+            Token token = tokens.get(i);
+            Token next = tokens.get(i + 1);
+            if (token instanceof IdentifierToken && STATEFUL_FUNCTIONS.contains(((IdentifierToken) token).value)
+                    && next instanceof CharacterToken && ((CharacterToken) next).character == '(') {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private Expression(String expression, String... variableNames) throws ExpressionException {
         this(Lexer.tokenize(expression), variableNames);
     }
 
     private Expression(List<Token> tokens, String... variableNames) throws ExpressionException {
-        this.variableNames = variableNames;
+        this.parameters = new Variable[variableNames.length];
+        this.stateful = callsStatefulFunction(tokens);
 
         variables.put("e", new Constant(-1, Math.E));
         variables.put("pi", new Constant(-1, Math.PI));
         variables.put("true", new Constant(-1, 1));
         variables.put("false", new Constant(-1, 0));
 
-        for (String variableName : variableNames) {
+        for (int i = 0; i < variableNames.length; i++) {
+            String variableName = variableNames[i];
             if (variables.containsKey(variableName)) {
                 throw new ExpressionException(-1, "Tried to overwrite identifier '" + variableName + "'");
             }
-            variables.put(variableName, new Variable(0));
+            parameters[i] = new Variable(this, variableCount++);
+            variables.put(variableName, parameters[i]);
         }
 
         root = Parser.parse(tokens, this);
     }
 
     public double evaluate(double... values) throws EvaluationException {
-        for (int i = 0; i < values.length; ++i) {
-            final String variableName = variableNames[i];
-            final RValue invokable = variables.get(variableName);
-            if (!(invokable instanceof Variable)) {
-                throw new EvaluationException(invokable.getPosition(), "Tried to assign constant " + variableName + ".");
-            }
+        // A new frame is used if the expression is evaluated again from within itself
+        return evaluate(frame.running ? newFrame() : frame, values);
+    }
+
+    /**
+     * Evaluate the expression with the given frame.
+     *
+     * @param frame a frame created by {@link #newFrame()}
+     * @param values the values of the variables passed while compiling
+     * @return the result
+     * @throws EvaluationException thrown on an error during evaluation
+     */
+    public double evaluate(ExpressionFrame frame, double... values) throws EvaluationException {
+        checkNotNull(frame);
+        checkArgument(frame.getExpression() == this, "The frame belongs to another expression");
+        checkArgument(values.length <= parameters.length, "Too many values");
+        checkState(!frame.running, "The frame is already being evaluated");
 
-            ((Variable) invokable).value = values[i];
+        frame.ensureCapacity(variableCount);
+        frame.bind(root, compiled);
+        double[] frameValues = frame.values;
+        for (int i = 0; i < values.length; ++i) {
+            frameValues[parameters[i].getIndex()] = values[i];
         }
 
-        pushInstance();
+        // Only the stateful functions look up the frame that is evaluated
+        ExpressionFrame previous = stateful ? ExpressionFrame.enter(frame) : null;
+        frame.running = true;
         try {
-            return root.getValue();
+            return compiled != null ? compiled.evaluate(frameValues, frame.boundNodes) : frame.boundRoot.getValue();
         } catch (ReturnException e) {
             return e.getValue();
         } finally {
-            popInstance();
+            frame.running = false;
+            if (stateful) {
+                ExpressionFrame.exit(previous);
+            }
         }
     }
 
+    /**
+     * Create a frame to evaluate the expression with.
+     *
+     * <p>Threads that evaluate the expression at the same time each need
+     * their own frame.</p>
+     *
+     * @return a new frame
+     */
+    public ExpressionFrame newFrame() {
+        return new ExpressionFrame(this, variableCount);
+    }
+
+    /**
+     * Get the frame of the expression that {@link #evaluate(double...)}
+     * uses, and that the variables returned by
+     * {@link #getVariable(String, boolean)} read.
+     *
+     * @return the frame
+     */
+    public ExpressionFrame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Optimize the expression and compile it to bytecode where possible.
+     *
+     * <p>This must be called before the expression is shared between
+     * threads.</p>
+     *
+     * @throws EvaluationException thrown if constant parts fail to evaluate
+     */
     public void optimize() throws EvaluationException {
+        optimize(COMPILE);
+    }
+
+    /**
+     * Optimize the expression, optionally compiling it to bytecode.
+     *
+     * @param compile true to compile the expression if possible
+     * @throws EvaluationException thrown if constant parts fail to evaluate
+     */
+    void optimize(boolean compile) throws EvaluationException {
         root = root.optimize();
+        compiled = null;
+
+        if (compile) {
+            try {
+                compiled = ExpressionCompiler.compile(root);
+            } catch (LinkageError e) {
+                // The bytecode library is missing, so keep interpreting
+                log.log(Level.FINE, "Expressions can't be compiled", e);
+            }
+        }
+    }
+
+    /**
+     * Return whether the expression was compiled to bytecode by the last
+     * call to {@link #optimize()}.
+     *
+     * @return true if compiled
+     */
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Return whether the expression calls a function that reads blocks
+     * through the environment, or that keeps state between evaluations.
+     *
+     * @return true if a stateful function is called
+     * @see #callsStatefulFunction(String)
+     */
+    public boolean callsStatefulFunction() {
+        return stateful;
     }
 
     @Override
@@ -135,37 +285,16 @@ public String toString() {
     public RValue getVariable(String name, boolean create) {
         RValue variable = variables.get(name);
         if (variable == null && create) {
-            variables.put(name, variable = new Variable(0));
+            variables.put(name, variable = new Variable(this, variableCount++));
         }
 
         return variable;
     }
 
+    @Nullable
     public static Expression getInstance() {
-        return instance.get().peek();
-    }
-
-    private void pushInstance() {
-        Stack<Expression> foo = instance.get();
-        if (foo == null) {
-            instance.set(foo = new Stack<Expression>());
-        }
-
-        foo.push(this);
-    }
-
-    private void popInstance() {
-        Stack<Expression> foo = instance.get();
-
-        foo.pop();
-
-        if (foo.isEmpty()) {
-            instance.set(null);
-        }
-    }
-
-    public Functions getFunctions() {
-        return functions;
+        ExpressionFrame frame = ExpressionFrame.current();
+        return frame != null ? frame.getExpression() : null;
     }
 
     public ExpressionEnvironment getEnvironment() {
@@ -0,0 +1,181 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import com.sk89q.worldedit.internal.expression.runtime.CompiledExpression;
+import com.sk89q.worldedit.internal.expression.runtime.RValue;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The state of an {@link Expression} while it is evaluated: the values of
+ * its variables and the contents of its {@code megabuf}.
+ *
+ * <p>The program of an expression is not changed by evaluating it, so one
+ * expression can be evaluated by several threads at once, each with a frame
+ * from {@link Expression#newFrame()}. A frame keeps its own copy of the
+ * parts of the program that are interpreted, with variables that read and
+ * write the frame directly. A frame must not be used by several threads at
+ * once.</p>
+ */
+public final class ExpressionFrame {
+
+    private static final ThreadLocal<ExpressionFrame> current = new ThreadLocal<ExpressionFrame>();
+
+    private final Expression expression;
+    private final Map<Integer, double[]> megabuf = new HashMap<Integer, double[]>();
+    double[] values;
+    boolean running;
+
+    // The program that the copies below were made from
+    @Nullable
+    private RValue root;
+    @Nullable
+    private CompiledExpression compiled;
+    @Nullable
+    RValue boundRoot;
+    @Nullable
+    RValue[] boundNodes;
+
+    /**
+     * Create a new instance.
+     *
+     * @param expression the expression
+     * @param size the number of variables of the expression
+     */
+    ExpressionFrame(Expression expression, int size) {
+        checkNotNull(expression);
+        this.expression = expression;
+        this.values = new double[size];
+    }
+
+    /**
+     * Get the frame that the current thread is evaluating.
+     *
+     * <p>This is only tracked for expressions that call stateful
+     * functions, which are the only ones that need it.</p>
+     *
+     * @return the frame, or null if no such expression is being evaluated
+     */
+    @Nullable
+    public static ExpressionFrame current() {
+        return current.get();
+    }
+
+    /**
+     * Make the given frame the one that the current thread is evaluating.
+     *
+     * @param frame the frame
+     * @return the frame that was evaluated before, to be passed to {@link #exit(ExpressionFrame)}
+     */
+    static ExpressionFrame enter(ExpressionFrame frame) {
+        ExpressionFrame previous = current.get();
+        current.set(frame);
+        return previous;
+    }
+
+    /**
+     * Leave the frame that the current thread is evaluating.
+     *
+     * @param previous the frame returned by {@link #enter(ExpressionFrame)}
+     */
+    static void exit(ExpressionFrame previous) {
+        // Restored to null after the outermost frame, so the thread keeps no reference to the expression
+        current.set(previous);
+    }
+
+    /**
+     * Get the expression that this frame belongs to.
+     *
+     * @return the expression
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Get the value of a variable.
+     *
+     * @param index the index of the variable
+     * @return the value
+     */
+    public double getValue(int index) {
+        return index < values.length ? values[index] : 0;
+    }
+
+    /**
+     * Set the value of a variable.
+     *
+     * @param index the index of the variable
+     * @param value the value
+     */
+    public void setValue(int index, double value) {
+        ensureCapacity(index + 1);
+        values[index] = value;
+    }
+
+    /**
+     * Make room for variables that were created after this frame.
+     *
+     * @param size the number of variables
+     */
+    void ensureCapacity(int size) {
+        if (values.length < size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Copy the interpreted parts of a program for this frame, unless the
+     * frame was last used with the same program.
+     *
+     * @param root the root of the execution tree
+     * @param compiled the compiled program, or null if it is interpreted
+     */
+    void bind(RValue root, @Nullable CompiledExpression compiled) {
+        if (root == this.root && compiled == this.compiled) {
+            return;
+        }
+        this.root = root;
+        this.compiled = compiled;
+        if (compiled != null) {
+            boundRoot = null;
+            boundNodes = compiled.bindNodes(this);
+        } else {
+            boundRoot = root.bindFrame(this);
+            boundNodes = null;
+        }
+    }
+
+    /**
+     * Get the buffer that is read and written by {@code megabuf}.
+     *
+     * @return the buffer, split into blocks of 1024 values
+     */
+    public Map<Integer, double[]> getMegabuf() {
+        return megabuf;
+    }
+
+}
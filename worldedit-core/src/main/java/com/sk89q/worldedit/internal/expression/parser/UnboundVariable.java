@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.parser;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
 import com.sk89q.worldedit.internal.expression.runtime.LValue;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
@@ -67,6 +68,11 @@ public RValue bind(Expression expression, boolean isLValue) throws ParserExcepti
         return variable;
     }
 
+    @Override
+    public LValue bindFrame(ExpressionFrame frame) {
+        return this;
+    }
+
     @Override
     public LValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         final RValue variable = expression.getVariable(name, preferLValue);
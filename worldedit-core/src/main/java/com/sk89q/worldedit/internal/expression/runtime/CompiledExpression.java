@@ -0,0 +1,74 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An expression that was compiled to JVM bytecode by
+ * {@link ExpressionCompiler}.
+ *
+ * <p>Subclasses are generated at runtime and keep the variables of the
+ * expression in local variables while they are evaluated, copying them
+ * back to the values of the frame when evaluation finishes. Nodes that are
+ * interpreted are passed in as copies that are bound to the frame, so
+ * compiled expressions hold no state and can be evaluated by several
+ * threads at once.</p>
+ */
+public abstract class CompiledExpression {
+
+    private final RValue[] nodes;
+
+    /**
+     * Create a new instance.
+     *
+     * @param nodes nodes that are interpreted instead of compiled
+     */
+    protected CompiledExpression(RValue[] nodes) {
+        checkNotNull(nodes);
+        this.nodes = nodes;
+    }
+
+    /**
+     * Get copies of the nodes that are interpreted, bound to the given frame.
+     *
+     * @param frame the frame
+     * @return the nodes to pass to {@link #evaluate(double[], RValue[])}
+     */
+    public RValue[] bindNodes(ExpressionFrame frame) {
+        return Node.bindFrame(nodes, frame);
+    }
+
+    /**
+     * Evaluate the expression.
+     *
+     * <p>The values are those of the frame that is being evaluated,
+     * indexed by {@link Variable#getIndex()}.</p>
+     *
+     * @param values the values of the variables
+     * @param nodes the nodes that are interpreted, from {@link #bindNodes(ExpressionFrame)}
+     * @return the result
+     * @throws EvaluationException thrown on an error during evaluation
+     */
+    public abstract double evaluate(double[] values, RValue[] nodes) throws EvaluationException;
+
+}
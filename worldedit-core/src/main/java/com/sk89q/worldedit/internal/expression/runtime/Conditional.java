@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 /**
@@ -27,9 +28,9 @@
  */
 public class Conditional extends Node {
 
-    private RValue condition;
-    private RValue truePart;
-    private RValue falsePart;
+    RValue condition;
+    RValue truePart;
+    RValue falsePart;
 
     public Conditional(int position, RValue condition, RValue truePart, RValue falsePart) {
         super(position);
@@ -79,6 +80,11 @@ public RValue optimize() throws EvaluationException {
         return new Conditional(getPosition(), newCondition, truePart.optimize(), falsePart == null ? null : falsePart.optimize());
     }
 
+    @Override
+    public RValue bindFrame(ExpressionFrame frame) {
+        return new Conditional(getPosition(), condition.bindFrame(frame), truePart.bindFrame(frame), falsePart == null ? null : falsePart.bindFrame(frame));
+    }
+
     @Override
     public RValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         condition = condition.bindVariables(expression, false);
@@ -0,0 +1,873 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import com.google.common.collect.ImmutableSet;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Compiles the execution tree of an expression to JVM bytecode.
+ *
+ * <p>The variables of the expression are read from the frame that is
+ * evaluated into local variables of the generated method, and written back
+ * when it returns. Operators are emitted as instructions and built-in
+ * functions that are backed by {@link Math} call it directly. Nodes that
+ * have no direct translation, such as calls to {@code query} or
+ * {@code megabuf}, are interpreted from the generated code, through copies
+ * that the frame passes in. The generated class holds no other state, so
+ * it can be used by several threads at once.</p>
+ *
+ * <p>Every compiled expression is defined in its own class loader, so its
+ * class can be unloaded once the expression is no longer used.</p>
+ */
+public final class ExpressionCompiler {
+
+    private static final Logger log = Logger.getLogger(ExpressionCompiler.class.getCanonicalName());
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private static final String CLASS_PREFIX = "com/sk89q/worldedit/internal/expression/runtime/GeneratedExpression$";
+    private static final String BASE_CLASS = Type.getInternalName(CompiledExpression.class);
+    private static final String RVALUE = Type.getInternalName(RValue.class);
+    private static final String MATH = Type.getInternalName(Math.class);
+    private static final String EVALUATION_EXCEPTION = Type.getInternalName(EvaluationException.class);
+    private static final String BREAK_EXCEPTION = Type.getInternalName(BreakException.class);
+    private static final String CONSTRUCTOR_DESC = "(" + Type.getDescriptor(RValue[].class) + ")V";
+    private static final String EVALUATE_DESC = "([D" + Type.getDescriptor(RValue[].class) + ")D";
+
+    private static final int MAX_ITERATIONS = 256;
+
+    private static final Set<String> UNARY_MATH_FUNCTIONS = ImmutableSet.of(
+            "sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh", "sqrt", "cbrt",
+            "abs", "ceil", "floor", "rint", "exp", "log", "log10");
+
+    private final List<Variable> variables = new ArrayList<Variable>();
+    private final Map<Variable, Integer> variableSlots = new IdentityHashMap<Variable, Integer>();
+    private final List<RValue> nodes = new ArrayList<RValue>();
+    private final Deque<JumpTarget> targets = new ArrayDeque<JumpTarget>();
+    private MethodVisitor mv;
+    private int nextLocal;
+    private int depth;
+    private int resultSlot;
+    private Label exitLabel;
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Compile an execution tree.
+     *
+     * @param root the root of the tree, after variables have been bound
+     * @return the compiled expression, or null if the tree contains nodes that cannot be compiled
+     */
+    @Nullable
+    public static CompiledExpression compile(RValue root) {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        try {
+            return compiler.generate(root);
+        } catch (NotCompilableException e) {
+            return null;
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Failed to compile an expression, so it will be interpreted instead", e);
+            return null;
+        } catch (LinkageError e) {
+            log.log(Level.WARNING, "Failed to load a compiled expression, so it will be interpreted instead", e);
+            return null;
+        }
+    }
+
+    private CompiledExpression generate(RValue root) {
+        collectVariables(root);
+
+        String name = CLASS_PREFIX + nextId.getAndIncrement();
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        // Version 49 class files don't need stack map frames
+        cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, BASE_CLASS, null);
+
+        MethodVisitor constructor = cw.visitMethod(ACC_PUBLIC, "<init>", CONSTRUCTOR_DESC, null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitVarInsn(ALOAD, 1);
+        constructor.visitMethodInsn(INVOKESPECIAL, BASE_CLASS, "<init>", CONSTRUCTOR_DESC, false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "evaluate", EVALUATE_DESC, null, new String[] { EVALUATION_EXCEPTION });
+        mv.visitCode();
+
+        // Slot 0 is this, 1 the values of the frame and 2 the bound nodes
+        nextLocal = 3;
+        for (Variable variable : variables) {
+            variableSlots.put(variable, newLocal(2));
+        }
+        resultSlot = newLocal(2);
+        loadVariables();
+
+        Label start = new Label();
+        Label handler = new Label();
+        exitLabel = new Label();
+        mv.visitTryCatchBlock(start, exitLabel, handler, null);
+
+        mv.visitLabel(start);
+        emit(root);
+        mv.visitVarInsn(DSTORE, resultSlot);
+
+        mv.visitLabel(exitLabel);
+        storeVariables();
+        mv.visitVarInsn(DLOAD, resultSlot);
+        mv.visitInsn(DRETURN);
+
+        // Leave the variables as the interpreter would if evaluation fails
+        mv.visitLabel(handler);
+        int exceptionSlot = newLocal(1);
+        mv.visitVarInsn(ASTORE, exceptionSlot);
+        storeVariables();
+        mv.visitVarInsn(ALOAD, exceptionSlot);
+        mv.visitInsn(ATHROW);
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        Class<?> type = new GeneratedClassLoader(CompiledExpression.class.getClassLoader())
+                .define(name.replace('/', '.'), cw.toByteArray());
+        try {
+            return (CompiledExpression) type.getConstructor(RValue[].class).newInstance(
+                    (Object) nodes.toArray(new RValue[nodes.size()]));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create the compiled expression", e);
+        }
+    }
+
+    private int newLocal(int size) {
+        int slot = nextLocal;
+        nextLocal += size;
+        return slot;
+    }
+
+    private void collectVariables(RValue node) {
+        if (node instanceof Variable) {
+            Variable variable = (Variable) node;
+            if (!variableSlots.containsKey(variable)) {
+                variableSlots.put(variable, -1);
+                variables.add(variable);
+            }
+        }
+        for (RValue child : getChildren(node)) {
+            collectVariables(child);
+        }
+    }
+
+    private static List<RValue> getChildren(RValue node) {
+        if (node instanceof Constant || node instanceof Variable || node instanceof Break) {
+            return Collections.emptyList();
+        } else if (node instanceof Function) {
+            return Arrays.asList(((Function) node).args);
+        } else if (node instanceof Conditional) {
+            Conditional conditional = (Conditional) node;
+            return withoutNull(conditional.condition, conditional.truePart, conditional.falsePart);
+        } else if (node instanceof For) {
+            For loop = (For) node;
+            return Arrays.asList(loop.init, loop.condition, loop.increment, loop.body);
+        } else if (node instanceof SimpleFor) {
+            SimpleFor loop = (SimpleFor) node;
+            return Arrays.<RValue>asList(loop.counter, loop.first, loop.last, loop.body);
+        } else if (node instanceof While) {
+            While loop = (While) node;
+            return Arrays.asList(loop.condition, loop.body);
+        } else if (node instanceof Sequence) {
+            return Arrays.asList(((Sequence) node).sequence);
+        } else if (node instanceof Switch) {
+            Switch switchNode = (Switch) node;
+            List<RValue> children = new ArrayList<RValue>();
+            children.add(switchNode.parameter);
+            Collections.addAll(children, switchNode.caseStatements);
+            if (switchNode.defaultCase != null) {
+                children.add(switchNode.defaultCase);
+            }
+            return children;
+        } else if (node instanceof Return) {
+            return Collections.singletonList(((Return) node).value);
+        } else {
+            throw new NotCompilableException();
+        }
+    }
+
+    private static List<RValue> withoutNull(RValue... values) {
+        List<RValue> list = new ArrayList<RValue>(values.length);
+        for (RValue value : values) {
+            if (value != null) {
+                list.add(value);
+            }
+        }
+        return list;
+    }
+
+    private static boolean containsJump(RValue node) {
+        if (node instanceof Break || node instanceof Return) {
+            return true;
+        }
+        for (RValue child : getChildren(node)) {
+            if (containsJump(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void loadVariables() {
+        for (Variable variable : variables) {
+            mv.visitVarInsn(ALOAD, 1);
+            pushInt(variable.getIndex());
+            mv.visitInsn(DALOAD);
+            mv.visitVarInsn(DSTORE, variableSlots.get(variable));
+        }
+    }
+
+    private void storeVariables() {
+        for (Variable variable : variables) {
+            mv.visitVarInsn(ALOAD, 1);
+            pushInt(variable.getIndex());
+            mv.visitVarInsn(DLOAD, variableSlots.get(variable));
+            mv.visitInsn(DASTORE);
+        }
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private void pushDouble(double value) {
+        if (Double.doubleToRawLongBits(value) == 0) {
+            mv.visitInsn(DCONST_0);
+        } else if (value == 1.0) {
+            mv.visitInsn(DCONST_1);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * Emit the instructions for a node, which leave its value on the stack.
+     *
+     * @param node the node
+     */
+    private void emit(RValue node) {
+        if (node instanceof Constant) {
+            pushDouble(((Constant) node).getValue());
+        } else if (node instanceof Variable) {
+            mv.visitVarInsn(DLOAD, variableSlots.get(node));
+        } else if (node instanceof Function) {
+            emitFunction((Function) node);
+        } else if (node instanceof Conditional) {
+            emitConditional((Conditional) node);
+        } else if (node instanceof For) {
+            emitFor((For) node);
+        } else if (node instanceof SimpleFor) {
+            emitSimpleFor((SimpleFor) node);
+        } else if (node instanceof While) {
+            emitWhile((While) node);
+        } else if (node instanceof Sequence) {
+            emitSequence((Sequence) node);
+        } else if (node instanceof Switch) {
+            emitSwitch((Switch) node);
+        } else if (node instanceof Break) {
+            emitBreak((Break) node);
+        } else if (node instanceof Return) {
+            emitReturn((Return) node);
+        } else {
+            throw new NotCompilableException();
+        }
+    }
+
+    private void emitAll(RValue... values) {
+        for (RValue value : values) {
+            emit(value);
+            depth++;
+        }
+        depth -= values.length;
+    }
+
+    /**
+     * Emit a test of whether the value of a node is greater than zero, as
+     * used by conditions.
+     *
+     * @param node the node
+     * @param ifFalse the label to jump to if the test fails
+     */
+    private void emitTest(RValue node, Label ifFalse) {
+        emit(node);
+        mv.visitInsn(DCONST_0);
+        mv.visitInsn(DCMPL);
+        mv.visitJumpInsn(IFLE, ifFalse);
+    }
+
+    /**
+     * Emit {@code 1.0} or {@code 0.0} depending on a comparison of the two
+     * int values on the stack.
+     *
+     * @param jumpIfFalse the jump instruction that jumps if the result is false
+     */
+    private void emitBoolean(int jumpIfFalse) {
+        Label isFalse = new Label();
+        Label end = new Label();
+        mv.visitJumpInsn(jumpIfFalse, isFalse);
+        mv.visitInsn(DCONST_1);
+        mv.visitJumpInsn(GOTO, end);
+        mv.visitLabel(isFalse);
+        mv.visitInsn(DCONST_0);
+        mv.visitLabel(end);
+    }
+
+    private void emitFunction(Function function) {
+        Class<?> owner = function.method.getDeclaringClass();
+        if (owner == Operators.class && emitOperator(function.method.getName(), function.args)) {
+            return;
+        }
+        if (owner == Functions.class && emitMathFunction(function.method, function.args)) {
+            return;
+        }
+        emitInterpreted(function);
+    }
+
+    private boolean emitOperator(String name, RValue[] args) {
+        if (args.length == 1) {
+            RValue x = args[0];
+            if (name.equals("neg")) {
+                emit(x);
+                mv.visitInsn(DNEG);
+            } else if (name.equals("not")) {
+                emit(x);
+                mv.visitInsn(DCONST_0);
+                mv.visitInsn(DCMPL);
+                emitBoolean(IFGT);
+            } else if (name.equals("inv")) {
+                emit(x);
+                mv.visitInsn(D2L);
+                mv.visitLdcInsn(-1L);
+                mv.visitInsn(LXOR);
+                mv.visitInsn(L2D);
+            } else if (x instanceof Variable && (name.equals("inc") || name.equals("dec"))) {
+                int slot = variableSlots.get(x);
+                mv.visitVarInsn(DLOAD, slot);
+                mv.visitInsn(DCONST_1);
+                mv.visitInsn(name.equals("inc") ? DADD : DSUB);
+                mv.visitInsn(DUP2);
+                mv.visitVarInsn(DSTORE, slot);
+            } else if (x instanceof Variable && (name.equals("postinc") || name.equals("postdec"))) {
+                int slot = variableSlots.get(x);
+                mv.visitVarInsn(DLOAD, slot);
+                mv.visitInsn(DUP2);
+                mv.visitInsn(DCONST_1);
+                mv.visitInsn(name.equals("postinc") ? DADD : DSUB);
+                mv.visitVarInsn(DSTORE, slot);
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        if (args.length != 2) {
+            return false;
+        }
+
+        RValue lhs = args[0];
+        RValue rhs = args[1];
+        if (name.equals("add")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DADD);
+        } else if (name.equals("sub")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DSUB);
+        } else if (name.equals("mul")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DMUL);
+        } else if (name.equals("div")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DDIV);
+        } else if (name.equals("mod")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DREM);
+        } else if (name.equals("pow")) {
+            emitAll(lhs, rhs);
+            mv.visitMethodInsn(INVOKESTATIC, MATH, "pow", "(DD)D", false);
+        } else if (name.equals("lth")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DCMPG);
+            emitBoolean(IFGE);
+        } else if (name.equals("gth")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DCMPL);
+            emitBoolean(IFLE);
+        } else if (name.equals("leq")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DCMPG);
+            emitBoolean(IFGT);
+        } else if (name.equals("geq")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DCMPL);
+            emitBoolean(IFLT);
+        } else if (name.equals("equ")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DCMPL);
+            emitBoolean(IFNE);
+        } else if (name.equals("neq")) {
+            emitAll(lhs, rhs);
+            mv.visitInsn(DCMPL);
+            emitBoolean(IFEQ);
+        } else if (name.equals("and")) {
+            Label isFalse = new Label();
+            Label end = new Label();
+            emitTest(lhs, isFalse);
+            emitTest(rhs, isFalse);
+            mv.visitInsn(DCONST_1);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(isFalse);
+            mv.visitInsn(DCONST_0);
+            mv.visitLabel(end);
+        } else if (name.equals("or")) {
+            Label isTrue = new Label();
+            Label isFalse = new Label();
+            Label end = new Label();
+            Label testRight = new Label();
+            emitTest(lhs, testRight);
+            mv.visitJumpInsn(GOTO, isTrue);
+            mv.visitLabel(testRight);
+            emitTest(rhs, isFalse);
+            mv.visitLabel(isTrue);
+            mv.visitInsn(DCONST_1);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(isFalse);
+            mv.visitInsn(DCONST_0);
+            mv.visitLabel(end);
+        } else if (name.equals("shl") || name.equals("shr")) {
+            emit(lhs);
+            mv.visitInsn(D2L);
+            depth++;
+            emit(rhs);
+            depth--;
+            mv.visitInsn(D2L);
+            mv.visitInsn(L2I);
+            mv.visitInsn(name.equals("shl") ? LSHL : LSHR);
+            mv.visitInsn(L2D);
+        } else if (lhs instanceof Variable && name.equals("ass")) {
+            emit(rhs);
+            mv.visitInsn(DUP2);
+            mv.visitVarInsn(DSTORE, variableSlots.get(lhs));
+        } else if (lhs instanceof Variable && name.length() == 4 && name.charAt(0) == 'a') {
+            int instruction;
+            if (name.equals("aadd")) {
+                instruction = DADD;
+            } else if (name.equals("asub")) {
+                instruction = DSUB;
+            } else if (name.equals("amul")) {
+                instruction = DMUL;
+            } else if (name.equals("adiv")) {
+                instruction = DDIV;
+            } else if (name.equals("amod")) {
+                instruction = DREM;
+            } else if (name.equals("aexp")) {
+                instruction = -1;
+            } else {
+                return false;
+            }
+            emitAll(lhs, rhs);
+            if (instruction == -1) {
+                mv.visitMethodInsn(INVOKESTATIC, MATH, "pow", "(DD)D", false);
+            } else {
+                mv.visitInsn(instruction);
+            }
+            mv.visitInsn(DUP2);
+            mv.visitVarInsn(DSTORE, variableSlots.get(lhs));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean emitMathFunction(Method method, RValue[] args) {
+        for (Class<?> parameter : method.getParameterTypes()) {
+            if (parameter != RValue.class) {
+                return false;
+            }
+        }
+
+        String name = method.getName();
+        if (args.length == 1 && UNARY_MATH_FUNCTIONS.contains(name)) {
+            emit(args[0]);
+            mv.visitMethodInsn(INVOKESTATIC, MATH, name, "(D)D", false);
+        } else if (args.length == 1 && name.equals("ln")) {
+            emit(args[0]);
+            mv.visitMethodInsn(INVOKESTATIC, MATH, "log", "(D)D", false);
+        } else if (args.length == 1 && name.equals("round")) {
+            emit(args[0]);
+            mv.visitMethodInsn(INVOKESTATIC, MATH, "round", "(D)J", false);
+            mv.visitInsn(L2D);
+        } else if (args.length == 2 && (name.equals("atan2") || name.equals("min") || name.equals("max"))) {
+            emitAll(args);
+            mv.visitMethodInsn(INVOKESTATIC, MATH, name, "(DD)D", false);
+        } else if (args.length == 3 && (name.equals("min") || name.equals("max"))) {
+            emitAll(args);
+            mv.visitMethodInsn(INVOKESTATIC, MATH, name, "(DD)D", false);
+            mv.visitMethodInsn(INVOKESTATIC, MATH, name, "(DD)D", false);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Emit a call to {@link RValue#getValue()} on a node that is not
+     * compiled.
+     *
+     * <p>The node may read or assign variables, so they are written back
+     * before the call and read again afterwards.</p>
+     *
+     * @param node the node
+     */
+    private void emitInterpreted(RValue node) {
+        if (containsJump(node)) {
+            // The interpreter would signal these with exceptions
+            throw new NotCompilableException();
+        }
+
+        storeVariables();
+        mv.visitVarInsn(ALOAD, 2);
+        pushInt(nodes.size());
+        mv.visitInsn(AALOAD);
+        mv.visitMethodInsn(INVOKEINTERFACE, RVALUE, "getValue", "()D", true);
+        nodes.add(node);
+        loadVariables();
+    }
+
+    private void emitConditional(Conditional conditional) {
+        Label isFalse = new Label();
+        Label end = new Label();
+        emitTest(conditional.condition, isFalse);
+        emit(conditional.truePart);
+        mv.visitJumpInsn(GOTO, end);
+        mv.visitLabel(isFalse);
+        if (conditional.falsePart == null) {
+            mv.visitInsn(DCONST_0);
+        } else {
+            emit(conditional.falsePart);
+        }
+        mv.visitLabel(end);
+    }
+
+    private void emitSequence(Sequence sequence) {
+        RValue[] statements = sequence.sequence;
+        if (statements.length == 0) {
+            mv.visitInsn(DCONST_0);
+            return;
+        }
+        for (int i = 0; i < statements.length; i++) {
+            emit(statements[i]);
+            if (i < statements.length - 1) {
+                mv.visitInsn(POP2);
+            }
+        }
+    }
+
+    /**
+     * Emit the check that stops loops after {@link #MAX_ITERATIONS}
+     * iterations.
+     *
+     * @param iterationsSlot the slot of the iteration counter
+     * @param position the position of the loop
+     */
+    private void emitIterationCheck(int iterationsSlot, int position) {
+        Label allowed = new Label();
+        mv.visitVarInsn(ILOAD, iterationsSlot);
+        pushInt(MAX_ITERATIONS);
+        mv.visitJumpInsn(IF_ICMPLE, allowed);
+        mv.visitTypeInsn(NEW, EVALUATION_EXCEPTION);
+        mv.visitInsn(DUP);
+        pushInt(position);
+        mv.visitLdcInsn("Loop exceeded " + MAX_ITERATIONS + " iterations.");
+        mv.visitMethodInsn(INVOKESPECIAL, EVALUATION_EXCEPTION, "<init>", "(ILjava/lang/String;)V", false);
+        mv.visitInsn(ATHROW);
+        mv.visitLabel(allowed);
+        mv.visitIincInsn(iterationsSlot, 1);
+    }
+
+    private int startLoop() {
+        int retSlot = newLocal(2);
+        mv.visitInsn(DCONST_0);
+        mv.visitVarInsn(DSTORE, retSlot);
+        return retSlot;
+    }
+
+    private int startIterationCount() {
+        int iterationsSlot = newLocal(1);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, iterationsSlot);
+        return iterationsSlot;
+    }
+
+    private void emitWhile(While loop) {
+        int retSlot = startLoop();
+        int iterationsSlot = startIterationCount();
+        Label check = new Label();
+        Label end = new Label();
+        targets.push(new JumpTarget(end, check, depth, -1));
+
+        if (loop.footChecked) {
+            Label top = new Label();
+            mv.visitLabel(top);
+            emitIterationCheck(iterationsSlot, loop.getPosition());
+            emit(loop.body);
+            mv.visitVarInsn(DSTORE, retSlot);
+            mv.visitLabel(check);
+            emit(loop.condition);
+            mv.visitInsn(DCONST_0);
+            mv.visitInsn(DCMPL);
+            mv.visitJumpInsn(IFGT, top);
+        } else {
+            mv.visitLabel(check);
+            emitTest(loop.condition, end);
+            emitIterationCheck(iterationsSlot, loop.getPosition());
+            emit(loop.body);
+            mv.visitVarInsn(DSTORE, retSlot);
+            mv.visitJumpInsn(GOTO, check);
+        }
+
+        targets.pop();
+        mv.visitLabel(end);
+        mv.visitVarInsn(DLOAD, retSlot);
+    }
+
+    private void emitFor(For loop) {
+        emit(loop.init);
+        mv.visitInsn(POP2);
+        int retSlot = startLoop();
+        int iterationsSlot = startIterationCount();
+        Label check = new Label();
+        Label increment = new Label();
+        Label end = new Label();
+        targets.push(new JumpTarget(end, increment, depth, -1));
+
+        mv.visitLabel(check);
+        emitTest(loop.condition, end);
+        emitIterationCheck(iterationsSlot, loop.getPosition());
+        emit(loop.body);
+        mv.visitVarInsn(DSTORE, retSlot);
+        mv.visitLabel(increment);
+        emit(loop.increment);
+        mv.visitInsn(POP2);
+        mv.visitJumpInsn(GOTO, check);
+
+        targets.pop();
+        mv.visitLabel(end);
+        mv.visitVarInsn(DLOAD, retSlot);
+    }
+
+    private void emitSimpleFor(SimpleFor loop) {
+        if (!(loop.counter instanceof Variable)) {
+            throw new NotCompilableException();
+        }
+
+        int retSlot = startLoop();
+        int iterationsSlot = startIterationCount();
+        int counterSlot = newLocal(2);
+        int lastSlot = newLocal(2);
+        emit(loop.first);
+        mv.visitVarInsn(DSTORE, counterSlot);
+        emit(loop.last);
+        mv.visitVarInsn(DSTORE, lastSlot);
+
+        Label check = new Label();
+        Label increment = new Label();
+        Label end = new Label();
+        targets.push(new JumpTarget(end, increment, depth, -1));
+
+        mv.visitLabel(check);
+        mv.visitVarInsn(DLOAD, counterSlot);
+        mv.visitVarInsn(DLOAD, lastSlot);
+        mv.visitInsn(DCMPG);
+        mv.visitJumpInsn(IFGT, end);
+        emitIterationCheck(iterationsSlot, loop.getPosition());
+        mv.visitVarInsn(DLOAD, counterSlot);
+        mv.visitVarInsn(DSTORE, variableSlots.get(loop.counter));
+        emit(loop.body);
+        mv.visitVarInsn(DSTORE, retSlot);
+        mv.visitLabel(increment);
+        mv.visitVarInsn(DLOAD, counterSlot);
+        mv.visitInsn(DCONST_1);
+        mv.visitInsn(DADD);
+        mv.visitVarInsn(DSTORE, counterSlot);
+        mv.visitJumpInsn(GOTO, check);
+
+        targets.pop();
+        mv.visitLabel(end);
+        mv.visitVarInsn(DLOAD, retSlot);
+    }
+
+    private void emitSwitch(Switch switchNode) {
+        int keySlot = newLocal(2);
+        emit(switchNode.parameter);
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "doubleToLongBits", "(D)J", false);
+        mv.visitVarInsn(LSTORE, keySlot);
+        int retSlot = startLoop();
+
+        RValue[] caseStatements = switchNode.caseStatements;
+        Label[] cases = new Label[caseStatements.length];
+        for (int i = 0; i < cases.length; i++) {
+            cases[i] = new Label();
+        }
+        Label defaultCase = new Label();
+        Label end = new Label();
+
+        // Cases are matched like the keys of the interpreter's HashMap
+        for (Map.Entry<Double, Integer> entry : switchNode.valueMap.entrySet()) {
+            int index = entry.getValue();
+            mv.visitVarInsn(LLOAD, keySlot);
+            mv.visitLdcInsn(Double.doubleToLongBits(entry.getKey()));
+            mv.visitInsn(LCMP);
+            mv.visitJumpInsn(IFEQ, index < cases.length ? cases[index] : defaultCase);
+        }
+        mv.visitJumpInsn(GOTO, defaultCase);
+
+        targets.push(new JumpTarget(end, null, depth, retSlot));
+        for (int i = 0; i < cases.length; i++) {
+            mv.visitLabel(cases[i]);
+            emit(caseStatements[i]);
+            mv.visitVarInsn(DSTORE, retSlot);
+        }
+        mv.visitLabel(defaultCase);
+        if (switchNode.defaultCase != null) {
+            emit(switchNode.defaultCase);
+            mv.visitVarInsn(DSTORE, retSlot);
+        }
+        targets.pop();
+
+        mv.visitLabel(end);
+        mv.visitVarInsn(DLOAD, retSlot);
+    }
+
+    private void emitBreak(Break node) {
+        JumpTarget target = null;
+        for (JumpTarget candidate : targets) {
+            if (!node.doContinue || candidate.continueLabel != null) {
+                target = candidate;
+                break;
+            }
+        }
+
+        if (target == null) {
+            mv.visitTypeInsn(NEW, BREAK_EXCEPTION);
+            mv.visitInsn(DUP);
+            mv.visitInsn(node.doContinue ? ICONST_1 : ICONST_0);
+            mv.visitMethodInsn(INVOKESPECIAL, BREAK_EXCEPTION, "<init>", "(Z)V", false);
+            mv.visitInsn(ATHROW);
+        } else {
+            if (depth != target.depth) {
+                // A jump can't leave values behind on the stack
+                throw new NotCompilableException();
+            }
+            if (node.doContinue) {
+                mv.visitJumpInsn(GOTO, target.continueLabel);
+            } else {
+                if (target.switchResultSlot >= 0) {
+                    // A switch that is left with break evaluates to 0
+                    mv.visitInsn(DCONST_0);
+                    mv.visitVarInsn(DSTORE, target.switchResultSlot);
+                }
+                mv.visitJumpInsn(GOTO, target.breakLabel);
+            }
+        }
+
+        // Unreachable, but keeps the stack as the enclosing node expects
+        mv.visitInsn(DCONST_0);
+    }
+
+    private void emitReturn(Return node) {
+        if (depth != 0) {
+            throw new NotCompilableException();
+        }
+        emit(node.value);
+        mv.visitVarInsn(DSTORE, resultSlot);
+        mv.visitJumpInsn(GOTO, exitLabel);
+        mv.visitInsn(DCONST_0);
+    }
+
+    /**
+     * Where break and continue statements jump to.
+     */
+    private static final class JumpTarget {
+        private final Label breakLabel;
+        @Nullable
+        private final Label continueLabel;
+        private final int depth;
+        private final int switchResultSlot;
+
+        private JumpTarget(Label breakLabel, @Nullable Label continueLabel, int depth, int switchResultSlot) {
+            this.breakLabel = breakLabel;
+            this.continueLabel = continueLabel;
+            this.depth = depth;
+            this.switchResultSlot = switchResultSlot;
+        }
+    }
+
+    /**
+     * Thrown when a tree contains something that is not compiled.
+     */
+    private static final class NotCompilableException extends RuntimeException {
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+        private GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+}
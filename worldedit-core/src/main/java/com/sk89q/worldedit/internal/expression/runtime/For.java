@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 /**
@@ -91,6 +92,11 @@ public RValue optimize() throws EvaluationException {
         return new For(getPosition(), init.optimize(), newCondition, increment.optimize(), body.optimize());
     }
 
+    @Override
+    public RValue bindFrame(ExpressionFrame frame) {
+        return new For(getPosition(), init.bindFrame(frame), condition.bindFrame(frame), increment.bindFrame(frame), body.bindFrame(frame));
+    }
+
     @Override
     public RValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         init = init.bindVariables(expression, false);
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 import java.lang.annotation.Retention;
@@ -109,6 +110,11 @@ public RValue optimize() throws EvaluationException {
         }
     }
 
+    @Override
+    public RValue bindFrame(ExpressionFrame frame) {
+        return new Function(getPosition(), method, bindFrame(args, frame));
+    }
+
     @Override
     public RValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         final Class<?>[] parameters = method.getParameterTypes();
@@ -21,6 +21,7 @@
 
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.runtime.Function.Dynamic;
 import com.sk89q.worldedit.math.noise.PerlinNoise;
 import com.sk89q.worldedit.math.noise.RidgedMultiFractalNoise;
@@ -279,11 +280,11 @@ public static double swap(LValue x, LValue y) throws EvaluationException {
     }
 
 
+    // Guarded by itself, as it is shared by all expressions
     private static final Map<Integer, double[]> gmegabuf = new HashMap<Integer, double[]>();
-    private final Map<Integer, double[]> megabuf = new HashMap<Integer, double[]>();
 
-    public Map<Integer, double[]> getMegabuf() {
-        return megabuf;
+    private static Map<Integer, double[]> getMegabuf() {
+        return ExpressionFrame.current().getMegabuf();
     }
 
     private static double[] getSubBuffer(Map<Integer, double[]> megabuf, Integer key) {
@@ -304,28 +305,34 @@ private static double setBufferItem(final Map<Integer, double[]> megabuf, final
 
     @Dynamic
     public static double gmegabuf(RValue index) throws EvaluationException {
-        return getBufferItem(gmegabuf, (int) index.getValue());
+        int i = (int) index.getValue();
+        synchronized (gmegabuf) {
+            return getBufferItem(gmegabuf, i);
+        }
     }
 
     @Dynamic
     public static double gmegabuf(RValue index, double value) throws EvaluationException {
-        return setBufferItem(gmegabuf, (int) index.getValue(), value);
+        int i = (int) index.getValue();
+        synchronized (gmegabuf) {
+            return setBufferItem(gmegabuf, i, value);
+        }
     }
 
     @Dynamic
     public static double megabuf(RValue index) throws EvaluationException {
-        return getBufferItem(Expression.getInstance().getFunctions().megabuf, (int) index.getValue());
+        return getBufferItem(getMegabuf(), (int) index.getValue());
     }
 
     @Dynamic
     public static double megabuf(RValue index, double value) throws EvaluationException {
-        return setBufferItem(Expression.getInstance().getFunctions().megabuf, (int) index.getValue(), value);
+        return setBufferItem(getMegabuf(), (int) index.getValue(), value);
     }
 
     @Dynamic
     public static double closest(RValue x, RValue y, RValue z, RValue index, RValue count, RValue stride) throws EvaluationException {
         return findClosest(
-            Expression.getInstance().getFunctions().megabuf,
+            getMegabuf(),
             x.getValue(),
             y.getValue(),
             z.getValue(),
@@ -337,15 +344,15 @@ public static double closest(RValue x, RValue y, RValue z, RValue index, RValue
 
     @Dynamic
     public static double gclosest(RValue x, RValue y, RValue z, RValue index, RValue count, RValue stride) throws EvaluationException {
-        return findClosest(
-            gmegabuf,
-            x.getValue(),
-            y.getValue(),
-            z.getValue(),
-            (int) index.getValue(),
-            (int) count.getValue(),
-            (int) stride.getValue()
-        );
+        double xValue = x.getValue();
+        double yValue = y.getValue();
+        double zValue = z.getValue();
+        int indexValue = (int) index.getValue();
+        int countValue = (int) count.getValue();
+        int strideValue = (int) stride.getValue();
+        synchronized (gmegabuf) {
+            return findClosest(gmegabuf, xValue, yValue, zValue, indexValue, countValue, strideValue);
+        }
     }
 
     private static double findClosest(Map<Integer, double[]> megabuf, double x, double y, double z, int index, int count, int stride) {
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 /**
@@ -35,4 +36,7 @@ public interface LValue extends RValue {
     @Override
     public LValue bindVariables(Expression expression, boolean preferLValue) throws ParserException;
 
+    @Override
+    public LValue bindFrame(ExpressionFrame frame);
+
 }
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 import java.lang.reflect.Method;
@@ -67,6 +68,11 @@ public LValue optimize() throws EvaluationException {
         return (LValue) optimized;
     }
 
+    @Override
+    public LValue bindFrame(ExpressionFrame frame) {
+        return new LValueFunction(getPosition(), method, setter, bindFrame(args, frame));
+    }
+
     @Override
     public LValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         super.bindVariables(expression, preferLValue);
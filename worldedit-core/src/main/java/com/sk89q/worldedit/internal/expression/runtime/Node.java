@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 /**
@@ -51,4 +52,17 @@ public RValue bindVariables(Expression expression, boolean preferLValue) throws
         return this;
     }
 
+    @Override
+    public RValue bindFrame(ExpressionFrame frame) {
+        return this;
+    }
+
+    static RValue[] bindFrame(RValue[] values, ExpressionFrame frame) {
+        RValue[] bound = new RValue[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            bound[i] = values[i].bindFrame(frame);
+        }
+        return bound;
+    }
+
 }
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.Identifiable;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
@@ -34,4 +35,12 @@ public interface RValue extends Identifiable {
 
     public RValue bindVariables(Expression expression, boolean preferLValue) throws ParserException;
 
+    /**
+     * Get a copy of this node whose variables are kept in the given frame.
+     *
+     * @param frame the frame
+     * @return a copy, or this node if it has no variables
+     */
+    public RValue bindFrame(ExpressionFrame frame);
+
 }
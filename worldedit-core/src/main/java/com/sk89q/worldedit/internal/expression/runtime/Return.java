@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 /**
@@ -50,6 +51,11 @@ public String toString() {
         return "return " + value;
     }
 
+    @Override
+    public RValue bindFrame(ExpressionFrame frame) {
+        return new Return(getPosition(), value.bindFrame(frame));
+    }
+
     @Override
     public RValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         value = value.bindVariables(expression, false);
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 import java.util.ArrayList;
@@ -97,6 +98,11 @@ public RValue optimize() throws EvaluationException {
         return new Sequence(getPosition(), newSequence.toArray(new RValue[newSequence.size()]));
     }
 
+    @Override
+    public RValue bindFrame(ExpressionFrame frame) {
+        return new Sequence(getPosition(), bindFrame(sequence, frame));
+    }
+
     @Override
     public RValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         for (int i = 0; i < sequence.length; ++i) {
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 /**
@@ -88,6 +89,11 @@ public RValue optimize() throws EvaluationException {
         return new SimpleFor(getPosition(), counter.optimize(), first.optimize(), last.optimize(), body.optimize());
     }
 
+    @Override
+    public RValue bindFrame(ExpressionFrame frame) {
+        return new SimpleFor(getPosition(), counter.bindFrame(frame), first.bindFrame(frame), last.bindFrame(frame), body.bindFrame(frame));
+    }
+
     @Override
     public RValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         counter = counter.bindVariables(expression, true);
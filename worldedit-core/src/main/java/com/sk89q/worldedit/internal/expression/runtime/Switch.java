@@ -20,9 +20,11 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -34,10 +36,10 @@
  */
 public class Switch extends Node implements RValue {
 
-    private RValue parameter;
-    private final Map<Double, Integer> valueMap;
-    private final RValue[] caseStatements;
-    private RValue defaultCase;
+    RValue parameter;
+    final Map<Double, Integer> valueMap;
+    final RValue[] caseStatements;
+    RValue defaultCase;
 
     public Switch(int position, RValue parameter, List<Double> values, List<RValue> caseStatements, RValue defaultCase) {
         this(position, parameter, invertList(values), caseStatements, defaultCase);
@@ -190,6 +192,12 @@ public RValue optimize() throws EvaluationException {
         return new Switch(getPosition(), optimizedParameter, newValueMap, newSequence, defaultCase.optimize());
     }
 
+    @Override
+    public RValue bindFrame(ExpressionFrame frame) {
+        return new Switch(getPosition(), parameter.bindFrame(frame), valueMap, Arrays.asList(bindFrame(caseStatements, frame)),
+                defaultCase == null ? null : defaultCase.bindFrame(frame));
+    }
+
     @Override
     public RValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         parameter = parameter.bindVariables(expression, false);
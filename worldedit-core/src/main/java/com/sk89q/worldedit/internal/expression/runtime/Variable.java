@@ -20,23 +20,54 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * A variable.
  */
 public final class Variable extends Node implements LValue {
 
-    public double value;
+    private final ExpressionFrame frame;
+    private final int index;
+
+    /**
+     * Create a new instance.
+     *
+     * <p>The value of the variable is kept in the frames of the expression,
+     * at the given index. This instance reads the frame that is returned by
+     * {@link Expression#getFrame()}.</p>
+     *
+     * @param expression the expression that the variable belongs to
+     * @param index the index of the variable in the frames of the expression
+     */
+    public Variable(Expression expression, int index) {
+        this(expression.getFrame(), index);
+    }
 
-    public Variable(double value) {
+    private Variable(ExpressionFrame frame, int index) {
         super(-1);
-        this.value = value;
+        checkNotNull(frame);
+        checkArgument(index >= 0, "index >= 0 required");
+        this.frame = frame;
+        this.index = index;
+    }
+
+    /**
+     * Get the index of the variable in the frames of its expression.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
     }
 
     @Override
     public double getValue() {
-        return value;
+        return frame.getValue(index);
     }
 
     @Override
@@ -51,7 +82,8 @@ public char id() {
 
     @Override
     public double assign(double value) {
-        return this.value = value;
+        frame.setValue(index, value);
+        return value;
     }
 
     @Override
@@ -59,6 +91,11 @@ public LValue optimize() throws EvaluationException {
         return this;
     }
 
+    @Override
+    public LValue bindFrame(ExpressionFrame frame) {
+        return frame == this.frame ? this : new Variable(frame, index);
+    }
+
     @Override
     public LValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         return this;
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.expression.runtime;
 
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 
 /**
@@ -116,6 +117,11 @@ public RValue optimize() throws EvaluationException {
         return new While(getPosition(), newCondition, body.optimize(), footChecked);
     }
 
+    @Override
+    public RValue bindFrame(ExpressionFrame frame) {
+        return new While(getPosition(), condition.bindFrame(frame), body.bindFrame(frame), footChecked);
+    }
+
     @Override
     public RValue bindVariables(Expression expression, boolean preferLValue) throws ParserException {
         condition = condition.bindVariables(expression, false);
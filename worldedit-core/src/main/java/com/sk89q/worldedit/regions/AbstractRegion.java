@@ -21,6 +21,8 @@
 
 import com.sk89q.worldedit.*;
 import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.iterator.ChunkRegionIterator;
+import com.sk89q.worldedit.regions.iterator.ChunkSpanCursor;
 import com.sk89q.worldedit.regions.iterator.RegionIterator;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.storage.ChunkStore;
@@ -50,6 +52,94 @@ public Iterator<BlockVector> iterator() {
         return new RegionIterator(this);
     }
 
+    @Override
+    public Iterator<BlockVector> chunkIterator() {
+        return new ChunkRegionIterator(this);
+    }
+
+    @Override
+    public void visitSpans(SpanVisitor visitor) throws WorldEditException {
+        ChunkSpanCursor cursor = new ChunkSpanCursor(this);
+        while (cursor.next()) {
+            visitor.visit(cursor.getY(), cursor.getZ(), cursor.getStartX(), cursor.getEndX());
+        }
+    }
+
+    /**
+     * Find the runs of X coordinates between {@code minX} and {@code maxX}
+     * that are in this region, in the row at the given Y and Z.
+     *
+     * <p>Runs are written to {@code spans} as pairs of inclusive start and
+     * end coordinates, in increasing order, and no two runs touch. The
+     * array must have room for {@code maxX - minX + 2} entries.</p>
+     *
+     * <p>The default implementation tests every point of the row with
+     * {@link #contains(Vector)}. Regions that can work out their runs
+     * directly should override it.</p>
+     *
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @param minX the lowest X coordinate to include
+     * @param maxX the highest X coordinate to include
+     * @param spans the array to write runs to
+     * @return the number of runs
+     */
+    public int getRowSpans(int y, int z, int minX, int maxX, int[] spans) {
+        return Regions.testRowSpans(this, y, z, minX, maxX, spans);
+    }
+
+    /**
+     * Find the run of X coordinates in a row of a region that is convex
+     * along the X axis, starting from an estimate of the run.
+     *
+     * <p>The ends of the estimated run are checked with
+     * {@link #contains(Vector)}, so that the result matches it exactly even
+     * if the estimate is slightly off because of rounding.</p>
+     *
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @param minX the lowest X coordinate to include
+     * @param maxX the highest X coordinate to include
+     * @param center the center of the run
+     * @param halfWidth half of the width of the run, or NaN if the row is believed to be empty
+     * @param spans the array to write the run to
+     * @return the number of runs, either 0 or 1
+     */
+    protected int getConvexRowSpan(int y, int z, int minX, int maxX, double center, double halfWidth, int[] spans) {
+        int start;
+        int end;
+        if (Double.isNaN(halfWidth) || (start = (int) Math.ceil(center - halfWidth)) > (end = (int) Math.floor(center + halfWidth))) {
+            // The row may still touch the region at a single point
+            int middle = (int) Math.round(center);
+            if (!contains(new Vector(middle, y, z))) {
+                return 0;
+            }
+            start = end = middle;
+        }
+
+        while (contains(new Vector(start - 1, y, z))) {
+            start--;
+        }
+        while (start <= end && !contains(new Vector(start, y, z))) {
+            start++;
+        }
+        while (contains(new Vector(end + 1, y, z))) {
+            end++;
+        }
+        while (end >= start && !contains(new Vector(end, y, z))) {
+            end--;
+        }
+
+        start = Math.max(start, minX);
+        end = Math.min(end, maxX);
+        if (start > end) {
+            return 0;
+        }
+        spans[0] = start;
+        spans[1] = end;
+        return 1;
+    }
+
     @Override
     public World getWorld() {
         return world;
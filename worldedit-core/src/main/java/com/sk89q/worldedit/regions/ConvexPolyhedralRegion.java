@@ -37,6 +37,12 @@
 
 public class ConvexPolyhedralRegion extends AbstractRegion {
 
+    /**
+     * How far a row may be above a face that is parallel to it before it is
+     * skipped without testing any of its points.
+     */
+    private static final double ROW_TOLERANCE = 1e-9;
+
     /**
      * Vertices that are contained in the convex hull.
      */
@@ -299,6 +305,37 @@ public boolean contains(Vector position) {
         return containsRaw(position);
     }
 
+    @Override
+    public int getRowSpans(int y, int z, int minX, int maxX, int[] spans) {
+        if (!isDefined()) {
+            return 0;
+        }
+
+        final Vector min = getMinimumPoint();
+        final Vector max = getMaximumPoint();
+        if (y < min.getBlockY() || y > max.getBlockY() || z < min.getBlockZ() || z > max.getBlockZ()) {
+            return 0;
+        }
+
+        // Every face limits the row to one side of where it crosses the row
+        double low = Math.max(minX, min.getBlockX());
+        double high = Math.min(maxX, max.getBlockX());
+        for (Triangle triangle : triangles) {
+            final Vector normal = triangle.getNormal();
+            final double rest = triangle.getDistance() - normal.getY() * y - normal.getZ() * z;
+            if (normal.getX() > 0) {
+                high = Math.min(high, rest / normal.getX());
+            } else if (normal.getX() < 0) {
+                low = Math.max(low, rest / normal.getX());
+            } else if (rest < -ROW_TOLERANCE) {
+                return 0;
+            }
+        }
+
+        final double halfWidth = low <= high ? (high - low) / 2 : Double.NaN;
+        return getConvexRowSpan(y, z, minX, maxX, (low + high) / 2, halfWidth, spans);
+    }
+
     private boolean containsRaw(Vector pt) {
         if (lastTriangle != null && lastTriangle.above(pt)) {
             return false;
@@ -327,6 +327,23 @@ public Set<Vector> getChunkCubes() {
         return chunks;
     }
 
+    @Override
+    public int getRowSpans(int y, int z, int minX, int maxX, int[] spans) {
+        if (y < Math.min(pos1.getBlockY(), pos2.getBlockY()) || y > Math.max(pos1.getBlockY(), pos2.getBlockY())
+                || z < Math.min(pos1.getBlockZ(), pos2.getBlockZ()) || z > Math.max(pos1.getBlockZ(), pos2.getBlockZ())) {
+            return 0;
+        }
+
+        int start = Math.max(minX, Math.min(pos1.getBlockX(), pos2.getBlockX()));
+        int end = Math.min(maxX, Math.max(pos1.getBlockX(), pos2.getBlockX()));
+        if (start > end) {
+            return 0;
+        }
+        spans[0] = start;
+        spans[1] = end;
+        return 1;
+    }
+
     @Override
     public boolean contains(Vector position) {
         double x = position.getX();
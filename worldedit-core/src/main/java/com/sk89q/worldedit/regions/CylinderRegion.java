@@ -300,6 +300,16 @@ public void shift(Vector change) throws RegionOperationException {
         minY += changeY;
     }
 
+    @Override
+    public int getRowSpans(int y, int z, int minX, int maxX, int[] spans) {
+        if (y < minY || y > maxY) {
+            return 0;
+        }
+
+        double dz = (z - center.getZ()) / radius.getZ();
+        return getConvexRowSpan(y, z, minX, maxX, center.getX(), radius.getX() * Math.sqrt(1 - dz * dz), spans);
+    }
+
     /**
      * Checks to see if a point is inside this region.
      */
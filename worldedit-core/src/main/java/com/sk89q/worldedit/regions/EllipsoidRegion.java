@@ -205,6 +205,13 @@ public Set<Vector2D> getChunks() {
         return chunks;
     }
 
+    @Override
+    public int getRowSpans(int y, int z, int minX, int maxX, int[] spans) {
+        double dy = (y - center.getY()) / radius.getY();
+        double dz = (z - center.getZ()) / radius.getZ();
+        return getConvexRowSpan(y, z, minX, maxX, center.getX(), radius.getX() * Math.sqrt(1 - dy * dy - dz * dz), spans);
+    }
+
     @Override
     public boolean contains(Vector position) {
         return position.subtract(center).divide(radius).lengthSq() <= 1;
@@ -122,6 +122,15 @@ public List<BlockVector2D> polygonize(int maxPoints) {
         return Collections.emptyList();
     }
 
+    @Override
+    public Iterator<BlockVector> chunkIterator() {
+        return iterator();
+    }
+
+    @Override
+    public void visitSpans(SpanVisitor visitor) {
+    }
+
     @Override
     public Iterator<BlockVector> iterator() {
         return new Iterator<BlockVector>() {
@@ -29,6 +29,7 @@
 import com.sk89q.worldedit.world.World;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -314,6 +315,74 @@ public boolean contains(Vector position) {
         return contains(points, minY, maxY, position);
     }
 
+    @Override
+    public int getRowSpans(int y, int z, int minX, int maxX, int[] spans) {
+        int npoints = points.size();
+        if (y < minY || y > maxY || npoints < 3 || minX > maxX) {
+            return 0;
+        }
+
+        // Whether a point is contained can only change next to where an
+        // edge meets the row, so only those points and one point from each
+        // gap between them have to be tested
+        int[] critical = new int[npoints * 2 + 2];
+        int count = 0;
+        BlockVector2D last = points.get(npoints - 1);
+        for (BlockVector2D point : points) {
+            int x1 = last.getBlockX();
+            int z1 = last.getBlockZ();
+            int x2 = point.getBlockX();
+            int z2 = point.getBlockZ();
+            if ((z1 <= z && z <= z2) || (z2 <= z && z <= z1)) {
+                if (z1 == z2) {
+                    critical[count++] = x1;
+                    critical[count++] = x2;
+                } else {
+                    double x = x1 + (double) (z - z1) * (x2 - x1) / (z2 - z1);
+                    critical[count++] = (int) Math.floor(x);
+                    critical[count++] = (int) Math.ceil(x);
+                }
+            }
+            last = point;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        critical[count++] = minX;
+        critical[count++] = maxX;
+        Arrays.sort(critical, 0, count);
+
+        int runs = 0;
+        int previous = minX - 1;
+        for (int i = 0; i < count; i++) {
+            int x = critical[i];
+            if (x <= previous || x > maxX) {
+                continue;
+            }
+            if (x > previous + 1 && contains(new Vector(previous + 1, y, z))) {
+                runs = addSpan(spans, runs, previous + 1, x - 1);
+            }
+            if (contains(new Vector(x, y, z))) {
+                runs = addSpan(spans, runs, x, x);
+            }
+            previous = x;
+        }
+        return runs;
+    }
+
+    /**
+     * Add a run to a list of runs, joining it to the last run if they touch.
+     */
+    private static int addSpan(int[] spans, int runs, int start, int end) {
+        if (runs > 0 && spans[runs * 2 - 1] == start - 1) {
+            spans[runs * 2 - 1] = end;
+            return runs;
+        }
+        spans[runs * 2] = start;
+        spans[runs * 2 + 1] = end;
+        return runs + 1;
+    }
+
     /**
      * Checks to see if a point is inside a region.
      *
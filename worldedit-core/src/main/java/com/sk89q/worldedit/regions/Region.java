@@ -24,9 +24,11 @@
 import com.sk89q.worldedit.LocalWorld;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.world.World;
 
 import javax.annotation.Nullable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -118,6 +120,31 @@ public interface Region extends Iterable<BlockVector>, Cloneable {
      */
     public boolean contains(Vector position);
 
+    /**
+     * Get an iterator over the points in this region that visits them one
+     * chunk at a time.
+     *
+     * <p>Chunk columns are visited by Z and then by X. Within a chunk
+     * column, points are visited from the bottom up, so that every 16 block
+     * high section is finished before the next one is started, and then by
+     * Z and X.</p>
+     *
+     * @return an iterator of points inside the region
+     */
+    public Iterator<BlockVector> chunkIterator();
+
+    /**
+     * Pass every point in this region to the given visitor as runs along
+     * the X axis, in the same order as {@link #chunkIterator()}.
+     *
+     * <p>No object is created for each point, so this is the cheapest way
+     * to go through a large region.</p>
+     *
+     * @param visitor the visitor
+     * @throws WorldEditException thrown by the visitor
+     */
+    public void visitSpans(SpanVisitor visitor) throws WorldEditException;
+
     /**
      * Get a list of chunks.
      *
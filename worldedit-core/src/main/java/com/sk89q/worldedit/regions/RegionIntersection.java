@@ -40,10 +40,17 @@
  * the iterators of each region in an undefined sequence. Some positions may
  * be repeated if the position is contained in more than one region, but this cannot
  * be guaranteed to occur.</p>
+ *
+ * <p>{@link #chunkIterator()} and {@link #visitSpans(SpanVisitor)} merge the
+ * runs of the child regions instead, so they visit every position once and
+ * only look at the rows that a child region crosses. The bounds of the
+ * child regions are read when this region is created, so the child regions
+ * should not be changed afterwards.</p>
  */
 public class RegionIntersection extends AbstractRegion {
 
     private final List<Region> regions = new ArrayList<Region>();
+    private int[] bounds;
 
     /**
      * Create a new instance with the included list of regions.
@@ -76,6 +83,7 @@ public RegionIntersection(LocalWorld world, List<Region> regions) {
         for (Region region : regions) {
             this.regions.add(region);
         }
+        readBounds();
     }
 
     /**
@@ -89,6 +97,34 @@ public RegionIntersection(LocalWorld world, Region... regions) {
         checkNotNull(regions);
         checkArgument(regions.length > 0, "empty region list is not supported");
         Collections.addAll(this.regions, regions);
+        readBounds();
+    }
+
+    /**
+     * Store the bounding box of every child region, so that rows can be
+     * matched to the child regions that cross them without creating vectors.
+     */
+    private void readBounds() {
+        bounds = new int[regions.size() * 6];
+        for (int i = 0; i < regions.size(); i++) {
+            Vector min = regions.get(i).getMinimumPoint();
+            Vector max = regions.get(i).getMaximumPoint();
+            bounds[i * 6] = min.getBlockX();
+            bounds[i * 6 + 1] = min.getBlockY();
+            bounds[i * 6 + 2] = min.getBlockZ();
+            bounds[i * 6 + 3] = max.getBlockX();
+            bounds[i * 6 + 4] = max.getBlockY();
+            bounds[i * 6 + 5] = max.getBlockZ();
+        }
+    }
+
+    /**
+     * Get the child regions.
+     *
+     * @return the child regions
+     */
+    List<Region> getRegions() {
+        return regions;
     }
 
     @Override
@@ -134,6 +170,106 @@ public boolean contains(Vector position) {
         return false;
     }
 
+    @Override
+    public int getRowSpans(int y, int z, int minX, int maxX, int[] spans) {
+        int crossing = 0;
+        int first = -1;
+        for (int i = 0; i < regions.size(); i++) {
+            if (crossesRow(i, y, z, minX, maxX)) {
+                if (crossing++ == 0) {
+                    first = i;
+                }
+            }
+        }
+
+        if (crossing == 0) {
+            return 0;
+        } else if (crossing == 1) {
+            return getChildRowSpans(first, y, z, minX, maxX, spans);
+        }
+
+        // Collect the runs of every child region that crosses the row, then merge them
+        int width = maxX - minX + 2;
+        int[] runs = new int[width * crossing];
+        int[] row = new int[width];
+        int count = 0;
+        for (int i = first; i < regions.size(); i++) {
+            if (crossesRow(i, y, z, minX, maxX)) {
+                int found = getChildRowSpans(i, y, z, minX, maxX, row);
+                System.arraycopy(row, 0, runs, count * 2, found * 2);
+                count += found;
+            }
+        }
+
+        // Sort the runs by their start, as there are only a few
+        for (int i = 1; i < count; i++) {
+            int start = runs[i * 2];
+            int end = runs[i * 2 + 1];
+            int j = i - 1;
+            while (j >= 0 && runs[j * 2] > start) {
+                runs[j * 2 + 2] = runs[j * 2];
+                runs[j * 2 + 3] = runs[j * 2 + 1];
+                j--;
+            }
+            runs[j * 2 + 2] = start;
+            runs[j * 2 + 3] = end;
+        }
+
+        int merged = 0;
+        for (int i = 0; i < count; i++) {
+            int start = runs[i * 2];
+            int end = runs[i * 2 + 1];
+            if (merged > 0 && start <= spans[merged * 2 - 1] + 1) {
+                spans[merged * 2 - 1] = Math.max(spans[merged * 2 - 1], end);
+            } else {
+                spans[merged * 2] = start;
+                spans[merged * 2 + 1] = end;
+                merged++;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Test whether the bounding box of any child region crosses a chunk
+     * column.
+     *
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return true if a child region may have points in the chunk column
+     */
+    boolean boundsCrossChunk(int chunkX, int chunkZ) {
+        int minX = chunkX << 4;
+        int minZ = chunkZ << 4;
+        for (int offset = 0; offset < bounds.length; offset += 6) {
+            if (minX + 15 >= bounds[offset] && minX <= bounds[offset + 3]
+                    && minZ + 15 >= bounds[offset + 2] && minZ <= bounds[offset + 5]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Test whether the bounding box of a child region crosses a row.
+     */
+    private boolean crossesRow(int index, int y, int z, int minX, int maxX) {
+        int offset = index * 6;
+        return y >= bounds[offset + 1] && y <= bounds[offset + 4]
+                && z >= bounds[offset + 2] && z <= bounds[offset + 5]
+                && maxX >= bounds[offset] && minX <= bounds[offset + 3];
+    }
+
+    /**
+     * Find the runs of a child region in a row, only looking at the part of
+     * the row that lies within the child region's bounding box.
+     */
+    private int getChildRowSpans(int index, int y, int z, int minX, int maxX, int[] spans) {
+        int offset = index * 6;
+        return Regions.getRowSpans(regions.get(index), y, z,
+                Math.max(minX, bounds[offset]), Math.min(maxX, bounds[offset + 3]), spans);
+    }
+
     @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public Iterator<BlockVector> iterator() {
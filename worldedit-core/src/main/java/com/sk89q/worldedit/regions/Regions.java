@@ -19,6 +19,9 @@
 
 package com.sk89q.worldedit.regions;
 
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.world.storage.ChunkStore;
+
 /**
  * Utility methods relating to {@link Region}s.
  */
@@ -89,4 +92,127 @@ public static FlatRegion asFlatRegion(Region region) {
         }
     }
 
+    /**
+     * Find the runs of X coordinates between {@code minX} and {@code maxX}
+     * that are in the given region, in the row at the given Y and Z.
+     *
+     * <p>Regions that extend {@link AbstractRegion} are asked for their
+     * runs with {@link AbstractRegion#getRowSpans(int, int, int, int, int[])},
+     * and every point of the row of other regions is tested.</p>
+     *
+     * @param region the region
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @param minX the lowest X coordinate to include
+     * @param maxX the highest X coordinate to include
+     * @param spans the array to write runs to, which must have room for {@code maxX - minX + 2} entries
+     * @return the number of runs
+     */
+    public static int getRowSpans(Region region, int y, int z, int minX, int maxX, int[] spans) {
+        if (region instanceof AbstractRegion) {
+            return ((AbstractRegion) region).getRowSpans(y, z, minX, maxX, spans);
+        } else {
+            return testRowSpans(region, y, z, minX, maxX, spans);
+        }
+    }
+
+    /**
+     * Test whether a region may have points in the given chunk column,
+     * using only what can be found out cheaply.
+     *
+     * <p>A {@link RegionIntersection} is checked against the bounds of its
+     * child regions. Other regions are assumed to cross every chunk column
+     * within their bounding box.</p>
+     *
+     * @param region the region
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return false if the region has no points in the chunk column
+     */
+    public static boolean mayIntersectChunk(Region region, int chunkX, int chunkZ) {
+        if (region instanceof RegionIntersection) {
+            return ((RegionIntersection) region).boundsCrossChunk(chunkX, chunkZ);
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Find the runs of a row by testing every point with
+     * {@link Region#contains(Vector)}.
+     */
+    static int testRowSpans(Region region, int y, int z, int minX, int maxX, int[] spans) {
+        int count = 0;
+        boolean inRun = false;
+        for (int x = minX; x <= maxX; x++) {
+            if (region.contains(new Vector(x, y, z))) {
+                if (!inRun) {
+                    spans[count * 2] = x;
+                    count++;
+                    inRun = true;
+                }
+                spans[count * 2 - 1] = x;
+            } else {
+                inRun = false;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Test whether the given region contains any block of the given chunk
+     * column.
+     *
+     * <p>Only the part of the chunk that lies within the region's bounding
+     * box is tested, and the test stops at the first contained block. For
+     * {@link CuboidRegion}s the test is done on the bounds alone, for other
+     * {@link FlatRegion}s only one layer is tested, and a
+     * {@link RegionIntersection} is tested one child region at a time.</p>
+     *
+     * @param region the region
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return true if the region and the chunk intersect
+     */
+    public static boolean intersectsChunk(Region region, int chunkX, int chunkZ) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        int minX = Math.max(min.getBlockX(), chunkX << ChunkStore.CHUNK_SHIFTS);
+        int minZ = Math.max(min.getBlockZ(), chunkZ << ChunkStore.CHUNK_SHIFTS);
+        int maxX = Math.min(max.getBlockX(), (chunkX << ChunkStore.CHUNK_SHIFTS) + 15);
+        int maxZ = Math.min(max.getBlockZ(), (chunkZ << ChunkStore.CHUNK_SHIFTS) + 15);
+
+        if (minX > maxX || minZ > maxZ) {
+            return false;
+        }
+
+        if (region instanceof CuboidRegion) {
+            return true;
+        }
+
+        if (region instanceof RegionIntersection) {
+            for (Region child : ((RegionIntersection) region).getRegions()) {
+                if (intersectsChunk(child, chunkX, chunkZ)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int minY = min.getBlockY();
+        int maxY = region instanceof FlatRegion ? minY : max.getBlockY();
+
+        for (int x = minX; x <= maxX; ++x) {
+            for (int z = minZ; z <= maxZ; ++z) {
+                for (int y = minY; y <= maxY; ++y) {
+                    if (region.contains(new Vector(x, y, z))) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
 }
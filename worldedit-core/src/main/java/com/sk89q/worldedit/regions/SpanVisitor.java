@@ -0,0 +1,42 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions;
+
+import com.sk89q.worldedit.WorldEditException;
+
+/**
+ * Receives the points of a region as runs along the X axis.
+ *
+ * @see Region#visitSpans(SpanVisitor)
+ */
+public interface SpanVisitor {
+
+    /**
+     * Visit a run of points that all have the same Y and Z coordinates.
+     *
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @param startX the first X coordinate, inclusive
+     * @param endX the last X coordinate, inclusive
+     * @throws WorldEditException thrown on an error
+     */
+    void visit(int y, int z, int startX, int endX) throws WorldEditException;
+
+}
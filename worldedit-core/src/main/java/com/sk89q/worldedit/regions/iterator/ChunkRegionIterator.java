@@ -0,0 +1,95 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.regions.Region;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Iterates over the points of a region one chunk at a time.
+ *
+ * <p>Chunk columns are visited by Z and then by X. Within a chunk column,
+ * points are visited by Y from the bottom up, and then by Z and X. The
+ * points are taken from a {@link ChunkSpanCursor}, so regions that can work
+ * out their rows directly do not have to test every point of their
+ * bounding box.</p>
+ */
+public class ChunkRegionIterator implements Iterator<BlockVector> {
+
+    private final ChunkSpanCursor cursor;
+    private int x;
+    private int endX;
+    private boolean hasNext;
+
+    /**
+     * Create a new iterator.
+     *
+     * @param region the region
+     */
+    public ChunkRegionIterator(Region region) {
+        checkNotNull(region);
+        this.cursor = new ChunkSpanCursor(region);
+        forward();
+    }
+
+    /**
+     * Move to the start of the next run.
+     */
+    private void forward() {
+        hasNext = cursor.next();
+        if (hasNext) {
+            x = cursor.getStartX();
+            endX = cursor.getEndX();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public BlockVector next() {
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+
+        BlockVector answer = new BlockVector(x, cursor.getY(), cursor.getZ());
+
+        if (x < endX) {
+            x++;
+        } else {
+            forward();
+        }
+
+        return answer;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
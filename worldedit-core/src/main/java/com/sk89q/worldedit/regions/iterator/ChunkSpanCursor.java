@@ -0,0 +1,256 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.Regions;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Steps through the runs of points of a region along the X axis, one
+ * chunk at a time, without creating an object for each point.
+ *
+ * <p>Chunk columns are visited by Z and then by X. Within a chunk column,
+ * runs are visited by Y from the bottom up, and then by Z and X. A run
+ * never crosses the edge of a chunk. Each row of a chunk is found with
+ * {@link Regions#getRowSpans(Region, int, int, int, int, int[])}, and
+ * chunk columns that {@link Regions#mayIntersectChunk(Region, int, int)}
+ * rules out are skipped.</p>
+ *
+ * <p>The cursor starts before the first run, so {@link #next()} has to be
+ * called before the run can be read.</p>
+ */
+public class ChunkSpanCursor {
+
+    private static final int CHUNK_SIZE = 16;
+
+    private final Region region;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final int maxChunkX;
+    private final int maxChunkZ;
+    private final int[] spans = new int[CHUNK_SIZE + 2];
+    private int chunkX;
+    private int chunkZ;
+    private int chunkMinX;
+    private int chunkMaxX;
+    private int chunkMinZ;
+    private int chunkMaxZ;
+    private int y;
+    private int z;
+    private int spanCount;
+    private int spanIndex;
+    private boolean done;
+
+    /**
+     * Create a new cursor.
+     *
+     * @param region the region
+     */
+    public ChunkSpanCursor(Region region) {
+        checkNotNull(region);
+
+        this.region = region;
+
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.maxX = max.getBlockX();
+        this.maxY = max.getBlockY();
+        this.maxZ = max.getBlockZ();
+        this.maxChunkX = maxX >> 4;
+        this.maxChunkZ = maxZ >> 4;
+
+        if (minX > maxX || minY > maxY || minZ > maxZ) {
+            done = true;
+            return;
+        }
+
+        chunkX = minX >> 4;
+        chunkZ = minZ >> 4;
+        if (!Regions.mayIntersectChunk(region, chunkX, chunkZ) && !nextChunkColumn()) {
+            done = true;
+            return;
+        }
+        enterChunk();
+    }
+
+    /**
+     * Move to the next chunk column that the region may have points in.
+     *
+     * @return false if there are no more chunk columns
+     */
+    private boolean nextChunkColumn() {
+        do {
+            if (++chunkX > maxChunkX) {
+                chunkX = minX >> 4;
+                if (++chunkZ > maxChunkZ) {
+                    return false;
+                }
+            }
+        } while (!Regions.mayIntersectChunk(region, chunkX, chunkZ));
+        return true;
+    }
+
+    /**
+     * Set up the bounds of the current chunk column, and start before its
+     * first row.
+     */
+    private void enterChunk() {
+        chunkMinX = Math.max(minX, chunkX << 4);
+        chunkMaxX = Math.min(maxX, (chunkX << 4) + CHUNK_SIZE - 1);
+        chunkMinZ = Math.max(minZ, chunkZ << 4);
+        chunkMaxZ = Math.min(maxZ, (chunkZ << 4) + CHUNK_SIZE - 1);
+        y = minY;
+        z = chunkMinZ - 1;
+    }
+
+    /**
+     * Move to the next row, moving to the next chunk column if needed.
+     *
+     * @return false if there are no more rows
+     */
+    private boolean nextRow() {
+        if (++z <= chunkMaxZ) {
+            return true;
+        }
+        z = chunkMinZ;
+
+        if (++y <= maxY) {
+            return true;
+        }
+
+        if (!nextChunkColumn()) {
+            return false;
+        }
+        enterChunk();
+        z = chunkMinZ;
+        return true;
+    }
+
+    /**
+     * Move to the next run.
+     *
+     * @return false if there are no more runs
+     */
+    public boolean next() {
+        if (done) {
+            return false;
+        }
+
+        if (++spanIndex < spanCount) {
+            return true;
+        }
+
+        do {
+            if (!nextRow()) {
+                done = true;
+                return false;
+            }
+            spanCount = Regions.getRowSpans(region, y, z, chunkMinX, chunkMaxX, spans);
+        } while (spanCount == 0);
+
+        spanIndex = 0;
+        return true;
+    }
+
+    /**
+     * Skip the remaining runs of the current chunk column and move to the
+     * first run of the next chunk column that has any.
+     *
+     * <p>{@link #next()} has to have been called at least once before.</p>
+     *
+     * @return false if there are no more runs
+     */
+    public boolean nextChunk() {
+        if (done) {
+            return false;
+        }
+
+        y = maxY;
+        z = chunkMaxZ;
+        spanCount = 0;
+        spanIndex = 0;
+        return next();
+    }
+
+    /**
+     * Get the X coordinate of the chunk of the current run.
+     *
+     * @return the chunk X coordinate
+     */
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    /**
+     * Get the Z coordinate of the chunk of the current run.
+     *
+     * @return the chunk Z coordinate
+     */
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
+    /**
+     * Get the Y coordinate of the current run.
+     *
+     * @return the Y coordinate
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the Z coordinate of the current run.
+     *
+     * @return the Z coordinate
+     */
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * Get the lowest X coordinate of the current run.
+     *
+     * @return the first X coordinate, inclusive
+     */
+    public int getStartX() {
+        return spans[spanIndex * 2];
+    }
+
+    /**
+     * Get the highest X coordinate of the current run.
+     *
+     * @return the last X coordinate, inclusive
+     */
+    public int getEndX() {
+        return spans[spanIndex * 2 + 1];
+    }
+
+}
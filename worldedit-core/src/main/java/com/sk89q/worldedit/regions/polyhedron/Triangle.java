@@ -71,6 +71,26 @@ public Edge getEdge(int index) {
         return new Edge(vertices[index], vertices[index + 1]);
     }
 
+    /**
+     * Returns the normal of the plane the triangle is in.
+     *
+     * @return the unit normal
+     */
+    public Vector getNormal() {
+        return normal;
+    }
+
+    /**
+     * Returns the distance of the plane the triangle is in from the origin,
+     * along its normal. A point is above the plane if the dot product of the
+     * point and the normal is greater than this value.
+     *
+     * @return the distance
+     */
+    public double getDistance() {
+        return b;
+    }
+
     /**
      * Returns whether the given point is above the plane the triangle is in.
      *
@@ -0,0 +1,511 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.session;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.function.operation.TimedRunContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runs the operations of several session owners a little at a time,
+ * sharing a time budget per tick between them.
+ *
+ * <p>Every owner has their own queue, of which only the first operation
+ * runs, so the edits of one owner are made in the order they were
+ * submitted. On each tick, the budget is split between the owners that
+ * have work queued, in proportion to the weight of their
+ * {@link Priority}, and any budget an owner could not use because an
+ * operation yielded early is carried over to the next tick (deficit round
+ * robin). Operations are resumed with a {@link TimedRunContext} that ends
+ * when their owner's share has been used, so operations that honor
+ * {@link RunContext#shouldContinue()} stop part way and are resumed on a
+ * later tick.</p>
+ *
+ * <p>The budget is a time rather than a number of blocks because blocks
+ * differ a lot in what they cost: a chest or a block that has to be
+ * relit takes far longer to place than stone, so a block count cannot
+ * bound how long a tick takes.</p>
+ *
+ * <p>Operations may be submitted and cancelled from any thread, but
+ * {@link #tick()} has to be called from the thread that may modify the
+ * world.</p>
+ */
+public class EditQueue implements Runnable {
+
+    private static final Logger log = Logger.getLogger(EditQueue.class.getCanonicalName());
+
+    /**
+     * The default time budget per tick, in milliseconds.
+     */
+    public static final int DEFAULT_TICK_BUDGET = 10;
+
+    /**
+     * The priority of an owner's operations.
+     */
+    public enum Priority {
+        LOW(1),
+        NORMAL(2),
+        HIGH(4);
+
+        private final int weight;
+
+        Priority(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Get the share of the budget that operations with this priority
+         * get, relative to the other priorities.
+         *
+         * @return the weight
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Get the priority of an owner from their permissions.
+         *
+         * <p>Owners with the {@code worldedit.queue.priority.high} permission
+         * get a high priority, otherwise owners with the
+         * {@code worldedit.queue.priority.low} permission get a low
+         * priority.</p>
+         *
+         * @param owner the owner
+         * @return the priority
+         */
+        public static Priority of(SessionOwner owner) {
+            if (owner.hasPermission("worldedit.queue.priority.high")) {
+                return HIGH;
+            } else if (owner.hasPermission("worldedit.queue.priority.low")) {
+                return LOW;
+            } else {
+                return NORMAL;
+            }
+        }
+    }
+
+    private final Map<UUID, OwnerQueue> queues = new LinkedHashMap<UUID, OwnerQueue>();
+    private final Ticker ticker;
+    private volatile long tickBudget = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TICK_BUDGET);
+    private int rotation;
+
+    /**
+     * Create a new queue that measures time with {@link System#nanoTime()}.
+     */
+    public EditQueue() {
+        this(Ticker.systemTicker());
+    }
+
+    /**
+     * Create a new queue.
+     *
+     * @param ticker the source of time
+     */
+    public EditQueue(Ticker ticker) {
+        checkNotNull(ticker);
+        this.ticker = ticker;
+    }
+
+    /**
+     * Get the time that operations may run for in each tick.
+     *
+     * @param unit the unit to return the time in
+     * @return the time budget
+     */
+    public long getTickBudget(TimeUnit unit) {
+        return unit.convert(tickBudget, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Set the time that operations may run for in each tick.
+     *
+     * @param budget the time budget, which must be positive
+     * @param unit the unit of the time budget
+     */
+    public void setTickBudget(long budget, TimeUnit unit) {
+        checkArgument(budget > 0, "budget > 0");
+        checkNotNull(unit);
+        this.tickBudget = unit.toNanos(budget);
+    }
+
+    /**
+     * Queue an operation with the priority given by the owner's
+     * permissions.
+     *
+     * @param owner the owner
+     * @param operation the operation
+     * @return the queued edit
+     * @see Priority#of(SessionOwner)
+     */
+    public QueuedEdit submit(SessionOwner owner, Operation operation) {
+        checkNotNull(owner);
+        return submit(owner, operation, Priority.of(owner));
+    }
+
+    /**
+     * Queue an operation.
+     *
+     * <p>If the owner is an {@link Actor} and the edit cannot start right
+     * away or has to share the budget, the actor is told its position.</p>
+     *
+     * @param owner the owner
+     * @param operation the operation
+     * @param priority the priority
+     * @return the queued edit
+     */
+    public QueuedEdit submit(SessionOwner owner, Operation operation, Priority priority) {
+        checkNotNull(owner);
+        checkNotNull(operation);
+        checkNotNull(priority);
+        QueuedEdit edit = new QueuedEdit(this, owner, operation);
+        int position;
+        int others;
+        synchronized (this) {
+            UUID id = owner.getSessionKey().getUniqueId();
+            OwnerQueue queue = queues.get(id);
+            if (queue == null) {
+                queue = new OwnerQueue();
+                queues.put(id, queue);
+            }
+            queue.priority = priority;
+            queue.edits.add(edit);
+            position = queue.edits.size() - 1;
+            others = queues.size() - 1;
+        }
+
+        if (owner instanceof Actor && (position > 0 || others > 0)) {
+            ((Actor) owner).print("Your edit is queued at position #" + (position + 1) + " and shares the server with " + others + " other user(s).");
+        }
+
+        return edit;
+    }
+
+    /**
+     * Get the edits of an owner that have not finished yet, with the one
+     * that is running first.
+     *
+     * @param owner the owner
+     * @return a list of edits
+     */
+    public synchronized List<QueuedEdit> getEdits(SessionOwner owner) {
+        checkNotNull(owner);
+        OwnerQueue queue = queues.get(owner.getSessionKey().getUniqueId());
+        return queue != null ? new ArrayList<QueuedEdit>(queue.edits) : new ArrayList<QueuedEdit>();
+    }
+
+    /**
+     * Get the number of owners that have edits queued.
+     *
+     * @return the number of owners
+     */
+    public synchronized int getOwnerCount() {
+        return queues.size();
+    }
+
+    /**
+     * Cancel all edits of an owner.
+     *
+     * @param owner the owner
+     * @return the number of edits that were cancelled
+     */
+    public int cancel(SessionOwner owner) {
+        int cancelled = 0;
+        for (QueuedEdit edit : getEdits(owner)) {
+            if (edit.cancel()) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Run the edits of an owner to the end on the calling thread, so that
+     * whatever the owner does next sees the world as their earlier edits
+     * left it. Edits that were cancelled are not run.
+     *
+     * <p>This has to be called from the same thread as {@link #tick()}.</p>
+     *
+     * @param owner the owner
+     */
+    public void drain(SessionOwner owner) {
+        checkNotNull(owner);
+        OwnerQueue queue;
+        synchronized (this) {
+            queue = queues.get(owner.getSessionKey().getUniqueId());
+        }
+        if (queue != null) {
+            drain(queue);
+        }
+    }
+
+    /**
+     * Run the edits of every owner to the end on the calling thread, such
+     * as when the platform shuts down. Edits that were cancelled are not
+     * run.
+     *
+     * <p>This has to be called from the same thread as {@link #tick()}.</p>
+     */
+    public void drainAll() {
+        List<OwnerQueue> round;
+        synchronized (this) {
+            round = new ArrayList<OwnerQueue>(queues.values());
+        }
+        for (OwnerQueue queue : round) {
+            drain(queue);
+        }
+    }
+
+    private void drain(OwnerQueue queue) {
+        while (true) {
+            QueuedEdit edit;
+            synchronized (this) {
+                edit = queue.edits.peek();
+                if (edit == null) {
+                    queues.values().remove(queue);
+                    return;
+                }
+            }
+
+            edit.run(new RunContext());
+
+            synchronized (this) {
+                queue.edits.remove(edit);
+            }
+        }
+    }
+
+    private synchronized int getPosition(QueuedEdit edit) {
+        OwnerQueue queue = queues.get(edit.getOwner().getSessionKey().getUniqueId());
+        if (queue == null) {
+            return -1;
+        }
+        int position = 0;
+        for (QueuedEdit other : queue.edits) {
+            if (other == edit) {
+                return position;
+            }
+            position++;
+        }
+        return -1;
+    }
+
+    @Override
+    public void run() {
+        tick();
+    }
+
+    /**
+     * Run queued edits until the time budget of this tick is used up.
+     */
+    public void tick() {
+        List<OwnerQueue> round;
+        int totalWeight = 0;
+        synchronized (this) {
+            if (queues.isEmpty()) {
+                return;
+            }
+            round = new ArrayList<OwnerQueue>(queues.values());
+            for (OwnerQueue queue : round) {
+                totalWeight += queue.priority.getWeight();
+            }
+        }
+
+        int count = round.size();
+        int first = rotation++ % count;
+        for (int i = 0; i < count; i++) {
+            OwnerQueue queue = round.get((first + i) % count);
+            long quantum = Math.max(1, tickBudget * queue.priority.getWeight() / totalWeight);
+            queue.deficit = Math.min(queue.deficit + quantum, quantum * 2);
+
+            while (queue.deficit > 0) {
+                QueuedEdit edit;
+                synchronized (this) {
+                    edit = queue.edits.peek();
+                }
+                if (edit == null) {
+                    break;
+                }
+
+                long start = ticker.read();
+                edit.run(new TimedRunContext(ticker, start + queue.deficit));
+                queue.deficit -= ticker.read() - start;
+
+                if (edit.isDone()) {
+                    synchronized (this) {
+                        queue.edits.remove(edit);
+                    }
+                } else {
+                    break;
+                }
+            }
+        }
+
+        synchronized (this) {
+            Iterator<OwnerQueue> it = queues.values().iterator();
+            while (it.hasNext()) {
+                OwnerQueue queue = it.next();
+                if (queue.edits.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * The edits of a single owner.
+     */
+    private static final class OwnerQueue {
+        private final Deque<QueuedEdit> edits = new ArrayDeque<QueuedEdit>();
+        private Priority priority = Priority.NORMAL;
+        private long deficit;
+    }
+
+    /**
+     * An operation in the queue.
+     */
+    public static final class QueuedEdit {
+        private final EditQueue queue;
+        private final SessionOwner owner;
+        private final Operation operation;
+        private final SettableFuture<Operation> future = SettableFuture.create();
+        private Operation current;
+
+        private QueuedEdit(EditQueue queue, SessionOwner owner, Operation operation) {
+            this.queue = queue;
+            this.owner = owner;
+            this.operation = operation;
+            this.current = operation;
+        }
+
+        /**
+         * Get the owner of the edit.
+         *
+         * @return the owner
+         */
+        public SessionOwner getOwner() {
+            return owner;
+        }
+
+        /**
+         * Get the operation that was queued.
+         *
+         * @return the operation
+         */
+        public Operation getOperation() {
+            return operation;
+        }
+
+        /**
+         * Get a future that completes with the operation once it has
+         * finished, or fails with the exception that it threw.
+         *
+         * @return a future
+         */
+        public ListenableFuture<Operation> getFuture() {
+            return future;
+        }
+
+        /**
+         * Get the number of edits of the same owner that run before this
+         * one.
+         *
+         * @return the position, where 0 is the running edit, or -1 if the
+         *         edit has finished
+         */
+        public int getPosition() {
+            return queue.getPosition(this);
+        }
+
+        /**
+         * Cancel the edit. The operation is cancelled on the next tick.
+         *
+         * @return false if the edit had already finished
+         */
+        public boolean cancel() {
+            return future.cancel(false);
+        }
+
+        private synchronized boolean isDone() {
+            return current == null;
+        }
+
+        private synchronized void run(RunContext run) {
+            if (current == null) {
+                return;
+            }
+
+            if (future.isCancelled()) {
+                abort();
+                return;
+            }
+
+            try {
+                do {
+                    current = current.resume(run);
+                } while (current != null && run.shouldContinue());
+
+                if (current == null) {
+                    future.set(operation);
+                }
+            } catch (WorldEditException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "Queued edit of " + owner.getSessionKey().getName() + " failed", e);
+                fail(e);
+            }
+        }
+
+        private void fail(Exception e) {
+            Operation failed = current;
+            current = null;
+            future.setException(e);
+            failed.cancel();
+        }
+
+        private synchronized void abort() {
+            if (current != null) {
+                Operation cancelled = current;
+                current = null;
+                cancelled.cancel();
+            }
+        }
+    }
+
+}
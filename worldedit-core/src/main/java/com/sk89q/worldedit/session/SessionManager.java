@@ -66,6 +66,8 @@ public class SessionManager {
     private final WorldEdit worldEdit;
     private final Map<UUID, SessionHolder> sessions = new HashMap<UUID, SessionHolder>();
     private SessionStore store = new VoidStore();
+    @Nullable
+    private File sessionDirectory;
 
     /**
      * Create a new session manager.
@@ -153,6 +155,9 @@ public synchronized LocalSession get(SessionOwner owner) {
 
             session.setConfiguration(config);
             session.setBlockChangeLimit(config.defaultChangeLimit);
+            if (sessionDirectory != null) {
+                session.setHistoryDirectory(new File(new File(sessionDirectory, getKey(sessionKey).toString()), "history"));
+            }
 
             // Remember the session if the session is still active
             if (sessionKey.isActive()) {
@@ -264,21 +269,41 @@ protected UUID getKey(SessionKey key) {
      */
     public synchronized void remove(SessionOwner owner) {
         checkNotNull(owner);
-        sessions.remove(getKey(owner));
+        SessionHolder holder = sessions.remove(getKey(owner));
+        if (holder != null) {
+            release(holder.session);
+        }
     }
 
     /**
      * Remove all sessions.
      */
     public synchronized void clear() {
+        for (SessionHolder holder : sessions.values()) {
+            release(holder.session);
+        }
         sessions.clear();
     }
 
+    /**
+     * Free what a session that is no longer tracked holds on to: its
+     * history, and its clipboard, which is closed if it is
+     * {@link java.io.Closeable} so that a file-backed clipboard deletes
+     * its temporary file.
+     *
+     * @param session the session
+     */
+    private static void release(LocalSession session) {
+        session.clearHistory();
+        session.setClipboard(null);
+    }
+
     @Subscribe
     public void onConfigurationLoad(ConfigurationLoadEvent event) {
         LocalConfiguration config = event.getConfiguration();
         File dir = new File(config.getWorkingDirectory(), "sessions");
         store = new JsonFileSessionStore(dir);
+        sessionDirectory = dir;
     }
 
     /**
@@ -322,6 +347,7 @@ public void run() {
                             }
 
                             it.remove();
+                            release(stored.session);
                         }
                     }
                 }
@@ -23,6 +23,7 @@
 import com.sk89q.worldedit.regions.NullRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.regions.RegionOperationException;
+import com.sk89q.worldedit.regions.SpanVisitor;
 import com.sk89q.worldedit.world.World;
 
 import java.util.Iterator;
@@ -148,6 +149,16 @@ public List<BlockVector2D> polygonize(int maxPoints) {
         return getRegion().polygonize(maxPoints);
     }
 
+    @Override
+    public Iterator<BlockVector> chunkIterator() {
+        return getRegion().chunkIterator();
+    }
+
+    @Override
+    public void visitSpans(SpanVisitor visitor) throws WorldEditException {
+        getRegion().visitSpans(visitor);
+    }
+
     @Override
     public Iterator<BlockVector> iterator() {
         return getRegion().iterator();
@@ -25,6 +25,7 @@
 import com.sk89q.worldedit.LocalConfiguration;
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.world.snapshot.SnapshotRepository;
+import com.sk89q.worldedit.world.storage.ChunkCache;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -85,6 +86,8 @@ public void load() {
         disallowedBlocks = getIntSet("disallowed-blocks", defaultDisallowedBlocks);
         defaultChangeLimit = getInt("default-max-changed-blocks", defaultChangeLimit);
         maxChangeLimit = getInt("max-changed-blocks", maxChangeLimit);
+        maxBlocksVisited = Math.max(-1, getInt("max-blocks-visited", maxBlocksVisited));
+        searchMemoryBlocks = Math.max(-1, getInt("search-memory-blocks", searchMemoryBlocks));
         defaultMaxPolygonalPoints = getInt("default-max-polygon-points", defaultMaxPolygonalPoints);
         maxPolygonalPoints = getInt("max-polygon-points", maxPolygonalPoints);
         defaultMaxPolyhedronPoints = getInt("default-max-polyhedron-points", defaultMaxPolyhedronPoints);
@@ -114,11 +117,23 @@ public void load() {
         allowSymlinks = getBool("allow-symbolic-links", allowSymlinks);
 
         LocalSession.MAX_HISTORY_SIZE = Math.max(15, getInt("history-size", 15));
+        historyDiskThreshold = getInt("history-disk-threshold", historyDiskThreshold);
+        editQueueTickBudget = Math.max(1, getInt("scheduler-tick-budget", editQueueTickBudget));
+        parallelThreads = Math.max(0, getInt("scheduler-parallel-threads", parallelThreads));
+        deferRelight = getBool("scheduler-defer-relight", deferRelight);
+        relightChunksPerTick = Math.max(1, getInt("scheduler-relight-chunks-per-tick", relightChunksPerTick));
+        preloadChunks = Math.max(0, getInt("scheduler-preload-chunks", preloadChunks));
 
         String snapshotsDir = getString("snapshots-dir", "");
         if (!snapshotsDir.isEmpty()) {
             snapshotRepo = new SnapshotRepository(snapshotsDir);
         }
+        snapshotRestoreThreads = Math.max(1, getInt("snapshots-restore-threads", snapshotRestoreThreads));
+        snapshotRestoreQueueDepth = Math.max(1, getInt("snapshots-restore-queue-depth", snapshotRestoreQueueDepth));
+        snapshotChunkCacheSize = Math.max(0, getInt("snapshots-chunk-cache-size", snapshotChunkCacheSize));
+        if (snapshotRepo != null && snapshotChunkCacheSize > 0) {
+            snapshotRepo.setChunkCache(new ChunkCache(snapshotChunkCacheSize * 1024L * 1024L));
+        }
 
         OutputStream output = null;
         path.getParentFile().mkdirs();
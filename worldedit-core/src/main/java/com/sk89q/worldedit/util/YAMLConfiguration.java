@@ -24,6 +24,7 @@
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.session.SessionManager;
 import com.sk89q.worldedit.world.snapshot.SnapshotRepository;
+import com.sk89q.worldedit.world.storage.ChunkCache;
 
 import java.io.IOException;
 import java.util.HashSet;
@@ -59,6 +60,8 @@ public void load() {
                 "limits.max-blocks-changed.default", defaultChangeLimit));
         maxChangeLimit = Math.max(-1,
                 config.getInt("limits.max-blocks-changed.maximum", maxChangeLimit));
+        maxBlocksVisited = Math.max(-1, config.getInt("limits.max-blocks-visited", maxBlocksVisited));
+        searchMemoryBlocks = Math.max(-1, config.getInt("limits.search-memory-blocks", searchMemoryBlocks));
 
         defaultMaxPolygonalPoints = Math.max(-1,
                 config.getInt("limits.max-polygonal-points.default", defaultMaxPolygonalPoints));
@@ -108,6 +111,12 @@ public void load() {
         allowSymlinks = config.getBoolean("files.allow-symbolic-links", false);
         LocalSession.MAX_HISTORY_SIZE = Math.max(0, config.getInt("history.size", 15));
         SessionManager.EXPIRATION_GRACE = config.getInt("history.expiration", 10) * 60 * 1000;
+        historyDiskThreshold = config.getInt("history.disk-threshold", historyDiskThreshold);
+        editQueueTickBudget = Math.max(1, config.getInt("scheduler.tick-budget", editQueueTickBudget));
+        parallelThreads = Math.max(0, config.getInt("scheduler.parallel-threads", parallelThreads));
+        deferRelight = config.getBoolean("scheduler.defer-relight", deferRelight);
+        relightChunksPerTick = Math.max(1, config.getInt("scheduler.relight-chunks-per-tick", relightChunksPerTick));
+        preloadChunks = Math.max(0, config.getInt("scheduler.preload-chunks", preloadChunks));
 
         showHelpInfo = config.getBoolean("show-help-on-first-use", true);
 
@@ -115,6 +124,12 @@ public void load() {
         if (!snapshotsDir.isEmpty()) {
             snapshotRepo = new SnapshotRepository(snapshotsDir);
         }
+        snapshotRestoreThreads = Math.max(1, config.getInt("snapshots.restore-threads", snapshotRestoreThreads));
+        snapshotRestoreQueueDepth = Math.max(1, config.getInt("snapshots.restore-queue-depth", snapshotRestoreQueueDepth));
+        snapshotChunkCacheSize = Math.max(0, config.getInt("snapshots.chunk-cache-size", snapshotChunkCacheSize));
+        if (snapshotRepo != null && snapshotChunkCacheSize > 0) {
+            snapshotRepo.setChunkCache(new ChunkCache(snapshotChunkCacheSize * 1024L * 1024L));
+        }
 
         String type = config.getString("shell-save-type", "").trim();
         shellSaveType = type.equals("") ? null : type;
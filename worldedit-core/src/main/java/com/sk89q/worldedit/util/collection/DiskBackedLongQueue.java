@@ -0,0 +1,219 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A first-in, first-out queue of primitive {@code long}s that keeps only
+ * the values at its two ends in memory.
+ *
+ * <p>Values are added to a tail buffer, which is appended to a file on
+ * disk whenever it is full. Values are removed from a head buffer, which
+ * is refilled from the file, or from the tail buffer once the file has
+ * been read completely. The file is reused from the start whenever all
+ * of it has been read, so it only grows as large as the longest stretch
+ * of values that did not fit in memory.</p>
+ *
+ * <p>The backing file is deleted when this queue is closed.</p>
+ */
+public class DiskBackedLongQueue implements Closeable {
+
+    private static final Logger log = Logger.getLogger(DiskBackedLongQueue.class.getCanonicalName());
+    private static final int SEGMENT_SIZE = 8192;
+
+    private final File directory;
+    private final ByteBuffer buffer = ByteBuffer.allocate(SEGMENT_SIZE * 8);
+
+    private long[] head = new long[SEGMENT_SIZE];
+    private int headPosition;
+    private int headLimit;
+    private long[] tail = new long[SEGMENT_SIZE];
+    private int tailSize;
+
+    @Nullable
+    private File file;
+    @Nullable
+    private RandomAccessFile raf;
+    private long readOffset;
+    private long writeOffset;
+    private long size;
+    private boolean closed;
+
+    /**
+     * Create a new, empty queue.
+     *
+     * @param directory the directory in which to create the backing file
+     */
+    public DiskBackedLongQueue(File directory) {
+        checkNotNull(directory);
+        this.directory = directory;
+    }
+
+    /**
+     * Get the backing file, if any values have been written to disk yet.
+     *
+     * @return the file, or null
+     */
+    @Nullable
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Add a value to the end of the queue.
+     *
+     * @param value the value
+     * @throws RuntimeException thrown if values could not be written to disk
+     */
+    public void add(long value) {
+        checkState(!closed, "Queue has been closed");
+
+        if (tailSize == SEGMENT_SIZE) {
+            writeTail();
+        }
+        tail[tailSize++] = value;
+        size++;
+    }
+
+    /**
+     * Remove the value at the front of the queue.
+     *
+     * @return the value
+     * @throws NoSuchElementException if the queue is empty
+     * @throws RuntimeException thrown if values could not be read from disk
+     */
+    public long remove() {
+        checkState(!closed, "Queue has been closed");
+
+        if (headPosition == headLimit) {
+            if (readOffset < writeOffset) {
+                readHead();
+            } else if (tailSize > 0) {
+                // Everything on disk has been read, so the tail is next
+                long[] swap = head;
+                head = tail;
+                headLimit = tailSize;
+                tail = swap;
+                tailSize = 0;
+                headPosition = 0;
+            } else {
+                throw new NoSuchElementException();
+            }
+        }
+
+        size--;
+        return head[headPosition++];
+    }
+
+    private void writeTail() {
+        try {
+            if (raf == null) {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Failed to create directory '" + directory.getPath() + "' for queue");
+                }
+                file = File.createTempFile("queue", ".dat", directory);
+                raf = new RandomAccessFile(file, "rw");
+            }
+
+            buffer.clear();
+            buffer.asLongBuffer().put(tail, 0, tailSize);
+            raf.seek(writeOffset);
+            raf.write(buffer.array(), 0, tailSize * 8);
+            writeOffset += tailSize * 8;
+            tailSize = 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write queue to disk", e);
+        }
+    }
+
+    private void readHead() {
+        try {
+            int length = (int) Math.min(writeOffset - readOffset, SEGMENT_SIZE * 8);
+            raf.seek(readOffset);
+            raf.readFully(buffer.array(), 0, length);
+            buffer.clear();
+            buffer.asLongBuffer().get(head, 0, length / 8);
+            readOffset += length;
+            headPosition = 0;
+            headLimit = length / 8;
+
+            if (readOffset == writeOffset) {
+                readOffset = 0;
+                writeOffset = 0;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read queue from " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Get the number of values in the queue.
+     *
+     * @return the size
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Return whether the queue is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Delete the backing file. The queue cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        size = 0;
+
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to close queue file " + file.getPath(), e);
+            }
+        }
+        if (file != null && file.exists() && !file.delete()) {
+            log.log(Level.WARNING, "Failed to delete queue file " + file.getPath());
+        }
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import com.sk89q.worldedit.math.BlockPositions;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A set of block positions, packed with {@link BlockPositions}, that keeps
+ * only a limited number of regions in memory.
+ *
+ * <p>Positions are stored as one bit per block in regions of 16x16x16
+ * blocks. The least recently used regions are written to a file on disk
+ * when there are more than a given number of them in memory, and read back
+ * when they are needed again. Positions cannot be removed.</p>
+ *
+ * <p>The backing file is deleted when this set is closed.</p>
+ */
+public class DiskBackedPositionSet implements Closeable {
+
+    private static final Logger log = Logger.getLogger(DiskBackedPositionSet.class.getCanonicalName());
+    private static final int REGION_WORDS = 16 * 16 * 16 / 64;
+    private static final int REGION_BYTES = REGION_WORDS * 8;
+
+    private final File directory;
+    private final int cachedRegions;
+    private final LinkedHashMap<Long, long[]> cache = new LinkedHashMap<Long, long[]>(16, 0.75f, true);
+    private final Map<Long, Long> offsets = new HashMap<Long, Long>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(REGION_BYTES);
+
+    @Nullable
+    private File file;
+    @Nullable
+    private RandomAccessFile raf;
+    private long fileLength;
+    private long lastKey;
+    @Nullable
+    private long[] lastRegion;
+    private long size;
+    private boolean closed;
+
+    /**
+     * Create a new, empty set.
+     *
+     * @param directory the directory in which to create the backing file
+     * @param cachedRegions the number of regions to keep in memory
+     */
+    public DiskBackedPositionSet(File directory, int cachedRegions) {
+        checkNotNull(directory);
+        checkArgument(cachedRegions > 0, "cachedRegions > 0 required");
+        this.directory = directory;
+        this.cachedRegions = cachedRegions;
+    }
+
+    /**
+     * Get the backing file, if any regions have been written to disk yet.
+     *
+     * @return the file, or null
+     */
+    @Nullable
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Add a position to the set.
+     *
+     * @param packed the position, packed with {@link BlockPositions#pack(int, int, int)}
+     * @return true if the position was not in the set yet
+     * @throws RuntimeException thrown if regions could not be read from or written to disk
+     */
+    public boolean add(long packed) {
+        int x = BlockPositions.unpackX(packed);
+        int y = BlockPositions.unpackY(packed);
+        int z = BlockPositions.unpackZ(packed);
+        long[] region = getRegion(BlockPositions.pack(x >> 4, y >> 4, z >> 4));
+        int bit = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+        long mask = 1L << bit;
+        if ((region[bit >>> 6] & mask) != 0) {
+            return false;
+        }
+        region[bit >>> 6] |= mask;
+        size++;
+        return true;
+    }
+
+    /**
+     * Get a region, reading it from disk if it is not in memory.
+     *
+     * @param key the packed position of the region
+     * @return the bits of the region
+     */
+    private long[] getRegion(long key) {
+        checkState(!closed, "Set has been closed");
+
+        if (lastRegion != null && key == lastKey) {
+            return lastRegion;
+        }
+
+        long[] region = cache.get(key);
+        if (region == null) {
+            region = new long[REGION_WORDS];
+            Long offset = offsets.get(key);
+            if (offset != null) {
+                read(offset, region);
+            }
+            cache.put(key, region);
+            evict();
+        }
+
+        lastKey = key;
+        lastRegion = region;
+        return region;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Long, long[]>> it = cache.entrySet().iterator();
+        while (cache.size() > cachedRegions) {
+            Map.Entry<Long, long[]> entry = it.next();
+            Long offset = offsets.get(entry.getKey());
+            if (offset == null) {
+                offset = fileLength;
+                fileLength += REGION_BYTES;
+                offsets.put(entry.getKey(), offset);
+            }
+            write(offset, entry.getValue());
+            it.remove();
+        }
+    }
+
+    private void read(long offset, long[] region) {
+        try {
+            raf.seek(offset);
+            raf.readFully(buffer.array());
+            buffer.clear();
+            buffer.asLongBuffer().get(region);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read positions from " + file.getPath(), e);
+        }
+    }
+
+    private void write(long offset, long[] region) {
+        try {
+            if (raf == null) {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Failed to create directory '" + directory.getPath() + "' for positions");
+                }
+                file = File.createTempFile("positions", ".dat", directory);
+                raf = new RandomAccessFile(file, "rw");
+            }
+
+            buffer.clear();
+            buffer.asLongBuffer().put(region);
+            raf.seek(offset);
+            raf.write(buffer.array());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write positions to disk", e);
+        }
+    }
+
+    /**
+     * Get the number of positions in the set.
+     *
+     * @return the size
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Delete the backing file. The set cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        cache.clear();
+        offsets.clear();
+        lastRegion = null;
+
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to close positions file " + file.getPath(), e);
+            }
+        }
+        if (file != null && file.exists() && !file.delete()) {
+            log.log(Level.WARNING, "Failed to delete positions file " + file.getPath());
+        }
+    }
+
+}
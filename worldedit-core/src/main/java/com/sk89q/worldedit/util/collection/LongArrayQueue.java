@@ -0,0 +1,126 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A first-in, first-out queue of primitive {@code long}s that avoids
+ * boxing each value.
+ *
+ * <p>Values are kept in a ring buffer that doubles in size when full.</p>
+ */
+public class LongArrayQueue {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] values;
+    private int head;
+    private int size;
+
+    /**
+     * Create a new, empty queue.
+     */
+    public LongArrayQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new, empty queue with the given initial capacity.
+     *
+     * @param capacity the initial capacity
+     */
+    public LongArrayQueue(int capacity) {
+        checkArgument(capacity >= 0, "capacity >= 0 required");
+        int length = 1;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        values = new long[length];
+    }
+
+    /**
+     * Add a value to the end of the queue.
+     *
+     * @param value the value
+     */
+    public void add(long value) {
+        if (size == values.length) {
+            grow();
+        }
+        values[(head + size) & (values.length - 1)] = value;
+        size++;
+    }
+
+    /**
+     * Remove the value at the front of the queue.
+     *
+     * @return the value
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public long remove() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        long value = values[head];
+        head = (head + 1) & (values.length - 1);
+        size--;
+        return value;
+    }
+
+    private void grow() {
+        long[] old = values;
+        values = new long[old.length << 1];
+        // Unwrap the ring so that the head is at the start again
+        int tail = old.length - head;
+        System.arraycopy(old, head, values, 0, tail);
+        System.arraycopy(old, 0, values, tail, head);
+        head = 0;
+    }
+
+    /**
+     * Get the number of values in the queue.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return whether the queue is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all values from the queue.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+}
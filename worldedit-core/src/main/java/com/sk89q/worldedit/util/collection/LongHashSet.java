@@ -0,0 +1,199 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A set of primitive {@code long}s that avoids boxing each value.
+ *
+ * <p>Values are kept in a single array using open addressing with linear
+ * probing. Values cannot be removed individually.</p>
+ */
+public class LongHashSet {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Marks an empty slot. Since this is also a valid value, whether it is
+     * in the set is tracked separately.
+     */
+    private static final long EMPTY = 0;
+
+    private long[] values;
+    private int mask;
+    private int size;
+    private boolean containsEmpty;
+
+    /**
+     * Create a new, empty set.
+     */
+    public LongHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new, empty set that can hold the given number of values
+     * before it has to grow.
+     *
+     * @param expected the expected number of values
+     */
+    public LongHashSet(int expected) {
+        checkArgument(expected >= 0, "expected >= 0 required");
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity / 2 < expected) {
+            capacity <<= 1;
+        }
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Spread the bits of a value so that packed coordinates, which differ
+     * mostly in their lowest bits, are spread over the table.
+     */
+    private static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Add a value to the set.
+     *
+     * @param value the value
+     * @return true if the value was not in the set yet
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+
+        int index = hash(value) & mask;
+        long current;
+        while ((current = values[index]) != EMPTY) {
+            if (current == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+
+        values[index] = value;
+        if (++size > values.length / 2) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Return whether the set contains the given value.
+     *
+     * @param value the value
+     * @return true if the value is in the set
+     */
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+
+        int index = hash(value) & mask;
+        long current;
+        while ((current = values[index]) != EMPTY) {
+            if (current == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    private void grow() {
+        if (values.length >= MAX_CAPACITY) {
+            throw new IllegalStateException("The set is too large");
+        }
+
+        long[] old = values;
+        values = new long[old.length << 1];
+        mask = values.length - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                int index = hash(value) & mask;
+                while (values[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                values[index] = value;
+            }
+        }
+    }
+
+    /**
+     * Copy the values of the set into a new array, in no particular order.
+     *
+     * @return a new array
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int index = 0;
+        if (containsEmpty) {
+            result[index++] = EMPTY;
+        }
+        for (long value : values) {
+            if (value != EMPTY) {
+                result[index++] = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of values in the set.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return whether the set is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all values from the set.
+     */
+    public void clear() {
+        Arrays.fill(values, EMPTY);
+        size = 0;
+        containsEmpty = false;
+    }
+
+}
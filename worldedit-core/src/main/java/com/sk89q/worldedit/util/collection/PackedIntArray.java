@@ -0,0 +1,145 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A fixed-length array of unsigned integers that are packed into a
+ * {@code long[]} using only as many bits per entry as required.
+ *
+ * <p>Entries never straddle two longs, so a few bits per long may go
+ * unused, but reads and writes remain a shift and a mask. The number of
+ * bits per entry can be increased with {@link #ensureBits(int)}, which
+ * repacks the existing entries. All entries start at zero.</p>
+ */
+public class PackedIntArray {
+
+    private final int length;
+    private int bits;
+    private int entriesPerLong;
+    private long mask;
+    private long[] data;
+
+    /**
+     * Create a new array.
+     *
+     * @param length the number of entries
+     * @param bits the initial number of bits per entry (between 1 and 32)
+     */
+    public PackedIntArray(int length, int bits) {
+        checkArgument(length >= 0, "length >= 0 required");
+        checkArgument(bits >= 1 && bits <= 32, "bits must be between 1 and 32");
+        this.length = length;
+        setBits(bits);
+        this.data = new long[storageSize(length, entriesPerLong)];
+    }
+
+    private void setBits(int bits) {
+        this.bits = bits;
+        this.entriesPerLong = 64 / bits;
+        this.mask = (1L << bits) - 1;
+    }
+
+    private static int storageSize(int length, int entriesPerLong) {
+        return (length + entriesPerLong - 1) / entriesPerLong;
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return the length
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Get the number of bits currently used per entry.
+     *
+     * @return the number of bits
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Get the largest value that can currently be stored.
+     *
+     * @return the maximum value
+     */
+    public int getMaxValue() {
+        return (int) mask;
+    }
+
+    /**
+     * Get the value at the given index.
+     *
+     * @param index the index
+     * @return the value
+     */
+    public int get(int index) {
+        int shift = (index % entriesPerLong) * bits;
+        return (int) ((data[index / entriesPerLong] >>> shift) & mask);
+    }
+
+    /**
+     * Set the value at the given index.
+     *
+     * @param index the index
+     * @param value the value, which must fit in the current number of bits
+     */
+    public void set(int index, int value) {
+        int slot = index / entriesPerLong;
+        int shift = (index % entriesPerLong) * bits;
+        data[slot] = (data[slot] & ~(mask << shift)) | ((value & mask) << shift);
+    }
+
+    /**
+     * Make sure that the array can store values of at least the given
+     * number of bits, repacking the existing entries if necessary.
+     *
+     * @param bits the number of bits
+     */
+    public void ensureBits(int bits) {
+        checkArgument(bits <= 32, "bits must be at most 32");
+        if (bits <= this.bits) {
+            return;
+        }
+
+        PackedIntArray resized = new PackedIntArray(length, bits);
+        for (int i = 0; i < length; i++) {
+            resized.set(i, get(i));
+        }
+        setBits(bits);
+        this.data = resized.data;
+    }
+
+    /**
+     * Get the number of bits required to store the given value.
+     *
+     * @param value the value
+     * @return the number of bits, at least 1
+     */
+    public static int bitsRequired(int value) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(value));
+    }
+
+}
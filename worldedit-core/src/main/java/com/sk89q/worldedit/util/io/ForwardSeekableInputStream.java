@@ -60,16 +60,16 @@ public boolean markSupported() {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        int read = super.read(b, off, len);
-        position += read;
+        int read = parent.read(b, off, len);
+        if (read > 0) {
+            position += read;
+        }
         return read;
     }
 
     @Override
     public int read(byte[] b) throws IOException {
-        int read = parent.read(b);
-        position += read;
-        return read;
+        return read(b, 0, b.length);
     }
 
     @Override
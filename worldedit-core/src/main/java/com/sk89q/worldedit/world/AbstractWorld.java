@@ -29,6 +29,7 @@
 import com.sk89q.worldedit.blocks.BaseItemStack;
 import com.sk89q.worldedit.blocks.BlockID;
 import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.extent.SectionBuffer;
 import com.sk89q.worldedit.extension.platform.Platform;
 import com.sk89q.worldedit.function.mask.BlockMask;
 import com.sk89q.worldedit.function.mask.Mask;
@@ -37,6 +38,8 @@
 import com.sk89q.worldedit.util.TreeGenerator.TreeType;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
 import java.util.PriorityQueue;
 
 /**
@@ -118,6 +121,16 @@ public int getBlockData(Vector pt) {
         return getLazyBlock(pt).getData();
     }
 
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        return getLazyBlock(new Vector(x, y, z)).getType();
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        return getLazyBlock(new Vector(x, y, z)).getData();
+    }
+
     @Override
     public void dropItem(Vector pt, BaseItemStack item, int times) {
         for (int i = 0; i < times; ++i) {
@@ -175,6 +188,29 @@ public boolean generateTallRedwoodTree(EditSession editSession, Vector pt) throw
     public void checkLoadedChunk(Vector pt) {
     }
 
+    @Override
+    public int setSection(SectionBuffer section, boolean notifyAndLight) throws WorldEditException {
+        int affected = 0;
+        BaseBlock block = null;
+        for (int index = section.nextChanged(0); index >= 0; index = section.nextChanged(index + 1)) {
+            if (block == null || block.getId() != section.getId(index) || block.getData() != section.getData(index)) {
+                block = new BaseBlock(section.getId(index), section.getData(index));
+            }
+            if (setBlock(new Vector(section.getX(index), section.getY(index), section.getZ(index)), block, notifyAndLight)) {
+                affected++;
+            }
+        }
+        return affected;
+    }
+
+    @Override
+    public void preloadChunk(BlockVector2D chunk) {
+    }
+
+    @Override
+    public void releaseChunk(BlockVector2D chunk) {
+    }
+
     @Override
     public void fixAfterFastMode(Iterable<BlockVector2D> chunks) {
     }
@@ -183,6 +219,18 @@ public void fixAfterFastMode(Iterable<BlockVector2D> chunks) {
     public void fixLighting(Iterable<BlockVector2D> chunks) {
     }
 
+    @Override
+    public void relightSections(BlockVector2D chunk, int sectionMask) {
+        List<BlockVector2D> chunks = Collections.singletonList(chunk);
+        fixLighting(chunks);
+        fixAfterFastMode(chunks);
+    }
+
+    @Override
+    public boolean canRelightSections() {
+        return false;
+    }
+
     @Override
     public boolean playEffect(Vector position, int type, int data) {
         return false;
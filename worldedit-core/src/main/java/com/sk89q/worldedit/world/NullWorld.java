@@ -27,6 +27,7 @@
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BaseItemStack;
 import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.regions.Region;
@@ -107,7 +108,17 @@ public BaseBlock getBlock(Vector position) {
 
     @Override
     public BaseBlock getLazyBlock(Vector position) {
-        return new BaseBlock(BlockID.AIR);
+        return ImmutableBlock.of(BlockID.AIR);
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        return BlockID.AIR;
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        return 0;
     }
 
     @Override
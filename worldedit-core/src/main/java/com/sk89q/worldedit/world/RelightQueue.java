@@ -0,0 +1,176 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import com.sk89q.worldedit.BlockVector2D;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Relights chunks and sends them to clients again a few at a time,
+ * spreading the work over many ticks.
+ *
+ * <p>Edits that were made without lighting add the sections that they
+ * changed to the queue, and on every call to {@link #tick()}, up to
+ * {@link #getChunksPerTick()} chunks are passed to
+ * {@link World#relightSections(BlockVector2D, int)} in the order they were
+ * first added. A chunk that is added again before it has been relit is
+ * only relit once, for all the sections that were added.</p>
+ *
+ * <p>Sections may be added from any thread, but {@link #tick()} has to be
+ * called from the thread that may modify the world.</p>
+ */
+public class RelightQueue implements Runnable {
+
+    private static final Logger log = Logger.getLogger(RelightQueue.class.getCanonicalName());
+
+    /**
+     * The default number of chunks per tick.
+     */
+    public static final int DEFAULT_CHUNKS_PER_TICK = 4;
+
+    private final Map<QueuedChunk, Integer> pending = new LinkedHashMap<QueuedChunk, Integer>();
+    private volatile int chunksPerTick = DEFAULT_CHUNKS_PER_TICK;
+
+    /**
+     * Get the number of chunks that are relit in each tick.
+     *
+     * @return the number of chunks
+     */
+    public int getChunksPerTick() {
+        return chunksPerTick;
+    }
+
+    /**
+     * Set the number of chunks that are relit in each tick.
+     *
+     * @param chunksPerTick the number of chunks, which must be positive
+     */
+    public void setChunksPerTick(int chunksPerTick) {
+        checkArgument(chunksPerTick > 0, "chunksPerTick > 0");
+        this.chunksPerTick = chunksPerTick;
+    }
+
+    /**
+     * Queue sections of a chunk to be relit.
+     *
+     * @param world the world
+     * @param chunk the chunk coordinates
+     * @param sectionMask a bit mask of sections, in which bit {@code n}
+     *                    stands for the blocks from {@code y = 16n} to
+     *                    {@code y = 16n + 15}
+     */
+    public synchronized void add(World world, BlockVector2D chunk, int sectionMask) {
+        checkNotNull(world);
+        checkNotNull(chunk);
+        if (sectionMask == 0) {
+            return;
+        }
+
+        QueuedChunk key = new QueuedChunk(world, chunk);
+        Integer queued = pending.get(key);
+        pending.put(key, queued != null ? queued | sectionMask : sectionMask);
+    }
+
+    /**
+     * Get the number of chunks that are waiting to be relit.
+     *
+     * @return the number of chunks
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void run() {
+        tick();
+    }
+
+    /**
+     * Relight the chunks that are next in the queue, up to the number of
+     * chunks per tick.
+     */
+    public void tick() {
+        int remaining = chunksPerTick;
+        while (remaining-- > 0) {
+            QueuedChunk next;
+            int sectionMask;
+            synchronized (this) {
+                Iterator<Map.Entry<QueuedChunk, Integer>> it = pending.entrySet().iterator();
+                if (!it.hasNext()) {
+                    return;
+                }
+                Map.Entry<QueuedChunk, Integer> entry = it.next();
+                it.remove();
+                next = entry.getKey();
+                sectionMask = entry.getValue();
+            }
+
+            try {
+                next.world.relightSections(next.chunk, sectionMask);
+            } catch (RuntimeException e) {
+                // The world may have been unloaded in the meantime
+                log.log(Level.WARNING, "Failed to relight chunk " + next.chunk + " of " + next.world.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Remove all chunks from the queue without relighting them.
+     */
+    public synchronized void clear() {
+        pending.clear();
+    }
+
+    /**
+     * A chunk of a world in the queue.
+     */
+    private static final class QueuedChunk {
+        private final World world;
+        private final BlockVector2D chunk;
+
+        private QueuedChunk(World world, BlockVector2D chunk) {
+            this.world = world;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof QueuedChunk)) {
+                return false;
+            }
+            QueuedChunk other = (QueuedChunk) o;
+            return chunk.equals(other.chunk) && world.equals(other.world);
+        }
+
+        @Override
+        public int hashCode() {
+            return chunk.hashCode() * 31 + world.hashCode();
+        }
+    }
+
+}
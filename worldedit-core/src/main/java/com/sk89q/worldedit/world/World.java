@@ -29,6 +29,8 @@
 import com.sk89q.worldedit.blocks.BaseItemStack;
 import com.sk89q.worldedit.extension.platform.Platform;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.SectionBuffer;
+import com.sk89q.worldedit.extent.SectionOutputExtent;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Direction;
@@ -123,6 +125,23 @@ public interface World extends Extent {
      */
     boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) throws WorldEditException;
 
+    /**
+     * Change the blocks of a section to the blocks in the given buffer,
+     * like {@link SectionOutputExtent#setSection(SectionBuffer)}, but with
+     * a {@code notifyAndLight} parameter that has the same meaning as the
+     * one of {@link #setBlock(Vector, BaseBlock, boolean)}.
+     *
+     * <p>Implementations that can write to the storage of a chunk section
+     * directly should do so, and fix lighting and send the chunk to clients
+     * once for the whole section instead of once for each block.</p>
+     *
+     * @param section the section buffer
+     * @param notifyAndLight true to to notify and light
+     * @return the number of blocks that were set (the return value may not be accurate)
+     * @throws WorldEditException thrown on an error
+     */
+    int setSection(SectionBuffer section, boolean notifyAndLight) throws WorldEditException;
+
     /**
      * @deprecated Use {@link #setBlock(Vector, BaseBlock)}
      */
@@ -239,6 +258,29 @@ public interface World extends Extent {
      */
     void checkLoadedChunk(Vector position);
 
+    /**
+     * Ask for a chunk to be loaded, or generated if it does not exist yet,
+     * ahead of being used, and keep it loaded until it is released with
+     * {@link #releaseChunk(BlockVector2D)}.
+     *
+     * <p>The chunk may be loaded in the background, so it is not
+     * necessarily loaded when this method returns. Its blocks can be
+     * accessed at any time regardless, in which case the chunk is loaded
+     * right away as usual.</p>
+     *
+     * @param chunk the chunk coordinates
+     */
+    void preloadChunk(BlockVector2D chunk);
+
+    /**
+     * Release a chunk that was preloaded with
+     * {@link #preloadChunk(BlockVector2D)}, so that it may be unloaded
+     * again.
+     *
+     * @param chunk the chunk coordinates
+     */
+    void releaseChunk(BlockVector2D chunk);
+
     /**
      * Fix the given chunks after fast mode was used.
      *
@@ -259,6 +301,33 @@ public interface World extends Extent {
      */
     void fixLighting(Iterable<BlockVector2D> chunks);
 
+    /**
+     * Relight the given sections of a chunk and send the chunk to clients
+     * again.
+     *
+     * <p>This is called by {@link RelightQueue} for chunks that were changed
+     * with {@code false} for the {@code notifyAndLight} parameter of
+     * {@link #setBlock(Vector, BaseBlock, boolean)}, after the edit that
+     * changed them has finished.</p>
+     *
+     * @param chunk the chunk coordinates
+     * @param sectionMask a bit mask of the sections to relight, in which bit
+     *                    {@code n} stands for the blocks from {@code y = 16n}
+     *                    to {@code y = 16n + 15}
+     */
+    void relightSections(BlockVector2D chunk, int sectionMask);
+
+    /**
+     * Return whether {@link #relightSections(BlockVector2D, int)} lights
+     * blocks that were changed without lighting.
+     *
+     * <p>Lighting is only deferred to a {@link RelightQueue} in worlds for
+     * which this returns true.</p>
+     *
+     * @return true if sections can be relit
+     */
+    boolean canRelightSections();
+
     /**
      * Play the given effect.
      *
@@ -23,6 +23,9 @@
 
 import com.sk89q.worldedit.world.DataException;
 import com.sk89q.worldedit.world.storage.*;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.Calendar;
@@ -32,13 +35,15 @@
 /**
  * A snapshot is a backup.
  */
-public class Snapshot implements Comparable<Snapshot> {
+public class Snapshot implements Comparable<Snapshot>, Closeable {
 
     protected static Logger logger = Logger.getLogger(Snapshot.class.getCanonicalName());
 
     protected File file;
     protected String name;
     protected Calendar date;
+    @Nullable
+    private final ChunkCache chunkCache;
 
     /**
      * Construct a snapshot restoration operation.
@@ -49,6 +54,7 @@ public class Snapshot implements Comparable<Snapshot> {
     public Snapshot(SnapshotRepository repo, String snapshot) {
         file = new File(repo.getDirectory(), snapshot);
         name = snapshot;
+        chunkCache = repo.getChunkCache();
     }
 
     /**
@@ -64,9 +70,27 @@ public ChunkStore getChunkStore() throws IOException, DataException {
         logger.info("WorldEdit: Using " + chunkStore.getClass().getCanonicalName()
                 + " for loading snapshot '" + file.getAbsolutePath() + "'");
 
+        if (chunkCache != null) {
+            return chunkCache.wrap(file.getAbsolutePath(), chunkStore);
+        }
+
         return chunkStore;
     }
 
+    /**
+     * Evict the chunks of this snapshot from the chunk cache, if chunks
+     * are being cached.
+     *
+     * <p>The snapshot can still be used afterwards, but its chunks will
+     * have to be read again.</p>
+     */
+    @Override
+    public void close() {
+        if (chunkCache != null) {
+            chunkCache.invalidate(file.getAbsolutePath());
+        }
+    }
+
     /**
      * Get a chunk store.
      *
@@ -21,6 +21,7 @@
 
 package com.sk89q.worldedit.world.snapshot;
 
+import com.sk89q.worldedit.world.storage.ChunkCache;
 import com.sk89q.worldedit.world.storage.MissingWorldException;
 
 import javax.annotation.Nullable;
@@ -38,6 +39,8 @@ public class SnapshotRepository {
 
     protected File dir;
     protected List<SnapshotDateParser> dateParsers = new ArrayList<SnapshotDateParser>();
+    @Nullable
+    private ChunkCache chunkCache;
 
     /**
      * Create a new instance of a repository.
@@ -63,6 +66,28 @@ public SnapshotRepository(String dir) {
         this(new File(dir));
     }
 
+    /**
+     * Get the cache of decoded chunks that is shared by the snapshots
+     * of this repository.
+     *
+     * @return the cache, or null if chunks are not cached
+     */
+    @Nullable
+    public ChunkCache getChunkCache() {
+        return chunkCache;
+    }
+
+    /**
+     * Set the cache of decoded chunks that is shared by the snapshots
+     * of this repository. Only snapshots that are created afterwards
+     * will use the new cache.
+     *
+     * @param chunkCache the cache, or null to not cache chunks
+     */
+    public void setChunkCache(@Nullable ChunkCache chunkCache) {
+        this.chunkCache = chunkCache;
+    }
+
     /**
      * Get a list of snapshots in a directory. The newest snapshot is
      * near the top of the array.
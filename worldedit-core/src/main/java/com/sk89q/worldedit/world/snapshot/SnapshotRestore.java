@@ -19,37 +19,68 @@
 
 package com.sk89q.worldedit.world.snapshot;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.Regions;
 import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.chunk.Chunk;
 import com.sk89q.worldedit.world.storage.ChunkStore;
 import com.sk89q.worldedit.world.storage.MissingChunkException;
-import com.sk89q.worldedit.world.storage.MissingWorldException;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 /**
  * A snapshot restore operation.
+ *
+ * <p>The chunks that need to be restored are worked out from the bounds
+ * of the region, skipping chunks that the mask of the edit session
+ * excludes entirely, and the blocks of each chunk are only visited while that
+ * chunk is loaded, so memory use grows with the number of chunks rather
+ * than the number of blocks.</p>
+ *
+ * <p>If the parallelism is set above one, chunks are read and decoded
+ * ahead of time by worker threads, while the blocks are still placed on
+ * the thread that calls {@link #restore()}. At most
+ * {@link #getQueueDepth()} chunks are decoded ahead of the chunk that
+ * is currently being placed.</p>
  */
 public class SnapshotRestore {
 
-    private final Map<BlockVector2D, ArrayList<Vector>> neededChunks = new LinkedHashMap<BlockVector2D, ArrayList<Vector>>();
+    private final List<BlockVector2D> neededChunks = new ArrayList<BlockVector2D>();
     private final ChunkStore chunkStore;
     private final EditSession editSession;
+    private final Region region;
+    private final boolean cuboid;
+    private final Vector min;
+    private final Vector max;
     private ArrayList<Vector2D> missingChunks;
     private ArrayList<Vector2D> errorChunks;
     private String lastErrorMessage;
+    private volatile int chunksProcessed;
+    private int parallelism = 1;
+    private int queueDepth = 16;
 
     /**
      * Construct the snapshot restore operation.
@@ -61,60 +92,71 @@ public class SnapshotRestore {
     public SnapshotRestore(ChunkStore chunkStore, EditSession editSession, Region region) {
         this.chunkStore = chunkStore;
         this.editSession = editSession;
+        this.region = region;
+        this.cuboid = region instanceof CuboidRegion;
+        this.min = region.getMinimumPoint();
+        this.max = region.getMaximumPoint();
 
-        if (region instanceof CuboidRegion) {
-            findNeededCuboidChunks(region);
-        } else {
-            findNeededChunks(region);
-        }
+        findNeededChunks();
     }
 
     /**
-     * Find needed chunks in the axis-aligned bounding box of the region.
-     *
-     * @param region The {@link Region} to iterate
+     * Find the chunks within the bounding box of the region that
+     * the region intersects and that contain at least one block that
+     * passes the mask of the edit session.
      */
-    private void findNeededCuboidChunks(Region region) {
-        Vector min = region.getMinimumPoint();
-        Vector max = region.getMaximumPoint();
+    private void findNeededChunks() {
+        Mask mask = editSession.getMask();
+        int minChunkX = min.getBlockX() >> ChunkStore.CHUNK_SHIFTS;
+        int minChunkZ = min.getBlockZ() >> ChunkStore.CHUNK_SHIFTS;
+        int maxChunkX = max.getBlockX() >> ChunkStore.CHUNK_SHIFTS;
+        int maxChunkZ = max.getBlockZ() >> ChunkStore.CHUNK_SHIFTS;
 
-        // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (int x = min.getBlockX(); x <= max.getBlockX(); ++x) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); ++y) {
-                for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
-                    Vector pos = new Vector(x, y, z);
-                    checkAndAddBlock(pos);
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; ++chunkX) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; ++chunkZ) {
+                if (Regions.intersectsChunk(region, chunkX, chunkZ)
+                        && (mask == null || anyBlockMatches(chunkX, chunkZ, mask))) {
+                    neededChunks.add(new BlockVector2D(chunkX, chunkZ));
                 }
             }
         }
     }
 
     /**
-     * Find needed chunks in the region.
+     * Test whether any block of the region within the given chunk passes
+     * the mask, so that chunks which the mask excludes entirely are never
+     * read from the snapshot.
      *
-     * @param region The {@link Region} to iterate
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     * @param mask the mask
+     * @return true if at least one block passes the mask
      */
-    private void findNeededChunks(Region region) {
-        // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (Vector pos : region) {
-            checkAndAddBlock(pos);
-        }
-    }
+    private boolean anyBlockMatches(int chunkX, int chunkZ, Mask mask) {
+        int minX = Math.max(min.getBlockX(), chunkX << ChunkStore.CHUNK_SHIFTS);
+        int minZ = Math.max(min.getBlockZ(), chunkZ << ChunkStore.CHUNK_SHIFTS);
+        int maxX = Math.min(max.getBlockX(), (chunkX << ChunkStore.CHUNK_SHIFTS) + 15);
+        int maxZ = Math.min(max.getBlockZ(), (chunkZ << ChunkStore.CHUNK_SHIFTS) + 15);
+        int minY = min.getBlockY();
+        int maxY = max.getBlockY();
 
-    private void checkAndAddBlock(Vector pos) {
-        if (editSession.getMask() != null && !editSession.getMask().test(pos))
-            return;
+        for (int x = minX; x <= maxX; ++x) {
+            for (int y = minY; y <= maxY; ++y) {
+                for (int z = minZ; z <= maxZ; ++z) {
+                    Vector pos = new Vector(x, y, z);
 
-        BlockVector2D chunkPos = ChunkStore.toChunk(pos);
+                    if (!cuboid && !region.contains(pos)) {
+                        continue;
+                    }
 
-        // Unidentified chunk
-        if (!neededChunks.containsKey(chunkPos)) {
-            neededChunks.put(chunkPos, new ArrayList<Vector>());
+                    if (mask.test(pos)) {
+                        return true;
+                    }
+                }
+            }
         }
 
-        neededChunks.get(chunkPos).add(pos);
+        return false;
     }
 
     /**
@@ -126,6 +168,60 @@ public int getChunksAffected() {
         return neededChunks.size();
     }
 
+    /**
+     * Get the number of chunks that have been processed so far, whether
+     * they could be restored or not.
+     *
+     * <p>This method may be called from another thread while
+     * {@link #restore()} is running.</p>
+     *
+     * @return a number of chunks
+     */
+    public int getChunksProcessed() {
+        return chunksProcessed;
+    }
+
+    /**
+     * Get the number of worker threads that decode chunks.
+     *
+     * @return the parallelism, where 1 means that chunks are decoded on
+     *         the thread that calls {@link #restore()}
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the number of worker threads that decode chunks.
+     *
+     * @param parallelism the parallelism, where 1 disables the worker threads
+     */
+    public void setParallelism(int parallelism) {
+        checkArgument(parallelism >= 1, "parallelism >= 1 required");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Get the maximum number of chunks that are decoded ahead of the
+     * chunk that is currently being placed.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Set the maximum number of chunks that are decoded ahead of the
+     * chunk that is currently being placed.
+     *
+     * @param queueDepth the queue depth
+     */
+    public void setQueueDepth(int queueDepth) {
+        checkArgument(queueDepth >= 1, "queueDepth >= 1 required");
+        this.queueDepth = queueDepth;
+    }
+
     /**
      * Restores to world.
      *
@@ -135,18 +231,141 @@ public void restore() throws MaxChangedBlocksException {
 
         missingChunks = new ArrayList<Vector2D>();
         errorChunks = new ArrayList<Vector2D>();
+        chunksProcessed = 0;
 
         // Now let's start restoring!
-        for (Map.Entry<BlockVector2D, ArrayList<Vector>> entry : neededChunks.entrySet()) {
-            BlockVector2D chunkPos = entry.getKey();
-            Chunk chunk;
+        if (parallelism > 1 && neededChunks.size() > 1) {
+            restorePipelined();
+        } else {
+            restoreSequential();
+        }
+    }
+
+    /**
+     * Load and restore each chunk in turn on the current thread.
+     *
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    private void restoreSequential() throws MaxChangedBlocksException {
+        World world = editSession.getWorld();
 
+        for (BlockVector2D chunkPos : neededChunks) {
             try {
-                chunk = chunkStore.getChunk(chunkPos, editSession.getWorld());
+                Chunk chunk = chunkStore.getChunk(chunkPos, world);
                 // Good, the chunk could be at least loaded
 
                 // Now just copy blocks!
-                for (Vector pos : entry.getValue()) {
+                restoreChunk(chunkPos, chunk);
+            } catch (DataException e) {
+                handleLoadError(chunkPos, e);
+            } catch (IOException e) {
+                handleLoadError(chunkPos, e);
+            }
+
+            chunksProcessed++;
+        }
+    }
+
+    /**
+     * Decode chunks on worker threads and restore them on the current
+     * thread in the order that they were requested.
+     *
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    private void restorePipelined() throws MaxChangedBlocksException {
+        final World world = editSession.getWorld();
+        int threads = Math.min(parallelism, neededChunks.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("WorldEdit Snapshot Decoder #%d")
+                .setDaemon(true)
+                .build());
+        Deque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+        Iterator<BlockVector2D> toDecode = neededChunks.iterator();
+
+        try {
+            for (BlockVector2D chunkPos : neededChunks) {
+                // Keep the workers at most queueDepth chunks ahead
+                while (pending.size() < queueDepth && toDecode.hasNext()) {
+                    final BlockVector2D decodePos = toDecode.next();
+                    pending.add(executor.submit(new Callable<Chunk>() {
+                        @Override
+                        public Chunk call() throws Exception {
+                            return chunkStore.getChunk(decodePos, world);
+                        }
+                    }));
+                }
+
+                Chunk chunk = null;
+                try {
+                    chunk = pending.remove().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    lastErrorMessage = "Interrupted while waiting for chunks to be read";
+                    return;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof DataException || cause instanceof IOException) {
+                        handleLoadError(chunkPos, (Exception) cause);
+                    } else {
+                        throw Throwables.propagate(cause);
+                    }
+                }
+
+                if (chunk != null) {
+                    restoreChunk(chunkPos, chunk);
+                }
+
+                chunksProcessed++;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Record that a chunk could not be loaded.
+     *
+     * @param chunkPos the position of the chunk
+     * @param e the exception that was thrown while loading the chunk
+     */
+    private void handleLoadError(BlockVector2D chunkPos, Exception e) {
+        if (e instanceof MissingChunkException) {
+            missingChunks.add(chunkPos);
+        } else {
+            errorChunks.add(chunkPos);
+            lastErrorMessage = e.getMessage();
+        }
+    }
+
+    /**
+     * Copy the blocks of the region that lie within the given chunk.
+     *
+     * @param chunkPos the position of the chunk
+     * @param chunk the chunk from the snapshot
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    private void restoreChunk(BlockVector2D chunkPos, Chunk chunk) throws MaxChangedBlocksException {
+        int minX = Math.max(min.getBlockX(), chunkPos.getBlockX() << ChunkStore.CHUNK_SHIFTS);
+        int minZ = Math.max(min.getBlockZ(), chunkPos.getBlockZ() << ChunkStore.CHUNK_SHIFTS);
+        int maxX = Math.min(max.getBlockX(), (chunkPos.getBlockX() << ChunkStore.CHUNK_SHIFTS) + 15);
+        int maxZ = Math.min(max.getBlockZ(), (chunkPos.getBlockZ() << ChunkStore.CHUNK_SHIFTS) + 15);
+        int minY = min.getBlockY();
+        int maxY = max.getBlockY();
+        Mask mask = editSession.getMask();
+
+        for (int x = minX; x <= maxX; ++x) {
+            for (int y = minY; y <= maxY; ++y) {
+                for (int z = minZ; z <= maxZ; ++z) {
+                    Vector pos = new Vector(x, y, z);
+
+                    if (!cuboid && !region.contains(pos)) {
+                        continue;
+                    }
+
+                    if (mask != null && !mask.test(pos)) {
+                        continue;
+                    }
+
                     try {
                         BaseBlock block = chunk.getBlock(pos);
                         editSession.setBlock(pos, block);
@@ -154,17 +373,6 @@ public void restore() throws MaxChangedBlocksException {
                         // this is a workaround: just ignore for now
                     }
                 }
-            } catch (MissingChunkException me) {
-                missingChunks.add(chunkPos);
-            } catch (MissingWorldException me) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = me.getMessage();
-            } catch (DataException de) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = de.getMessage();
-            } catch (IOException ioe) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = ioe.getMessage();
             }
         }
     }
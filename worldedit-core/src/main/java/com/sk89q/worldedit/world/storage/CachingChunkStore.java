@@ -0,0 +1,88 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.world.storage;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.chunk.Chunk;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A chunk store that reads decoded chunks through a {@link ChunkCache}.
+ *
+ * <p>Chunks returned by this store may be shared with other users of the
+ * cache. Tags are not cached and are always read from the wrapped store.</p>
+ */
+public class CachingChunkStore extends ChunkStore {
+
+    private final ChunkCache cache;
+    private final String snapshotId;
+    private final ChunkStore chunkStore;
+
+    /**
+     * Create a new instance.
+     *
+     * @param cache the cache
+     * @param snapshotId an ID that identifies the snapshot of the store
+     * @param chunkStore the chunk store to read chunks from on a miss
+     */
+    public CachingChunkStore(ChunkCache cache, String snapshotId, ChunkStore chunkStore) {
+        checkNotNull(cache);
+        checkNotNull(snapshotId);
+        checkNotNull(chunkStore);
+        this.cache = cache;
+        this.snapshotId = snapshotId;
+        this.chunkStore = chunkStore;
+    }
+
+    /**
+     * Get the chunk store that is wrapped.
+     *
+     * @return the chunk store
+     */
+    public ChunkStore getChunkStore() {
+        return chunkStore;
+    }
+
+    @Override
+    public CompoundTag getChunkTag(Vector2D position, World world) throws DataException, IOException {
+        return chunkStore.getChunkTag(position, world);
+    }
+
+    @Override
+    public Chunk getChunk(Vector2D position, World world) throws DataException, IOException {
+        return cache.getChunk(snapshotId, chunkStore, position, world);
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunkStore.close();
+    }
+
+    @Override
+    public boolean isValid() {
+        return chunkStore.isValid();
+    }
+
+}
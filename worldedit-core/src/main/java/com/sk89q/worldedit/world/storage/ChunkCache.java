@@ -0,0 +1,252 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.world.storage;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntArrayTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.chunk.AnvilChunk;
+import com.sk89q.worldedit.world.chunk.Chunk;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A bounded cache of decoded chunks that are shared between the chunk
+ * stores of one or more snapshots.
+ *
+ * <p>Entries are keyed by snapshot, world and chunk position, and are
+ * evicted in least recently used order once the estimated memory use of
+ * the cached chunks exceeds the maximum weight. Use {@link #wrap(String,
+ * ChunkStore)} to get a chunk store that reads through the cache.</p>
+ */
+public class ChunkCache {
+
+    /**
+     * The block, data and add arrays that an {@link AnvilChunk} always
+     * allocates for all of its sections.
+     */
+    private static final int ANVIL_CHUNK_ARRAYS = 16 * (4096 + 2048 + 2048);
+
+    private final Cache<Key, Entry> cache;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maximumWeight the maximum estimated size of the cached chunks, in bytes
+     */
+    public ChunkCache(long maximumWeight) {
+        checkArgument(maximumWeight > 0, "maximumWeight > 0 required");
+        this.cache = CacheBuilder.newBuilder()
+                .concurrencyLevel(1) // one segment, so eviction is in strict LRU order
+                .maximumWeight(maximumWeight)
+                .weigher(new Weigher<Key, Entry>() {
+                    @Override
+                    public int weigh(Key key, Entry value) {
+                        return value.weight;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get a chunk store that reads chunks through this cache.
+     *
+     * @param snapshotId an ID that identifies the snapshot of the store
+     * @param chunkStore the chunk store to read chunks from on a miss
+     * @return a caching chunk store
+     */
+    public ChunkStore wrap(String snapshotId, ChunkStore chunkStore) {
+        return new CachingChunkStore(this, snapshotId, chunkStore);
+    }
+
+    /**
+     * Get a chunk, loading it from the given chunk store on a miss.
+     *
+     * @param snapshotId the ID of the snapshot
+     * @param chunkStore the chunk store to load from
+     * @param position the position of the chunk
+     * @param world the world
+     * @return the chunk
+     * @throws DataException thrown on data error
+     * @throws IOException thrown on I/O error
+     */
+    Chunk getChunk(String snapshotId, final ChunkStore chunkStore, final Vector2D position, final World world) throws DataException, IOException {
+        Key key = new Key(snapshotId, world.getName(), position.getBlockX(), position.getBlockZ());
+        try {
+            return cache.get(key, new Callable<Entry>() {
+                @Override
+                public Entry call() throws Exception {
+                    CompoundTag tag = chunkStore.getChunkDataTag(position, world);
+                    Chunk chunk = ChunkStore.createChunk(world, tag);
+                    int weight = estimateSize(tag) + (chunk instanceof AnvilChunk ? ANVIL_CHUNK_ARRAYS : 0);
+                    return new Entry(chunk, weight);
+                }
+            }).chunk;
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), DataException.class);
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Remove all cached chunks of the given snapshot.
+     *
+     * @param snapshotId the ID of the snapshot
+     */
+    public void invalidate(String snapshotId) {
+        checkNotNull(snapshotId);
+        Iterator<Key> it = cache.asMap().keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().snapshotId.equals(snapshotId)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all cached chunks.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Get the number of chunks in the cache.
+     *
+     * @return the number of chunks
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Get the number of times that a requested chunk was in the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * Get the number of times that a requested chunk had to be loaded.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * Estimate the number of bytes that a tag and its children occupy
+     * in memory.
+     *
+     * @param tag the tag
+     * @return the estimated size in bytes
+     */
+    static int estimateSize(Tag tag) {
+        if (tag instanceof ByteArrayTag) {
+            return 16 + ((ByteArrayTag) tag).getValue().length;
+        } else if (tag instanceof IntArrayTag) {
+            return 16 + 4 * ((IntArrayTag) tag).getValue().length;
+        } else if (tag instanceof StringTag) {
+            return 40 + 2 * ((StringTag) tag).getValue().length();
+        } else if (tag instanceof ListTag) {
+            int size = 32;
+            for (Tag child : ((ListTag) tag).getValue()) {
+                size += 8 + estimateSize(child);
+            }
+            return size;
+        } else if (tag instanceof CompoundTag) {
+            int size = 48;
+            for (Tag child : ((CompoundTag) tag).getValue().values()) {
+                size += 32 + estimateSize(child);
+            }
+            return size;
+        } else {
+            return 16;
+        }
+    }
+
+    private static final class Key {
+        private final String snapshotId;
+        private final String worldName;
+        private final int x;
+        private final int z;
+
+        private Key(String snapshotId, String worldName, int x, int z) {
+            this.snapshotId = snapshotId;
+            this.worldName = worldName;
+            this.x = x;
+            this.z = z;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return x == other.x && z == other.z
+                    && snapshotId.equals(other.snapshotId)
+                    && worldName.equals(other.worldName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = snapshotId.hashCode();
+            result = 31 * result + worldName.hashCode();
+            result = 31 * result + x;
+            result = 31 * result + z;
+            return result;
+        }
+    }
+
+    private static final class Entry {
+        private final Chunk chunk;
+        private final int weight;
+
+        private Entry(Chunk chunk, int weight) {
+            this.chunk = chunk;
+            this.weight = weight;
+        }
+    }
+
+}
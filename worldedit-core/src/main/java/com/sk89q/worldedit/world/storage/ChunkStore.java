@@ -20,6 +20,9 @@
 package com.sk89q.worldedit.world.storage;
 
 import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTSelection;
+import com.sk89q.jnbt.NBTStreamReader;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.Vector;
@@ -30,7 +33,9 @@
 import com.sk89q.worldedit.world.chunk.Chunk;
 import com.sk89q.worldedit.world.chunk.OldChunk;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 
 /**
@@ -44,6 +49,14 @@ public abstract class ChunkStore {
      */
     public static final int CHUNK_SHIFTS = 4;
 
+    /**
+     * The paths of a chunk tag that are needed to create a {@link Chunk}.
+     */
+    protected static final NBTSelection CHUNK_SELECTION = NBTSelection.of(
+            "Level.xPos", "Level.zPos", "Level.TileEntities",
+            "Level.Blocks", "Level.Data",
+            "Level.Sections[].Y", "Level.Sections[].Blocks", "Level.Sections[].Data", "Level.Sections[].Add");
+
     /**
      * Convert a position to a chunk.
      *
@@ -60,6 +73,11 @@ public static BlockVector2D toChunk(Vector position) {
     /**
      * Get the tag for a chunk.
      *
+     * <p>Implementations must allow this method to be called from several
+     * threads at once. Access to the underlying storage may be serialized,
+     * but decompression and NBT parsing should happen outside of any
+     * lock so that chunks can be decoded in parallel.</p>
+     *
      * @param position the position of the chunk
      * @return tag
      * @throws DataException thrown on data error
@@ -77,7 +95,84 @@ public static BlockVector2D toChunk(Vector position) {
      * @throws IOException thrown on I/O error
      */
     public Chunk getChunk(Vector2D position, World world) throws DataException, IOException {
-        CompoundTag tag = getChunkTag(position, world);
+        return createChunk(world, getChunkDataTag(position, world));
+    }
+
+    /**
+     * Get the tag for a chunk, but only with the children that are needed
+     * to create a {@link Chunk}.
+     *
+     * <p>By default, this returns the full tag. Stores that parse chunks
+     * themselves should skip the other tags with {@link #CHUNK_SELECTION}.</p>
+     *
+     * @param position the position of the chunk
+     * @param world the world
+     * @return tag
+     * @throws DataException thrown on data error
+     * @throws IOException thrown on I/O error
+     */
+    protected CompoundTag getChunkDataTag(Vector2D position, World world) throws DataException, IOException {
+        return getChunkTag(position, world);
+    }
+
+    /**
+     * Parse a chunk and return its 'Level' tag. The stream is closed
+     * afterwards.
+     *
+     * @param stream the uncompressed chunk data
+     * @param selection the paths to read, or null to read the whole chunk
+     * @return the 'Level' tag
+     * @throws DataException thrown on data error
+     * @throws IOException thrown on I/O error
+     */
+    protected static CompoundTag readLevelTag(InputStream stream, @Nullable NBTSelection selection) throws DataException, IOException {
+        Tag tag;
+
+        try {
+            if (selection != null) {
+                tag = new NBTStreamReader(stream).readNamedTag(selection).getTag();
+            } else {
+                tag = new NBTInputStream(stream).readNamedTag().getTag();
+            }
+        } finally {
+            stream.close();
+        }
+
+        if (!(tag instanceof CompoundTag)) {
+            throw new ChunkStoreException("CompoundTag expected for chunk; got " + tag.getClass().getName());
+        }
+
+        Map<String, Tag> children = ((CompoundTag) tag).getValue();
+        CompoundTag rootTag = null;
+
+        // Find Level tag
+        for (Map.Entry<String, Tag> entry : children.entrySet()) {
+            if (entry.getKey().equals("Level")) {
+                if (entry.getValue() instanceof CompoundTag) {
+                    rootTag = (CompoundTag) entry.getValue();
+                    break;
+                } else {
+                    throw new ChunkStoreException("CompoundTag expected for 'Level'; got " + entry.getValue().getClass().getName());
+                }
+            }
+        }
+
+        if (rootTag == null) {
+            throw new ChunkStoreException("Missing root 'Level' tag");
+        }
+
+        return rootTag;
+    }
+
+    /**
+     * Create a chunk from its tag.
+     *
+     * @param world the world
+     * @param tag the tag of the chunk
+     * @return a chunk
+     * @throws DataException thrown on data error
+     */
+    protected static Chunk createChunk(World world, CompoundTag tag) throws DataException {
         Map<String, Tag> tags = tag.getValue();
         if (tags.containsKey("Sections")) {
             return new AnvilChunk(world, tag);
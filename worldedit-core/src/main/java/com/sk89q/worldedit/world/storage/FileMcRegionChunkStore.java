@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.world.storage;
 
+import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.world.DataException;
 
 import java.io.File;
@@ -26,10 +27,22 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
+/**
+ * Reads chunks from region files in a folder.
+ *
+ * <p>Region files are memory mapped with {@link MappedMcRegionReader} and
+ * kept open until the store is closed, so chunks can be read in any order
+ * and from several threads at once.</p>
+ */
 public class FileMcRegionChunkStore extends McRegionChunkStore {
 
+    private static final Pattern EXTENSION = Pattern.compile(".*\\.mc[ra]$"); // allow either file extension, both work the same
+
+    private final Map<String, MappedMcRegionReader> mappedReaders = new ConcurrentHashMap<String, MappedMcRegionReader>();
     private File path;
 
     /**
@@ -42,33 +55,84 @@ public FileMcRegionChunkStore(File path) {
         this.path = path;
     }
 
-    @Override
-    protected InputStream getInputStream(String name, String world) throws IOException, DataException {
-        Pattern ext = Pattern.compile(".*\\.mc[ra]$"); // allow either file extension, both work the same
-        File file = null;
+    /**
+     * Find the region file with the given name.
+     *
+     * @param name the name of the region file
+     * @return the file
+     * @throws MissingChunkException thrown if there is no such region file
+     */
+    private File findRegionFile(String name) throws MissingChunkException {
         File[] files = new File(path, "region").listFiles();
 
-        if (files == null) {
-            throw new FileNotFoundException();
+        if (files != null) {
+            for (File f : files) {
+                String tempName = f.getName().replaceFirst("mcr$", "mca"); // matcher only does one at a time
+                if (EXTENSION.matcher(f.getName()).matches() && name.equalsIgnoreCase(tempName)) {
+                    // get full original path now
+                    return new File(path + File.separator + "region" + File.separator + f.getName());
+                }
+            }
         }
 
-        for (File f : files) {
-            String tempName = f.getName().replaceFirst("mcr$", "mca"); // matcher only does one at a time
-            if (ext.matcher(f.getName()).matches() && name.equalsIgnoreCase(tempName)) {
-                // get full original path now
-                file = new File(path + File.separator + "region" + File.separator + f.getName());
-                break;
+        throw new MissingChunkException();
+    }
+
+    /**
+     * Get the mapped reader for the region file with the given name,
+     * mapping the file if it has not been mapped yet.
+     *
+     * @param name the name of the region file
+     * @return the reader
+     * @throws DataException thrown on data error
+     * @throws IOException thrown on I/O error
+     */
+    private MappedMcRegionReader getMappedReader(String name) throws DataException, IOException {
+        MappedMcRegionReader reader = mappedReaders.get(name);
+        if (reader == null) {
+            synchronized (mappedReaders) {
+                reader = mappedReaders.get(name);
+                if (reader == null) {
+                    File file = findRegionFile(name);
+                    try {
+                        reader = new MappedMcRegionReader(file);
+                    } catch (FileNotFoundException e) {
+                        throw new MissingChunkException();
+                    }
+                    mappedReaders.put(name, reader);
+                }
             }
         }
+        return reader;
+    }
+
+    @Override
+    protected InputStream getChunkInputStream(Vector2D position, String worldName) throws DataException, IOException {
+        return getMappedReader(getFilename(position)).getChunkInputStream(position);
+    }
+
+    @Override
+    protected InputStream getInputStream(String name, String world) throws IOException, DataException {
+        File file = findRegionFile(name);
 
         try {
-            if (file == null) throw new FileNotFoundException();
             return new FileInputStream(file);
         } catch (FileNotFoundException e) {
             throw new MissingChunkException();
         }
     }
 
+    @Override
+    public void close() throws IOException {
+        synchronized (mappedReaders) {
+            for (MappedMcRegionReader reader : mappedReaders.values()) {
+                reader.close();
+            }
+            mappedReaders.clear();
+        }
+        super.close();
+    }
+
     @Override
     public boolean isValid() {
         return new File(path, "region").isDirectory() ||
@@ -19,17 +19,16 @@
 
 package com.sk89q.worldedit.world.storage;
 
+import com.google.common.io.ByteStreams;
 import com.sk89q.jnbt.CompoundTag;
-import com.sk89q.jnbt.NBTInputStream;
-import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.*;
 import com.sk89q.worldedit.world.DataException;
 import com.sk89q.worldedit.world.World;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -71,6 +70,23 @@ public static String getFilename(Vector2D position) {
 
     @Override
     public CompoundTag getChunkTag(Vector2D position, World world) throws DataException, IOException {
+        return readLevelTag(getChunkInputStream(position), null);
+    }
+
+    @Override
+    protected CompoundTag getChunkDataTag(Vector2D position, World world) throws DataException, IOException {
+        return readLevelTag(getChunkInputStream(position), CHUNK_SELECTION);
+    }
+
+    /**
+     * Get the uncompressed data input stream for a chunk.
+     *
+     * @param position the chunk position
+     * @return an input stream
+     * @throws DataException thrown on data error
+     * @throws IOException thrown on I/O error
+     */
+    private InputStream getChunkInputStream(Vector2D position) throws DataException, IOException {
         int x = position.getBlockX();
         int z = position.getBlockZ();
 
@@ -79,42 +95,20 @@ public CompoundTag getChunkTag(Vector2D position, World world) throws DataExcept
         String filename = "c." + Integer.toString(x, 36)
                 + "." + Integer.toString(z, 36) + ".dat";
 
-        InputStream stream = getInputStream(folder1, folder2, filename);
-        NBTInputStream nbt = new NBTInputStream(
-                new GZIPInputStream(stream));
-        Tag tag;
-
-        try {
-            tag = nbt.readNamedTag().getTag();
-            if (!(tag instanceof CompoundTag)) {
-                throw new ChunkStoreException("CompoundTag expected for chunk; got "
-                        + tag.getClass().getName());
-            }
+        byte[] data;
 
-            Map<String, Tag> children = ((CompoundTag) tag).getValue();
-            CompoundTag rootTag = null;
-
-            // Find Level tag
-            for (Map.Entry<String, Tag> entry : children.entrySet()) {
-                if (entry.getKey().equals("Level")) {
-                    if (entry.getValue() instanceof CompoundTag) {
-                        rootTag = (CompoundTag) entry.getValue();
-                        break;
-                    } else {
-                        throw new ChunkStoreException("CompoundTag expected for 'Level'; got "
-                                + entry.getValue().getClass().getName());
-                    }
-                }
+        // Only the raw read is serialized; inflating and parsing the chunk
+        // can happen on several threads at once
+        synchronized (this) {
+            InputStream stream = getInputStream(folder1, folder2, filename);
+            try {
+                data = ByteStreams.toByteArray(stream);
+            } finally {
+                stream.close();
             }
-
-            if (rootTag == null) {
-                throw new ChunkStoreException("Missing root 'Level' tag");
-            }
-
-            return rootTag;
-        } finally {
-            nbt.close();
         }
+
+        return new GZIPInputStream(new ByteArrayInputStream(data));
     }
 
     private static int divisorMod(int a, int n) {
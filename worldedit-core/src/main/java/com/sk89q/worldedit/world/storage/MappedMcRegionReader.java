@@ -0,0 +1,237 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.world.storage;
+
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.util.io.ByteBufferInputStream;
+import com.sk89q.worldedit.world.DataException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reader for a MCRegion file on disk that maps the whole file into memory.
+ *
+ * <p>Unlike {@link McRegionReader}, chunks can be read in any order and
+ * from several threads at once. The header and the chunk payloads are read
+ * straight from the mapped buffer, and the {@link Inflater}s used to
+ * decompress chunks are pooled and reused once the returned streams are
+ * closed.</p>
+ */
+public class MappedMcRegionReader implements Closeable {
+
+    private static final int MAX_POOLED_INFLATERS = 16;
+    private static final int INFLATE_BUFFER_SIZE = 8192;
+    private static final Deque<Inflater> inflaters = new ArrayDeque<Inflater>();
+
+    private final File file;
+    private volatile ByteBuffer buffer;
+
+    /**
+     * Map the given region file.
+     *
+     * @param file the region file
+     * @throws DataException thrown if the file is too small to be a region file
+     * @throws IOException thrown on I/O error
+     */
+    public MappedMcRegionReader(File file) throws DataException, IOException {
+        checkNotNull(file);
+        this.file = file;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < McRegionReader.SECTOR_BYTES) {
+                throw new DataException("MCRegion file " + file.getName() + " is too small to contain a header");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new DataException("MCRegion file " + file.getName() + " is too large");
+            }
+            // The mapping stays valid after the channel is closed
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Get the file that is mapped.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    private ByteBuffer getBuffer() throws IOException {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new IOException("MCRegion file " + file.getName() + " has been closed");
+        }
+        return buffer;
+    }
+
+    /**
+     * Get the offset for a chunk. May return 0 if it doesn't exist.
+     *
+     * @param buffer the mapped buffer
+     * @param x the X coordinate within the region
+     * @param z the Z coordinate within the region
+     * @return the offset
+     */
+    private static int getOffset(ByteBuffer buffer, int x, int z) {
+        // Absolute reads do not touch the position, so they are safe to share
+        return buffer.getInt(4 * (x + z * 32));
+    }
+
+    /**
+     * Returns whether the file contains a chunk.
+     *
+     * @param x the X coordinate
+     * @param z the Z coordinate
+     * @return true if the chunk exists
+     * @throws IOException thrown if the reader has been closed
+     */
+    public boolean hasChunk(int x, int z) throws IOException {
+        return getOffset(getBuffer(), x & 31, z & 31) != 0;
+    }
+
+    /**
+     * Gets the uncompressed data input stream for a chunk.
+     *
+     * <p>The returned stream should be closed so that its inflater can be
+     * reused.</p>
+     *
+     * @param position chunk position
+     * @return an input stream
+     * @throws IOException thrown if the reader has been closed
+     * @throws DataException thrown if the chunk does not exist or is corrupt
+     */
+    public InputStream getChunkInputStream(Vector2D position) throws IOException, DataException {
+        ByteBuffer buffer = getBuffer();
+        int x = position.getBlockX() & 31;
+        int z = position.getBlockZ() & 31;
+
+        int offset = getOffset(buffer, x, z);
+
+        // The chunk hasn't been generated
+        if (offset == 0) {
+            throw new DataException("The chunk at " + x + "," + z + " is not generated");
+        }
+
+        long start = (long) (offset >>> 8) * McRegionReader.SECTOR_BYTES;
+        int numSectors = offset & 0xFF;
+
+        if (start + McRegionReader.CHUNK_HEADER_SIZE > buffer.capacity()) {
+            throw new DataException("MCRegion file does not contain " + x + "," + z + " in full");
+        }
+
+        int length = buffer.getInt((int) start);
+
+        if (length < 1 || length > McRegionReader.SECTOR_BYTES * numSectors) {
+            throw new DataException("MCRegion chunk at " + x + "," + z + " has an invalid length of " + length);
+        }
+
+        if (start + 4 + length > buffer.capacity()) {
+            throw new DataException("MCRegion file does not contain " + x + "," + z + " in full");
+        }
+
+        byte version = buffer.get((int) start + 4);
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit((int) start + 4 + length);
+        payload.position((int) start + McRegionReader.CHUNK_HEADER_SIZE);
+        InputStream in = new ByteBufferInputStream(payload);
+
+        if (version == McRegionReader.VERSION_GZIP) {
+            return new GZIPInputStream(in);
+        } else if (version == McRegionReader.VERSION_DEFLATE) {
+            return new PooledInflaterInputStream(in, acquireInflater());
+        } else {
+            throw new DataException("MCRegion chunk at " + x + "," + z + " has an unsupported version of " + version);
+        }
+    }
+
+    /**
+     * Release the mapping.
+     *
+     * <p>The memory is unmapped once the buffer has been garbage collected.
+     * Streams that were returned before the reader was closed can still
+     * be read.</p>
+     */
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+    private static Inflater acquireInflater() {
+        synchronized (inflaters) {
+            Inflater inflater = inflaters.poll();
+            if (inflater != null) {
+                return inflater;
+            }
+        }
+        return new Inflater();
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        synchronized (inflaters) {
+            if (inflaters.size() < MAX_POOLED_INFLATERS) {
+                inflaters.push(inflater);
+                return;
+            }
+        }
+        inflater.end();
+    }
+
+    /**
+     * An inflating stream that returns its inflater to the pool when closed.
+     */
+    private static class PooledInflaterInputStream extends InflaterInputStream {
+        private boolean released = false;
+
+        private PooledInflaterInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, INFLATE_BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!released) {
+                released = true;
+                super.close();
+                releaseInflater(inf);
+            }
+        }
+    }
+
+}
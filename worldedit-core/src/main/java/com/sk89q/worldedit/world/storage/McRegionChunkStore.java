@@ -20,15 +20,12 @@
 package com.sk89q.worldedit.world.storage;
 
 import com.sk89q.jnbt.CompoundTag;
-import com.sk89q.jnbt.NBTInputStream;
-import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.world.DataException;
 import com.sk89q.worldedit.world.World;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Map;
 
 public abstract class McRegionChunkStore extends ChunkStore {
 
@@ -66,43 +63,34 @@ protected McRegionReader getReader(Vector2D pos, String worldname) throws DataEx
         return cachedReader;
     }
 
+    /**
+     * Get the uncompressed data input stream for a chunk.
+     *
+     * <p>This method may be called from several threads at once.</p>
+     *
+     * @param position the chunk position
+     * @param worldName the world name
+     * @return an input stream
+     * @throws DataException thrown on data error
+     * @throws IOException thrown on I/O error
+     */
+    protected InputStream getChunkInputStream(Vector2D position, String worldName) throws DataException, IOException {
+        // The reader is shared, but the payload is copied out of the file
+        // so the chunk can be inflated and parsed without holding the lock
+        synchronized (this) {
+            McRegionReader reader = getReader(position, worldName);
+            return reader.getChunkInputStream(position);
+        }
+    }
+
     @Override
     public CompoundTag getChunkTag(Vector2D position, World world) throws DataException, IOException {
-        McRegionReader reader = getReader(position, world.getName());
-
-        InputStream stream = reader.getChunkInputStream(position);
-        NBTInputStream nbt = new NBTInputStream(stream);
-        Tag tag;
-
-        try {
-            tag = nbt.readNamedTag().getTag();
-            if (!(tag instanceof CompoundTag)) {
-                throw new ChunkStoreException("CompoundTag expected for chunk; got " + tag.getClass().getName());
-            }
-
-            Map<String, Tag> children = ((CompoundTag) tag).getValue();
-            CompoundTag rootTag = null;
-
-            // Find Level tag
-            for (Map.Entry<String, Tag> entry : children.entrySet()) {
-                if (entry.getKey().equals("Level")) {
-                    if (entry.getValue() instanceof CompoundTag) {
-                        rootTag = (CompoundTag) entry.getValue();
-                        break;
-                    } else {
-                        throw new ChunkStoreException("CompoundTag expected for 'Level'; got " + entry.getValue().getClass().getName());
-                    }
-                }
-            }
-
-            if (rootTag == null) {
-                throw new ChunkStoreException("Missing root 'Level' tag");
-            }
+        return readLevelTag(getChunkInputStream(position, world.getName()), null);
+    }
 
-            return rootTag;
-        } finally {
-            nbt.close();
-        }
+    @Override
+    protected CompoundTag getChunkDataTag(Vector2D position, World world) throws DataException, IOException {
+        return readLevelTag(getChunkInputStream(position, world.getName()), CHUNK_SELECTION);
     }
 
     /**
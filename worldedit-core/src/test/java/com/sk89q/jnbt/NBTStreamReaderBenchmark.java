@@ -0,0 +1,62 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.jnbt;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Compares the time that it takes to decode a chunk with
+ * {@link NBTInputStream} and with a {@link NBTStreamReader} that only reads
+ * the tags that are needed to restore blocks.
+ *
+ * <p>This is not a unit test.</p>
+ */
+public final class NBTStreamReaderBenchmark {
+
+    private static final int ITERATIONS = 20000;
+    private static final NBTSelection SELECTION = NBTSelection.of(
+            "Level.xPos", "Level.zPos", "Level.TileEntities",
+            "Level.Sections[].Y", "Level.Sections[].Blocks", "Level.Sections[].Data", "Level.Sections[].Add");
+
+    private NBTStreamReaderBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        byte[] data = NBTStreamReaderTest.createChunkData(0);
+        for (int round = 0; round < 3; round++) { // the first rounds warm up the JIT
+            long full = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                full += new NBTInputStream(new ByteArrayInputStream(data)).readNamedTag().getName().length();
+            }
+            long fullTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                full += new NBTStreamReader(new ByteArrayInputStream(data)).readNamedTag(SELECTION).getName().length();
+            }
+            long selectedTime = System.nanoTime() - start;
+
+            System.out.printf("NBTInputStream: %.1f us/chunk, NBTStreamReader: %.1f us/chunk (%d)%n",
+                    fullTime / 1000.0 / ITERATIONS, selectedTime / 1000.0 / ITERATIONS, full);
+        }
+    }
+
+}
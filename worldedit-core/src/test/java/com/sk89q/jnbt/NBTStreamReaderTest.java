@@ -0,0 +1,207 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.jnbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NBTStreamReaderTest {
+
+    /**
+     * Create the NBT data of a chunk with all of the tags that a real
+     * chunk has, most of which are not needed to restore blocks.
+     *
+     * @param seed the seed for the random contents
+     * @return the uncompressed NBT data
+     * @throws IOException on I/O error
+     */
+    static byte[] createChunkData(long seed) throws IOException {
+        Random random = new Random(seed);
+
+        ListTagBuilder sections = ListTagBuilder.create(CompoundTag.class);
+        for (int y = 0; y < 16; y++) {
+            sections.add(CompoundTagBuilder.create()
+                    .putByte("Y", (byte) y)
+                    .putByteArray("Blocks", randomBytes(random, 4096))
+                    .putByteArray("Data", randomBytes(random, 2048))
+                    .putByteArray("SkyLight", randomBytes(random, 2048))
+                    .putByteArray("BlockLight", randomBytes(random, 2048))
+                    .build());
+        }
+
+        ListTagBuilder entities = ListTagBuilder.create(CompoundTag.class);
+        for (int i = 0; i < 20; i++) {
+            entities.add(CompoundTagBuilder.create()
+                    .putString("id", "Zombie")
+                    .put("Pos", ListTagBuilder.createWith(new DoubleTag(i), new DoubleTag(64), new DoubleTag(-i)).build())
+                    .put("Equipment", ListTagBuilder.createWith(CompoundTagBuilder.create().putShort("id", (short) 1).build()).build())
+                    .putFloat("Health", 20)
+                    .build());
+        }
+
+        CompoundTag level = CompoundTagBuilder.create()
+                .putInt("xPos", 3)
+                .putInt("zPos", -7)
+                .putLong("LastUpdate", 123456789L)
+                .putIntArray("HeightMap", new int[256])
+                .putByteArray("Biomes", randomBytes(random, 256))
+                .put("Sections", sections.build())
+                .put("Entities", entities.build())
+                .put("TileEntities", ListTagBuilder.createWith(CompoundTagBuilder.create().putString("id", "Chest").putInt("x", 48).build()).build())
+                .put("TileTicks", ListTagBuilder.create(CompoundTag.class).build())
+                .build();
+
+        CompoundTag root = CompoundTagBuilder.create().put("Level", level).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NBTOutputStream nbt = new NBTOutputStream(out);
+        nbt.writeNamedTag("", root);
+        nbt.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static CompoundTag readFull(byte[] data) throws IOException {
+        return (CompoundTag) new NBTInputStream(new ByteArrayInputStream(data)).readNamedTag().getTag();
+    }
+
+    @Test
+    public void testReadSelected() throws IOException {
+        byte[] data = createChunkData(1);
+        NBTSelection selection = NBTSelection.of("Level.xPos", "Level.TileEntities",
+                "Level.Sections[].Y", "Level.Sections[].Blocks", "Level.Sections[].Data");
+
+        CompoundTag root = (CompoundTag) new NBTStreamReader(new ByteArrayInputStream(data)).readNamedTag(selection).getTag();
+        CompoundTag level = (CompoundTag) root.getValue().get("Level");
+        CompoundTag fullLevel = (CompoundTag) readFull(data).getValue().get("Level");
+
+        assertEquals(new HashSet<String>(Arrays.asList("xPos", "TileEntities", "Sections")), level.getValue().keySet());
+        assertEquals(3, level.getInt("xPos"));
+        assertEquals(1, level.getList("TileEntities").size());
+        assertEquals("Chest", level.getList("TileEntities", CompoundTag.class).get(0).getString("id"));
+
+        List<CompoundTag> sections = level.getList("Sections", CompoundTag.class);
+        List<CompoundTag> fullSections = fullLevel.getList("Sections", CompoundTag.class);
+        assertEquals(16, sections.size());
+        for (int i = 0; i < 16; i++) {
+            Map<String, Tag> section = sections.get(i).getValue();
+            assertEquals(new HashSet<String>(Arrays.asList("Y", "Blocks", "Data")), section.keySet());
+            assertArrayEquals(fullSections.get(i).getByteArray("Blocks"), sections.get(i).getByteArray("Blocks"));
+            assertArrayEquals(fullSections.get(i).getByteArray("Data"), sections.get(i).getByteArray("Data"));
+        }
+    }
+
+    @Test
+    public void testSkipEveryTagType() throws IOException {
+        CompoundTag skipped = readFull(createChunkData(2));
+        CompoundTag root = CompoundTagBuilder.create()
+                .put("skipped", skipped)
+                .putString("name", "marker")
+                .putInt("value", 42)
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NBTOutputStream nbt = new NBTOutputStream(out);
+        nbt.writeNamedTag("root", root);
+        nbt.close();
+
+        NBTStreamReader reader = new NBTStreamReader(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(NBTConstants.TYPE_COMPOUND, reader.readRoot());
+        assertEquals("root", reader.getName());
+
+        String name = null;
+        int value = 0;
+        while (reader.nextEntry()) {
+            if (reader.getName().equals("name")) {
+                name = reader.readString();
+            } else if (reader.getName().equals("value")) {
+                value = reader.readInt();
+            } else {
+                reader.skip(reader.getType());
+            }
+        }
+        assertEquals("marker", name);
+        assertEquals(42, value);
+        reader.close();
+    }
+
+    @Test
+    public void testReadIntoCallerBuffer() throws IOException {
+        byte[] data = createChunkData(3);
+        List<CompoundTag> expected = ((CompoundTag) readFull(data).getValue().get("Level")).getList("Sections", CompoundTag.class);
+        byte[] buffer = new byte[4096];
+        int sections = 0;
+
+        NBTStreamReader reader = new NBTStreamReader(new ByteArrayInputStream(data));
+        reader.readRoot();
+        assertTrue(reader.nextEntry());
+        assertEquals("Level", reader.getName());
+        while (reader.nextEntry()) {
+            if (!reader.getName().equals("Sections")) {
+                reader.skip(reader.getType());
+                continue;
+            }
+            int length = reader.beginList();
+            assertEquals(NBTConstants.TYPE_COMPOUND, reader.getListType());
+            for (int i = 0; i < length; i++) {
+                while (reader.nextEntry()) {
+                    if (reader.getName().equals("Blocks")) {
+                        assertEquals(4096, reader.readByteArray(buffer));
+                        assertArrayEquals(expected.get(i).getByteArray("Blocks"), buffer);
+                        sections++;
+                    } else {
+                        reader.skip(reader.getType());
+                    }
+                }
+            }
+        }
+        assertFalse(reader.nextEntry());
+        assertEquals(16, sections);
+        reader.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testBufferTooSmall() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NBTOutputStream nbt = new NBTOutputStream(out);
+        nbt.writeNamedTag("bytes", new ByteArrayTag(new byte[16]));
+        nbt.close();
+
+        NBTStreamReader reader = new NBTStreamReader(new ByteArrayInputStream(out.toByteArray()));
+        reader.readRoot();
+        reader.readByteArray(new byte[8]);
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.blocks;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.Tag;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ImmutableBlockTest {
+
+    @Test
+    public void testInterned() {
+        assertSame(ImmutableBlock.of(BlockID.STONE, 0), ImmutableBlock.of(BlockID.STONE));
+        assertSame(ImmutableBlock.of(BlockID.CLOTH, 14), ImmutableBlock.intern(new BaseBlock(BlockID.CLOTH, 14)));
+        assertNotSame(ImmutableBlock.of(BlockID.CLOTH, 14), ImmutableBlock.of(BlockID.CLOTH, -1));
+        assertEquals(-1, ImmutableBlock.of(BlockID.CLOTH, -1).getData());
+        assertEquals(new BaseBlock(BaseBlock.MAX_ID, BaseBlock.MAX_DATA), ImmutableBlock.of(BaseBlock.MAX_ID, BaseBlock.MAX_DATA));
+    }
+
+    @Test
+    public void testInternKeepsNbtData() {
+        BaseBlock block = new BaseBlock(BlockID.CHEST, 2, new CompoundTag(new HashMap<String, Tag>()));
+        assertSame(block, ImmutableBlock.intern(block));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSetDataFails() {
+        ImmutableBlock.of(BlockID.STONE).setData(1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSetTypeFails() {
+        ImmutableBlock.of(BlockID.STONE).setType(BlockID.DIRT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIdOutOfRange() {
+        ImmutableBlock.of(BaseBlock.MAX_ID + 1, 0);
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent;
+
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.inventory.BlockBagExtent;
+import com.sk89q.worldedit.extent.reorder.MultiStageReorder;
+import com.sk89q.worldedit.extent.validation.BlockChangeLimiter;
+import com.sk89q.worldedit.extent.world.FastModeExtent;
+import com.sk89q.worldedit.function.mask.AbstractMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Mask2D;
+import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.history.changeset.ArrayListHistory;
+import com.sk89q.worldedit.history.changeset.BlockOptimizedHistory;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.World;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SectionBufferTest {
+
+    private static final Mask EVEN_X = new AbstractMask() {
+        @Override
+        public boolean test(Vector vector) {
+            return vector.getBlockX() % 2 == 0;
+        }
+
+        @Nullable
+        @Override
+        public Mask2D toMask2D() {
+            return null;
+        }
+    };
+
+    private static BlockArrayClipboard createWorld() throws WorldEditException {
+        BlockArrayClipboard world = new BlockArrayClipboard(new CuboidRegion(new Vector(-16, 0, -16), new Vector(31, 31, 31)));
+        for (int x = -16; x < 32; x += 3) {
+            world.setBlock(new Vector(x, 18, 7), new BaseBlock(BlockID.TORCH, 5));
+        }
+        return world;
+    }
+
+    private static Extent createChain(Extent world, ChangeSet changeSet, Mask mask, int limit) {
+        Extent extent = new BlockBagExtent(world, null);
+        extent = new MultiStageReorder(extent, true);
+        extent = new ChangeSetExtent(extent, changeSet);
+        extent = new MaskingExtent(extent, mask);
+        return new BlockChangeLimiter(extent, limit);
+    }
+
+    private static SectionBuffer createSection() {
+        SectionBuffer section = new SectionBuffer(-1, 1, 0);
+        for (int z = 0; z < 16; z++) {
+            section.fill(16 + z, z, -16, -1 - z, BlockID.STONE, z);
+        }
+        section.set(SectionBuffer.getIndex(3, 5, 5), BlockID.TORCH, 1);
+        section.set(SectionBuffer.getIndex(4, 5, 5), BlockID.SIGN_POST, 2);
+        for (int x = -16; x < 0; x++) {
+            section.set(SectionBuffer.getIndex(x, 18, 7), BlockID.GLASS, 0);
+        }
+        return section;
+    }
+
+    private static void assertSameBlocks(Extent expected, Extent actual) {
+        for (int x = -16; x < 32; x++) {
+            for (int y = 0; y < 32; y++) {
+                for (int z = -16; z < 32; z++) {
+                    Vector position = new Vector(x, y, z);
+                    BaseBlock expectedBlock = expected.getBlock(position);
+                    BaseBlock actualBlock = actual.getBlock(position);
+                    assertEquals(position.toString(), expectedBlock.getId(), actualBlock.getId());
+                    assertEquals(position.toString(), expectedBlock.getData(), actualBlock.getData());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCoordinates() {
+        SectionBuffer section = new SectionBuffer(-2, 3, 5);
+        int index = SectionBuffer.getIndex(-30, 55, 95);
+        assertEquals(-30, section.getX(index));
+        assertEquals(55, section.getY(index));
+        assertEquals(95, section.getZ(index));
+        assertTrue(section.contains(-30, 55, 95));
+        assertFalse(section.contains(-33, 55, 95));
+    }
+
+    @Test
+    public void testFallbackMatchesBlocks() throws WorldEditException {
+        BlockArrayClipboard expected = createWorld();
+        BlockArrayClipboard actual = createWorld();
+        SectionBuffer section = createSection();
+
+        for (int index = section.nextChanged(0); index >= 0; index = section.nextChanged(index + 1)) {
+            expected.setBlock(new Vector(section.getX(index), section.getY(index), section.getZ(index)), new BaseBlock(section.getId(index), section.getData(index)));
+        }
+        assertEquals(section.getChangeCount(), section.writeTo(actual));
+
+        assertSameBlocks(expected, actual);
+    }
+
+    @Test
+    public void testChainMatchesBlocks() throws WorldEditException {
+        for (Mask mask : new Mask[] { Masks.alwaysTrue(), EVEN_X }) {
+            BlockArrayClipboard expectedWorld = createWorld();
+            BlockArrayClipboard actualWorld = createWorld();
+            ChangeSet expectedChanges = new ArrayListHistory();
+            ChangeSet actualChanges = new BlockOptimizedHistory();
+            Extent expected = createChain(expectedWorld, expectedChanges, mask, -1);
+            Extent actual = createChain(actualWorld, actualChanges, mask, -1);
+
+            SectionBuffer section = createSection();
+            for (int index = section.nextChanged(0); index >= 0; index = section.nextChanged(index + 1)) {
+                expected.setBlock(new Vector(section.getX(index), section.getY(index), section.getZ(index)), new BaseBlock(section.getId(index), section.getData(index)));
+            }
+            section.writeTo(actual);
+            Operations.completeLegacy(expected.commit());
+            Operations.completeLegacy(actual.commit());
+
+            assertSameBlocks(expectedWorld, actualWorld);
+            assertEquals(expectedChanges.size(), actualChanges.size());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFastModeWritesSections() throws WorldEditException {
+        World world = mock(World.class);
+        SectionBuffer section = createSection();
+        when(world.setSection(section, false)).thenReturn(7);
+
+        FastModeExtent extent = new FastModeExtent(world, true);
+        assertEquals(7, section.writeTo(extent));
+        verify(world, never()).setBlock(any(Vector.class), any(BaseBlock.class), any(Boolean.class));
+
+        Operations.completeLegacy(extent.commit());
+        ArgumentCaptor<Iterable> chunks = ArgumentCaptor.forClass(Iterable.class);
+        verify(world).fixAfterFastMode(chunks.capture());
+        Iterator<BlockVector2D> it = chunks.getValue().iterator();
+        assertEquals(new BlockVector2D(-1, 0), it.next());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testLimitStopsAtLimit() throws WorldEditException {
+        BlockArrayClipboard world = createWorld();
+        ChangeSet changeSet = new BlockOptimizedHistory();
+        BlockChangeLimiter limiter = (BlockChangeLimiter) createChain(world, changeSet, Masks.alwaysTrue(), 100);
+
+        try {
+            createSection().writeTo(limiter);
+            fail("Expected the limit to be hit");
+        } catch (MaxChangedBlocksException ignored) {
+        }
+
+        assertEquals(100, limiter.getCount());
+        assertEquals(100, changeSet.size());
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.CompoundTagBuilder;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
+import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class BlockArrayClipboardTest {
+
+    @Test
+    public void testDefaultsToAir() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(new Vector(-5, 0, -5), new Vector(5, 10, 5)));
+        assertEquals(BlockID.AIR, clipboard.getBlock(new Vector(0, 5, 0)).getId());
+        assertEquals(BlockID.AIR, clipboard.getBlock(new Vector(100, 5, 0)).getId());
+    }
+
+    @Test
+    public void testPrimitiveAccess() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(new Vector(-5, 0, -5), new Vector(5, 10, 5)));
+        clipboard.setBlock(new Vector(-5, 10, 3), new BaseBlock(BlockID.CLOTH, 7));
+        assertEquals(BlockID.CLOTH, clipboard.getBlockId(-5, 10, 3));
+        assertEquals(7, clipboard.getBlockData(-5, 10, 3));
+        assertEquals(BlockID.AIR, clipboard.getBlockId(-6, 10, 3));
+        assertEquals(BlockID.AIR, clipboard.getBlockId(-5, 11, 3));
+        assertSame(clipboard.getLazyBlock(new Vector(-5, 10, 3)), clipboard.getLazyBlock(new Vector(-5, 10, 3)));
+    }
+
+    @Test
+    public void testPaletteGrowth() throws Exception {
+        CuboidRegion region = new CuboidRegion(new Vector(10, 20, 30), new Vector(29, 39, 49));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        for (int x = 10; x < 30; x++) {
+            for (int y = 20; y < 40; y++) {
+                for (int z = 30; z < 50; z++) {
+                    clipboard.setBlock(new Vector(x, y, z), new BaseBlock(x * 20 + y, z % 16));
+                }
+            }
+        }
+        for (int x = 10; x < 30; x++) {
+            for (int y = 20; y < 40; y++) {
+                for (int z = 30; z < 50; z++) {
+                    BaseBlock block = clipboard.getBlock(new Vector(x, y, z));
+                    assertEquals(x * 20 + y, block.getId());
+                    assertEquals(z % 16, block.getData());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNbtData() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(3, 3, 3)));
+        CompoundTag tag = CompoundTagBuilder.create().putString("id", "Chest").build();
+        Vector position = new Vector(1, 2, 3);
+        clipboard.setBlock(position, new BaseBlock(BlockID.CHEST, 2, tag));
+        clipboard.setBlock(new Vector(1, 2, 2), new BaseBlock(BlockID.CHEST, 2));
+
+        BaseBlock block = clipboard.getBlock(position);
+        assertEquals(BlockID.CHEST, block.getId());
+        assertEquals(2, block.getData());
+        assertNotNull(block.getNbtData());
+        assertNotNull(clipboard.getLazyBlock(position).getNbtData());
+        assertNull(clipboard.getBlock(new Vector(1, 2, 2)).getNbtData());
+
+        clipboard.setBlock(position, new BaseBlock(BlockID.STONE));
+        assertNull(clipboard.getBlock(position).getNbtData());
+    }
+
+    @Test
+    public void testPasteSharesBlocks() throws Exception {
+        CuboidRegion region = new CuboidRegion(new Vector(0, 0, 0), new Vector(3, 3, 3));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        Vector stone = new Vector(1, 1, 1);
+        Vector chest = new Vector(2, 2, 2);
+        CompoundTag tag = CompoundTagBuilder.create().putString("id", "Chest").build();
+        clipboard.setBlock(stone, new BaseBlock(BlockID.STONE));
+        clipboard.setBlock(chest, new BaseBlock(BlockID.CHEST, 2, tag));
+
+        // Pasted the way PasteBuilder does it, without rotating
+        Extent destination = mock(Extent.class);
+        BlockTransformExtent source = new BlockTransformExtent(clipboard, new AffineTransform(),
+                LegacyWorldData.getInstance().getBlockRegistry());
+        Operations.complete(new ForwardExtentCopy(source, region, clipboard.getOrigin(), destination, new Vector(10, 0, 0)));
+
+        // Blocks without NBT data are passed on as the clipboard's shared instances
+        verify(destination).setBlock(eq(new Vector(11, 1, 1)), same(clipboard.getLazyBlock(stone)));
+        ArgumentCaptor<BaseBlock> pasted = ArgumentCaptor.forClass(BaseBlock.class);
+        verify(destination).setBlock(eq(new Vector(12, 2, 2)), pasted.capture());
+        assertEquals(BlockID.CHEST, pasted.getValue().getId());
+        assertEquals(tag, pasted.getValue().getNbtData());
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.extent.clipboard.io;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.CompoundTagBuilder;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.NBTStreamReader;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.FileBackedClipboard;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.session.ClipboardHolder;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class StreamingSchematicTest {
+
+    private static final Vector MIN = new Vector(-20, 10, 300);
+    private static final Vector MAX = new Vector(13, 40, 340);
+    private static final Vector ORIGIN = new Vector(-3, 12, 305);
+    private static final Vector CHEST = new Vector(-18, 11, 302);
+
+    private static BlockArrayClipboard createClipboard() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        clipboard.setOrigin(ORIGIN);
+        for (int x = MIN.getBlockX(); x <= MAX.getBlockX(); x++) {
+            for (int y = MIN.getBlockY(); y <= MAX.getBlockY(); y++) {
+                for (int z = MIN.getBlockZ(); z <= MAX.getBlockZ(); z++) {
+                    clipboard.setBlock(new Vector(x, y, z), expectedBlock(x, y, z));
+                }
+            }
+        }
+        CompoundTag tag = CompoundTagBuilder.create().putString("id", "Chest").putString("CustomName", "test").build();
+        clipboard.setBlock(CHEST, new BaseBlock(BlockID.CHEST, 2, tag));
+        CompoundTag entityTag = CompoundTagBuilder.create().putString("id", "Pig").build();
+        clipboard.createEntity(new Location(clipboard, new Vector(-10.5, 20, 310.5)), new BaseEntity("Pig", entityTag));
+        return clipboard;
+    }
+
+    private static BaseBlock expectedBlock(int x, int y, int z) {
+        // Includes IDs above 255, which need the AddBlocks array
+        return new BaseBlock(Math.abs(x * 31 + y * 7 + z) % 600, Math.abs(x + z) % 16);
+    }
+
+    private static void assertClipboard(Clipboard clipboard) {
+        assertEquals(MIN, clipboard.getMinimumPoint());
+        assertEquals(MAX, clipboard.getMaximumPoint());
+        assertEquals(ORIGIN, clipboard.getOrigin());
+        for (int x = MIN.getBlockX(); x <= MAX.getBlockX(); x++) {
+            for (int y = MIN.getBlockY(); y <= MAX.getBlockY(); y++) {
+                for (int z = MIN.getBlockZ(); z <= MAX.getBlockZ(); z++) {
+                    Vector position = new Vector(x, y, z);
+                    BaseBlock block = clipboard.getBlock(position);
+                    if (position.equals(CHEST)) {
+                        assertEquals(BlockID.CHEST, block.getId());
+                        assertEquals(2, block.getData());
+                        assertNotNull(block.getNbtData());
+                        assertEquals("test", block.getNbtData().getString("CustomName"));
+                    } else {
+                        BaseBlock expected = expectedBlock(x, y, z);
+                        assertEquals(expected.getId(), block.getId());
+                        assertEquals(expected.getData(), block.getData());
+                        assertNull(block.getNbtData());
+                    }
+                }
+            }
+        }
+        assertEquals(1, clipboard.getEntities().size());
+        assertEquals("Pig", clipboard.getEntities().get(0).getState().getTypeId());
+        assertEquals(new Vector(-10.5, 20, 310.5), clipboard.getEntities().get(0).getLocation().toVector());
+    }
+
+    private static byte[] writeStreaming(Clipboard clipboard) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingSchematicWriter writer = new StreamingSchematicWriter(new NBTOutputStream(out));
+        writer.write(clipboard, LegacyWorldData.getInstance());
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static Clipboard readStreaming(byte[] data) throws IOException {
+        StreamingSchematicReader reader = new StreamingSchematicReader(new NBTStreamReader(new ByteArrayInputStream(data)));
+        return reader.read(LegacyWorldData.getInstance());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertClipboard(readStreaming(writeStreaming(createClipboard())));
+    }
+
+    @Test
+    public void testReadableByTreeReader() throws Exception {
+        SchematicReader reader = new SchematicReader(new NBTInputStream(new ByteArrayInputStream(writeStreaming(createClipboard()))));
+        assertClipboard(reader.read(LegacyWorldData.getInstance()));
+    }
+
+    @Test
+    public void testReadsTreeWriterOutput() throws Exception {
+        // The tree writer puts the block arrays before the dimensions
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SchematicWriter writer = new SchematicWriter(new NBTOutputStream(out));
+        writer.write(createClipboard(), LegacyWorldData.getInstance());
+        writer.close();
+        assertClipboard(readStreaming(out.toByteArray()));
+    }
+
+    private static FileBackedClipboard readFileBacked(byte[] data) throws IOException {
+        StreamingSchematicReader reader = new StreamingSchematicReader(new NBTStreamReader(new ByteArrayInputStream(data)));
+        return reader.readFileBacked(LegacyWorldData.getInstance());
+    }
+
+    @Test
+    public void testFileBacked() throws Exception {
+        FileBackedClipboard clipboard = readFileBacked(writeStreaming(createClipboard()));
+        File file = clipboard.getFile();
+        try {
+            assertClipboard(clipboard);
+        } finally {
+            clipboard.close();
+        }
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testFileBackedReadsTreeWriterOutput() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SchematicWriter writer = new SchematicWriter(new NBTOutputStream(out));
+        writer.write(createClipboard(), LegacyWorldData.getInstance());
+        writer.close();
+        FileBackedClipboard clipboard = readFileBacked(out.toByteArray());
+        try {
+            assertClipboard(clipboard);
+        } finally {
+            clipboard.close();
+        }
+    }
+
+    @Test
+    public void testPasteFileBacked() throws Exception {
+        FileBackedClipboard clipboard = readFileBacked(writeStreaming(createClipboard()));
+        try {
+            BlockArrayClipboard target = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+            target.setOrigin(ORIGIN);
+            Operations.complete(new ClipboardHolder(clipboard, LegacyWorldData.getInstance())
+                    .createPaste(target, LegacyWorldData.getInstance())
+                    .to(ORIGIN)
+                    .build());
+            assertClipboard(target);
+        } finally {
+            clipboard.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingBlocks() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NBTOutputStream nbt = new NBTOutputStream(out);
+        nbt.writeNamedTag("Schematic", CompoundTagBuilder.create().putString("Materials", "Alpha").build());
+        nbt.close();
+        readStreaming(out.toByteArray());
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.reorder;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.operation.Operations;
+
+/**
+ * Measures the heap used to buffer blocks in a {@link MultiStageReorder}
+ * and the time taken to place them.
+ *
+ * <p>This is not a unit test. Run it with a fixed heap size (for example
+ * {@code -Xms2G -Xmx2G}) for stable numbers.</p>
+ */
+public final class MultiStageReorderBenchmark {
+
+    private static final int BLOCKS = 1000000;
+    private static final int WIDTH = 1000;
+    private static final int COLUMN_HEIGHT = 100;
+
+    private MultiStageReorderBenchmark() {
+    }
+
+    public static void main(String[] args) throws WorldEditException {
+        for (int i = 0; i < 2; i++) {
+            // The first two stages
+            measure("Torches", new Columns(new BaseBlock(BlockID.TORCH, 5), 1));
+            measure("Torches by chunk", new ChunkColumns(new BaseBlock(BlockID.TORCH, 5)));
+            measure("Rails", new Columns(new BaseBlock(BlockID.MINECART_TRACKS), 1));
+            // The last stage, which is sorted by attachment
+            measure("Wall signs", new WallSigns());
+            measure("Reed columns", new Columns(new BaseBlock(BlockID.REED), COLUMN_HEIGHT));
+            measure("Cactus columns", new Columns(new BaseBlock(BlockID.CACTUS), COLUMN_HEIGHT));
+            System.out.println();
+        }
+    }
+
+    private static void measure(String name, Layout layout) throws WorldEditException {
+        CountingExtent target = new CountingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(target);
+
+        long start = System.nanoTime();
+        layout.set(reorder);
+        long buffered = System.nanoTime();
+        long used = usedMemory();
+        long commitStart = System.nanoTime();
+        Operations.complete(reorder.commit());
+        long end = System.nanoTime();
+        reorder = null;
+        used -= usedMemory();
+
+        System.out.printf("%s: %d blocks, buffered in %d ms using %.1f bytes per block, placed in %d ms%n",
+                name, target.count, (buffered - start) / 1000000, used / (double) target.count, (end - commitStart) / 1000000);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Sets about {@link #BLOCKS} blocks.
+     */
+    private interface Layout {
+        void set(Extent extent) throws WorldEditException;
+    }
+
+    /**
+     * Columns of one block, set row by row across chunks and from the top
+     * down, so every block is set before its support.
+     */
+    private static class Columns implements Layout {
+        private final BaseBlock block;
+        private final int height;
+
+        private Columns(BaseBlock block, int height) {
+            this.block = block;
+            this.height = height;
+        }
+
+        @Override
+        public void set(Extent extent) throws WorldEditException {
+            int width = BLOCKS / height / WIDTH;
+            for (int x = 0; x < WIDTH; x++) {
+                for (int z = 0; z < width; z++) {
+                    for (int y = height; y > 0; y--) {
+                        extent.setBlock(new Vector(x, y, z), block);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A layer of one block, set one chunk after another.
+     */
+    private static class ChunkColumns implements Layout {
+        private final BaseBlock block;
+
+        private ChunkColumns(BaseBlock block) {
+            this.block = block;
+        }
+
+        @Override
+        public void set(Extent extent) throws WorldEditException {
+            for (int chunkX = 0; chunkX < WIDTH / 16; chunkX++) {
+                for (int chunkZ = 0; chunkZ < BLOCKS / WIDTH / 16; chunkZ++) {
+                    for (int x = chunkX << 4; x < (chunkX + 1) << 4; x++) {
+                        for (int z = chunkZ << 4; z < (chunkZ + 1) << 4; z++) {
+                            extent.setBlock(new Vector(x, 1, z), block);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Walls covered with signs on one side. Each sign is set before the
+     * wall block that it hangs on.
+     */
+    private static class WallSigns implements Layout {
+        private static final BaseBlock WALL = new BaseBlock(BlockID.STONE);
+        // Hangs on the block to the south
+        private static final BaseBlock SIGN = new BaseBlock(BlockID.WALL_SIGN, 4);
+
+        @Override
+        public void set(Extent extent) throws WorldEditException {
+            int width = BLOCKS / COLUMN_HEIGHT / WIDTH;
+            for (int x = 0; x < WIDTH; x++) {
+                for (int z = 0; z < width; z += 2) {
+                    for (int y = COLUMN_HEIGHT; y > 0; y--) {
+                        extent.setBlock(new Vector(x, y, z), SIGN);
+                        extent.setBlock(new Vector(x, y, z + 1), WALL);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class CountingExtent extends NullExtent {
+        private int count;
+
+        @Override
+        public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
+            count++;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.reorder;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.operation.Operations;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MultiStageReorderTest {
+
+    private static class RecordingExtent extends AbstractDelegateExtent {
+        private final List<BlockVector> positions = new ArrayList<BlockVector>();
+        private final List<BaseBlock> blocks = new ArrayList<BaseBlock>();
+
+        private RecordingExtent() {
+            super(new NullExtent());
+        }
+
+        @Override
+        public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+            positions.add(location.toBlockVector());
+            blocks.add(new BaseBlock(block));
+            return true;
+        }
+    }
+
+    private static RecordingExtent commit(MultiStageReorder reorder, RecordingExtent recorder) throws WorldEditException {
+        Operations.complete(reorder.commit());
+        return recorder;
+    }
+
+    @Test
+    public void testStageOrder() throws WorldEditException {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+        reorder.setBlock(new Vector(0, 1, 0), new BaseBlock(BlockID.SIGN_POST));
+        reorder.setBlock(new Vector(1, 1, 0), new BaseBlock(BlockID.TORCH, 5));
+        reorder.setBlock(new Vector(0, 0, 0), new BaseBlock(BlockID.STONE));
+        assertEquals(0, recorder.blocks.size());
+
+        commit(reorder, recorder);
+        assertEquals(3, recorder.blocks.size());
+        assertEquals(BlockID.STONE, recorder.blocks.get(0).getId());
+        assertEquals(BlockID.TORCH, recorder.blocks.get(1).getId());
+        assertEquals(BlockID.SIGN_POST, recorder.blocks.get(2).getId());
+    }
+
+    @Test
+    public void testGroupedByChunk() throws WorldEditException {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+        reorder.setBlock(new Vector(0, 0, 0), new BaseBlock(BlockID.STONE));
+        reorder.setBlock(new Vector(16, 0, 0), new BaseBlock(BlockID.STONE));
+        reorder.setBlock(new Vector(1, 0, 0), new BaseBlock(BlockID.STONE));
+        reorder.setBlock(new Vector(0, 0, 0), new BaseBlock(BlockID.DIRT));
+
+        commit(reorder, recorder);
+        assertEquals(new BlockVector(0, 0, 0), recorder.positions.get(0));
+        assertEquals(new BlockVector(1, 0, 0), recorder.positions.get(1));
+        assertEquals(new BlockVector(0, 0, 0), recorder.positions.get(2));
+        assertEquals(BlockID.DIRT, recorder.blocks.get(2).getId());
+        assertEquals(new BlockVector(16, 0, 0), recorder.positions.get(3));
+    }
+
+    @Test
+    public void testAttachedBlocksPlacedAfterSupport() throws WorldEditException {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+        for (int y = 10; y >= 1; y--) {
+            reorder.setBlock(new Vector(0, y, 0), new BaseBlock(BlockID.REED));
+        }
+
+        commit(reorder, recorder);
+        assertEquals(10, recorder.positions.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i + 1, recorder.positions.get(i).getBlockY());
+        }
+    }
+
+    @Test
+    public void testUpperDoorHalfFirst() throws WorldEditException {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+        reorder.setBlock(new Vector(0, 1, 0), new BaseBlock(BlockID.WOODEN_DOOR, 0));
+        reorder.setBlock(new Vector(0, 2, 0), new BaseBlock(BlockID.WOODEN_DOOR, 8));
+
+        commit(reorder, recorder);
+        assertEquals(2, recorder.positions.size());
+        assertEquals(2, recorder.positions.get(0).getBlockY());
+        assertEquals(1, recorder.positions.get(1).getBlockY());
+    }
+
+    @Test
+    public void testLastBlockWinsInFinalStage() throws WorldEditException {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+        reorder.setBlock(new Vector(0, 1, 0), new BaseBlock(BlockID.SIGN_POST, 3));
+        reorder.setBlock(new Vector(0, 1, 0), new BaseBlock(BlockID.SIGN_POST, 7));
+
+        commit(reorder, recorder);
+        assertEquals(1, recorder.blocks.size());
+        assertEquals(7, recorder.blocks.get(0).getData());
+    }
+
+    @Test
+    public void testCycle() throws WorldEditException {
+        int west = 2;
+        int east = 3;
+        Vector toEast = BlockType.getAttachment(BlockID.WALL_SIGN, east).vector();
+        assertEquals(toEast.multiply(-1), BlockType.getAttachment(BlockID.WALL_SIGN, west).vector());
+
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+        reorder.setBlock(new Vector(0, 1, 0), new BaseBlock(BlockID.WALL_SIGN, east));
+        reorder.setBlock(new Vector(0, 1, 0).add(toEast), new BaseBlock(BlockID.WALL_SIGN, west));
+        reorder.setBlock(new Vector(5, 1, 5), new BaseBlock(BlockID.SIGN_POST));
+
+        commit(reorder, recorder);
+        assertEquals(3, recorder.positions.size());
+        assertEquals(new BlockVector(5, 1, 5), recorder.positions.get(0));
+        assertEquals(new BlockVector(0, 1, 0), recorder.positions.get(1));
+    }
+
+}
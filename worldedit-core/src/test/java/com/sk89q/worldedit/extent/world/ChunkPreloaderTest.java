@@ -0,0 +1,102 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.world;
+
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.world.World;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ChunkPreloaderTest {
+
+    @Test
+    public void testPreloadsAheadAndReleasesBehind() {
+        World world = mock(World.class);
+        ChunkPreloader preloader = new ChunkPreloader(world, new CuboidRegion(new Vector(0, 0, 0), new Vector(47, 0, 15)), 1);
+        InOrder order = inOrder(world);
+
+        preloader.advance(0, 0);
+        order.verify(world).preloadChunk(new BlockVector2D(0, 0));
+        order.verify(world).preloadChunk(new BlockVector2D(1, 0));
+        verify(world, never()).preloadChunk(new BlockVector2D(2, 0));
+        assertEquals(2, preloader.getPinnedCount());
+
+        preloader.advance(1, 0);
+        order.verify(world).releaseChunk(new BlockVector2D(0, 0));
+        order.verify(world).preloadChunk(new BlockVector2D(2, 0));
+        assertEquals(2, preloader.getPinnedCount());
+
+        // Out of order chunks are ignored
+        preloader.advance(0, 0);
+        assertEquals(2, preloader.getPinnedCount());
+
+        preloader.release();
+        verify(world).releaseChunk(new BlockVector2D(1, 0));
+        verify(world).releaseChunk(new BlockVector2D(2, 0));
+        assertEquals(0, preloader.getPinnedCount());
+    }
+
+    @Test
+    public void testSkipsUntouchedChunks() {
+        World world = mock(World.class);
+        // The corner chunks of the bounding box are outside of the cylinder
+        CylinderRegion region = new CylinderRegion(new Vector(0, 0, 0), new Vector2D(20, 20), 0, 0);
+        ChunkPreloader preloader = new ChunkPreloader(world, region, 100);
+
+        preloader.advance(-1, -2);
+        verify(world).preloadChunk(new BlockVector2D(-1, -1));
+        verify(world, never()).preloadChunk(new BlockVector2D(-2, -2));
+        verify(world, never()).preloadChunk(new BlockVector2D(1, 1));
+        assertEquals(12, preloader.getPinnedCount());
+    }
+
+    @Test
+    public void testChunkLoadingExtentReleasesOnCommit() throws WorldEditException {
+        World world = mock(World.class);
+        ChunkLoadingExtent extent = new ChunkLoadingExtent(mock(Extent.class), world);
+        extent.setPreloader(new ChunkPreloader(world, new CuboidRegion(new Vector(0, 0, 0), new Vector(31, 0, 0)), 4));
+
+        extent.setBlock(new Vector(0, 0, 0), new BaseBlock(1));
+        extent.setBlock(new Vector(16, 0, 0), new BaseBlock(1));
+        verify(world).preloadChunk(new BlockVector2D(0, 0));
+        verify(world).preloadChunk(new BlockVector2D(1, 0));
+        verify(world).releaseChunk(new BlockVector2D(0, 0));
+        verify(world, never()).releaseChunk(new BlockVector2D(1, 0));
+
+        Operations.completeLegacy(extent.commit());
+        verify(world).releaseChunk(new BlockVector2D(1, 0));
+        verify(world).checkLoadedChunk(new Vector(16, 0, 0));
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.function.visitor;
+
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.cache.ChunkCopyExtent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.function.BlockComputation;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.Region;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelRegionVisitorTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Computes a block from the coordinates of the position.
+     */
+    private static class CoordinateComputation implements BlockComputation {
+        @Override
+        public BaseBlock compute(Vector position) {
+            int id = 1 + Math.abs(position.getBlockX() * 31 + position.getBlockY() * 17 + position.getBlockZ()) % 100;
+            return new BaseBlock(id);
+        }
+    }
+
+    /**
+     * Records the thread and the order of every block that is placed.
+     */
+    private static class RecordingExtent extends AbstractDelegateExtent {
+        private final List<Vector> placed = new ArrayList<Vector>();
+        private final List<Thread> threads = new ArrayList<Thread>();
+
+        private RecordingExtent(BlockArrayClipboard extent) {
+            super(extent);
+        }
+
+        @Override
+        public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+            placed.add(location);
+            threads.add(Thread.currentThread());
+            return super.setBlock(location, block);
+        }
+    }
+
+    @Test
+    public void testPlacesComputedBlocksOnCallingThreadInChunkOrder() throws Exception {
+        Region region = new CylinderRegion(new Vector(8, 0, 8), new Vector2D(40, 40), 0, 15);
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(region.getMinimumPoint(), region.getMaximumPoint()));
+        RecordingExtent destination = new RecordingExtent(clipboard);
+
+        ParallelRegionVisitor visitor = new ParallelRegionVisitor(region, new CoordinateComputation(), destination, executor, 3);
+        Operations.complete(visitor);
+
+        int volume = 0;
+        for (Vector ignored : region) {
+            volume++;
+        }
+        assertEquals(volume, visitor.getAffected());
+        assertEquals(volume, destination.placed.size());
+
+        CoordinateComputation expected = new CoordinateComputation();
+        Vector lastChunk = null;
+        for (int i = 0; i < destination.placed.size(); i++) {
+            Vector position = destination.placed.get(i);
+            assertSame(Thread.currentThread(), destination.threads.get(i));
+            assertTrue(region.contains(position));
+            assertEquals(expected.compute(position), clipboard.getBlock(position));
+
+            Vector chunk = new Vector(position.getBlockX() >> 4, 0, position.getBlockZ() >> 4);
+            if (lastChunk != null && !chunk.equals(lastChunk)) {
+                assertTrue("chunks must be placed by Z, then X", chunk.getBlockZ() > lastChunk.getBlockZ()
+                        || (chunk.getBlockZ() == lastChunk.getBlockZ() && chunk.getBlockX() > lastChunk.getBlockX()));
+            }
+            lastChunk = chunk;
+        }
+    }
+
+    @Test
+    public void testResumesOneChunkAtATime() throws Exception {
+        Region region = new CuboidRegion(new Vector(0, 0, 0), new Vector(47, 3, 31));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        ParallelRegionVisitor visitor = new ParallelRegionVisitor(region, new CoordinateComputation(), clipboard, executor, 2);
+
+        RunContext stopAfterEachChunk = new RunContext() {
+            @Override
+            public boolean shouldContinue() {
+                return false;
+            }
+        };
+
+        int resumes = 0;
+        while (visitor.resume(stopAfterEachChunk) != null) {
+            resumes++;
+            assertEquals(resumes * 16 * 16 * 4, visitor.getAffected());
+        }
+        assertEquals(5, resumes);
+        assertEquals(region.getArea(), visitor.getAffected());
+    }
+
+    @Test
+    public void testComputationErrorIsRethrown() throws Exception {
+        Region region = new CuboidRegion(new Vector(0, 0, 0), new Vector(63, 0, 63));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        ParallelRegionVisitor visitor = new ParallelRegionVisitor(region, new BlockComputation() {
+            @Override
+            public BaseBlock compute(Vector position) {
+                if (position.getBlockX() == 40 && position.getBlockZ() == 40) {
+                    throw new IllegalArgumentException("bad block");
+                }
+                return new BaseBlock(1);
+            }
+        }, clipboard, executor, 4);
+
+        try {
+            Operations.complete(visitor);
+            fail("expected the computation's exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("bad block", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMaskReadsCopyTakenBeforeChunkIsChanged() throws Exception {
+        Region region = new CuboidRegion(new Vector(0, 0, 0), new Vector(31, 1, 31));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        for (int x = 0; x < 32; x += 2) {
+            clipboard.setBlock(new Vector(x, 0, 5), new BaseBlock(3));
+        }
+
+        ChunkCopyExtent copy = new ChunkCopyExtent(clipboard, region);
+        final Mask mask = Masks.rebind(new ExistingBlockMask(clipboard), clipboard, copy);
+        assertNotNull(mask);
+
+        ParallelRegionVisitor visitor = new ParallelRegionVisitor(region, new BlockComputation() {
+            @Override
+            public BaseBlock compute(Vector position) {
+                return mask.test(position) ? new BaseBlock(4) : null;
+            }
+        }, clipboard, executor, 2);
+        visitor.setSourceCopy(copy);
+        Operations.complete(visitor);
+
+        assertEquals(16, visitor.getAffected());
+        assertEquals(new BaseBlock(4), clipboard.getBlock(new Vector(30, 0, 5)));
+        assertEquals(new BaseBlock(0), clipboard.getBlock(new Vector(31, 0, 5)));
+    }
+
+    @Test
+    public void testChunkCopyRejectsBlocksThatWereNotCopied() throws Exception {
+        Region region = new CuboidRegion(new Vector(0, 0, 0), new Vector(31, 0, 15));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        clipboard.setBlock(new Vector(3, 0, 3), new BaseBlock(35, 14));
+
+        ChunkCopyExtent copy = new ChunkCopyExtent(clipboard, region);
+        copy.copy(new BlockVector2D(0, 0));
+        assertEquals(new BaseBlock(35, 14), copy.getBlock(new Vector(3, 0, 3)));
+
+        try {
+            copy.getBlock(new Vector(20, 0, 3));
+            fail("expected an error for a block that was not copied");
+        } catch (IllegalStateException ignored) {
+        }
+
+        copy.release(new BlockVector2D(0, 0));
+        try {
+            copy.getBlock(new Vector(3, 0, 3));
+            fail("expected an error for a block that was released");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void testRebindRejectsUnknownMasks() throws Exception {
+        BlockArrayClipboard a = new BlockArrayClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(1, 1, 1)));
+        BlockArrayClipboard b = new BlockArrayClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(1, 1, 1)));
+
+        assertNull(Masks.rebind(new ExistingBlockMask(b), a, b));
+        assertNull(Masks.rebind(Masks.negate(new ExistingBlockMask(a)), a, b));
+        assertSame(Masks.alwaysTrue(), Masks.rebind(Masks.alwaysTrue(), a, b));
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.visitor;
+
+import com.sk89q.worldedit.MaxVisitedBlocksException;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
+import com.sk89q.worldedit.function.mask.RegionMask;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RecursiveVisitorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static class RecordingFunction implements RegionFunction {
+        final Set<Vector> applied = new HashSet<Vector>();
+
+        @Override
+        public boolean apply(Vector position) throws WorldEditException {
+            assertTrue("visited twice: " + position, applied.add(position.toBlockVector()));
+            return true;
+        }
+    }
+
+    @Test
+    public void testFillsRegion() throws Exception {
+        RecordingFunction function = new RecordingFunction();
+        RecursiveVisitor visitor = new RecursiveVisitor(new RegionMask(new CuboidRegion(new Vector(-3, 0, -3), new Vector(3, 6, 3))), function);
+        visitor.visit(new Vector(0, 3, 0));
+        Operations.complete(visitor);
+        assertEquals(7 * 7 * 7, visitor.getAffected());
+        assertEquals(7 * 7 * 7, function.applied.size());
+    }
+
+    @Test
+    public void testMemoryLimit() throws Exception {
+        final List<RecursiveVisitor> holder = new ArrayList<RecursiveVisitor>();
+        final List<String> messages = new ArrayList<String>();
+        final int[] spillFiles = new int[1];
+        RecordingFunction function = new RecordingFunction() {
+            @Override
+            public boolean apply(Vector position) throws WorldEditException {
+                if (applied.size() == 10000) {
+                    spillFiles[0] = folder.getRoot().list().length;
+                    holder.get(0).addStatusMessages(messages);
+                }
+                return super.apply(position);
+            }
+        };
+        RecursiveVisitor visitor = new RecursiveVisitor(new RegionMask(new CuboidRegion(new Vector(-20, 0, -20), new Vector(20, 40, 20))), function);
+        holder.add(visitor);
+        visitor.setMemoryLimit(100, folder.getRoot());
+        visitor.visit(new Vector(0, 20, 0));
+        Operations.complete(visitor);
+        assertEquals(41 * 41 * 41, visitor.getAffected());
+        // The search had moved to disk by the time it was part way through
+        assertTrue(spillFiles[0] > 0);
+        assertTrue(messages.toString(), messages.get(1).endsWith("queued on disk"));
+        // The files are deleted once the search completes
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testVisitLimit() throws Exception {
+        RecordingFunction function = new RecordingFunction();
+        RecursiveVisitor visitor = new RecursiveVisitor(new RegionMask(new CuboidRegion(new Vector(-20, 0, -20), new Vector(20, 40, 20))), function);
+        visitor.setVisitLimit(1000);
+        visitor.visit(new Vector(0, 20, 0));
+        try {
+            Operations.complete(visitor);
+            fail("Expected the search to stop");
+        } catch (MaxVisitedBlocksException e) {
+            assertEquals(1000, e.getBlockLimit());
+        }
+        assertTrue(visitor.getVisitedCount() > 1000);
+        assertTrue(function.applied.size() < 1000);
+    }
+
+    @Test
+    public void testFollowsConnectedBlocks() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 15, 15)));
+        for (int x = 0; x < 10; x++) {
+            clipboard.setBlock(new Vector(x, 5, 5), new BaseBlock(BlockID.STONE));
+        }
+        clipboard.setBlock(new Vector(12, 5, 5), new BaseBlock(BlockID.STONE));
+
+        RecordingFunction function = new RecordingFunction();
+        RecursiveVisitor visitor = new RecursiveVisitor(new ExistingBlockMask(clipboard), function);
+        visitor.visit(new Vector(0, 5, 5));
+        Operations.complete(visitor);
+        assertEquals(10, visitor.getAffected());
+        assertTrue(function.applied.contains(new Vector(9, 5, 5).toBlockVector()));
+    }
+
+    @Test
+    public void testDownwardVisitorStaysBelowBase() throws Exception {
+        RecordingFunction function = new RecordingFunction();
+        CuboidRegion region = new CuboidRegion(new Vector(-2, 0, -2), new Vector(2, 10, 2));
+        DownwardVisitor visitor = new DownwardVisitor(new RegionMask(region), function, 5);
+        visitor.visit(new Vector(0, 5, 0));
+        Operations.complete(visitor);
+        // The base layer and everything below it, but nothing above
+        assertEquals(5 * 5 * 6, visitor.getAffected());
+    }
+
+}
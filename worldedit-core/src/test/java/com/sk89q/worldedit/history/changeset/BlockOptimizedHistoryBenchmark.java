@@ -0,0 +1,64 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+
+/**
+ * Measures the approximate heap cost of each block change stored in
+ * a {@link ChangeSet}.
+ *
+ * <p>This is not a unit test. Run it with a fixed heap size (for example
+ * {@code -Xms2G -Xmx2G}) for stable numbers.</p>
+ */
+public final class BlockOptimizedHistoryBenchmark {
+
+    private static final int CHANGES = 2000000;
+
+    private BlockOptimizedHistoryBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        measure("ArrayListHistory", new ArrayListHistory());
+        measure("BlockOptimizedHistory", new BlockOptimizedHistory());
+    }
+
+    private static void measure(String name, ChangeSet changeSet) {
+        long before = usedMemory();
+        BaseBlock previous = new BaseBlock(1);
+        for (int i = 0; i < CHANGES; i++) {
+            // Mimic EditSession, which creates new blocks and vectors for every change
+            changeSet.add(new BlockChange(new BlockVector(i % 400, i / 160000, (i / 400) % 400), new BaseBlock(previous), new BaseBlock(i % 64)));
+        }
+        long after = usedMemory();
+        System.out.printf("%s: %.1f bytes per change (%d changes)%n", name, (after - before) / (double) changeSet.size(), changeSet.size());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.CompoundTagBuilder;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class BlockOptimizedHistoryTest {
+
+    @Test
+    public void testIterators() throws Exception {
+        CompoundTag tag = CompoundTagBuilder.create().putString("id", "Sign").build();
+        BlockOptimizedHistory history = new BlockOptimizedHistory();
+        history.add(new BlockChange(new BlockVector(-30000000, 0, 29999999), new BaseBlock(BlockID.STONE), new BaseBlock(BlockID.AIR)));
+        history.add(new BlockChange(new BlockVector(12, 255, -7), new BaseBlock(BlockID.SIGN_POST, 4, tag), new BaseBlock(BlockID.CLOTH, 14)));
+        assertEquals(2, history.size());
+
+        Iterator<Change> forward = history.forwardIterator();
+        assertBlockChange(forward.next(), -30000000, 0, 29999999, BlockID.AIR, 0, false);
+        assertBlockChange(forward.next(), 12, 255, -7, BlockID.CLOTH, 14, false);
+        assertFalse(forward.hasNext());
+
+        Iterator<Change> backward = history.backwardIterator();
+        assertBlockChange(backward.next(), 12, 255, -7, BlockID.SIGN_POST, 4, true);
+        assertBlockChange(backward.next(), -30000000, 0, 29999999, BlockID.STONE, 0, false);
+        assertFalse(backward.hasNext());
+    }
+
+    private static void assertBlockChange(Change change, int x, int y, int z, int id, int data, boolean hasNbt) {
+        BlockChange blockChange = (BlockChange) change;
+        assertEquals(new BlockVector(x, y, z), blockChange.getPosition());
+        assertEquals(id, blockChange.getCurrent().getId());
+        assertEquals(data, blockChange.getCurrent().getData());
+        if (hasNbt) {
+            assertNotNull(blockChange.getCurrent().getNbtData());
+        } else {
+            assertNull(blockChange.getCurrent().getNbtData());
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.CompoundTagBuilder;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiskSpillingHistoryTest {
+
+    private static final int CHANGES = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplayAcrossSegments() throws Exception {
+        CompoundTag tag = CompoundTagBuilder.create().putString("id", "Chest").build();
+        DiskSpillingHistory history = new DiskSpillingHistory(folder.getRoot(), 64);
+        for (int i = 0; i < CHANGES; i++) {
+            BaseBlock previous = i % 100 == 0 ? new BaseBlock(54, 0, tag) : new BaseBlock(1);
+            history.add(new BlockChange(new BlockVector(i, i % 256, -i), previous, new BaseBlock(i % 4096)));
+        }
+        assertEquals(CHANGES, history.size());
+        File file = history.getFile();
+        assertNotNull(file);
+        assertTrue(file.exists());
+
+        Iterator<Change> forward = history.forwardIterator();
+        for (int i = 0; i < CHANGES; i++) {
+            BlockChange change = (BlockChange) forward.next();
+            assertEquals(new BlockVector(i, i % 256, -i), change.getPosition());
+            assertEquals(i % 4096, change.getCurrent().getId());
+        }
+        assertFalse(forward.hasNext());
+
+        Iterator<Change> backward = history.backwardIterator();
+        for (int i = CHANGES - 1; i >= 0; i--) {
+            BlockChange change = (BlockChange) backward.next();
+            assertEquals(new BlockVector(i, i % 256, -i), change.getPosition());
+            if (i % 100 == 0) {
+                assertEquals(54, change.getPrevious().getId());
+                assertNotNull(change.getPrevious().getNbtData());
+            } else {
+                assertEquals(1, change.getPrevious().getId());
+                assertNull(change.getPrevious().getNbtData());
+            }
+        }
+        assertFalse(backward.hasNext());
+
+        history.close();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testKeepsChangesInMemoryIfWriteFails() throws Exception {
+        // A file cannot be used as the directory
+        DiskSpillingHistory history = new DiskSpillingHistory(folder.newFile(), 64);
+        for (int i = 0; i < CHANGES; i++) {
+            history.add(new BlockChange(new BlockVector(i, 0, 0), new BaseBlock(1), new BaseBlock(2)));
+        }
+        assertEquals(CHANGES, history.size());
+        assertNull(history.getFile());
+
+        int count = 0;
+        Iterator<Change> it = history.forwardIterator();
+        while (it.hasNext()) {
+            assertEquals(new BlockVector(count, 0, 0), ((BlockChange) it.next()).getPosition());
+            count++;
+        }
+        assertEquals(CHANGES, count);
+        history.close();
+    }
+
+}
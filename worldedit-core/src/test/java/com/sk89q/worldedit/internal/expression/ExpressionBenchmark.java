@@ -0,0 +1,87 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+
+/**
+ * Compares the time taken to evaluate expressions with the tree interpreter
+ * and with the bytecode compiler, over a grid of points as {@code //generate}
+ * would.
+ *
+ * <p>This is not a unit test. Every expression is run a few times so that
+ * the JIT compiler has warmed up before the last run is reported.</p>
+ */
+public final class ExpressionBenchmark {
+
+    private static final int SIZE = 100;
+    private static final int RUNS = 5;
+
+    private static final String[] EXPRESSIONS = {
+            "x * x + y * y + z * z < 0.8",
+            "(0.75 - sqrt(x ^ 2 + z ^ 2)) ^ 2 + y ^ 2 < 0.25 ^ 2",
+            "a = x * 10; b = z * 10; sin(a) + cos(b) > y * 2 && abs(x) < 0.9",
+            "r = 0; for (i = 0, 7) { r += sin(x * i) * cos(z * i) / (i + 1); } r > y",
+            "perlin(1, x, y, z, 1, 4, 0.5) > 0",
+    };
+
+    private ExpressionBenchmark() {
+    }
+
+    public static void main(String[] args) throws ExpressionException {
+        for (String expression : EXPRESSIONS) {
+            double interpreted = measure(expression, false);
+            double compiled = measure(expression, true);
+            System.out.printf("%s%n  interpreted: %.1f ns, compiled: %.1f ns per evaluation (%.1fx)%n",
+                    expression, interpreted, compiled, interpreted / compiled);
+        }
+    }
+
+    private static double measure(String expressionString, boolean compile) throws ExpressionException {
+        Expression expression = Expression.compile(expressionString, "x", "y", "z");
+        expression.optimize(compile);
+
+        long time = 0;
+        double sink = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            sink += evaluateGrid(expression);
+            time = System.nanoTime() - start;
+        }
+
+        if (sink == 42) {
+            System.out.println(); // Keeps the results from being optimized away
+        }
+        return time / (double) (SIZE * SIZE * SIZE);
+    }
+
+    private static double evaluateGrid(Expression expression) throws EvaluationException {
+        double sum = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    sum += expression.evaluate(x * 2.0 / SIZE - 1, y * 2.0 / SIZE - 1, z * 2.0 / SIZE - 1);
+                }
+            }
+        }
+        return sum;
+    }
+
+}
@@ -23,11 +23,22 @@
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
 import com.sk89q.worldedit.internal.expression.runtime.ExpressionEnvironment;
+import com.sk89q.worldedit.internal.expression.runtime.Variable;
 import org.junit.Test;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static java.lang.Math.atan2;
 import static java.lang.Math.sin;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class ExpressionTest {
@@ -162,6 +173,128 @@ public void testQuery() throws Exception {
         assertEquals(1, simpleEval("!queryRel(3,4,5,100,200)"), 0);
     }
 
+    @Test
+    public void testCompiled() throws ExpressionException {
+        assertCompiledMatches("x + y * z - x / y % z ^ 2");
+        assertCompiledMatches("-x + ~y + !z + !(x - 1) + (y << 3) + (z >> 1) + (-y >> 1)");
+        assertCompiledMatches("(x < y) + (x > y) * 2 + (x <= z) * 4 + (x >= z) * 8 + (y == y) * 16 + (y != z) * 32 + (x ~= x) * 64");
+        assertCompiledMatches("(x && y) + (x || 0) * 2 + (0 && z) * 4 + (0 || z) * 8");
+        assertCompiledMatches("sin(x) + cos(y) + atan2(y, x) + min(x, y, z) + max(x, z) + round(z / 3) + ln(y) + abs(-x) + x!");
+        assertCompiledMatches("a = x; a += y; a -= z; a *= 2; a /= 3; a %= 5; a ^= 2; b = a++; c = --b; a + b * 10 + c * 100");
+        assertCompiledMatches("x = sqrt(x); y = 0/0; (y < 1) + (y > 1) + (y == y) + (y != y)");
+        assertCompiledMatches("if (x > y) { z = 1 } else if (x < y) { z = 2 } else z = 3");
+        assertCompiledMatches("a = 0; for (i = 0; i < 10; ++i) { if (i == 3) continue; if (i == 7) break; a += i; } a * 100 + i");
+        assertCompiledMatches("a = 0; for (i = x, z) { b = 0; while (1) { if (++b > i) break; a += b; } } a");
+        assertCompiledMatches("a = 0; do { a += 2; if (a > 5) continue; } while (a < 20); a");
+        assertCompiledMatches("a = 0; for (i = 0, 5) { switch (i) { case 1: a += 1; break; case 2: a += 10; continue; case 3: a += 100; default: a += 1000 } } a");
+        assertCompiledMatches("switch (x) { case 1: y = 5; case 2: y += 6; break; default: z = 7 } y * 100 + z");
+        assertCompiledMatches("if (x > 0) return y * 2; z");
+        assertCompiledMatches("a = megabuf(x) + y; a + perlin(1, x, y, z, 0.5, 2, 0.5)");
+        assertCompiledMatches("rotate(x, y, 1.5); swap(y, z); x * 100 + y * 10 + z");
+        assertCompiledMatches("a = 0; for (i = 0, 3) { a += (i!) * x + randint(1); } a");
+        assertCompiledMatches("-0.0 + 0.5 * x");
+    }
+
+    @Test
+    public void testCompiledLoopLimit() throws ExpressionException {
+        Expression expression = compile("while (1) { x++ }", "x");
+        assertTrue(expression.isCompiled());
+        try {
+            expression.evaluate(0);
+            fail("Error expected");
+        } catch (EvaluationException e) {
+            assertEquals(0, e.getPosition());
+        }
+        assertEquals(257, expression.getVariable("x", false).getValue(), 0);
+    }
+
+    @Test
+    public void testConcurrentEvaluation() throws Exception {
+        String expressionString = "a = 0; for (i = 0, 99) { a += x * i; } y = a + 1; y";
+        for (boolean compile : new boolean[] { false, true }) {
+            final Expression expression = Expression.compile(expressionString, "x", "y");
+            expression.optimize(compile);
+            assertEquals(compile, expression.isCompiled());
+            final int y = ((Variable) expression.getVariable("y", false)).getIndex();
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+                for (int thread = 0; thread < 4; thread++) {
+                    final int x = thread + 1;
+                    results.add(executor.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws Exception {
+                            ExpressionFrame frame = expression.newFrame();
+                            for (int i = 0; i < 1000; i++) {
+                                double expected = x * 4950 + 1;
+                                if (expression.evaluate(frame, x, 0) != expected || frame.getValue(y) != expected) {
+                                    return false;
+                                }
+                            }
+                            return true;
+                        }
+                    }));
+                }
+                for (Future<Boolean> result : results) {
+                    assertTrue(result.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testFrames() throws ExpressionException {
+        // y is not passed, so it keeps its value between evaluations of a frame
+        Expression expression = compile("y = y + x", "x");
+        ExpressionFrame first = expression.newFrame();
+        ExpressionFrame second = expression.newFrame();
+
+        assertEquals(1, expression.evaluate(first, 1), 0);
+        assertEquals(3, expression.evaluate(first, 2), 0);
+        assertEquals(5, expression.evaluate(second, 5), 0);
+        assertEquals(3, first.getValue(((Variable) expression.getVariable("y", false)).getIndex()), 0);
+
+        // The expression's own frame is separate from both
+        assertEquals(7, expression.evaluate(7), 0);
+        assertEquals(7, expression.getVariable("y", false).getValue(), 0);
+    }
+
+    @Test
+    public void testCollectedAfterEvaluation() throws Exception {
+        Expression expression = compile("a = x * 2; a + megabuf(1)", "x");
+        assertTrue(expression.isCompiled());
+        expression.evaluate(1);
+        expression.evaluate(expression.newFrame(), 2);
+        WeakReference<Expression> reference = new WeakReference<Expression>(expression);
+        expression = null;
+
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+    }
+
+    private void assertCompiledMatches(String expressionString) throws ExpressionException {
+        double[][] inputs = { { 1, 2, 3 }, { 3, 2, 1 }, { -4.5, 0, 7.25 }, { 2, 2, 2 } };
+        for (double[] input : inputs) {
+            Expression interpreted = Expression.compile(expressionString, "x", "y", "z");
+            interpreted.optimize(false);
+            Expression compiled = Expression.compile(expressionString, "x", "y", "z");
+            compiled.optimize(true);
+            assertTrue("Compiled: " + expressionString, compiled.isCompiled());
+
+            assertEquals(expressionString, interpreted.evaluate(input), compiled.evaluate(input), 0);
+            for (String name : new String[] { "x", "y", "z" }) {
+                assertEquals(expressionString + ": " + name,
+                        interpreted.getVariable(name, false).getValue(), compiled.getVariable(name, false).getValue(), 0);
+            }
+        }
+    }
+
     private double simpleEval(String expressionString) throws ExpressionException {
         final Expression expression = compile(expressionString);
 
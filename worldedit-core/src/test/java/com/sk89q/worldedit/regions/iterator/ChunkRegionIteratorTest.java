@@ -0,0 +1,296 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.regions.AbstractRegion;
+import com.sk89q.worldedit.regions.ConvexPolyhedralRegion;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Polygonal2DRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.RegionIntersection;
+import com.sk89q.worldedit.regions.RegionOperationException;
+import com.sk89q.worldedit.regions.SpanVisitor;
+import com.sk89q.worldedit.world.World;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkRegionIteratorTest {
+
+    /**
+     * A region that only knows which points it contains, so its runs are
+     * found by testing every point.
+     */
+    private static class ContainsRegion extends AbstractRegion {
+        private final Region region;
+
+        private ContainsRegion(Region region) {
+            super(null);
+            this.region = region;
+        }
+
+        @Override
+        public Vector getMinimumPoint() {
+            return region.getMinimumPoint();
+        }
+
+        @Override
+        public Vector getMaximumPoint() {
+            return region.getMaximumPoint();
+        }
+
+        @Override
+        public void expand(Vector... changes) throws RegionOperationException {
+            throw new RegionOperationException("Cannot expand");
+        }
+
+        @Override
+        public void contract(Vector... changes) throws RegionOperationException {
+            throw new RegionOperationException("Cannot contract");
+        }
+
+        @Override
+        public boolean contains(Vector position) {
+            return region.contains(position);
+        }
+    }
+
+    /**
+     * Check that the chunk iterator and the span visitor visit exactly the
+     * points of the region iterator, each of them once.
+     */
+    private static void assertSamePoints(Region region) throws WorldEditException {
+        Set<BlockVector> expected = new HashSet<BlockVector>();
+        for (BlockVector point : region) {
+            expected.add(point);
+        }
+
+        Set<BlockVector> actual = new HashSet<BlockVector>();
+        int count = 0;
+        Iterator<BlockVector> it = region.chunkIterator();
+        while (it.hasNext()) {
+            actual.add(it.next());
+            count++;
+        }
+
+        assertEquals(expected.size(), count);
+        assertEquals(expected, actual);
+
+        final Set<BlockVector> spanned = new HashSet<BlockVector>();
+        final int[] spanCount = new int[1];
+        region.visitSpans(new SpanVisitor() {
+            @Override
+            public void visit(int y, int z, int startX, int endX) {
+                assertTrue(startX <= endX);
+                for (int x = startX; x <= endX; x++) {
+                    spanned.add(new BlockVector(x, y, z));
+                    spanCount[0]++;
+                }
+            }
+        });
+
+        assertEquals(expected.size(), spanCount[0]);
+        assertEquals(expected, spanned);
+    }
+
+    @Test
+    public void testCuboid() throws WorldEditException {
+        assertSamePoints(new CuboidRegion(new Vector(-20, 3, 7), new Vector(37, 9, -18)));
+        assertSamePoints(new CuboidRegion(new Vector(5, 5, 5), new Vector(5, 5, 5)));
+    }
+
+    @Test
+    public void testCylinder() throws WorldEditException {
+        assertSamePoints(new CylinderRegion(new Vector(3, 0, -4), new Vector2D(21, 13), 2, 6));
+        assertSamePoints(new CylinderRegion(new Vector(15.5, 0, 16.5), new Vector2D(0, 0), 0, 1));
+        assertSamePoints(new CylinderRegion(new Vector(-7, 0, 31), new Vector2D(2.5, 17.5), 0, 0));
+    }
+
+    @Test
+    public void testEllipsoid() throws WorldEditException {
+        assertSamePoints(new EllipsoidRegion((World) null, new Vector(0, 64, 0), new Vector(19, 11, 23)));
+        assertSamePoints(new EllipsoidRegion((World) null, new Vector(16.5, 5, -0.5), new Vector(0, 0, 0)));
+        assertSamePoints(new EllipsoidRegion((World) null, new Vector(-30, 0, 2), new Vector(3.5, 30, 1)));
+    }
+
+    @Test
+    public void testPolygonal() throws WorldEditException {
+        Random random = new Random(42);
+        for (int i = 0; i < 50; i++) {
+            List<BlockVector2D> points = new ArrayList<BlockVector2D>();
+            int count = 3 + random.nextInt(8);
+            for (int j = 0; j < count; j++) {
+                points.add(new BlockVector2D(random.nextInt(60) - 30, random.nextInt(60) - 30));
+            }
+            assertSamePoints(new Polygonal2DRegion((World) null, points, 0, 2));
+        }
+    }
+
+    @Test
+    public void testConvexPolyhedral() throws WorldEditException {
+        ConvexPolyhedralRegion polyhedron = new ConvexPolyhedralRegion((World) null);
+        polyhedron.addVertex(new Vector(0, 0, 0));
+        polyhedron.addVertex(new Vector(30, 0, 3));
+        polyhedron.addVertex(new Vector(5, 20, 27));
+        polyhedron.addVertex(new Vector(-9, 4, 12));
+        assertSamePoints(polyhedron);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            ConvexPolyhedralRegion region = new ConvexPolyhedralRegion((World) null);
+            int count = 4 + random.nextInt(8);
+            for (int j = 0; j < count; j++) {
+                region.addVertex(new Vector(random.nextInt(40) - 20, random.nextInt(20), random.nextInt(40) - 20));
+            }
+            assertSamePoints(region);
+        }
+
+        // A box has faces that are parallel to the rows
+        ConvexPolyhedralRegion box = new ConvexPolyhedralRegion((World) null);
+        for (int j = 0; j < 8; j++) {
+            box.addVertex(new Vector((j & 1) * 10, ((j >> 1) & 1) * 5, ((j >> 2) & 1) * 7));
+        }
+        assertSamePoints(box);
+    }
+
+    @Test
+    public void testContainsFallback() throws WorldEditException {
+        assertSamePoints(new ContainsRegion(new CylinderRegion(new Vector(3, 0, -4), new Vector2D(21, 13), 2, 6)));
+    }
+
+    @Test
+    public void testIntersection() throws WorldEditException {
+        assertSamePoints(new RegionIntersection(
+                new CuboidRegion(new Vector(-20, 0, -20), new Vector(-1, 5, -1)),
+                new CuboidRegion(new Vector(10, 0, 10), new Vector(30, 5, 30))));
+
+        // Overlapping child regions, one of which has no runs of its own
+        assertSamePoints(new RegionIntersection(
+                new CuboidRegion(new Vector(-20, 0, -20), new Vector(5, 5, 5)),
+                new CylinderRegion(new Vector(3, 0, -4), new Vector2D(21, 13), 2, 6),
+                new ContainsRegion(new EllipsoidRegion((World) null, new Vector(0, 3, 8), new Vector(19, 4, 6)))));
+
+        CuboidRegion cuboid = new CuboidRegion(new Vector(-17, 2, -9), new Vector(40, 12, 33));
+        assertSamePoints(cuboid.getWalls());
+        assertSamePoints(cuboid.getFaces());
+    }
+
+    @Test
+    public void testSparseIntersection() throws WorldEditException {
+        final int[] tests = new int[1];
+        Region walls = new RegionIntersection(
+                new CuboidRegion(new Vector(0, 0, 0), new Vector(0, 127, 799)),
+                new CuboidRegion(new Vector(799, 0, 0), new Vector(799, 127, 799)),
+                new CuboidRegion(new Vector(0, 0, 0), new Vector(799, 127, 0)),
+                new CuboidRegion(new Vector(0, 0, 799), new Vector(799, 127, 799))) {
+            @Override
+            public boolean contains(Vector position) {
+                tests[0]++;
+                return super.contains(position);
+            }
+        };
+
+        final int[] count = new int[1];
+        walls.visitSpans(new SpanVisitor() {
+            @Override
+            public void visit(int y, int z, int startX, int endX) {
+                count[0] += endX - startX + 1;
+            }
+        });
+
+        // The walls are found from the runs of the child regions, not by testing the volume
+        assertEquals(128 * (4 * 800 - 4), count[0]);
+        assertEquals(0, tests[0]);
+    }
+
+    @Test
+    public void testSkipsEmptyChunks() {
+        final int[] rows = new int[1];
+        Region region = new RegionIntersection(
+                new CuboidRegion(new Vector(0, 0, 0), new Vector(3, 3, 3)),
+                new CuboidRegion(new Vector(1000, 0, 1000), new Vector(1003, 3, 1003))) {
+            @Override
+            public int getRowSpans(int y, int z, int minX, int maxX, int[] spans) {
+                rows[0]++;
+                return super.getRowSpans(y, z, minX, maxX, spans);
+            }
+        };
+
+        int count = 0;
+        Iterator<BlockVector> it = region.chunkIterator();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+
+        assertEquals(2 * 4 * 4 * 4, count);
+        // Only the rows of the two chunk columns with blocks are looked at,
+        // and the second one is cut off by the bounding box at Z = 1003
+        assertEquals(4 * (16 + 12), rows[0]);
+    }
+
+    @Test
+    public void testChunkOrder() {
+        Region region = new CuboidRegion(new Vector(-8, 0, -8), new Vector(40, 40, 24));
+        Iterator<BlockVector> it = region.chunkIterator();
+        BlockVector last = it.next();
+        while (it.hasNext()) {
+            BlockVector next = it.next();
+            int lastChunkX = last.getBlockX() >> 4;
+            int lastChunkZ = last.getBlockZ() >> 4;
+            int chunkX = next.getBlockX() >> 4;
+            int chunkZ = next.getBlockZ() >> 4;
+            if (chunkX == lastChunkX && chunkZ == lastChunkZ) {
+                assertTrue(next.getBlockY() > last.getBlockY()
+                        || (next.getBlockY() == last.getBlockY() && next.getBlockZ() > last.getBlockZ())
+                        || (next.getBlockY() == last.getBlockY() && next.getBlockZ() == last.getBlockZ() && next.getBlockX() > last.getBlockX()));
+            } else {
+                assertTrue(chunkZ > lastChunkZ || (chunkZ == lastChunkZ && chunkX > lastChunkX));
+            }
+            last = next;
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        List<BlockVector2D> points = new ArrayList<BlockVector2D>();
+        points.add(new BlockVector2D(0, 0));
+        points.add(new BlockVector2D(10, 0));
+        Region region = new Polygonal2DRegion((World) null, points, 0, 5);
+        assertFalse(region.chunkIterator().hasNext());
+    }
+
+}
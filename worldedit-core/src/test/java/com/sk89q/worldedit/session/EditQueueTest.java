@@ -0,0 +1,415 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.session;
+
+import com.google.common.base.Ticker;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BaseItemStack;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.function.visitor.RegionVisitor;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.session.EditQueue.Priority;
+import com.sk89q.worldedit.session.EditQueue.QueuedEdit;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.util.TreeGenerator.TreeType;
+import com.sk89q.worldedit.world.AbstractWorld;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+import com.sk89q.worldedit.world.registry.WorldData;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EditQueueTest {
+
+    private static final CuboidRegion REGION = new CuboidRegion(new Vector(0, 0, 0), new Vector(99, 99, 99));
+
+    /**
+     * A clock that only moves when it is told to.
+     */
+    private static class FakeTicker extends Ticker {
+        private long time;
+
+        @Override
+        public long read() {
+            return time;
+        }
+    }
+
+    /**
+     * A function that takes one nanosecond of the fake clock for every
+     * block.
+     */
+    private static class CountingFunction implements RegionFunction {
+        private final FakeTicker ticker;
+        private int applied;
+
+        private CountingFunction(FakeTicker ticker) {
+            this.ticker = ticker;
+        }
+
+        @Override
+        public boolean apply(Vector position) throws WorldEditException {
+            applied++;
+            ticker.time++;
+            return true;
+        }
+    }
+
+    /**
+     * A function that takes a little real time for every block.
+     */
+    private static class SlowFunction implements RegionFunction {
+        private int applied;
+
+        @Override
+        public boolean apply(Vector position) throws WorldEditException {
+            applied++;
+            long end = System.nanoTime() + 1000;
+            while (System.nanoTime() < end) {
+                // Spin
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A run that stops after a fixed number of checks.
+     */
+    private static class CountingRunContext extends RunContext {
+        private int remaining;
+
+        private CountingRunContext(int remaining) {
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean shouldContinue() {
+            return --remaining > 0;
+        }
+    }
+
+    /**
+     * A world that keeps its blocks in a map.
+     */
+    private static class MemoryWorld extends AbstractWorld {
+        private final Map<BlockVector, BaseBlock> blocks = new HashMap<BlockVector, BaseBlock>();
+
+        private int count(Region region, int type) {
+            int count = 0;
+            for (BlockVector position : region) {
+                if (getBlock(position).getType() == type) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public String getName() {
+            return "memory";
+        }
+
+        @Override
+        public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) throws WorldEditException {
+            blocks.put(position.toBlockVector(), new BaseBlock(block));
+            return true;
+        }
+
+        @Override
+        public BaseBlock getBlock(Vector position) {
+            BaseBlock block = blocks.get(position.toBlockVector());
+            return block != null ? new BaseBlock(block) : new BaseBlock(BlockID.AIR);
+        }
+
+        @Override
+        public BaseBlock getLazyBlock(Vector position) {
+            return getBlock(position);
+        }
+
+        @Override
+        public int getBlockLightLevel(Vector position) {
+            return 0;
+        }
+
+        @Override
+        public boolean clearContainerBlockContents(Vector position) {
+            return false;
+        }
+
+        @Override
+        public void dropItem(Vector position, BaseItemStack item) {
+        }
+
+        @Override
+        public boolean regenerate(Region region, EditSession editSession) {
+            return false;
+        }
+
+        @Override
+        public boolean generateTree(TreeType type, EditSession editSession, Vector position) {
+            return false;
+        }
+
+        @Override
+        public WorldData getWorldData() {
+            return LegacyWorldData.getInstance();
+        }
+
+        @Override
+        public List<? extends Entity> getEntities(Region region) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<? extends Entity> getEntities() {
+            return Collections.emptyList();
+        }
+
+        @Nullable
+        @Override
+        public Entity createEntity(Location location, BaseEntity entity) {
+            return null;
+        }
+    }
+
+    private static EditSession createEditSession(MemoryWorld world) {
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+        editSession.enableQueue();
+        return editSession;
+    }
+
+    private static SessionOwner createOwner(boolean highPriority) {
+        SessionKey key = mock(SessionKey.class);
+        when(key.getUniqueId()).thenReturn(UUID.randomUUID());
+        SessionOwner owner = mock(SessionOwner.class);
+        when(owner.getSessionKey()).thenReturn(key);
+        when(owner.hasPermission("worldedit.queue.priority.high")).thenReturn(highPriority);
+        return owner;
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        assertEquals(Priority.HIGH, Priority.of(createOwner(true)));
+        assertEquals(Priority.NORMAL, Priority.of(createOwner(false)));
+    }
+
+    @Test
+    public void testWeightedShare() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        EditQueue queue = new EditQueue(ticker);
+        queue.setTickBudget(600, TimeUnit.NANOSECONDS);
+        CountingFunction high = new CountingFunction(ticker);
+        CountingFunction normal = new CountingFunction(ticker);
+        queue.submit(createOwner(true), new RegionVisitor(REGION, high));
+        queue.submit(createOwner(false), new RegionVisitor(REGION, normal));
+
+        queue.tick();
+        assertEquals(400, high.applied);
+        assertEquals(200, normal.applied);
+
+        queue.tick();
+        assertEquals(800, high.applied);
+        assertEquals(400, normal.applied);
+    }
+
+    @Test
+    public void testOwnerEditsRunInOrder() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        EditQueue queue = new EditQueue(ticker);
+        queue.setTickBudget(REGION.getArea() / 2, TimeUnit.NANOSECONDS);
+        SessionOwner owner = createOwner(false);
+        CountingFunction first = new CountingFunction(ticker);
+        CountingFunction second = new CountingFunction(ticker);
+        QueuedEdit firstEdit = queue.submit(owner, new RegionVisitor(REGION, first));
+        QueuedEdit secondEdit = queue.submit(owner, new RegionVisitor(REGION, second));
+        assertEquals(0, firstEdit.getPosition());
+        assertEquals(1, secondEdit.getPosition());
+
+        queue.tick();
+        assertEquals(REGION.getArea() / 2, first.applied);
+        assertEquals(0, second.applied);
+
+        queue.tick();
+        assertTrue(firstEdit.getFuture().isDone());
+        assertEquals(REGION.getArea(), first.applied);
+        assertEquals(-1, firstEdit.getPosition());
+        assertEquals(0, secondEdit.getPosition());
+
+        while (!secondEdit.getFuture().isDone()) {
+            queue.tick();
+        }
+        assertEquals(REGION.getArea(), second.applied);
+        assertEquals(0, queue.getOwnerCount());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        EditQueue queue = new EditQueue(ticker);
+        queue.setTickBudget(100, TimeUnit.NANOSECONDS);
+        SessionOwner owner = createOwner(false);
+        CountingFunction function = new CountingFunction(ticker);
+        QueuedEdit edit = queue.submit(owner, new RegionVisitor(REGION, function));
+        queue.tick();
+        assertEquals(100, function.applied);
+
+        assertEquals(1, queue.cancel(owner));
+        queue.tick();
+        assertEquals(100, function.applied);
+        assertTrue(edit.getFuture().isCancelled());
+        assertFalse(edit.cancel());
+        assertEquals(0, queue.getOwnerCount());
+    }
+
+    @Test
+    public void testTicksWithinBudget() throws Exception {
+        EditQueue queue = new EditQueue();
+        queue.setTickBudget(5, TimeUnit.MILLISECONDS);
+        SlowFunction function = new SlowFunction();
+        QueuedEdit edit = queue.submit(createOwner(false), new RegionVisitor(REGION, function));
+
+        long start = System.nanoTime();
+        queue.tick();
+        long elapsed = System.nanoTime() - start;
+
+        assertFalse(edit.getFuture().isDone());
+        assertTrue(function.applied > 0);
+        assertTrue(function.applied < REGION.getArea());
+        assertTrue("tick took " + elapsed + " ns", elapsed < TimeUnit.MILLISECONDS.toNanos(50));
+
+        while (!edit.getFuture().isDone()) {
+            queue.tick();
+        }
+        assertEquals(REGION.getArea(), ((RegionVisitor) edit.getFuture().get()).getAffected());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        EditQueue queue = new EditQueue();
+        QueuedEdit edit = queue.submit(createOwner(false), new Operation() {
+            @Override
+            public Operation resume(RunContext run) throws WorldEditException {
+                throw new IllegalStateException("test");
+            }
+
+            @Override
+            public void cancel() {
+            }
+
+            @Override
+            public void addStatusMessages(List<String> messages) {
+            }
+        });
+        queue.tick();
+        try {
+            edit.getFuture().get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, queue.getOwnerCount());
+    }
+
+    @Test
+    public void testRegionVisitorResumes() throws Exception {
+        CountingFunction function = new CountingFunction(new FakeTicker());
+        RegionVisitor visitor = new RegionVisitor(REGION, function);
+        assertSame(visitor, visitor.resume(new CountingRunContext(10)));
+        assertEquals(10, function.applied);
+        Operations.complete(visitor);
+        assertEquals(REGION.getArea(), function.applied);
+        assertEquals(REGION.getArea(), visitor.getAffected());
+    }
+
+    @Test
+    public void testCommandsRunInOrder() throws Exception {
+        MemoryWorld world = new MemoryWorld();
+        CuboidRegion region = new CuboidRegion(world, new Vector(0, 0, 0), new Vector(31, 15, 31));
+        EditQueue queue = new EditQueue();
+        SessionOwner owner = createOwner(false);
+
+        // //set stone, whose blocks are still queued when the next command runs
+        EditSession set = createEditSession(world);
+        set.setBlocks(region, new BaseBlock(BlockID.STONE));
+        queue.submit(owner, set.commit());
+
+        // //replace stone dirt
+        queue.drain(owner);
+        assertEquals(region.getArea(), world.count(region, BlockID.STONE));
+        EditSession replace = createEditSession(world);
+        assertEquals(region.getArea(), replace.replaceBlocks(region,
+                Collections.singleton(new BaseBlock(BlockID.STONE)), new BaseBlock(BlockID.DIRT)));
+        queue.submit(owner, replace.commit());
+
+        // //undo restores the stone
+        queue.drain(owner);
+        assertEquals(region.getArea(), world.count(region, BlockID.DIRT));
+        replace.undo(createEditSession(world));
+        assertEquals(region.getArea(), world.count(region, BlockID.STONE));
+        assertEquals(0, queue.getOwnerCount());
+    }
+
+    @Test
+    public void testDrainAll() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        EditQueue queue = new EditQueue(ticker);
+        queue.setTickBudget(100, TimeUnit.NANOSECONDS);
+        CountingFunction first = new CountingFunction(ticker);
+        CountingFunction second = new CountingFunction(ticker);
+        QueuedEdit started = queue.submit(createOwner(false), new RegionVisitor(REGION, first));
+        QueuedEdit cancelled = queue.submit(createOwner(false), new RegionVisitor(REGION, second));
+        queue.tick();
+        assertTrue(first.applied > 0);
+        cancelled.cancel();
+
+        queue.drainAll();
+        assertTrue(started.getFuture().isDone());
+        assertEquals(REGION.getArea(), first.applied);
+        assertTrue(second.applied < REGION.getArea());
+        assertEquals(0, queue.getOwnerCount());
+    }
+
+}
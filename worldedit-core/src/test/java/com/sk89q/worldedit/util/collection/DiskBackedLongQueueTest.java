@@ -0,0 +1,73 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiskBackedLongQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOrderThroughDisk() {
+        DiskBackedLongQueue queue = new DiskBackedLongQueue(folder.getRoot());
+        long next = 0;
+        long expected = 0;
+        for (int round = 0; round < 20000; round++) {
+            for (int i = 0; i < 3; i++) {
+                queue.add(next++);
+            }
+            assertEquals(expected++, queue.remove());
+        }
+        assertEquals(next - expected, queue.size());
+        File file = queue.getFile();
+        assertNotNull(file);
+        assertTrue(file.exists());
+
+        while (!queue.isEmpty()) {
+            assertEquals(expected++, queue.remove());
+        }
+        assertEquals(next, expected);
+
+        // The file is reused once it has been read completely
+        long length = file.length();
+        for (int i = 0; i < 50000; i++) {
+            queue.add(i);
+        }
+        for (int i = 0; i < 50000; i++) {
+            assertEquals(i, queue.remove());
+        }
+        assertEquals(length, file.length());
+
+        queue.close();
+        assertFalse(file.exists());
+    }
+
+}
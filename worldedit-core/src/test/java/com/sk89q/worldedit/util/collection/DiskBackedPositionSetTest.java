@@ -0,0 +1,61 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import com.sk89q.worldedit.math.BlockPositions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+public class DiskBackedPositionSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMatchesHashSet() {
+        Random random = new Random(7);
+        DiskBackedPositionSet set = new DiskBackedPositionSet(folder.getRoot(), 4);
+        Set<Long> expected = new HashSet<Long>();
+        for (int i = 0; i < 50000; i++) {
+            long packed = BlockPositions.pack(random.nextInt(200) - 100, random.nextInt(64), random.nextInt(200) - 100);
+            assertEquals(expected.add(packed), set.add(packed));
+        }
+        assertEquals(expected.size(), set.size());
+        for (long packed : expected) {
+            assertFalse(set.add(packed));
+        }
+
+        File file = set.getFile();
+        assertNotNull(file);
+        set.close();
+        assertFalse(file.exists());
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.world.FastModeExtent;
+import com.sk89q.worldedit.function.operation.Operations;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Matchers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RelightQueueTest {
+
+    @Test
+    public void testTickRelightsChunksPerTick() {
+        World world = mock(World.class);
+        RelightQueue queue = new RelightQueue();
+        queue.setChunksPerTick(2);
+        queue.add(world, new BlockVector2D(0, 0), 1);
+        queue.add(world, new BlockVector2D(1, 0), 2);
+        queue.add(world, new BlockVector2D(0, 0), 4);
+        queue.add(world, new BlockVector2D(2, 0), 8);
+        assertEquals(3, queue.getPendingCount());
+
+        queue.tick();
+        InOrder order = inOrder(world);
+        order.verify(world).relightSections(new BlockVector2D(0, 0), 5);
+        order.verify(world).relightSections(new BlockVector2D(1, 0), 2);
+        verify(world, never()).relightSections(new BlockVector2D(2, 0), 8);
+        assertEquals(1, queue.getPendingCount());
+
+        queue.tick();
+        verify(world).relightSections(new BlockVector2D(2, 0), 8);
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void testTickSkipsFailedChunks() {
+        World world = mock(World.class);
+        doThrow(new IllegalStateException()).when(world).relightSections(new BlockVector2D(0, 0), 1);
+        RelightQueue queue = new RelightQueue();
+        queue.add(world, new BlockVector2D(0, 0), 1);
+        queue.add(world, new BlockVector2D(1, 0), 1);
+
+        queue.tick();
+        verify(world).relightSections(new BlockVector2D(1, 0), 1);
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void testFastModeExtentDefersLighting() throws WorldEditException {
+        World world = mock(World.class);
+        when(world.canRelightSections()).thenReturn(true);
+        RelightQueue queue = new RelightQueue();
+        FastModeExtent extent = new FastModeExtent(world, false);
+        extent.setRelightQueue(queue);
+
+        BaseBlock block = new BaseBlock(1);
+        extent.setBlock(new Vector(1, 2, 3), block);
+        extent.setBlock(new Vector(4, 40, 5), block);
+        extent.setBlock(new Vector(-1, 0, 0), block);
+        verify(world, never()).setBlock(any(Vector.class), any(BaseBlock.class), eq(true));
+        assertEquals(0, queue.getPendingCount());
+
+        Operations.completeLegacy(extent.commit());
+        verify(world, never()).fixAfterFastMode(Matchers.<Iterable<BlockVector2D>>any());
+        assertEquals(2, queue.getPendingCount());
+
+        queue.tick();
+        verify(world).relightSections(new BlockVector2D(0, 0), 1 | 1 << 2);
+        verify(world).relightSections(new BlockVector2D(-1, 0), 1);
+    }
+
+    @Test
+    public void testFastModeExtentLightsWithoutRelight() throws WorldEditException {
+        World world = mock(World.class);
+        RelightQueue queue = new RelightQueue();
+        FastModeExtent extent = new FastModeExtent(world, false);
+        extent.setRelightQueue(queue);
+        assertNull(extent.getRelightQueue());
+
+        BaseBlock block = new BaseBlock(1);
+        extent.setBlock(new Vector(1, 2, 3), block);
+        verify(world).setBlock(new Vector(1, 2, 3), block, true);
+
+        Operations.completeLegacy(extent.commit());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.world.storage;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.CompoundTagBuilder;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.chunk.Chunk;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ChunkCacheTest {
+
+    private World world;
+    private CountingChunkStore store;
+
+    @Before
+    public void setUp() {
+        world = mock(World.class);
+        when(world.getName()).thenReturn("world");
+        store = new CountingChunkStore();
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        ChunkCache cache = new ChunkCache(16 * 1024 * 1024);
+        ChunkStore cached = cache.wrap("snapshot", store);
+
+        Chunk first = cached.getChunk(new Vector2D(1, 2), world);
+        assertSame(first, cached.getChunk(new Vector2D(1, 2), world));
+        cached.getChunk(new Vector2D(2, 1), world);
+
+        assertEquals(2, store.reads);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testKeyedBySnapshot() throws Exception {
+        ChunkCache cache = new ChunkCache(16 * 1024 * 1024);
+        Chunk a = cache.wrap("a", store).getChunk(new Vector2D(0, 0), world);
+        Chunk b = cache.wrap("b", store).getChunk(new Vector2D(0, 0), world);
+
+        assertNotSame(a, b);
+        assertEquals(2, store.reads);
+
+        cache.invalidate("a");
+        assertEquals(1, cache.size());
+        assertSame(b, cache.wrap("b", store).getChunk(new Vector2D(0, 0), world));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        int weight = ChunkCache.estimateSize(createTag(0, 0)) + 16 * (4096 + 2048 + 2048);
+        ChunkCache cache = new ChunkCache(weight * 3);
+        ChunkStore cached = cache.wrap("snapshot", store);
+
+        cached.getChunk(new Vector2D(0, 0), world);
+        cached.getChunk(new Vector2D(1, 0), world);
+        cached.getChunk(new Vector2D(2, 0), world);
+        cached.getChunk(new Vector2D(0, 0), world); // hit, so (1, 0) is now the oldest
+        cached.getChunk(new Vector2D(3, 0), world);
+        assertEquals(4, store.reads);
+
+        cached.getChunk(new Vector2D(0, 0), world);
+        assertEquals(4, store.reads);
+        cached.getChunk(new Vector2D(1, 0), world);
+        assertEquals(5, store.reads);
+    }
+
+    @Test(expected = MissingChunkException.class)
+    public void testErrorsAreNotCached() throws Exception {
+        ChunkCache cache = new ChunkCache(16 * 1024 * 1024);
+        store.missing = true;
+        try {
+            cache.wrap("snapshot", store).getChunk(new Vector2D(0, 0), world);
+        } finally {
+            assertEquals(0, cache.size());
+        }
+    }
+
+    private static CompoundTag createTag(int x, int z) {
+        return CompoundTagBuilder.create()
+                .putInt("xPos", x)
+                .putInt("zPos", z)
+                .put("Sections", new ListTag(CompoundTag.class, Collections.<Tag>emptyList()))
+                .build();
+    }
+
+    private static class CountingChunkStore extends ChunkStore {
+        private int reads;
+        private boolean missing;
+
+        @Override
+        public CompoundTag getChunkTag(Vector2D position, World world) throws DataException, IOException {
+            if (missing) {
+                throw new MissingChunkException();
+            }
+            reads++;
+            return createTag(position.getBlockX(), position.getBlockZ());
+        }
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.world.storage;
+
+import com.google.common.io.ByteStreams;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.world.DataException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedMcRegionReaderTest {
+
+    private static final int CHUNKS = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[][] payloads = new byte[CHUNKS][];
+
+    /**
+     * Write a region file where chunk (i % 32, i / 32) holds payload i.
+     * Odd chunks are gzipped and every other chunk is deflated.
+     */
+    private File createRegionFile() throws IOException {
+        Random random = new Random(42);
+        ByteArrayOutputStream sectors = new ByteArrayOutputStream();
+        int[] offsets = new int[McRegionReader.SECTOR_INTS];
+        int sector = 2; // header and timestamps
+
+        for (int i = CHUNKS - 1; i >= 0; i--) { // write out of order
+            byte[] payload = new byte[1000 + random.nextInt(10000)];
+            for (int j = 0; j < payload.length; j++) {
+                payload[j] = (byte) random.nextInt(8);
+            }
+            payloads[i] = payload;
+
+            boolean gzip = i % 2 == 1;
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            OutputStream out = gzip ? new GZIPOutputStream(compressed) : new DeflaterOutputStream(compressed);
+            out.write(payload);
+            out.close();
+
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(chunk);
+            data.writeInt(compressed.size() + 1);
+            data.writeByte(gzip ? McRegionReader.VERSION_GZIP : McRegionReader.VERSION_DEFLATE);
+            compressed.writeTo(data);
+            int numSectors = (chunk.size() + McRegionReader.SECTOR_BYTES - 1) / McRegionReader.SECTOR_BYTES;
+            while (chunk.size() < numSectors * McRegionReader.SECTOR_BYTES) {
+                chunk.write(0);
+            }
+
+            offsets[(i % 32) + (i / 32) * 32] = sector << 8 | numSectors;
+            chunk.writeTo(sectors);
+            sector += numSectors;
+        }
+
+        File file = folder.newFile("r.0.0.mca");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.write(new byte[McRegionReader.SECTOR_BYTES]);
+            sectors.writeTo(out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] read(MappedMcRegionReader reader, int index) throws IOException, DataException {
+        InputStream in = reader.getChunkInputStream(new Vector2D(index % 32, index / 32));
+        try {
+            return ByteStreams.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testReadInAnyOrder() throws Exception {
+        File file = createRegionFile();
+        MappedMcRegionReader reader = new MappedMcRegionReader(file);
+        try {
+            for (int i = 0; i < CHUNKS; i++) {
+                assertArrayEquals(payloads[i], read(reader, i));
+            }
+            for (int i = CHUNKS - 1; i >= 0; i -= 3) {
+                assertArrayEquals(payloads[i], read(reader, i));
+            }
+            assertTrue(reader.hasChunk(1, 1));
+            assertFalse(reader.hasChunk(31, 31));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testMatchesStreamReader() throws Exception {
+        File file = createRegionFile();
+        MappedMcRegionReader mapped = new MappedMcRegionReader(file);
+        McRegionReader streamed = new McRegionReader(new FileInputStream(file));
+        try {
+            // Chunks were written in descending order and the stream reader can only seek forward
+            for (int index = CHUNKS - 1; index >= 0; index--) {
+                byte[] expected = ByteStreams.toByteArray(streamed.getChunkInputStream(new Vector2D(index % 32, index / 32)));
+                assertArrayEquals(expected, read(mapped, index));
+            }
+        } finally {
+            streamed.close();
+            mapped.close();
+        }
+    }
+
+    @Test(expected = DataException.class)
+    public void testMissingChunk() throws Exception {
+        MappedMcRegionReader reader = new MappedMcRegionReader(createRegionFile());
+        try {
+            reader.getChunkInputStream(new Vector2D(31, 31));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final MappedMcRegionReader reader = new MappedMcRegionReader(createRegionFile());
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        for (int n = 0; n < 200; n++) {
+                            int index = random.nextInt(CHUNKS);
+                            if (!Arrays.equals(payloads[index], read(reader, index))) {
+                                throw new AssertionError("Chunk " + index + " was read incorrectly");
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reader.close();
+
+        assertNull(failure.get());
+    }
+
+}
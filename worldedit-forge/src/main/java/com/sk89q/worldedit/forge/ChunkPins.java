@@ -0,0 +1,124 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.forge;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.ForgeChunkManager;
+import net.minecraftforge.common.ForgeChunkManager.Ticket;
+import net.minecraftforge.common.ForgeChunkManager.Type;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps chunks that were preloaded for an edit loaded, with a chunk
+ * loading ticket for each world, until they are released again.
+ *
+ * <p>A chunk may be pinned several times, in which case it has to be
+ * released as many times. Pins do not outlive the server, so tickets that
+ * are handed back when a world loads are released right away.</p>
+ */
+public class ChunkPins implements ForgeChunkManager.LoadingCallback {
+
+    private static final ChunkPins INSTANCE = new ChunkPins();
+    private final Map<World, Ticket> tickets = new WeakHashMap<World, Ticket>();
+    private final Map<World, Multiset<ChunkPos>> pinned = new WeakHashMap<World, Multiset<ChunkPos>>();
+
+    /**
+     * Pin a chunk.
+     *
+     * @param world the world
+     * @param chunk the chunk coordinates
+     */
+    public synchronized void pin(World world, ChunkPos chunk) {
+        Multiset<ChunkPos> chunks = pinned.get(world);
+        if (chunks == null) {
+            chunks = HashMultiset.create();
+            pinned.put(world, chunks);
+        }
+
+        chunks.add(chunk);
+        if (chunks.count(chunk) == 1) {
+            Ticket ticket = getTicket(world);
+            if (ticket != null) {
+                // Once a ticket is full, the oldest chunk is let go of
+                ForgeChunkManager.forceChunk(ticket, chunk);
+            }
+        }
+    }
+
+    /**
+     * Release a chunk that was pinned.
+     *
+     * @param world the world
+     * @param chunk the chunk coordinates
+     */
+    public synchronized void release(World world, ChunkPos chunk) {
+        Multiset<ChunkPos> chunks = pinned.get(world);
+        if (chunks == null || !chunks.remove(chunk) || chunks.contains(chunk)) {
+            return;
+        }
+
+        Ticket ticket = tickets.get(world);
+        if (ticket != null) {
+            ForgeChunkManager.unforceChunk(ticket, chunk);
+            if (chunks.isEmpty()) {
+                ForgeChunkManager.releaseTicket(ticket);
+                tickets.remove(world);
+                pinned.remove(world);
+            }
+        }
+    }
+
+    /**
+     * Get the ticket of a world, requesting one if there is none yet.
+     *
+     * @param world the world
+     * @return the ticket, or null if no more tickets are available
+     */
+    @Nullable
+    private Ticket getTicket(World world) {
+        Ticket ticket = tickets.get(world);
+        if (ticket == null) {
+            ticket = ForgeChunkManager.requestTicket(ForgeWorldEdit.inst, world, Type.NORMAL);
+            if (ticket != null) {
+                tickets.put(world, ticket);
+            }
+        }
+        return ticket;
+    }
+
+    @Override
+    public void ticketsLoaded(List<Ticket> tickets, World world) {
+        for (Ticket ticket : tickets) {
+            ForgeChunkManager.releaseTicket(ticket);
+        }
+    }
+
+    public static ChunkPins getInstance() {
+        return INSTANCE;
+    }
+
+}
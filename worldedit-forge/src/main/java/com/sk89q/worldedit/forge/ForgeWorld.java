@@ -22,6 +22,7 @@
 import com.google.common.io.Files;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
@@ -56,17 +57,22 @@
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.play.server.SPacketChunkData;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.management.PlayerChunkMapEntry;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumActionResult;
 import net.minecraft.util.EnumHand;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.EnumSkyBlock;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraft.world.chunk.storage.AnvilSaveHandler;
 import net.minecraft.world.gen.ChunkProviderServer;
 import net.minecraft.world.gen.feature.WorldGenBigMushroom;
@@ -101,6 +107,12 @@ public class ForgeWorld extends AbstractWorld {
 
     private static final Random random = new Random();
     private static final int UPDATE = 1, NOTIFY = 2;
+    private static final int FULL_CHUNK = 65535;
+    private static final Runnable NO_CALLBACK = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
 
     private static final IBlockState JUNGLE_LOG = Blocks.LOG.getDefaultState().withProperty(BlockOldLog.VARIANT, BlockPlanks.EnumType.JUNGLE);
     private static final IBlockState JUNGLE_LEAF = Blocks.LEAVES.getDefaultState().withProperty(BlockOldLeaf.VARIANT, BlockPlanks.EnumType.JUNGLE).withProperty(BlockLeaves.CHECK_DECAY, Boolean.valueOf(false));
@@ -200,6 +212,73 @@ public int getBlockLightLevel(Vector position) {
         return getWorld().getLight(new BlockPos(position.getBlockX(), position.getBlockY(), position.getBlockZ()));
     }
 
+    @Override
+    public void preloadChunk(BlockVector2D chunkPos) {
+        checkNotNull(chunkPos);
+        World world = getWorld();
+        ChunkPins.getInstance().pin(world, new ChunkPos(chunkPos.getBlockX(), chunkPos.getBlockZ()));
+
+        // With a callback, chunks that were saved before are read on the
+        // chunk I/O thread, and others are generated when they are first used
+        IChunkProvider provider = world.getChunkProvider();
+        if (provider instanceof ChunkProviderServer) {
+            ((ChunkProviderServer) provider).loadChunk(chunkPos.getBlockX(), chunkPos.getBlockZ(), NO_CALLBACK);
+        }
+    }
+
+    @Override
+    public void releaseChunk(BlockVector2D chunkPos) {
+        checkNotNull(chunkPos);
+        World world = worldRef.get();
+        if (world != null) {
+            ChunkPins.getInstance().release(world, new ChunkPos(chunkPos.getBlockX(), chunkPos.getBlockZ()));
+        }
+    }
+
+    @Override
+    public boolean canRelightSections() {
+        return true;
+    }
+
+    @Override
+    public void relightSections(BlockVector2D chunkPos, int sectionMask) {
+        checkNotNull(chunkPos);
+        World world = getWorld();
+        Chunk chunk = world.getChunkFromChunkCoords(chunkPos.getBlockX(), chunkPos.getBlockZ());
+
+        // Sky light follows the height map, which may have changed anywhere
+        // in the column, and the game rechecks the remaining light of the
+        // chunk a little at a time over the following ticks
+        chunk.generateSkylightMap();
+        chunk.resetRelightChecks();
+
+        // Spread the light of light sources in the changed sections right away
+        ExtendedBlockStorage[] storageArray = chunk.getBlockStorageArray();
+        for (int section = 0; section < storageArray.length; section++) {
+            ExtendedBlockStorage storage = storageArray[section];
+            if ((sectionMask & (1 << section)) == 0 || storage == null) {
+                continue;
+            }
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        if (storage.get(x, y, z).getLightValue() > 0) {
+                            BlockPos pos = new BlockPos((chunkPos.getBlockX() << 4) + x, (section << 4) + y, (chunkPos.getBlockZ() << 4) + z);
+                            world.checkLightFor(EnumSkyBlock.BLOCK, pos);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (world instanceof WorldServer) {
+            PlayerChunkMapEntry entry = ((WorldServer) world).getPlayerChunkMap().getEntry(chunkPos.getBlockX(), chunkPos.getBlockZ());
+            if (entry != null && entry.isSentToPlayers()) {
+                entry.sendPacket(new SPacketChunkData(chunk, FULL_CHUNK));
+            }
+        }
+    }
+
     @Override
     public boolean clearContainerBlockContents(Vector position) {
         checkNotNull(position);
@@ -349,6 +428,19 @@ public BaseBlock getLazyBlock(Vector position) {
         return new LazyBlock(Block.getIdFromBlock(state.getBlock()), state.getBlock().getMetaFromState(state), this, position);
     }
 
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        // Reading through the chunk avoids creating a BlockPos for every block
+        IBlockState state = getWorld().getChunkFromChunkCoords(x >> 4, z >> 4).getBlockState(x, y, z);
+        return Block.getIdFromBlock(state.getBlock());
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        IBlockState state = getWorld().getChunkFromChunkCoords(x >> 4, z >> 4).getBlockState(x, y, z);
+        return state.getBlock().getMetaFromState(state);
+    }
+
     @Override
     public int hashCode() {
         return getWorld().hashCode();
@@ -37,6 +37,7 @@
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.world.World;
+import net.minecraftforge.common.ForgeChunkManager;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.CommandEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
@@ -53,6 +54,7 @@
 import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 import net.minecraftforge.fml.common.eventhandler.Event.Result;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -98,6 +100,7 @@ public void preInit(FMLPreInitializationEvent event) {
     @EventHandler
     public void init(FMLInitializationEvent event) {
         MinecraftForge.EVENT_BUS.register(this);
+        ForgeChunkManager.setForcedChunkLoadingCallback(this, ChunkPins.getInstance());
         WECUIPacketHandler.init();
         proxy.registerHandlers();
     }
@@ -127,6 +130,8 @@ public void serverAboutToStart(FMLServerAboutToStartEvent event) {
 
     @EventHandler
     public void serverStopping(FMLServerStoppingEvent event) {
+        WorldEdit.getInstance().getEditQueue().drainAll();
+        WorldEdit.getInstance().getRelightQueue().clear();
         WorldEdit.getInstance().getPlatformManager().unregister(platform);
     }
 
@@ -135,6 +140,15 @@ public void serverStarted(FMLServerStartedEvent event) {
         WorldEdit.getInstance().getEventBus().post(new PlatformReadyEvent());
     }
 
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        // ForgePlatform cannot schedule tasks, so run the operations here
+        if (platform != null && event.phase == TickEvent.Phase.END) {
+            WorldEdit.getInstance().getEditQueue().tick();
+            WorldEdit.getInstance().getRelightQueue().tick();
+        }
+    }
+
     @SubscribeEvent
     public void onCommandEvent(CommandEvent event) {
         if ((event.getSender() instanceof EntityPlayerMP)) {
@@ -0,0 +1,118 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.sponge;
+
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.world.ChunkTicketManager;
+import org.spongepowered.api.world.ChunkTicketManager.LoadingTicket;
+import org.spongepowered.api.world.World;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps chunks that were preloaded for an edit loaded, with a chunk
+ * loading ticket for each world, until they are released again.
+ *
+ * <p>A chunk may be pinned several times, in which case it has to be
+ * released as many times. Pins do not outlive the server, so tickets that
+ * are handed back when a world loads are released right away.</p>
+ */
+public class ChunkPins implements ChunkTicketManager.Callback {
+
+    private static final ChunkPins INSTANCE = new ChunkPins();
+    private final Map<UUID, LoadingTicket> tickets = new HashMap<>();
+    private final Map<UUID, Multiset<Vector3i>> pinned = new HashMap<>();
+
+    /**
+     * Pin a chunk.
+     *
+     * @param world the world
+     * @param chunk the chunk coordinates
+     */
+    public synchronized void pin(World world, Vector3i chunk) {
+        Multiset<Vector3i> chunks = pinned.computeIfAbsent(world.getUniqueId(), id -> HashMultiset.create());
+        chunks.add(chunk);
+        if (chunks.count(chunk) == 1) {
+            // Once a ticket is full, the oldest chunk is let go of
+            getTicket(world).ifPresent(ticket -> ticket.forceChunk(chunk));
+        }
+    }
+
+    /**
+     * Release a chunk that was pinned.
+     *
+     * @param world the world
+     * @param chunk the chunk coordinates
+     */
+    public synchronized void release(World world, Vector3i chunk) {
+        UUID id = world.getUniqueId();
+        Multiset<Vector3i> chunks = pinned.get(id);
+        if (chunks == null || !chunks.remove(chunk) || chunks.contains(chunk)) {
+            return;
+        }
+
+        LoadingTicket ticket = tickets.get(id);
+        if (ticket != null) {
+            ticket.unforceChunk(chunk);
+        }
+        if (chunks.isEmpty()) {
+            pinned.remove(id);
+            if (ticket != null) {
+                ticket.release();
+                tickets.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Get the ticket of a world, creating one if there is none yet.
+     *
+     * @param world the world
+     * @return the ticket, if any more tickets are available
+     */
+    private Optional<LoadingTicket> getTicket(World world) {
+        LoadingTicket ticket = tickets.get(world.getUniqueId());
+        if (ticket == null) {
+            Optional<LoadingTicket> created = Sponge.getServer().getChunkTicketManager().createTicket(SpongeWorldEdit.inst(), world);
+            created.ifPresent(t -> tickets.put(world.getUniqueId(), t));
+            return created;
+        }
+        return Optional.of(ticket);
+    }
+
+    @Override
+    public void onLoaded(ImmutableList<LoadingTicket> tickets, World world) {
+        for (LoadingTicket ticket : tickets) {
+            ticket.release();
+        }
+    }
+
+    public static ChunkPins getInstance() {
+        return INSTANCE;
+    }
+
+}
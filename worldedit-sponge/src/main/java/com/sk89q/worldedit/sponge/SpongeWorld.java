@@ -21,6 +21,7 @@
 
 import com.flowpowered.math.vector.Vector3d;
 import com.flowpowered.math.vector.Vector3i;
+import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
@@ -149,6 +150,27 @@ public boolean regenerate(Region region, EditSession editSession) {
         return false;
     }
 
+    @Override
+    public void preloadChunk(BlockVector2D chunk) {
+        checkNotNull(chunk);
+        World world = getWorld();
+        Vector3i position = new Vector3i(chunk.getBlockX(), 0, chunk.getBlockZ());
+        ChunkPins.getInstance().pin(world, position);
+
+        // The API cannot load chunks in the background, so the chunk is
+        // loaded now, ahead of the edit that will use it
+        world.loadChunk(position, true);
+    }
+
+    @Override
+    public void releaseChunk(BlockVector2D chunk) {
+        checkNotNull(chunk);
+        World world = worldRef.get();
+        if (world != null) {
+            ChunkPins.getInstance().release(world, new Vector3i(chunk.getBlockX(), 0, chunk.getBlockZ()));
+        }
+    }
+
     @Override
     public int getBlockLightLevel(Vector position) {
         checkNotNull(position);
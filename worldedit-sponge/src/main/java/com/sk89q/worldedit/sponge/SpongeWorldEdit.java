@@ -34,6 +34,7 @@
 import com.sk89q.worldedit.sponge.adapter.SpongeImplLoader;
 import com.sk89q.worldedit.sponge.config.SpongeConfiguration;
 import org.slf4j.Logger;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
@@ -105,6 +106,7 @@ public void preInit(GamePreInitializationEvent event) {
         config.load();
 
         Task.builder().interval(30, TimeUnit.SECONDS).execute(ThreadSafeCache.getInstance()).submit(this);
+        Sponge.getServer().getChunkTicketManager().registerCallback(this, ChunkPins.getInstance());
     }
 
     @Listener
@@ -132,6 +134,8 @@ public void serverAboutToStart(GameAboutToStartServerEvent event) {
 
     @Listener
     public void serverStopping(GameStoppingServerEvent event) {
+        WorldEdit.getInstance().getEditQueue().drainAll();
+        WorldEdit.getInstance().getRelightQueue().clear();
         WorldEdit.getInstance().getPlatformManager().unregister(platform);
     }
 
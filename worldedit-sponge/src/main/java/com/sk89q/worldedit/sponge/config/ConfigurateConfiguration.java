@@ -24,6 +24,7 @@
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.session.SessionManager;
 import com.sk89q.worldedit.world.snapshot.SnapshotRepository;
+import com.sk89q.worldedit.world.storage.ChunkCache;
 import ninja.leaping.configurate.ConfigurationOptions;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.loader.ConfigurationLoader;
@@ -61,6 +62,8 @@ public void load() {
 
         defaultChangeLimit = Math.max(-1, node.getNode("limits", "max-blocks-changed", "default").getInt(defaultChangeLimit));
         maxChangeLimit = Math.max(-1, node.getNode("limits", "max-blocks-changed", "maximum").getInt(maxChangeLimit));
+        maxBlocksVisited = Math.max(-1, node.getNode("limits", "max-blocks-visited").getInt(maxBlocksVisited));
+        searchMemoryBlocks = Math.max(-1, node.getNode("limits", "search-memory-blocks").getInt(searchMemoryBlocks));
 
         defaultMaxPolygonalPoints = Math.max(-1, node.getNode("limits", "max-polygonal-points", "default").getInt(defaultMaxPolygonalPoints));
         maxPolygonalPoints = Math.max(-1, node.getNode("limits", "max-polygonal-points", "maximum").getInt(maxPolygonalPoints));
@@ -108,6 +111,12 @@ public void load() {
         allowSymlinks = node.getNode("files", "allow-symbolic-links").getBoolean(false);
         LocalSession.MAX_HISTORY_SIZE = Math.max(0, node.getNode("history", "size").getInt(15));
         SessionManager.EXPIRATION_GRACE = node.getNode("history", "expiration").getInt(10) * 60 * 1000;
+        historyDiskThreshold = node.getNode("history", "disk-threshold").getInt(historyDiskThreshold);
+        editQueueTickBudget = Math.max(1, node.getNode("scheduler", "tick-budget").getInt(editQueueTickBudget));
+        parallelThreads = Math.max(0, node.getNode("scheduler", "parallel-threads").getInt(parallelThreads));
+        deferRelight = node.getNode("scheduler", "defer-relight").getBoolean(deferRelight);
+        relightChunksPerTick = Math.max(1, node.getNode("scheduler", "relight-chunks-per-tick").getInt(relightChunksPerTick));
+        preloadChunks = Math.max(0, node.getNode("scheduler", "preload-chunks").getInt(preloadChunks));
 
         showHelpInfo = node.getNode("show-help-on-first-use").getBoolean(true);
 
@@ -115,6 +124,12 @@ public void load() {
         if (!snapshotsDir.isEmpty()) {
             snapshotRepo = new SnapshotRepository(snapshotsDir);
         }
+        snapshotRestoreThreads = Math.max(1, node.getNode("snapshots", "restore-threads").getInt(snapshotRestoreThreads));
+        snapshotRestoreQueueDepth = Math.max(1, node.getNode("snapshots", "restore-queue-depth").getInt(snapshotRestoreQueueDepth));
+        snapshotChunkCacheSize = Math.max(0, node.getNode("snapshots", "chunk-cache-size").getInt(snapshotChunkCacheSize));
+        if (snapshotRepo != null && snapshotChunkCacheSize > 0) {
+            snapshotRepo.setChunkCache(new ChunkCache(snapshotChunkCacheSize * 1024L * 1024L));
+        }
 
         String type = node.getNode("shell-save-type").getString("").trim();
         shellSaveType = type.equals("") ? null : type;